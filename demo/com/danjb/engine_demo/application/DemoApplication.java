@@ -40,32 +40,27 @@ public class DemoApplication extends Application
     private static final int FPS = 60;
 
     /**
-     * Timestep used to tick the game each frame.
+     * Timestep used to update the game.
      *
      * <p>We use a fixed time step to keep our physics consistent.
      */
     private static final int MS_PER_FRAME = 1000 / FPS;
 
     /**
-     * Minimum interval used when sleeping the main Thread.
-     *
-     * <p>If this is set to a very small value (e.g. 1), we will get closer to
-     * our desired framerate, but there is a higher risk of "oversleeping".
-     *
-     * <p>If this is set to a larger value (e.g. 4), each frame is more likely
-     * to arrive a little early. We rectify this by busy-waiting between frames.
+     * Nanoseconds in a millisecond.
      */
-    private static final int MIN_SLEEP_TIME = 4;
+    private static final long NS_PER_MS = 1_000_000;
 
     /**
-     * Timestamp taken at the start of every frame.
+     * Timestamp taken at the start of every frame, in nanoseconds.
      */
-    private long msBefore;
+    private long frameStart;
 
     /**
-     * Timestamp taken at the end of every frame.
+     * Time elapsed that was too short to be included in the last delta value,
+     * in nanoseconds.
      */
-    private long msAfter;
+    private long leftoverTime;
 
     /**
      * Panel to which the game is drawn.
@@ -76,63 +71,45 @@ public class DemoApplication extends Application
     protected void init() {
         super.init();
         createDisplay(DISPLAY_WIDTH, DISPLAY_HEIGHT);
-    }
-
-    @Override
-    protected void tick(int delta) {
-        msBefore = System.currentTimeMillis();
-        super.tick(delta);
+        setFixedTimestep(MS_PER_FRAME);
     }
 
     @Override
     protected int calculateDelta() {
-        // Since we use a fixed timestep, we always return the same value.
-        // To get the "real" delta value here, just calculate:
-        //   msAfter - msBefore
-        return MS_PER_FRAME;
-    }
-
-    @Override
-    protected void yieldThread() {
 
-        /*
-         * This is not the most sophisticated game loop in the world, but it
-         * gives us a pretty steady 60fps.
-         */
+        long now = System.nanoTime();
 
-        // Calculate how much time until the next frame is due
-        msAfter = System.currentTimeMillis();
-        int timeTaken = (int) (msAfter - msBefore);
-        int timeRemaining = MS_PER_FRAME - timeTaken;
-
-        // Always sleep at least once so we're not hogging the CPU
-        timeRemaining = Math.max(timeRemaining, MIN_SLEEP_TIME);
+        if (frameStart == 0) {
+            // First frame
+            frameStart = now;
+            return MS_PER_FRAME;
+        }
 
-        // Sleep until the next frame is due.
-        // We sleep in short intervals because the OS gives us no
-        // guarantees about the sleep duration, and we don't want to
-        // risk overshooting.
-        while (timeRemaining > MIN_SLEEP_TIME) {
-            try {
+        // The Application takes care of splitting this into fixed steps
+        long elapsed = now - frameStart + leftoverTime;
+        frameStart = now;
+        leftoverTime = elapsed % NS_PER_MS;
+        return (int) (elapsed / NS_PER_MS);
+    }
 
-                Thread.sleep(MIN_SLEEP_TIME);
+    @Override
+    protected void yieldThread() {
 
-                // Recalculate the time remaining
-                msAfter = System.currentTimeMillis();
-                timeTaken = (int) (msAfter - msBefore);
-                timeRemaining = MS_PER_FRAME - timeTaken;
+        // Sleep until the next frame is due. If we oversleep, the Application
+        // will catch up by running extra steps next time.
+        long timeTaken = System.nanoTime() - frameStart;
+        long timeRemaining = MS_PER_FRAME * NS_PER_MS - timeTaken;
 
-            } catch (InterruptedException ex) {
-                break;
-            }
+        if (timeRemaining <= 0) {
+            Thread.yield();
+            return;
         }
 
-        // If we have finished this frame early, busy-wait until the
-        // next frame is due
-        while (timeRemaining > 0) {
-            msAfter = System.currentTimeMillis();
-            timeTaken = (int) (msAfter - msBefore);
-            timeRemaining = MS_PER_FRAME - timeTaken;
+        try {
+            Thread.sleep(timeRemaining / NS_PER_MS,
+                    (int) (timeRemaining % NS_PER_MS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -2,6 +2,7 @@ package com.danjb.engine_demo.game;
 
 import java.awt.Color;
 
+import com.danjb.engine.game.ComponentType;
 import com.danjb.engine.game.tiles.TileComponent;
 
 /**
@@ -13,10 +14,13 @@ public class TileGraphic extends TileComponent {
 
     public static final String KEY = "gfx";
 
+    public static final ComponentType<TileGraphic> TYPE =
+            ComponentType.of(KEY, TileGraphic.class);
+
     private Color colour;
 
     public TileGraphic(Color colour) {
-        super(KEY);
+        super(TYPE);
 
         this.colour = colour;
     }
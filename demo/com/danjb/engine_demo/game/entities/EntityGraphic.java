@@ -2,6 +2,7 @@ package com.danjb.engine_demo.game.entities;
 
 import java.awt.Color;
 
+import com.danjb.engine.game.ComponentType;
 import com.danjb.engine.game.entities.EntityComponent;
 
 /**
@@ -13,10 +14,13 @@ public class EntityGraphic extends EntityComponent {
 
     public static final String KEY = "gfx";
 
+    public static final ComponentType<EntityGraphic> TYPE =
+            ComponentType.of(KEY, EntityGraphic.class);
+
     private Color colour;
 
     public EntityGraphic(Color colour) {
-        super(KEY);
+        super(TYPE);
 
         this.colour = colour;
     }
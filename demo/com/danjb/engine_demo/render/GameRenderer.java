@@ -1,7 +1,6 @@
 package com.danjb.engine_demo.render;
 
 import java.awt.Graphics2D;
-import java.util.Collection;
 
 import com.danjb.engine.game.Logic;
 import com.danjb.engine.game.camera.Camera;
@@ -112,7 +111,7 @@ public class GameRenderer {
 
         if (gfx != null) {
             renderLevel(logic.getLevel());
-            renderEntities(logic.getEntities().values());
+            renderEntities(logic);
         }
     }
 
@@ -149,8 +148,7 @@ public class GameRenderer {
     private void renderTile(int x, int y, int tileId) {
 
         Tile tile = logic.getTileProvider().getTile(TileLayers.DEFAULT, tileId);
-        TileGraphic tileGfx = (TileGraphic)
-                tile.components.get(TileGraphic.KEY);
+        TileGraphic tileGfx = tile.components.get(TileGraphic.TYPE);
 
         if (tileGfx != null) {
             gfx.setColor(tileGfx.getColour());
@@ -165,13 +163,16 @@ public class GameRenderer {
     }
 
     /**
-     * Renders the given collection of Entities.
+     * Renders all Entities in the world.
      *
-     * @param entities
+     * @param logic
      */
-    private void renderEntities(Collection<Entity> entities) {
-        for (Entity entity : entities) {
-            renderEntity(entity);
+    private void renderEntities(Logic logic) {
+        for (int i = 0; i < logic.getEntitiesEnd(); i++) {
+            Entity entity = logic.getEntityAt(i);
+            if (entity != null) {
+                renderEntity(entity);
+            }
         }
     }
 
@@ -182,8 +183,7 @@ public class GameRenderer {
      */
     private void renderEntity(Entity entity) {
 
-        EntityGraphic entityGfx = (EntityGraphic)
-                entity.components.get(EntityGraphic.KEY);
+        EntityGraphic entityGfx = entity.components.get(EntityGraphic.TYPE);
 
         if (entityGfx != null) {
             gfx.setColor(entityGfx.getColour());
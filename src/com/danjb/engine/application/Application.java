@@ -1,5 +1,7 @@
 package com.danjb.engine.application;
 
+import java.io.IOException;
+
 /**
  * Class responsible for managing the lifecycle of the game.
  *
@@ -7,6 +9,11 @@ package com.danjb.engine.application;
  */
 public abstract class Application implements StateContext {
 
+    /**
+     * Default maximum number of fixed steps that can be run in one tick.
+     */
+    private static final int DEFAULT_MAX_STEPS_PER_TICK = 5;
+
     /**
      * Flag to tell the game to exit cleanly.
      */
@@ -27,6 +34,42 @@ public abstract class Application implements StateContext {
      */
     protected Input input;
 
+    /**
+     * Duration of each update when using a fixed timestep, in milliseconds,
+     * or 0 to update once per tick using the elapsed time.
+     */
+    private int fixedTimestep;
+
+    /**
+     * Maximum number of fixed steps that can be run in one tick.
+     */
+    private int maxStepsPerTick = DEFAULT_MAX_STEPS_PER_TICK;
+
+    /**
+     * Milliseconds that have elapsed but have not yet been simulated.
+     */
+    private int accumulator;
+
+    /**
+     * Fraction of a fixed step that has elapsed since the last update.
+     */
+    private float interpolationAlpha;
+
+    /**
+     * Recorder to which each frame's input is written, if any.
+     */
+    private InputRecorder inputRecorder;
+
+    /**
+     * Recorded input being replayed, if any.
+     */
+    private InputPlayback inputPlayback;
+
+    /**
+     * Whether rendering is disabled.
+     */
+    private boolean headless;
+
     /**
      * Starts the game loop and runs until the game exits.
      *
@@ -55,13 +98,63 @@ public abstract class Application implements StateContext {
         return new Input();
     }
 
+    /**
+     * Replays recorded input as fast as possible, without rendering.
+     *
+     * <p>This feeds each recorded frame through {@link #tick} (or
+     * {@link #tickFixed}) in place of the real input and elapsed time. Given
+     * a deterministic game, the replay will reach exactly the same state as
+     * the original session, so this can be used as a repeatable load test,
+     * or as a regression test by comparing a state hash afterwards.
+     *
+     * <p>Unlike {@link #start}, this returns once the recording is exhausted
+     * (or the Application requests to exit), and leaves the current State
+     * alive so that it can be inspected.
+     *
+     * @param initialState
+     * @param playback
+     * @return Number of frames replayed.
+     * @throws IOException if the recording cannot be read.
+     */
+    public final int replay(State initialState, InputPlayback playback)
+            throws IOException {
+
+        init();
+        changeState(initialState);
+
+        inputPlayback = playback;
+        headless = true;
+
+        int numFrames = 0;
+        try {
+            int delta;
+            while (!exiting && (delta = playback.nextFrame()) >= 0) {
+                if (fixedTimestep > 0) {
+                    tickFixed(delta);
+                } else {
+                    tick(delta);
+                }
+                numFrames++;
+            }
+        } finally {
+            inputPlayback = null;
+            headless = false;
+        }
+
+        return numFrames;
+    }
+
     /**
      * Runs the game loop until the Application is exited.
      */
     protected void run() {
         while (!exiting) {
             int delta = calculateDelta();
-            tick(delta);
+            if (fixedTimestep > 0) {
+                tickFixed(delta);
+            } else {
+                tick(delta);
+            }
             yieldThread();
         }
     }
@@ -85,12 +178,86 @@ public abstract class Application implements StateContext {
      * @param delta Milliseconds elapsed since the last tick.
      */
     protected void tick(int delta) {
-        pollInput();
+        gatherInput(delta);
         update(delta);
-        render();
+        if (!headless) {
+            render();
+        }
         input.consume();
     }
 
+    /**
+     * Processes and renders the current frame using a fixed timestep.
+     *
+     * <p>The elapsed time is added to an accumulator, and the game is updated
+     * in fixed steps until the accumulator is used up. Any remainder is
+     * carried over to the next tick, and the fraction of a step that it
+     * represents is passed to {@link #render(float)} so that the renderer can
+     * interpolate between the last 2 simulated states.
+     *
+     * <p>If the game cannot keep up, only a limited number of steps are run
+     * (see {@link #setMaxStepsPerTick}) and the rest of the backlog is
+     * dropped, so that the game slows down instead of spiralling ever further
+     * behind.
+     *
+     * @param delta Milliseconds elapsed since the last tick.
+     */
+    protected void tickFixed(int delta) {
+
+        gatherInput(delta);
+
+        accumulator += delta;
+
+        int steps = 0;
+        while (accumulator >= fixedTimestep && steps < maxStepsPerTick) {
+            update(fixedTimestep);
+            accumulator -= fixedTimestep;
+            steps++;
+
+            // Input should only be handled by one update
+            input.consume();
+        }
+
+        if (accumulator >= fixedTimestep) {
+            // Too far behind; give up on catching up
+            accumulator %= fixedTimestep;
+        }
+
+        interpolationAlpha = (float) accumulator / fixedTimestep;
+        if (!headless) {
+            render(interpolationAlpha);
+        }
+    }
+
+    /**
+     * Collects the input for the current frame, either by polling or from
+     * the recording being replayed, and records it if necessary.
+     *
+     * @param delta Milliseconds elapsed since the last tick.
+     */
+    private void gatherInput(int delta) {
+
+        // Any events still waiting were not consumed by the last tick, and
+        // have already been recorded
+        int firstEvent = input.getEvents().size();
+
+        if (inputPlayback != null) {
+            inputPlayback.applyTo(input);
+        } else {
+            pollInput();
+        }
+
+        if (inputRecorder != null) {
+            try {
+                inputRecorder.recordFrame(delta, input, firstEvent);
+            } catch (IOException ex) {
+                // Don't let a broken recording take the game down with it
+                Logger.get().log(ex);
+                inputRecorder = null;
+            }
+        }
+    }
+
     /**
      * Polls user input for the current frame.
      *
@@ -116,6 +283,19 @@ public abstract class Application implements StateContext {
      */
     protected abstract void render();
 
+    /**
+     * Renders the current frame when using a fixed timestep.
+     *
+     * <p>By default this just calls {@link #render()}; the alpha value is
+     * also available from {@link #getInterpolationAlpha}.
+     *
+     * @param alpha Fraction of a fixed step that has elapsed since the last
+     * update, from 0 (inclusive) to 1 (exclusive).
+     */
+    protected void render(float alpha) {
+        render();
+    }
+
     /**
      * Causes the Application to exit after processing the current frame.
      *
@@ -165,6 +345,74 @@ public abstract class Application implements StateContext {
         return state;
     }
 
+    /**
+     * Enables or disables the fixed timestep.
+     *
+     * <p>When enabled, the game is always updated using the given delta value,
+     * as many times per tick as necessary to keep up with real time (see
+     * {@link #tickFixed}). This keeps the physics stable regardless of the
+     * framerate.
+     *
+     * @param fixedTimestep Milliseconds per update, or 0 to pass the elapsed
+     * time straight to {@link #update} (the default).
+     */
+    public void setFixedTimestep(int fixedTimestep) {
+        if (fixedTimestep < 0) {
+            throw new IllegalArgumentException(
+                    "Timestep cannot be negative: " + fixedTimestep);
+        }
+        this.fixedTimestep = fixedTimestep;
+        accumulator = 0;
+        interpolationAlpha = 0;
+    }
+
+    /**
+     * Gets the duration of each update when using a fixed timestep.
+     *
+     * @return Milliseconds per update, or 0 if the timestep is not fixed.
+     */
+    public int getFixedTimestep() {
+        return fixedTimestep;
+    }
+
+    /**
+     * Sets the maximum number of fixed steps that can be run in one tick.
+     *
+     * @param maxStepsPerTick
+     */
+    public void setMaxStepsPerTick(int maxStepsPerTick) {
+        if (maxStepsPerTick < 1) {
+            throw new IllegalArgumentException(
+                    "Must allow at least 1 step per tick: " + maxStepsPerTick);
+        }
+        this.maxStepsPerTick = maxStepsPerTick;
+    }
+
+    /**
+     * Gets the fraction of a fixed step that has elapsed since the last
+     * update.
+     *
+     * <p>Renderers can use this to interpolate between the previous and
+     * current simulated states.
+     *
+     * @return
+     */
+    public float getInterpolationAlpha() {
+        return interpolationAlpha;
+    }
+
+    /**
+     * Sets the recorder to which each frame's input should be written.
+     *
+     * <p>The elapsed time of each tick is recorded along with its input, so
+     * the session can be replayed exactly using {@link #replay}.
+     *
+     * @param inputRecorder Recorder, or null to stop recording.
+     */
+    public void setInputRecorder(InputRecorder inputRecorder) {
+        this.inputRecorder = inputRecorder;
+    }
+
     /**
      * Gets the Input created during initialisation.
      *
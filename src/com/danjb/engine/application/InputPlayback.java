@@ -0,0 +1,185 @@
+package com.danjb.engine.application;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.danjb.engine.application.Input.EventType;
+import com.danjb.engine.application.Input.InputEvent;
+import com.danjb.engine.application.Input.KeyEvent;
+import com.danjb.engine.application.Input.MouseEvent;
+
+/**
+ * Reads input recorded by an {@link InputRecorder}, frame by frame.
+ *
+ * @see Application#replay
+ * @author Dan Bryce
+ */
+public class InputPlayback implements Closeable {
+
+    /**
+     * Stream from which the log is read.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Events belonging to the current frame.
+     */
+    private final List<InputEvent> events = new ArrayList<>();
+
+    /**
+     * Mouse position as of the current frame.
+     */
+    private int mouseX, mouseY;
+
+    /**
+     * Number of frames read.
+     */
+    private int numFrames;
+
+    /**
+     * Creates an InputPlayback that reads from the given stream.
+     *
+     * @param stream
+     * @throws IOException if the stream does not contain an input log.
+     */
+    public InputPlayback(InputStream stream) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != InputRecorder.MAGIC) {
+            throw new IOException("Not an input log");
+        }
+        int version = in.readUnsignedByte();
+        if (version != InputRecorder.VERSION) {
+            throw new IOException("Unsupported input log version: " + version);
+        }
+    }
+
+    /**
+     * Reads the next frame.
+     *
+     * @return Milliseconds elapsed before the frame, or -1 if there are no
+     * frames left.
+     * @throws IOException
+     */
+    public int nextFrame() throws IOException {
+
+        int first = in.read();
+        if (first < 0) {
+            return -1;
+        }
+        int delta = readVarInt(first);
+
+        int flags = in.readUnsignedByte();
+        if ((flags & InputRecorder.FRAME_MOUSE_MOVED) != 0) {
+            mouseX = readZigZag();
+            mouseY = readZigZag();
+        }
+
+        events.clear();
+        int numEvents = readVarInt(in.readUnsignedByte());
+        for (int i = 0; i < numEvents; i++) {
+            events.add(readEvent());
+        }
+
+        numFrames++;
+        return delta;
+    }
+
+    /**
+     * Feeds the events of the current frame into an Input.
+     *
+     * <p>Any events already in the Input are left alone; these are left over
+     * from earlier frames, exactly as they were when the input was recorded.
+     *
+     * @param input
+     */
+    public void applyTo(Input input) {
+        input.setMousePos(mouseX, mouseY);
+        for (InputEvent event : events) {
+            if (event instanceof MouseEvent) {
+                input.addMouseEvent((MouseEvent) event);
+            } else {
+                input.addKeyEvent((KeyEvent) event);
+            }
+        }
+    }
+
+    /**
+     * Reads a single event.
+     *
+     * @return
+     * @throws IOException
+     */
+    private InputEvent readEvent() throws IOException {
+
+        int flags = in.readUnsignedByte();
+        int keyId = readVarInt(in.readUnsignedByte());
+        EventType type = (flags & InputRecorder.EVENT_PRESSED) != 0
+                ? EventType.PRESSED
+                : EventType.RELEASED;
+
+        if ((flags & InputRecorder.EVENT_MOUSE) != 0) {
+            int x = readZigZag();
+            int y = readZigZag();
+            return new MouseEvent(keyId, x, y, type);
+        }
+        return new KeyEvent(keyId, in.readChar(), type);
+    }
+
+    /**
+     * Reads a non-negative int written using a variable number of bytes.
+     *
+     * @param first First byte of the value.
+     * @return
+     * @throws IOException
+     */
+    private int readVarInt(int first) throws IOException {
+        int value = first & 0x7F;
+        int shift = 7;
+        int chunk = first;
+        while ((chunk & 0x80) != 0) {
+            if (shift > 28) {
+                throw new IOException("Malformed input log");
+            }
+            chunk = in.read();
+            if (chunk < 0) {
+                throw new EOFException();
+            }
+            value |= (chunk & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    /**
+     * Reads an int that may be negative, written using a variable number of
+     * bytes.
+     *
+     * @return
+     * @throws IOException
+     */
+    private int readZigZag() throws IOException {
+        int value = readVarInt(in.readUnsignedByte());
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Gets the number of frames read.
+     *
+     * @return
+     */
+    public int getNumFrames() {
+        return numFrames;
+    }
+
+}
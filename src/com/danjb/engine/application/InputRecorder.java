@@ -0,0 +1,209 @@
+package com.danjb.engine.application;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.danjb.engine.application.Input.InputEvent;
+import com.danjb.engine.application.Input.KeyEvent;
+import com.danjb.engine.application.Input.MouseEvent;
+
+/**
+ * Records the input received by an {@link Application}, frame by frame, so
+ * that it can be replayed later by an {@link InputPlayback}.
+ *
+ * <p>The log is a compact binary stream. It begins with a header:
+ *
+ * <pre>
+ * magic       4 bytes
+ * version     1 byte
+ * </pre>
+ *
+ * <p>This is followed by one record per tick:
+ *
+ * <pre>
+ * delta       varint
+ * flags       1 byte (MOUSE_MOVED)
+ * mouse x, y  2 zig-zag varints (if the mouse moved)
+ * num events  varint
+ * events...
+ * </pre>
+ *
+ * <p>Each event is a flags byte (pressed, mouse) and a varint key ID,
+ * followed by the character of a key event, or the position of a mouse
+ * event.
+ *
+ * <p>Only the events received during a tick are written to its record. Events
+ * left over from earlier ticks (because no update ran to consume them) are
+ * not written again, since the playback leaves them in the Input just as the
+ * original session did.
+ *
+ * @see Application#setInputRecorder
+ * @author Dan Bryce
+ */
+public class InputRecorder implements Closeable {
+
+    /**
+     * Value identifying an input log.
+     */
+    static final int MAGIC = 0x494E5054;
+
+    /**
+     * Version of the log format.
+     */
+    static final int VERSION = 2;
+
+    /*
+     * Frame flags.
+     */
+    static final int FRAME_MOUSE_MOVED = 1;
+
+    /*
+     * Event flags.
+     */
+    static final int EVENT_PRESSED = 1;
+    static final int EVENT_MOUSE = 1 << 1;
+
+    /**
+     * Stream to which the log is written.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Mouse position as of the last recorded frame.
+     */
+    private int lastMouseX, lastMouseY;
+
+    /**
+     * Number of frames recorded.
+     */
+    private int numFrames;
+
+    /**
+     * Creates an InputRecorder that writes to the given stream.
+     *
+     * @param stream
+     * @throws IOException
+     */
+    public InputRecorder(OutputStream stream) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    /**
+     * Records the input received during a single tick.
+     *
+     * @param delta Milliseconds elapsed since the last tick.
+     * @param input Input polled for this tick.
+     * @param firstEvent Index of the first event received during this tick;
+     * any earlier events are left over from previous ticks.
+     * @throws IOException
+     */
+    public void recordFrame(int delta, Input input, int firstEvent)
+            throws IOException {
+
+        writeVarInt(delta);
+
+        int mouseX = input.getMouseX();
+        int mouseY = input.getMouseY();
+        boolean mouseMoved = mouseX != lastMouseX || mouseY != lastMouseY;
+        out.writeByte(mouseMoved ? FRAME_MOUSE_MOVED : 0);
+        if (mouseMoved) {
+            writeZigZag(mouseX);
+            writeZigZag(mouseY);
+            lastMouseX = mouseX;
+            lastMouseY = mouseY;
+        }
+
+        List<InputEvent> events = input.getEvents();
+        writeVarInt(events.size() - firstEvent);
+        for (int i = firstEvent; i < events.size(); i++) {
+            writeEvent(events.get(i));
+        }
+
+        numFrames++;
+    }
+
+    /**
+     * Writes a single event.
+     *
+     * @param event
+     * @throws IOException
+     */
+    private void writeEvent(InputEvent event) throws IOException {
+
+        int flags = event.getType() == Input.EventType.PRESSED
+                ? EVENT_PRESSED
+                : 0;
+        if (event instanceof MouseEvent) {
+            flags |= EVENT_MOUSE;
+        }
+        out.writeByte(flags);
+        writeVarInt(event.getKeyId());
+
+        if (event instanceof MouseEvent) {
+            MouseEvent mouseEvent = (MouseEvent) event;
+            writeZigZag(mouseEvent.getMouseX());
+            writeZigZag(mouseEvent.getMouseY());
+        } else if (event instanceof KeyEvent) {
+            out.writeChar(((KeyEvent) event).getKeyChar());
+        } else {
+            out.writeChar(0);
+        }
+    }
+
+    /**
+     * Writes a non-negative int using as few bytes as possible.
+     *
+     * @param value
+     * @throws IOException
+     */
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Writes an int that may be negative using as few bytes as possible.
+     *
+     * @param value
+     * @throws IOException
+     */
+    private void writeZigZag(int value) throws IOException {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes any buffered data to the underlying stream.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Gets the number of frames recorded.
+     *
+     * @return
+     */
+    public int getNumFrames() {
+        return numFrames;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.danjb.engine.game;
+
+import java.util.List;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.util.IntList;
+
+/**
+ * Strategy used by the {@link Logic} to find pairs of Entities that might be
+ * colliding.
+ *
+ * <p>A Broadphase never decides whether a collision has actually occurred; it
+ * only discards pairs that cannot possibly be colliding, so that the Logic
+ * does not have to check every pair of Entities in the world.
+ *
+ * <p>Implementations should also discard pairs whose collision layers prevent
+ * them from interacting; {@link CollisionFilter} can be used for this.
+ *
+ * @author Dan Bryce
+ */
+public interface Broadphase {
+
+    /**
+     * Prepares this Broadphase for a round of collision processing.
+     *
+     * <p>This is called once per frame, after all Entities have moved. The
+     * indices used by {@link #getCandidates} refer to positions within the
+     * given list.
+     *
+     * @param entities
+     */
+    void prepare(List<Entity> entities);
+
+    /**
+     * Finds all Entities that might collide with the Entity at the given
+     * index.
+     *
+     * <p>Only Entities that come AFTER the given index should be returned,
+     * since earlier pairs will already have been checked. The resulting
+     * indices must be in ascending order and contain no duplicates, so that
+     * collisions are processed in the same order as they would be by a
+     * {@link BruteForceBroadphase}.
+     *
+     * @param index Index of the Entity within the prepared list.
+     * @param candidates List to fill with candidate indices.
+     */
+    void getCandidates(int index, IntList candidates);
+
+}
@@ -0,0 +1,45 @@
+package com.danjb.engine.game;
+
+import java.util.List;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.util.IntList;
+
+/**
+ * Broadphase that considers every pair of Entities whose collision layers
+ * allow them to interact.
+ *
+ * <p>This is the simplest possible strategy, and is perfectly adequate for
+ * levels containing a small number of Entities.
+ *
+ * @author Dan Bryce
+ */
+public class BruteForceBroadphase implements Broadphase {
+
+    /**
+     * Number of Entities being processed.
+     */
+    private int numEntities;
+
+    /**
+     * Filter used to discard pairs that cannot interact.
+     */
+    private CollisionFilter filter = new CollisionFilter();
+
+    @Override
+    public void prepare(List<Entity> entities) {
+        numEntities = entities.size();
+        filter.prepare(entities);
+    }
+
+    @Override
+    public void getCandidates(int index, IntList candidates) {
+        candidates.clear();
+        for (int i = index + 1; i < numEntities; i++) {
+            if (filter.canInteract(index, i)) {
+                candidates.add(i);
+            }
+        }
+    }
+
+}
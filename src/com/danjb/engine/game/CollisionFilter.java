@@ -0,0 +1,62 @@
+package com.danjb.engine.game;
+
+import java.util.List;
+
+import com.danjb.engine.game.entities.Entity;
+
+/**
+ * Snapshot of the collision layers of a list of Entities, used by
+ * {@link Broadphase} implementations to discard pairs that can never
+ * interact.
+ *
+ * <p>A pair can interact if either Entity is interested in the other (see
+ * {@link Entity#isInterestedIn}). Layers are copied into flat arrays when the
+ * filter is prepared, so that each test is a couple of array reads and a
+ * bitwise AND.
+ *
+ * @author Dan Bryce
+ */
+public class CollisionFilter {
+
+    /**
+     * Collision layer of each Entity, by index.
+     */
+    private int[] layers = new int[0];
+
+    /**
+     * Collision mask of each Entity, by index.
+     */
+    private int[] masks = new int[0];
+
+    /**
+     * Records the collision layers of the given Entities.
+     *
+     * @param entities
+     */
+    public void prepare(List<Entity> entities) {
+
+        if (layers.length < entities.size()) {
+            int capacity = Math.max(entities.size(), layers.length * 2);
+            layers = new int[capacity];
+            masks = new int[capacity];
+        }
+
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            layers[i] = entity.getCollisionLayer();
+            masks[i] = entity.getCollisionMask();
+        }
+    }
+
+    /**
+     * Determines whether the Entities at the given indices can interact.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    public boolean canInteract(int a, int b) {
+        return (masks[a] & layers[b]) != 0 || (masks[b] & layers[a]) != 0;
+    }
+
+}
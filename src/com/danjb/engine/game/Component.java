@@ -12,11 +12,21 @@ public abstract class Component {
      */
     protected String key;
 
+    /**
+     * ID assigned to our key (see {@link ComponentType}).
+     */
+    private final int typeId;
+
     /**
      * Whether this Component is pending deletion.
      */
     protected boolean deleted;
 
+    /**
+     * Store to which this Component is attached, if any.
+     */
+    ComponentStore<?> store;
+
     /**
      * Creates a Component.
      *
@@ -24,6 +34,17 @@ public abstract class Component {
      */
     public Component(String key) {
         this.key = key;
+        typeId = ComponentType.getId(key);
+    }
+
+    /**
+     * Creates a Component of the given type.
+     *
+     * @param type
+     */
+    public Component(ComponentType<?> type) {
+        key = type.getKey();
+        typeId = type.getId();
     }
 
     /**
@@ -53,7 +74,13 @@ public abstract class Component {
      * Marks this Component for deletion.
      */
     public void delete() {
+        if (deleted) {
+            return;
+        }
         deleted = true;
+        if (store != null) {
+            store.componentDeleted(this);
+        }
     }
 
     /**
@@ -81,4 +108,13 @@ public abstract class Component {
         return key;
     }
 
+    /**
+     * Gets the ID assigned to our key.
+     *
+     * @return
+     */
+    int getTypeId() {
+        return typeId;
+    }
+
 }
@@ -1,12 +1,19 @@
 package com.danjb.engine.game;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
+/**
+ * Collection of the {@link Component}s attached to some object.
+ *
+ * <p>Components can be looked up using a {@link ComponentType}, which is
+ * fastest and avoids casting, or using their String keys.
+ *
+ * @param <T> Base class of Components that can be attached.
+ * @author Dan Bryce
+ */
 public class ComponentStore<T extends Component> {
 
     /**
@@ -15,18 +22,73 @@ public class ComponentStore<T extends Component> {
     private List<T> components = new ArrayList<>();
 
     /**
-     * {@link Component}s attached to this object, by key.
+     * {@link Component}s attached to this object, indexed by type ID (see
+     * {@link ComponentType}).
+     *
+     * <p>Types that have never been attached have a null entry, or no entry
+     * at all. Components are removed from these lists as soon as they are
+     * deleted, so lookups never need to skip over deleted Components.
+     */
+    private List<List<T>> componentsByType = new ArrayList<>();
+
+    /**
+     * Number of deleted Components still waiting to be destroyed.
      */
-    private Map<String, List<T>> componentsByKey = new HashMap<>();
+    private int numDeleted;
+
+    /**
+     * Lists used to hold the targets of {@link #notifyAll(ComponentType,
+     * ComponentEvent)}, by nesting depth.
+     */
+    private List<List<T>> notifyLists = new ArrayList<>();
+
+    /**
+     * Number of calls to {@link #notifyAll(ComponentType, ComponentEvent)}
+     * currently in progress.
+     */
+    private int notifyDepth;
+
+    /**
+     * Counter that changes whenever Components are added or removed.
+     *
+     * <p>This allows callers to cache the result of a lookup until the store
+     * is next modified.
+     */
+    private int version;
 
     /**
      * Destroys all Components in the store.
      */
     public void destroy() {
-        components.stream()
-                .forEach(c -> c.destroy());
+        for (T component : components) {
+            component.store = null;
+            component.destroy();
+        }
+        components.clear();
+        componentsByType.clear();
+        numDeleted = 0;
+        version++;
+    }
+
+    /**
+     * Destroys all Components in the store, leaving it ready for reuse.
+     *
+     * <p>Unlike {@link #destroy}, this keeps the internal per-type lists, so
+     * that re-attaching the same kinds of Components does not allocate.
+     */
+    public void reset() {
+        for (T component : components) {
+            component.store = null;
+            component.destroy();
+        }
         components.clear();
-        componentsByKey.clear();
+        for (List<T> componentsOfType : componentsByType) {
+            if (componentsOfType != null) {
+                componentsOfType.clear();
+            }
+        }
+        numDeleted = 0;
+        version++;
     }
 
     /**
@@ -55,19 +117,24 @@ public class ComponentStore<T extends Component> {
      */
     public void add(T component) {
 
-        // Find the list of components that share this key
-        String key = component.getKey();
-        List<T> componentsWithKey = componentsByKey.get(key);
+        // Find the list of components that share this type
+        int typeId = component.getTypeId();
+        while (componentsByType.size() <= typeId) {
+            componentsByType.add(null);
+        }
+        List<T> componentsOfType = componentsByType.get(typeId);
 
-        if (componentsWithKey == null) {
-            // This is the first component with this key
-            componentsWithKey = new ArrayList<>();
-            componentsByKey.put(key, componentsWithKey);
+        if (componentsOfType == null) {
+            // This is the first component of this type
+            componentsOfType = new ArrayList<>();
+            componentsByType.set(typeId, componentsOfType);
         }
 
         // Add the new component
-        componentsWithKey.add(component);
+        componentsOfType.add(component);
         components.add(component);
+        component.store = this;
+        version++;
     }
 
     /**
@@ -76,9 +143,26 @@ public class ComponentStore<T extends Component> {
      * @param key
      */
     public void delete(String key) {
-        T c = get(key);
-        if (c != null) {
-            c.delete();
+        delete(getList(ComponentType.findId(key)));
+    }
+
+    /**
+     * Deletes the first Component of the given type.
+     *
+     * @param type
+     */
+    public void delete(ComponentType<?> type) {
+        delete(getList(type.getId()));
+    }
+
+    /**
+     * Deletes the first Component in a list.
+     *
+     * @param componentsOfType
+     */
+    private void delete(List<T> componentsOfType) {
+        if (componentsOfType != null && !componentsOfType.isEmpty()) {
+            componentsOfType.get(0).delete();
         }
     }
 
@@ -88,31 +172,78 @@ public class ComponentStore<T extends Component> {
      * @param key
      */
     public void deleteAll(String key) {
-        List<? extends T> components = getAll(key);
-        for (T c : components) {
-            c.delete();
+        deleteAll(getList(ComponentType.findId(key)));
+    }
+
+    /**
+     * Deletes all Components of the given type.
+     *
+     * @param type
+     */
+    public void deleteAll(ComponentType<?> type) {
+        deleteAll(getList(type.getId()));
+    }
+
+    /**
+     * Deletes every Component in a list.
+     *
+     * @param componentsOfType
+     */
+    private void deleteAll(List<T> componentsOfType) {
+        if (componentsOfType == null) {
+            return;
+        }
+        // Each deletion removes the Component from the list, so work
+        // backwards
+        for (int i = componentsOfType.size() - 1; i >= 0; i--) {
+            componentsOfType.get(i).delete();
+        }
+    }
+
+    /**
+     * Called when one of our Components is marked for deletion.
+     *
+     * <p>The Component is removed from our lookups straight away, but is not
+     * destroyed until the next {@link #update}, so that it is safe to delete
+     * Components while iterating over the store.
+     *
+     * @param component
+     */
+    void componentDeleted(Component component) {
+        List<T> componentsOfType = getList(component.getTypeId());
+        if (componentsOfType != null) {
+            componentsOfType.remove(component);
         }
+        numDeleted++;
+        version++;
     }
 
     /**
-     * Removes any Components that have been marked for deletion.
+     * Destroys and removes any Components that have been marked for deletion.
      */
     private void removeDeleted() {
 
-        // Destroy deleted Components
-        List<T> componentsToDelete = components.stream()
-                .filter(comp -> comp.isDeleted())
-                .peek(comp -> comp.destroy())
-                .collect(Collectors.toList());
-
-        // Remove deleted Components from our list
-        components.removeAll(componentsToDelete);
+        if (numDeleted == 0) {
+            return;
+        }
 
-        // Also remove these Component from our map
-        for (T component : componentsToDelete) {
-            List<T> componentList = componentsByKey.get(component.key);
-            componentList.remove(component);
+        // Compact the live Components towards the front of the list
+        int numLive = 0;
+        for (int i = 0; i < components.size(); i++) {
+            T component = components.get(i);
+            if (component.isDeleted()) {
+                component.store = null;
+                component.destroy();
+            } else {
+                components.set(numLive, component);
+                numLive++;
+            }
         }
+        for (int i = components.size() - 1; i >= numLive; i--) {
+            components.remove(i);
+        }
+
+        numDeleted = 0;
     }
 
     /**
@@ -122,9 +253,49 @@ public class ComponentStore<T extends Component> {
      * @param event
      */
     public void notifyAll(String key, ComponentEvent event) {
-        List<? extends T> componentsWithKey = getAll(key);
-        for (T component : componentsWithKey) {
-            component.notify(event);
+        notifyAll(getList(ComponentType.findId(key)), event);
+    }
+
+    /**
+     * Sends an event to all the Components of the given type.
+     *
+     * @param type
+     * @param event
+     */
+    public void notifyAll(ComponentType<?> type, ComponentEvent event) {
+        notifyAll(getList(type.getId()), event);
+    }
+
+    /**
+     * Sends an event to every Component in a list.
+     *
+     * @param componentsOfType
+     * @param event
+     */
+    private void notifyAll(List<T> componentsOfType, ComponentEvent event) {
+
+        if (componentsOfType == null || componentsOfType.isEmpty()) {
+            return;
+        }
+
+        // Copy the targets so that Components can be attached or deleted in
+        // response to the event
+        if (notifyDepth == notifyLists.size()) {
+            notifyLists.add(new ArrayList<>());
+        }
+        List<T> targets = notifyLists.get(notifyDepth);
+        for (int i = 0; i < componentsOfType.size(); i++) {
+            targets.add(componentsOfType.get(i));
+        }
+
+        notifyDepth++;
+        try {
+            for (int i = 0; i < targets.size(); i++) {
+                targets.get(i).notify(event);
+            }
+        } finally {
+            notifyDepth--;
+            targets.clear();
         }
     }
 
@@ -144,21 +315,55 @@ public class ComponentStore<T extends Component> {
      *
      * <p>Changes to this list will not be reflected in the store.
      *
+     * <p>This creates a new list; {@link #getAll(String, Collection)} should
+     * be preferred for code that runs every frame.
+     *
      * @param key
      * @return
      */
     public List<? extends T> getAll(String key) {
+        List<T> result = new ArrayList<>();
+        getAll(key, result);
+        return result;
+    }
 
-        List<T> components = componentsByKey.get(key);
-
-        if (components == null) {
-            return new ArrayList<>();
+    /**
+     * Adds all the Components with the given key to a collection.
+     *
+     * <p>Existing contents of the collection are kept.
+     *
+     * @param key
+     * @param result Collection to fill.
+     */
+    public void getAll(String key, Collection<? super T> result) {
+        List<T> componentsOfType = getList(ComponentType.findId(key));
+        if (componentsOfType == null) {
+            return;
         }
+        // Avoid addAll, since it copies the list into a new array
+        for (int i = 0; i < componentsOfType.size(); i++) {
+            result.add(componentsOfType.get(i));
+        }
+    }
 
-        // Return all matching Components, excluding any that have been deleted
-        return components.stream()
-                .filter(c -> !c.deleted)
-                .collect(Collectors.toList());
+    /**
+     * Adds all the Components of the given type to a collection.
+     *
+     * <p>Existing contents of the collection are kept.
+     *
+     * @param <C>
+     * @param type
+     * @param result Collection to fill.
+     */
+    public <C extends T> void getAll(
+            ComponentType<C> type, Collection<? super C> result) {
+        List<T> componentsOfType = getList(type.getId());
+        if (componentsOfType == null) {
+            return;
+        }
+        for (int i = 0; i < componentsOfType.size(); i++) {
+            result.add(type.cast(componentsOfType.get(i)));
+        }
     }
 
     /**
@@ -168,8 +373,36 @@ public class ComponentStore<T extends Component> {
      * @return
      */
     public T get(String key) {
-        List<? extends T> components = getAll(key);
-        return components.isEmpty() ? null : components.get(0);
+        List<T> componentsOfType = getList(ComponentType.findId(key));
+        return componentsOfType == null || componentsOfType.isEmpty()
+                ? null
+                : componentsOfType.get(0);
+    }
+
+    /**
+     * Gets the first Component found of the given type.
+     *
+     * @param <C>
+     * @param type
+     * @return
+     */
+    public <C extends T> C get(ComponentType<C> type) {
+        List<T> componentsOfType = getList(type.getId());
+        return componentsOfType == null || componentsOfType.isEmpty()
+                ? null
+                : type.cast(componentsOfType.get(0));
+    }
+
+    /**
+     * Gets the list of Components with the given type ID.
+     *
+     * @param typeId
+     * @return List, or null if no Components of this type have been added.
+     */
+    private List<T> getList(int typeId) {
+        return typeId >= 0 && typeId < componentsByType.size()
+                ? componentsByType.get(typeId)
+                : null;
     }
 
     /**
@@ -192,12 +425,30 @@ public class ComponentStore<T extends Component> {
         return components.isEmpty();
     }
 
+    /**
+     * Gets a counter that changes whenever Components are added to or removed
+     * from this ComponentStore.
+     *
+     * <p>Marking a Component for deletion counts as a change, since it
+     * immediately stops the Component from being returned by {@link #get}.
+     *
+     * @return
+     */
+    public int getVersion() {
+        return version;
+    }
+
     /**
      * Removes all Components from this ComponentStore.
      */
     public void clear() {
+        for (T component : components) {
+            component.store = null;
+        }
         components.clear();
-        componentsByKey.clear();
+        componentsByType.clear();
+        numDeleted = 0;
+        version++;
     }
 
 }
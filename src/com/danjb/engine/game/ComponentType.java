@@ -0,0 +1,143 @@
+package com.danjb.engine.game;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Typed handle used to look up {@link Component}s in a
+ * {@link ComponentStore}.
+ *
+ * <p>Every Component key is assigned a small, unique ID the first time it is
+ * seen. ComponentStores index their Components by this ID, so a lookup using
+ * a ComponentType is a simple array access, and returns the Component
+ * without the caller having to cast it.
+ *
+ * <p>ComponentTypes are best declared as constants alongside the Component
+ * class, so that the ID is assigned when the class is loaded:
+ *
+ * <pre>
+ * public static final ComponentType&lt;MyComponent&gt; TYPE =
+ *         ComponentType.of(KEY, MyComponent.class);
+ * </pre>
+ *
+ * <p>Different Component classes may share a key, so long as they are never
+ * attached to the same ComponentStore.
+ *
+ * @param <C> Class of Component identified by this type.
+ * @author Dan Bryce
+ */
+public final class ComponentType<C extends Component> {
+
+    /**
+     * IDs assigned to each key.
+     */
+    private static final Map<String, Integer> idsByKey =
+            new ConcurrentHashMap<>();
+
+    /**
+     * ID to be assigned to the next new key.
+     */
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Unique ID of this type's key.
+     */
+    private final int id;
+
+    /**
+     * Key shared by all Components of this type.
+     */
+    private final String key;
+
+    /**
+     * Class of Component identified by this type.
+     */
+    private final Class<C> componentClass;
+
+    /**
+     * Creates a ComponentType.
+     *
+     * @param id
+     * @param key
+     * @param componentClass
+     */
+    private ComponentType(int id, String key, Class<C> componentClass) {
+        this.id = id;
+        this.key = key;
+        this.componentClass = componentClass;
+    }
+
+    /**
+     * Gets the ComponentType for the given key.
+     *
+     * @param <C>
+     * @param key
+     * @param componentClass Class of Component that uses the key.
+     * @return
+     */
+    public static <C extends Component> ComponentType<C> of(
+            String key, Class<C> componentClass) {
+        return new ComponentType<>(getId(key), key, componentClass);
+    }
+
+    /**
+     * Gets the ID assigned to a key, assigning a new one if necessary.
+     *
+     * @param key
+     * @return
+     */
+    public static int getId(String key) {
+        return idsByKey.computeIfAbsent(key, k -> nextId.getAndIncrement());
+    }
+
+    /**
+     * Gets the ID assigned to a key, without assigning a new one.
+     *
+     * @param key
+     * @return ID, or -1 if no Component has used this key.
+     */
+    static int findId(String key) {
+        Integer id = idsByKey.get(key);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Casts a Component to this type.
+     *
+     * @param component
+     * @return
+     * @throws ClassCastException if the Component is of a different class.
+     */
+    public C cast(Component component) {
+        return componentClass.cast(component);
+    }
+
+    /**
+     * Gets the unique ID of this type's key.
+     *
+     * @return
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the key shared by all Components of this type.
+     *
+     * @return
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the class of Component identified by this type.
+     *
+     * @return
+     */
+    public Class<C> getComponentClass() {
+        return componentClass;
+    }
+
+}
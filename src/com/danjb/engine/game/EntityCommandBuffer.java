@@ -0,0 +1,264 @@
+package com.danjb.engine.game;
+
+import java.util.Arrays;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.entities.EntityComponent;
+
+/**
+ * Queue of changes to Entities that are deferred until a safe point in the
+ * frame.
+ *
+ * <p>Changing an Entity while other Entities are being processed is unsafe if
+ * that processing is ever done in parallel, and can be surprising even when
+ * it is not (for example, an Entity that is teleported halfway through a
+ * frame is seen in different places by different Entities). Instead,
+ * Components can record their changes here, and the {@link Logic} will apply
+ * them all at once, in the order in which they were recorded (see
+ * {@link Logic#update}).
+ *
+ * <p>Commands are stored in flat arrays that are reused from one frame to the
+ * next, so recording a command does not allocate. Recording is thread-safe.
+ *
+ * <p>If an Entity is removed from the world before its commands are applied,
+ * those commands are discarded, even if the Entity object has since been
+ * reused (see {@link EntityPool}).
+ *
+ * @author Dan Bryce
+ */
+public class EntityCommandBuffer {
+
+    /*
+     * Command types.
+     */
+    private static final int TELEPORT   = 0;
+    private static final int SET_SPEED  = 1;
+    private static final int ATTACH     = 2;
+    private static final int DETACH     = 3;
+    private static final int DELETE     = 4;
+
+    /**
+     * Initial capacity of the buffer.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Type of each command.
+     */
+    private int[] types = new int[INITIAL_CAPACITY];
+
+    /**
+     * Target Entity of each command.
+     */
+    private Entity[] targets = new Entity[INITIAL_CAPACITY];
+
+    /**
+     * ID of the target Entity at the time each command was recorded.
+     */
+    private int[] targetIds = new int[INITIAL_CAPACITY];
+
+    /**
+     * Numeric arguments of each command.
+     */
+    private float[] argsX = new float[INITIAL_CAPACITY];
+    private float[] argsY = new float[INITIAL_CAPACITY];
+
+    /**
+     * Object argument of each command, if any.
+     */
+    private Object[] argObjects = new Object[INITIAL_CAPACITY];
+
+    /**
+     * Number of commands in the buffer.
+     */
+    private int size;
+
+    /**
+     * Logic whose Entities are targeted by our commands.
+     */
+    private final Logic logic;
+
+    /**
+     * Creates an empty EntityCommandBuffer.
+     *
+     * @param logic Logic whose Entities will be targeted.
+     */
+    public EntityCommandBuffer(Logic logic) {
+        this.logic = logic;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Commands
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Teleports an Entity.
+     *
+     * @see Entity#teleport
+     * @param entity
+     * @param x
+     * @param y
+     */
+    public void teleport(Entity entity, float x, float y) {
+        record(TELEPORT, entity, x, y, null);
+    }
+
+    /**
+     * Sets the speed of an Entity's Hitbox.
+     *
+     * @param entity
+     * @param speedX
+     * @param speedY
+     */
+    public void setSpeed(Entity entity, float speedX, float speedY) {
+        record(SET_SPEED, entity, speedX, speedY, null);
+    }
+
+    /**
+     * Attaches a Component to an Entity.
+     *
+     * @see Entity#attach
+     * @param entity
+     * @param component
+     */
+    public void attach(Entity entity, EntityComponent component) {
+        record(ATTACH, entity, 0, 0, component);
+    }
+
+    /**
+     * Deletes all of an Entity's Components with the given key.
+     *
+     * @see ComponentStore#deleteAll
+     * @param entity
+     * @param key
+     */
+    public void detach(Entity entity, String key) {
+        record(DETACH, entity, 0, 0, key);
+    }
+
+    /**
+     * Marks an Entity for deletion.
+     *
+     * @see Entity#delete
+     * @param entity
+     */
+    public void delete(Entity entity) {
+        record(DELETE, entity, 0, 0, null);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Playback
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Applies all recorded commands, in order, and empties the buffer.
+     *
+     * <p>Any commands recorded while this is running are also applied.
+     */
+    public synchronized void playback() {
+
+        for (int i = 0; i < size; i++) {
+
+            Entity entity = targets[i];
+            if (logic.getEntity(targetIds[i]) != entity) {
+                // Entity has left the world since this command was recorded
+                continue;
+            }
+
+            switch (types[i]) {
+            case TELEPORT:
+                entity.teleport(argsX[i], argsY[i]);
+                break;
+            case SET_SPEED:
+                entity.hitbox.setSpeedX(argsX[i]);
+                entity.hitbox.setSpeedY(argsY[i]);
+                break;
+            case ATTACH:
+                entity.attach((EntityComponent) argObjects[i]);
+                break;
+            case DETACH:
+                entity.components.deleteAll((String) argObjects[i]);
+                break;
+            case DELETE:
+                entity.delete();
+                break;
+            default:
+                throw new IllegalStateException(
+                        "Unknown command type: " + types[i]);
+            }
+        }
+
+        clear();
+    }
+
+    /**
+     * Discards all recorded commands.
+     */
+    public synchronized void clear() {
+        // Don't hold on to any references
+        Arrays.fill(targets, 0, size, null);
+        Arrays.fill(argObjects, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Gets the number of commands waiting to be applied.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Determines if there are no commands waiting to be applied.
+     *
+     * @return
+     */
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds a command to the buffer.
+     *
+     * @param type
+     * @param entity
+     * @param x
+     * @param y
+     * @param arg
+     */
+    private synchronized void record(
+            int type, Entity entity, float x, float y, Object arg) {
+
+        if (size == types.length) {
+            grow();
+        }
+
+        types[size] = type;
+        targets[size] = entity;
+        targetIds[size] = entity.getId();
+        argsX[size] = x;
+        argsY[size] = y;
+        argObjects[size] = arg;
+        size++;
+    }
+
+    /**
+     * Doubles the capacity of the buffer.
+     */
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        targetIds = Arrays.copyOf(targetIds, capacity);
+        argsX = Arrays.copyOf(argsX, capacity);
+        argsY = Arrays.copyOf(argsY, capacity);
+        argObjects = Arrays.copyOf(argObjects, capacity);
+    }
+
+}
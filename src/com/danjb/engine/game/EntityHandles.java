@@ -0,0 +1,343 @@
+package com.danjb.engine.game;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.danjb.engine.util.IntList;
+
+/**
+ * Allocator of generational Entity IDs.
+ *
+ * <p>Each ID (or "handle") combines a slot index with a generation counter:
+ *
+ * <pre>handle = (generation &lt;&lt; INDEX_BITS) | index</pre>
+ *
+ * <p>When an Entity is removed from the world, its slot is recycled and the
+ * slot's generation is incremented. This keeps slot indices small and dense,
+ * so per-Entity data can be stored in plain arrays indexed by
+ * {@link #getIndex}, while any old handles to the removed Entity can be
+ * recognised as stale by {@link #isValid}.
+ *
+ * <p>The first handles allocated for each slot have a generation of zero, so
+ * a world in which no Entities are ever removed uses the IDs 0, 1, 2, etc.
+ *
+ * <p>Generations are only {@code 31 - INDEX_BITS} bits wide, so they
+ * eventually wrap around. To make it unlikely that a stale handle ever
+ * becomes valid again, freed slots are reused in the order in which they
+ * were freed, and only once a minimum number of slots are free. This spreads
+ * the recycling across many slots, instead of repeatedly reusing the same
+ * one when Entities are spawned and removed in quick succession.
+ *
+ * @author Dan Bryce
+ */
+public class EntityHandles {
+
+    /**
+     * Number of bits used for the slot index.
+     */
+    public static final int INDEX_BITS = 20;
+
+    /**
+     * Maximum number of slots.
+     */
+    public static final int MAX_SLOTS = 1 << INDEX_BITS;
+
+    /**
+     * Mask used to extract the slot index from a handle.
+     */
+    private static final int INDEX_MASK = MAX_SLOTS - 1;
+
+    /**
+     * Mask used to wrap generations, keeping all handles non-negative.
+     */
+    private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+
+    /**
+     * Default number of slots that must be free before any are reused.
+     */
+    public static final int DEFAULT_MIN_FREE_SLOTS = 1024;
+
+    /**
+     * Current generation of each slot.
+     */
+    private int[] generations = new int[64];
+
+    /**
+     * Whether each slot is currently in use.
+     */
+    private boolean[] live = new boolean[64];
+
+    /**
+     * Number of slots that have ever been used.
+     */
+    private int numSlots;
+
+    /**
+     * Slots available for reuse, most recently freed last.
+     *
+     * <p>This is used as a queue, starting from {@link #freeSlotsHead}. It may
+     * contain slots that have since been claimed by {@link #claim}; these are
+     * skipped when allocating.
+     */
+    private IntList freeSlots = new IntList();
+
+    /**
+     * Index of the first entry in {@link #freeSlots} that has not yet been
+     * taken.
+     */
+    private int freeSlotsHead;
+
+    /**
+     * Number of slots that must be free before any are reused.
+     */
+    private final int minFreeSlots;
+
+    /**
+     * Creates an EntityHandles that reuses slots once
+     * {@link #DEFAULT_MIN_FREE_SLOTS} are free.
+     */
+    public EntityHandles() {
+        this(DEFAULT_MIN_FREE_SLOTS);
+    }
+
+    /**
+     * Creates an EntityHandles that reuses slots once the given number are
+     * free.
+     *
+     * <p>A slot's generation wraps after it has been reused
+     * {@code 2^(31 - INDEX_BITS)} times, so higher values make it less
+     * likely that a stale handle will be mistaken for a live one, at the cost
+     * of using more slots.
+     *
+     * @param minFreeSlots
+     */
+    public EntityHandles(int minFreeSlots) {
+        this.minFreeSlots = minFreeSlots;
+    }
+
+    /**
+     * Allocates a new handle.
+     *
+     * @return
+     */
+    public int allocate() {
+
+        int index = -1;
+        while (freeSlots.size() - freeSlotsHead > minFreeSlots) {
+            int candidate = freeSlots.get(freeSlotsHead);
+            freeSlotsHead++;
+            if (!live[candidate]) {
+                index = candidate;
+                break;
+            }
+        }
+        compactFreeSlots();
+
+        if (index < 0) {
+            if (numSlots == MAX_SLOTS) {
+                throw new IllegalStateException("Too many Entities");
+            }
+            index = numSlots;
+            ensureCapacity(index + 1);
+            numSlots++;
+        }
+
+        live[index] = true;
+        return toHandle(index, generations[index]);
+    }
+
+    /**
+     * Marks a specific handle as being in use.
+     *
+     * <p>This is used when an Entity is given a predefined ID.
+     *
+     * @param handle
+     * @throws IllegalArgumentException if the handle's slot is already in use
+     * by a different handle.
+     */
+    public void claim(int handle) {
+
+        if (handle < 0) {
+            throw new IllegalArgumentException("Invalid handle: " + handle);
+        }
+
+        int index = getIndex(handle);
+        ensureCapacity(index + 1);
+
+        if (live[index]) {
+            if (generations[index] != getGeneration(handle)) {
+                throw new IllegalArgumentException(
+                        "Slot " + index + " is already in use");
+            }
+            return;
+        }
+
+        // Any slots we skip over become available for reuse
+        for (int i = numSlots; i < index; i++) {
+            freeSlots.add(i);
+        }
+        numSlots = Math.max(numSlots, index + 1);
+
+        generations[index] = getGeneration(handle);
+        live[index] = true;
+    }
+
+    /**
+     * Releases a handle, so that its slot can be reused.
+     *
+     * <p>The handle, and any copies of it, will no longer be valid.
+     *
+     * @param handle
+     */
+    public void release(int handle) {
+        if (!isValid(handle)) {
+            return;
+        }
+        int index = getIndex(handle);
+        live[index] = false;
+        generations[index] = (generations[index] + 1) & GENERATION_MASK;
+        freeSlots.add(index);
+    }
+
+    /**
+     * Determines if a handle refers to a slot that is currently in use.
+     *
+     * @param handle
+     * @return False if the handle has been released.
+     */
+    public boolean isValid(int handle) {
+        if (handle < 0) {
+            return false;
+        }
+        int index = getIndex(handle);
+        return index < numSlots
+                && live[index]
+                && generations[index] == getGeneration(handle);
+    }
+
+    /**
+     * Gets the number of slots that have ever been used.
+     *
+     * <p>Per-Entity arrays indexed by {@link #getIndex} need at least this
+     * many elements.
+     *
+     * @return
+     */
+    public int getNumSlots() {
+        return numSlots;
+    }
+
+    /**
+     * Writes the state of every slot to a buffer, as part of a world
+     * snapshot.
+     *
+     * @param buffer
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(numSlots);
+        for (int i = 0; i < numSlots; i++) {
+            // Generations never use the sign bit, so we can pack the live
+            // flag into the lowest bit
+            buffer.putInt((generations[i] << 1) | (live[i] ? 1 : 0));
+        }
+        buffer.putInt(freeSlots.size() - freeSlotsHead);
+        for (int i = freeSlotsHead; i < freeSlots.size(); i++) {
+            buffer.putInt(freeSlots.get(i));
+        }
+    }
+
+    /**
+     * Restores state written by {@link #writeState}.
+     *
+     * <p>Slots allocated since the state was written are forgotten, so they
+     * will hand out the same handles again.
+     *
+     * @param buffer
+     */
+    public void readState(ByteBuffer buffer) {
+
+        int newNumSlots = buffer.getInt();
+        ensureCapacity(newNumSlots);
+
+        for (int i = 0; i < newNumSlots; i++) {
+            int packed = buffer.getInt();
+            generations[i] = packed >>> 1;
+            live[i] = (packed & 1) != 0;
+        }
+        if (newNumSlots < numSlots) {
+            Arrays.fill(generations, newNumSlots, numSlots, 0);
+            Arrays.fill(live, newNumSlots, numSlots, false);
+        }
+        numSlots = newNumSlots;
+
+        freeSlots.clear();
+        freeSlotsHead = 0;
+        int numFreeSlots = buffer.getInt();
+        for (int i = 0; i < numFreeSlots; i++) {
+            freeSlots.add(buffer.getInt());
+        }
+    }
+
+    /**
+     * Discards the entries at the front of {@link #freeSlots} that have
+     * already been taken, once they make up most of the list.
+     */
+    private void compactFreeSlots() {
+        if (freeSlotsHead < 64 || freeSlotsHead * 2 < freeSlots.size()) {
+            return;
+        }
+        int remaining = freeSlots.size() - freeSlotsHead;
+        for (int i = 0; i < remaining; i++) {
+            freeSlots.set(i, freeSlots.get(freeSlotsHead + i));
+        }
+        while (freeSlots.size() > remaining) {
+            freeSlots.removeLast();
+        }
+        freeSlotsHead = 0;
+    }
+
+    /**
+     * Ensures that we can store the given number of slots.
+     *
+     * @param capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (generations.length < capacity) {
+            capacity = Math.max(capacity, generations.length * 2);
+            generations = Arrays.copyOf(generations, capacity);
+            live = Arrays.copyOf(live, capacity);
+        }
+    }
+
+    /**
+     * Gets the slot index of a handle.
+     *
+     * @param handle
+     * @return
+     */
+    public static int getIndex(int handle) {
+        return handle & INDEX_MASK;
+    }
+
+    /**
+     * Gets the generation of a handle.
+     *
+     * @param handle
+     * @return
+     */
+    public static int getGeneration(int handle) {
+        return handle >>> INDEX_BITS;
+    }
+
+    /**
+     * Combines a slot index and generation into a handle.
+     *
+     * @param index
+     * @param generation
+     * @return
+     */
+    private static int toHandle(int index, int generation) {
+        return (generation << INDEX_BITS) | index;
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.danjb.engine.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.danjb.engine.game.entities.Entity;
+
+/**
+ * Pool of reusable Entities of a single type.
+ *
+ * <p>This is intended for short-lived Entities that are spawned in large
+ * numbers, such as projectiles and particles. Instead of becoming garbage when
+ * they are removed from the world, pooled Entities are reset and kept for
+ * reuse, along with their Hitboxes.
+ *
+ * <p>Entities should be spawned using {@link Logic#addEntity(EntityPool,
+ * float, float)}. The Logic returns them to their pool automatically once
+ * they have been deleted and removed from the world.
+ *
+ * <p>Since a pooled Entity object may come back to life as a different
+ * Entity, any long-lived references should be held as Entity IDs and looked
+ * up using {@link Logic#getEntity}, which ignores stale IDs.
+ *
+ * @param <T> Type of Entity held by the pool.
+ * @author Dan Bryce
+ */
+public class EntityPool<T extends Entity> {
+
+    /**
+     * Function used to create new Entities when the pool is empty.
+     */
+    private final Supplier<T> factory;
+
+    /**
+     * Maximum number of free Entities to retain.
+     */
+    private final int maxSize;
+
+    /**
+     * Entities available for reuse.
+     */
+    private List<T> freeEntities = new ArrayList<>();
+
+    /**
+     * Creates an EntityPool with no size limit.
+     *
+     * @param factory
+     */
+    public EntityPool(Supplier<T> factory) {
+        this(factory, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates an EntityPool.
+     *
+     * @param factory Function used to create new Entities.
+     * @param maxSize Maximum number of free Entities to retain; any more than
+     * this are left for the garbage collector.
+     */
+    public EntityPool(Supplier<T> factory, int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(
+                    "Max size cannot be negative: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Takes an Entity from the pool, creating one if necessary.
+     *
+     * @return
+     */
+    public T obtain() {
+        if (freeEntities.isEmpty()) {
+            T entity = factory.get();
+            entity.setPool(this);
+            return entity;
+        }
+        return freeEntities.remove(freeEntities.size() - 1);
+    }
+
+    /**
+     * Returns an Entity to the pool.
+     *
+     * <p>This is called by the Logic once the Entity has been removed from the
+     * world and destroyed.
+     *
+     * @param entity
+     */
+    public void free(Entity entity) {
+
+        if (entity.getPool() != this) {
+            throw new IllegalArgumentException(
+                    "Entity does not belong to this pool");
+        }
+
+        entity.reset();
+
+        if (freeEntities.size() < maxSize) {
+            @SuppressWarnings("unchecked")
+            T pooledEntity = (T) entity;
+            freeEntities.add(pooledEntity);
+        } else {
+            // Let this one go
+            entity.setPool(null);
+        }
+    }
+
+    /**
+     * Removes an Entity from the pool's free list, if present, so that it
+     * will not be handed out by {@link #obtain}.
+     *
+     * <p>This is called by the Logic when a snapshot brings an Entity back
+     * after it has been returned to the pool.
+     *
+     * @param entity
+     * @return True if the Entity was free.
+     */
+    public boolean claim(Entity entity) {
+        for (int i = freeEntities.size() - 1; i >= 0; i--) {
+            if (freeEntities.get(i) == entity) {
+                freeEntities.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates Entities up-front so that they are ready for later use.
+     *
+     * @param count Number of Entities that should be available.
+     */
+    public void fill(int count) {
+        count = Math.min(count, maxSize);
+        while (freeEntities.size() < count) {
+            T entity = factory.get();
+            entity.setPool(this);
+            freeEntities.add(entity);
+        }
+    }
+
+    /**
+     * Gets the number of Entities available for reuse.
+     *
+     * @return
+     */
+    public int getNumFree() {
+        return freeEntities.size();
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.danjb.engine.game;
+
+import com.danjb.engine.game.entities.Entity;
+
+/**
+ * Callback informed of each Entity found by a spatial query.
+ *
+ * @see Logic#query
+ * @author Dan Bryce
+ */
+public interface EntityQueryCallback {
+
+    /**
+     * Called for each Entity that matches a query.
+     *
+     * <p>The order in which Entities are found is not defined.
+     *
+     * @param entity
+     * @return True to continue the query, false to stop it.
+     */
+    boolean entityFound(Entity entity);
+
+}
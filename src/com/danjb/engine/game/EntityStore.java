@@ -0,0 +1,431 @@
+package com.danjb.engine.game;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.danjb.engine.game.entities.Entity;
+
+/**
+ * Insertion-ordered collection of Entities, keyed by their Entity IDs.
+ *
+ * <p>This fills the role of a {@code LinkedHashMap<Integer, Entity>}, but
+ * without boxing any IDs or allocating a node per Entity.
+ *
+ * <p>Entities are held in a dense array, in the order in which they were
+ * added, and an open-addressing hash table maps each ID to its position in
+ * that array. Removing an Entity leaves a gap, which is skipped during
+ * iteration; the array is compacted once too many gaps have built up.
+ *
+ * <p>To iterate without allocating, loop over the positions up to
+ * {@link #end()} and skip any null values:
+ *
+ * <pre>
+ * for (int i = 0; i &lt; store.end(); i++) {
+ *     Entity entity = store.getAt(i);
+ *     if (entity != null) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>Entities must not be added or removed during such a loop.
+ *
+ * @author Dan Bryce
+ */
+public class EntityStore {
+
+    /**
+     * Initial capacity of the hash table; must be a power of 2.
+     */
+    private static final int INITIAL_TABLE_CAPACITY = 64;
+
+    /**
+     * Marker used for empty slots in the hash table.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Entity IDs stored in the hash table.
+     */
+    private int[] tableKeys;
+
+    /**
+     * Position within {@link #values} for each slot in the hash table, or
+     * {@link #EMPTY}.
+     */
+    private int[] tablePositions;
+
+    /**
+     * Entity ID at each position.
+     */
+    private int[] ids;
+
+    /**
+     * Entity at each position, or null for a gap.
+     */
+    private Entity[] values;
+
+    /**
+     * Number of positions in use, including gaps.
+     */
+    private int end;
+
+    /**
+     * Number of Entities in the store.
+     */
+    private int size;
+
+    /**
+     * Number of modifications that have changed the positions in use.
+     *
+     * <p>This is used to detect modifications during iteration.
+     */
+    private int modCount;
+
+    /**
+     * Read-only view of the values in this store.
+     */
+    private final Collection<Entity> valuesView = new AbstractCollection<>() {
+
+        @Override
+        public Iterator<Entity> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+    };
+
+    /**
+     * Creates an empty EntityStore.
+     */
+    public EntityStore() {
+        tableKeys = new int[INITIAL_TABLE_CAPACITY];
+        tablePositions = new int[INITIAL_TABLE_CAPACITY];
+        Arrays.fill(tablePositions, EMPTY);
+        ids = new int[INITIAL_TABLE_CAPACITY / 2];
+        values = new Entity[INITIAL_TABLE_CAPACITY / 2];
+    }
+
+    /**
+     * Adds an Entity to this store.
+     *
+     * <p>If an Entity with the same ID is already present, it is replaced, and
+     * the new Entity takes its place in the iteration order.
+     *
+     * @param id
+     * @param entity
+     * @return The Entity that was replaced, if any.
+     */
+    public Entity put(int id, Entity entity) {
+
+        if (entity == null) {
+            throw new IllegalArgumentException("Entity cannot be null");
+        }
+
+        int slot = findSlot(id);
+        if (tablePositions[slot] != EMPTY) {
+            int pos = tablePositions[slot];
+            Entity replaced = values[pos];
+            values[pos] = entity;
+            return replaced;
+        }
+
+        if (end == values.length) {
+            if (size < end / 2) {
+                // Plenty of gaps; reclaim them instead of growing
+                compact();
+                slot = findSlot(id);
+            } else {
+                ids = Arrays.copyOf(ids, end * 2);
+                values = Arrays.copyOf(values, end * 2);
+            }
+        }
+
+        ids[end] = id;
+        values[end] = entity;
+        tableKeys[slot] = id;
+        tablePositions[slot] = end;
+        end++;
+        size++;
+        modCount++;
+
+        // Keep the load factor below 0.5 so that probe sequences stay short
+        if (end * 2 > tableKeys.length) {
+            growTable();
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the Entity with the given ID.
+     *
+     * @param id
+     * @return Entity, or null if not present.
+     */
+    public Entity get(int id) {
+        int pos = tablePositions[findSlot(id)];
+        return pos == EMPTY ? null : values[pos];
+    }
+
+    /**
+     * Determines if an Entity with the given ID is present.
+     *
+     * @param id
+     * @return
+     */
+    public boolean contains(int id) {
+        return tablePositions[findSlot(id)] != EMPTY;
+    }
+
+    /**
+     * Removes the Entity with the given ID.
+     *
+     * @param id
+     * @return The removed Entity, or null if not present.
+     */
+    public Entity remove(int id) {
+
+        int slot = findSlot(id);
+        int pos = tablePositions[slot];
+        if (pos == EMPTY) {
+            return null;
+        }
+
+        Entity removed = values[pos];
+        values[pos] = null;
+        deleteSlot(slot);
+        size--;
+        modCount++;
+
+        if (size == 0) {
+            end = 0;
+        } else if (end >= INITIAL_TABLE_CAPACITY && size * 4 < end) {
+            // Don't let iteration get bogged down by gaps
+            compact();
+        }
+
+        return removed;
+    }
+
+    /**
+     * Removes all Entities from this store.
+     *
+     * <p>All storage is retained for reuse.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(tablePositions, EMPTY);
+        }
+        Arrays.fill(values, 0, end, null);
+        end = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Gets the number of Entities in this store.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determines if this store is empty.
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of positions to consider when iterating.
+     *
+     * @return
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Gets the Entity at the given position.
+     *
+     * @param pos
+     * @return Entity, or null if there is a gap at this position.
+     */
+    public Entity getAt(int pos) {
+        if (pos >= end) {
+            throw new IndexOutOfBoundsException(
+                    "Position: " + pos + ", End: " + end);
+        }
+        return values[pos];
+    }
+
+    /**
+     * Gets a read-only view of the Entities in this store, in insertion order.
+     *
+     * <p>The view reflects any later changes to the store.
+     *
+     * @return
+     */
+    public Collection<Entity> values() {
+        return valuesView;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Hash table
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Finds the slot holding the given ID, or the empty slot where it would be
+     * inserted.
+     *
+     * @param id
+     * @return
+     */
+    private int findSlot(int id) {
+        int mask = tableKeys.length - 1;
+        int slot = hash(id) & mask;
+        while (tablePositions[slot] != EMPTY && tableKeys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties a slot in the hash table.
+     *
+     * <p>Any entries further along the probe sequence are shifted back so
+     * that lookups never have to step over a deleted slot.
+     *
+     * @param slot
+     */
+    private void deleteSlot(int slot) {
+
+        int mask = tableKeys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+
+        while (tablePositions[next] != EMPTY) {
+            int home = hash(tableKeys[next]) & mask;
+            // Move this entry into the gap, unless the gap lies outside of
+            // its probe sequence
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                tableKeys[gap] = tableKeys[next];
+                tablePositions[gap] = tablePositions[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        tablePositions[gap] = EMPTY;
+    }
+
+    /**
+     * Doubles the capacity of the hash table.
+     */
+    private void growTable() {
+
+        int[] oldKeys = tableKeys;
+        int[] oldPositions = tablePositions;
+
+        tableKeys = new int[oldKeys.length * 2];
+        tablePositions = new int[oldPositions.length * 2];
+        Arrays.fill(tablePositions, EMPTY);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldPositions[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                tableKeys[slot] = oldKeys[i];
+                tablePositions[slot] = oldPositions[i];
+            }
+        }
+    }
+
+    /**
+     * Removes all gaps from the dense arrays, preserving the order of the
+     * remaining Entities.
+     */
+    private void compact() {
+        int kept = 0;
+        for (int i = 0; i < end; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            if (kept != i) {
+                ids[kept] = ids[i];
+                values[kept] = values[i];
+                values[i] = null;
+                tablePositions[findSlot(ids[kept])] = kept;
+            }
+            kept++;
+        }
+        end = kept;
+    }
+
+    /**
+     * Scrambles an ID so that consecutive IDs are spread across the table.
+     *
+     * @param id
+     * @return
+     */
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // ValueIterator class
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Iterator over the Entities in the store.
+     */
+    private class ValueIterator implements Iterator<Entity> {
+
+        private int next;
+        private final int expectedModCount = modCount;
+
+        public ValueIterator() {
+            skipGaps();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public Entity next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= end) {
+                throw new NoSuchElementException();
+            }
+            Entity entity = values[next];
+            next++;
+            skipGaps();
+            return entity;
+        }
+
+        private void skipGaps() {
+            while (next < end && values[next] == null) {
+                next++;
+            }
+        }
+
+    }
+
+}
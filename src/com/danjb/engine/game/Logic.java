@@ -1,18 +1,32 @@
 package com.danjb.engine.game;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import com.danjb.engine.game.archetypes.ArchetypeWorld;
 import com.danjb.engine.game.entities.CollisionListener;
 import com.danjb.engine.game.entities.Entity;
 import com.danjb.engine.game.level.Level;
 import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.level.TileLayer.TileLayerListener;
 import com.danjb.engine.game.level.TileProvider;
+import com.danjb.engine.game.physics.BufferedHitboxListener;
+import com.danjb.engine.game.physics.DynamicAabbTree;
 import com.danjb.engine.game.physics.Hitbox;
+import com.danjb.engine.game.physics.HitboxListener;
+import com.danjb.engine.game.physics.HitboxStore;
+import com.danjb.engine.game.physics.Physics;
 import com.danjb.engine.game.tiles.Tile;
+import com.danjb.engine.util.IntList;
+import com.danjb.engine.util.LongHashSet;
+import com.danjb.engine.util.Rectangle;
 
 /**
  * The game logic.
@@ -24,6 +38,111 @@ import com.danjb.engine.game.tiles.Tile;
  */
 public class Logic {
 
+    ////////////////////////////////////////////////////////////////////////////
+    // EntityQuery class
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * State of a single spatial query.
+     *
+     * <p>These are pooled so that queries do not allocate, and so that a
+     * callback can safely start another query.
+     */
+    private class EntityQuery implements DynamicAabbTree.QueryCallback {
+
+        private static final int REGION = 0;
+        private static final int POINT = 1;
+        private static final int OVERLAP = 2;
+
+        private int type;
+        private float x1, y1, x2, y2;
+        private Entity target;
+        private EntityQueryCallback callback;
+
+        @Override
+        public boolean proxyFound(int proxyId) {
+
+            Entity entity = (Entity) entityTree.getUserData(proxyId);
+
+            if (entity == target || entity.isDeleted()) {
+                return true;
+            }
+
+            if (!matches(entity.hitbox)) {
+                // Fat box overlaps the query, but the Hitbox itself does not
+                return true;
+            }
+
+            return callback.entityFound(entity);
+        }
+
+        /**
+         * Determines if a Hitbox satisfies this query.
+         *
+         * @param hitbox
+         * @return
+         */
+        private boolean matches(Hitbox hitbox) {
+            switch (type) {
+            case POINT:
+                return hitbox.contains(x1, y1);
+            case OVERLAP:
+                return hitbox.intersects(target.hitbox);
+            default:
+                return hitbox.x < x2 && hitbox.right() >= x1
+                        && hitbox.y < y2 && hitbox.bottom() >= y1;
+            }
+        }
+
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // PhysicsTask class
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Task that applies physics to a range of Entities, splitting itself into
+     * smaller tasks if the range is large.
+     */
+    private class PhysicsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int delta;
+
+        public PhysicsTask(int from, int to, int delta) {
+            this.from = from;
+            this.to = to;
+            this.delta = delta;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_PHYSICS_BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    applyBufferedPhysics(i, delta);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(
+                        new PhysicsTask(from, mid, delta),
+                        new PhysicsTask(mid, to, delta));
+            }
+        }
+
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Logic class
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Maximum number of Entities processed by a single PhysicsTask.
+     */
+    private static final int PARALLEL_PHYSICS_BATCH_SIZE = 64;
+
     /**
      * The current Level.
      */
@@ -35,19 +154,22 @@ public class Logic {
     protected TileProvider tileProvider;
 
     /**
-     * The next available Entity ID.
+     * Allocator of Entity IDs.
+     *
+     * <p>IDs of removed Entities are recycled, so they remain small enough to
+     * index into arrays (see {@link EntityHandles#getIndex}).
      */
-    protected int nextEntityId;
+    protected EntityHandles entityHandles = new EntityHandles();
 
     /**
-     * Map of all Entities present in the game world, keyed by their unique
-     * Entity IDs.
+     * All Entities present in the game world, keyed by their unique Entity
+     * IDs.
      *
-     * <p>Using a {@link LinkedHashMap} means that iterating over the Entities
+     * <p>Using an {@link EntityStore} means that iterating over the Entities
      * will use the same order as the order in which they were added to the
      * world.
      */
-    protected Map<Integer, Entity> entities = new LinkedHashMap<>();
+    protected EntityStore entities = new EntityStore();
 
     /**
      * Entities that have just been added to the game world.
@@ -56,13 +178,137 @@ public class Logic {
      * ConcurrentModificationException during entity processing. These are then
      * added to {@link #entities} each frame.
      */
-    protected Map<Integer, Entity> pendingEntities = new LinkedHashMap<>();
+    protected EntityStore pendingEntities = new EntityStore();
 
     /**
      * List of Entities flagged for deletion.
      */
     protected List<Entity> entitiesToDelete = new ArrayList<>();
 
+    /**
+     * Strategy used to find pairs of Entities that might be colliding.
+     */
+    protected Broadphase broadphase = new BruteForceBroadphase();
+
+    /**
+     * Entities considered during collision processing.
+     *
+     * <p>This is reused every frame to avoid unnecessary allocations.
+     */
+    private List<Entity> collidingEntities = new ArrayList<>();
+
+    /**
+     * Indices of the Entities that might collide with the Entity currently
+     * being processed.
+     */
+    private IntList collisionCandidates = new IntList();
+
+    /**
+     * Contacts that were active as of the last frame.
+     *
+     * <p>Each contact is packed into a single key by {@link #getContactKey},
+     * and means that an Entity's CollisionListener has been told that it is
+     * colliding with another Entity. A pair of Entities has a separate
+     * contact for each side that was told about the collision.
+     */
+    private LongHashSet contacts = new LongHashSet();
+
+    /**
+     * Contacts found during the current frame.
+     *
+     * <p>This is swapped with {@link #contacts} at the end of each frame.
+     */
+    private LongHashSet newContacts = new LongHashSet();
+
+    /**
+     * Spatial index of all Entities in the game world.
+     *
+     * <p>This is used to answer spatial queries without having to consider
+     * every Entity.
+     */
+    protected DynamicAabbTree entityTree = new DynamicAabbTree();
+
+    /**
+     * Changes to Entities that are waiting to be applied.
+     */
+    protected EntityCommandBuffer commands = new EntityCommandBuffer(this);
+
+    /**
+     * Packed storage for Entity data processed by systems, or null if no
+     * systems are in use.
+     */
+    protected ArchetypeWorld archetypeWorld;
+
+    /**
+     * Pool of queries, indexed by nesting depth.
+     */
+    private List<EntityQuery> queryPool = new ArrayList<>();
+
+    /**
+     * Number of queries currently in progress.
+     */
+    private int queryDepth;
+
+    /**
+     * Pool used to apply physics in parallel, or null to apply physics on the
+     * calling thread.
+     */
+    protected ForkJoinPool physicsPool;
+
+    /**
+     * Entities being processed by the parallel physics phase.
+     */
+    private List<Entity> physicsEntities = new ArrayList<>();
+
+    /**
+     * Listeners used to record Hitbox callbacks during the parallel physics
+     * phase, by index within {@link #physicsEntities}.
+     */
+    private List<BufferedHitboxListener> physicsListeners = new ArrayList<>();
+
+    /**
+     * Packed storage for the kinematic state of all Hitboxes, or null if each
+     * Hitbox holds its own state.
+     */
+    protected HitboxStore hitboxStore;
+
+    /**
+     * Milliseconds for which a Hitbox must be resting before it is put to
+     * sleep, or 0 if Hitboxes should never sleep.
+     */
+    protected int sleepDelay;
+
+    /**
+     * Whether the simulation should be reproducible across runs and
+     * platforms.
+     */
+    protected boolean deterministic;
+
+    /**
+     * Whether Hitboxes should split long movements into multiple steps.
+     */
+    protected boolean subStepping = true;
+
+    /**
+     * Hash of the state of all Entities as of the end of the last frame.
+     *
+     * <p>This is only calculated in deterministic mode.
+     */
+    private long stateHash;
+
+    /**
+     * Listener that wakes any Hitboxes affected by a change to the Level.
+     */
+    private TileLayerListener tileListener = this::tileDataChanged;
+
+    /**
+     * Callback used to wake the Entities found by a query.
+     */
+    private EntityQueryCallback wakeCallback = entity -> {
+        entity.hitbox.wake();
+        return true;
+    };
+
     /**
      * Milliseconds passed since the previous frame.
      */
@@ -86,14 +332,25 @@ public class Logic {
      */
     public void changeLevel(Level newLevel) {
         if (level != null) {
+            level.getDefaultLayer().removeListener(tileListener);
             level.destroy();
         }
         level = newLevel;
+        level.getDefaultLayer().addListener(tileListener);
     }
 
     /**
      * Updates the Logic using the given delta value.
      *
+     * <p>Commands recorded in our {@link EntityCommandBuffer} are applied once
+     * all Entities have been updated and moved, and before collisions are
+     * processed. Any commands recorded after this point are applied at the
+     * same point in the following frame.
+     *
+     * <p>If an {@link ArchetypeWorld} has been set, its systems are run once
+     * all Entities have been updated and moved, before any commands are
+     * applied.
+     *
      * @param delta Number of milliseconds since the last update.
      */
     public void update(int delta) {
@@ -106,9 +363,64 @@ public class Logic {
 
         refreshEntities();
         updateEntities(delta);
+        if (archetypeWorld != null) {
+            archetypeWorld.update(delta);
+        }
+        commands.playback();
         updateLevel(delta);
         updateTiles(delta);
         processCollisions();
+
+        if (deterministic) {
+            stateHash = computeStateHash();
+        }
+    }
+
+    /**
+     * Calculates a hash of the state of all Entities in the world.
+     *
+     * <p>This covers the ID, position, speed and grounded state of every
+     * Entity. Two simulations that have produced the same hash are almost
+     * certainly in sync, so this can be compared between peers (or against a
+     * recording) to detect desyncs without having to compare the full state.
+     *
+     * <p>The result depends on the order in which Entities were added, which
+     * is itself deterministic.
+     *
+     * @return
+     */
+    public long computeStateHash() {
+
+        long hash = 0xCBF29CE484222325L;
+
+        for (int i = 0; i < entities.end(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity == null) {
+                continue;
+            }
+            Hitbox hitbox = entity.hitbox;
+            hash = mixHash(hash, entity.getId());
+            hash = mixHash(hash, Float.floatToIntBits(hitbox.x));
+            hash = mixHash(hash, Float.floatToIntBits(hitbox.y));
+            hash = mixHash(hash, Float.floatToIntBits(hitbox.getSpeedX()));
+            hash = mixHash(hash, Float.floatToIntBits(hitbox.getSpeedY()));
+            hash = mixHash(hash, hitbox.isGrounded() ? 1 : 0);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Combines a value into a running hash.
+     *
+     * @param hash
+     * @param value
+     * @return
+     */
+    private static long mixHash(long hash, int value) {
+        hash ^= value;
+        hash *= 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
     }
 
     /**
@@ -130,7 +442,19 @@ public class Logic {
      * Adds any newly-spawned Entities to our {@link #entities} map.
      */
     protected void addPendingEntities() {
-        entities.putAll(pendingEntities);
+        for (int i = 0; i < pendingEntities.end(); i++) {
+            Entity entity = pendingEntities.getAt(i);
+            if (entity == null) {
+                continue;
+            }
+            Entity replaced = entities.put(entity.getId(), entity);
+            if (replaced != null && replaced != entity) {
+                removeProxy(replaced);
+                removeFromStore(replaced);
+            }
+            addProxy(entity);
+            addToStore(entity);
+        }
         pendingEntities.clear();
     }
 
@@ -139,8 +463,17 @@ public class Logic {
      */
     protected void deleteEntities() {
         for (Entity e : entitiesToDelete) {
+            removeProxy(e);
+            removeFromStore(e);
             e.destroy();
             entities.remove(e.getId());
+            if (!pendingEntities.contains(e.getId())) {
+                // No other Entity is taking over this ID, so it can be reused
+                entityHandles.release(e.getId());
+            }
+            if (e.getPool() != null) {
+                e.getPool().free(e);
+            }
         }
         entitiesToDelete.clear();
     }
@@ -154,22 +487,41 @@ public class Logic {
     protected void updateEntities(int delta) {
 
         // First update all Entities
-        for (Entity entity : entities.values()) {
+        for (int i = 0; i < entities.end(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity == null) {
+                continue;
+            }
             if (!entity.isDeleted()) {
                 entity.update(delta);
             }
         }
 
         // Then apply physics to all Entities
-        for (Entity entity : entities.values()) {
-            if (!entity.isDeleted()) {
-                applyPhysics(entity, delta);
+        if (hitboxStore != null) {
+            applyPackedPhysics(delta);
+        } else if (physicsPool != null) {
+            applyPhysicsInParallel(delta);
+        } else {
+            for (int i = 0; i < entities.end(); i++) {
+                Entity entity = entities.getAt(i);
+                if (entity == null) {
+                    continue;
+                }
+                if (!entity.isDeleted()) {
+                    applyPhysics(entity, delta);
+                    updateProxy(entity);
+                }
             }
         }
 
         // Finally give our Entities another update
         // (and keep track of any that are due for deletion)
-        for (Entity entity : entities.values()) {
+        for (int i = 0; i < entities.end(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity == null) {
+                continue;
+            }
             if (!entity.isDeleted()) {
                 entity.lateUpdate(delta);
             } else {
@@ -188,15 +540,17 @@ public class Logic {
 
         Hitbox hitbox = entity.hitbox;
 
+        if (hitbox.isSleeping()) {
+            return;
+        }
+
         // Gravity
         if (entity.isAffectedByGravity()) {
             hitbox.applyGravity(delta);
         }
 
         // Movement
-        if (entity.canMove()) {
-            hitbox.moveWithCollision(level, tileProvider, delta);
-        }
+        applyMovement(entity, delta);
 
         // Friction
         if (hitbox.isGrounded()) {
@@ -211,130 +565,894 @@ public class Logic {
                 hitbox.applyAirFrictionY(delta);
             }
         }
+
+        if (sleepDelay > 0) {
+            hitbox.updateSleepState(delta, sleepDelay);
+        }
     }
 
     /**
-     * Checks for collisions between every pair of Entities.
+     * Moves the given Entity according to its current speed, if it can move.
+     *
+     * @param entity
+     * @param delta
      */
-    protected void processCollisions() {
-
-        List<Entity> collidingEntities = new ArrayList<>(entities.values());
+    protected void applyMovement(Entity entity, int delta) {
+        if (entity.canMove() && !entity.hitbox.isSleeping()) {
+            entity.hitbox.moveWithCollision(level, tileProvider, delta);
+        }
+    }
 
-        for (int i = 0; i < collidingEntities.size(); i++) {
+    /**
+     * Applies physics to all Entities using our {@link #hitboxStore}.
+     *
+     * <p>Gravity and friction are applied to all Hitboxes at once by looping
+     * over the packed arrays, with only movement being handled per-Entity.
+     * Since each Entity's physics only affects its own Hitbox, this gives the
+     * same result as {@link #applyPhysics}, except that a HitboxListener
+     * callback can no longer affect the gravity of any Entity that comes after
+     * it in the same frame.
+     *
+     * <p>Note that {@link #applyPhysics} is not called in this mode.
+     *
+     * @param delta
+     */
+    protected void applyPackedPhysics(int delta) {
 
-            Entity e1  = collidingEntities.get(i);
-            if (e1.isDeleted()) {
+        // Entities may change their physics properties at any time
+        for (int i = 0; i < entities.end(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity == null) {
                 continue;
             }
+            hitboxStore.setFlags(
+                    entity.hitbox.getSlot(), getPhysicsFlags(entity));
+        }
+        hitboxStore.syncProperties();
 
-            for (int j = i + 1; j < collidingEntities.size(); j++) {
+        Physics.applyGravity(hitboxStore, delta);
 
-                Entity e2 = collidingEntities.get(j);
-                if (e2.isDeleted()) {
+        if (physicsPool != null) {
+            applyPhysicsInParallel(delta);
+        } else {
+            for (int i = 0; i < entities.end(); i++) {
+                Entity entity = entities.getAt(i);
+                if (entity == null) {
                     continue;
                 }
+                if (!entity.isDeleted()) {
+                    applyMovement(entity, delta);
+                    updateProxy(entity);
+                }
+            }
+        }
 
-                checkForCollision(e1, e2);
+        Physics.applyFriction(hitboxStore, delta, deterministic);
 
-                if (e1.isDeleted()) {
-                    // Entity has been deleted as the result of a collision
-                    break;
+        if (sleepDelay > 0) {
+            for (int i = 0; i < entities.end(); i++) {
+                Entity entity = entities.getAt(i);
+                if (entity != null && !entity.isDeleted()) {
+                    entity.hitbox.updateSleepState(delta, sleepDelay);
                 }
             }
         }
     }
 
     /**
-     * Handles any collisions between the given pair of Entities.
+     * Gets the {@link HitboxStore} flags for the given Entity.
      *
-     * @param e1
-     * @param e2
+     * @param entity
+     * @return
      */
-    protected void checkForCollision(Entity e1, Entity e2) {
-
-        CollisionListener e1CollisionListener = (CollisionListener)
-                e1.components.get(CollisionListener.KEY);
-        CollisionListener e2CollisionListener = (CollisionListener)
-                e2.components.get(CollisionListener.KEY);
-
-        // This flag ensures that we only check for a collision once
-        boolean collision = false;
-
-        if (e1CollisionListener != null &&
-                e1CollisionListener.canCollideWith(e2)) {
-            if (e1.hitbox.intersects(e2.hitbox)) {
-                collision = true;
-                e1CollisionListener.collidedWith(e2);
-            } else {
-                return;
-            }
+    private static int getPhysicsFlags(Entity entity) {
+        if (entity.isDeleted() || entity.hitbox.isSleeping()) {
+            return 0;
         }
-
-        if (e2CollisionListener != null &&
-                e2CollisionListener.canCollideWith(e1) &&
-                (collision || e2.hitbox.intersects(e1.hitbox))) {
-            e2CollisionListener.collidedWith(e1);
+        int flags = 0;
+        if (entity.isAffectedByGravity()) {
+            flags |= HitboxStore.GRAVITY;
         }
+        if (entity.isAffectedByGroundFriction()) {
+            flags |= HitboxStore.GROUND_FRICTION;
+        }
+        if (entity.isAffectedByAirFrictionX()) {
+            flags |= HitboxStore.AIR_FRICTION_X;
+        }
+        if (entity.isAffectedByAirFrictionY()) {
+            flags |= HitboxStore.AIR_FRICTION_Y;
+        }
+        return flags;
     }
 
     /**
-     * Updates the Level using the given delta value.
+     * Applies physics to all Entities using our {@link #physicsPool}.
      *
-     * @param delta Number of milliseconds since the last update.
+     * <p>Moving a Hitbox only reads from the Level, so Entities can safely be
+     * processed concurrently. However, HitboxListener callbacks may do
+     * anything, so these are recorded and then replayed on the calling thread,
+     * in Entity order, once all movement is complete.
+     *
+     * <p>This means that a callback can no longer affect the movement of any
+     * Entity that comes after it in the same frame.
+     *
+     * @param delta
      */
-    protected void updateLevel(int delta) {
-        level.update(delta);
+    protected void applyPhysicsInParallel(int delta) {
+
+        physicsEntities.clear();
+        for (int i = 0; i < entities.end(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity == null) {
+                continue;
+            }
+            if (!entity.isDeleted()) {
+                physicsEntities.add(entity);
+            }
+        }
+
+        while (physicsListeners.size() < physicsEntities.size()) {
+            physicsListeners.add(new BufferedHitboxListener());
+        }
+
+        // Make sure the tiles for this layer exist before any worker threads
+        // try to look them up
+        tileProvider.getTiles(level.getDefaultLayer().getLayerId());
+
+        physicsPool.invoke(new PhysicsTask(0, physicsEntities.size(), delta));
+
+        // Replay callbacks in Entity order
+        for (int i = 0; i < physicsEntities.size(); i++) {
+            Entity entity = physicsEntities.get(i);
+            physicsListeners.get(i).replay(entity.hitbox.getListener());
+            updateProxy(entity);
+        }
+
+        physicsEntities.clear();
     }
 
     /**
-     * Updates all Tile types using the given delta value.
+     * Applies physics to one of the {@link #physicsEntities}, recording any
+     * Hitbox callbacks instead of dispatching them.
      *
-     * @param delta Number of milliseconds since the last update.
+     * <p>This may be called from a worker thread.
+     *
+     * @param index
+     * @param delta
      */
-    protected void updateTiles(int delta) {
-        for (TileLayer layer : level.getLayers()) {
-            Collection<Tile> tilesForLayer =
-                    tileProvider.getTiles(layer.getLayerId()).values();
-            for (Tile tile : tilesForLayer) {
-                tile.update(delta);
+    private void applyBufferedPhysics(int index, int delta) {
+
+        Entity entity = physicsEntities.get(index);
+        Hitbox hitbox = entity.hitbox;
+        HitboxListener listener = hitbox.getListener();
+
+        hitbox.setListener(physicsListeners.get(index));
+        try {
+            if (hitboxStore != null) {
+                // Gravity and friction are applied separately
+                applyMovement(entity, delta);
+            } else {
+                applyPhysics(entity, delta);
             }
+        } finally {
+            hitbox.setListener(listener);
         }
     }
 
     /**
-     * Adds an Entity to the game world.
+     * Called when a tile in the default layer of the current Level changes.
      *
-     * <p>Results in a callback to {@link Entity#addedToWorld}.
+     * <p>Any Hitboxes in or next to the changed tile are woken, since they
+     * may now be unsupported or obstructed.
      *
-     * @param x
-     * @param y
-     * @param entity
+     * @param layer
+     * @param tileX
+     * @param tileY
      */
-    public void addEntity(Entity entity, float x, float y) {
-        int entityId = requestEntityId();
-        addEntity(entityId, entity, x, y);
+    private void tileDataChanged(TileLayer layer, int tileX, int tileY) {
+        EntityQuery query = beginQuery(EntityQuery.REGION, wakeCallback);
+        query.x1 = (tileX - 1) * Tile.SIZE;
+        query.y1 = (tileY - 1) * Tile.SIZE;
+        query.x2 = (tileX + 2) * Tile.SIZE;
+        query.y2 = (tileY + 2) * Tile.SIZE;
+        runQuery(query, query.x1, query.y1, query.x2, query.y2);
     }
 
     /**
-     * Adds an Entity to the game world with a predefined ID.
-     *
-     * <p>Results in a callback to {@link Entity#addedToWorld}.
+     * Checks for collisions between every pair of Entities that our
+     * {@link Broadphase} considers to be potentially colliding.
      *
-     * @param entityId
-     * @param x
-     * @param y
-     * @param entity
+     * <p>Entities with neither a collision layer nor a collision mask can
+     * never take part in a collision, so they are skipped entirely.
      */
-    public void addEntity(int entityId, Entity entity, float x, float y) {
+    protected void processCollisions() {
 
-        // Delete any Entity that is being overwritten
-        Entity previousEntity = entities.get(entityId);
-        if (previousEntity != null) {
-            previousEntity.delete();
+        collidingEntities.clear();
+        for (int i = 0; i < entities.end(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity != null && (entity.getCollisionLayer() != 0
+                    || entity.getCollisionMask() != 0)) {
+                collidingEntities.add(entity);
+            }
+        }
+
+        broadphase.prepare(collidingEntities);
+
+        for (int i = 0; i < collidingEntities.size(); i++) {
+
+            Entity e1  = collidingEntities.get(i);
+            if (e1.isDeleted()) {
+                continue;
+            }
+
+            broadphase.getCandidates(i, collisionCandidates);
+
+            for (int j = 0; j < collisionCandidates.size(); j++) {
+
+                Entity e2 = collidingEntities.get(collisionCandidates.get(j));
+                if (e2.isDeleted()) {
+                    continue;
+                }
+
+                checkForCollision(e1, e2);
+
+                if (e1.isDeleted()) {
+                    // Entity has been deleted as the result of a collision
+                    break;
+                }
+            }
+        }
+
+        endStaleContacts();
+
+        // Don't hold on to any references beyond the end of the frame
+        collidingEntities.clear();
+    }
+
+    /**
+     * Sends {@link CollisionListener#collisionEnded} events for any pairs of
+     * Entities that were colliding last frame, but are not any more.
+     *
+     * <p>Deleted Entities are skipped during collision processing, so any
+     * contacts involving them will also end here. Since Entities are not
+     * removed from the world until the following frame, both Entities in a
+     * pair can still be found.
+     *
+     * <p>The end of a contact is always reported, even if the Entities'
+     * collision layers or filters would no longer allow them to collide, so
+     * that every {@link CollisionListener#collisionStarted} is paired with a
+     * {@link CollisionListener#collisionEnded}.
+     */
+    private void endStaleContacts() {
+
+        for (int i = 0; i < contacts.capacity(); i++) {
+            if (!contacts.isOccupied(i)) {
+                continue;
+            }
+            long key = contacts.getAt(i);
+            if (newContacts.contains(key)) {
+                continue;
+            }
+            Entity entity = entities.get((int) (key >>> 32));
+            Entity other = entities.get((int) key);
+            if (entity != null && other != null) {
+                notifyContactEnded(entity, other);
+            }
+        }
+
+        // The new contacts become the current ones
+        LongHashSet tmp = contacts;
+        contacts = newContacts;
+        newContacts = tmp;
+        newContacts.clear();
+    }
+
+    /**
+     * Informs an Entity that it is no longer colliding with another.
+     *
+     * @param entity
+     * @param other
+     */
+    private static void notifyContactEnded(Entity entity, Entity other) {
+        CollisionListener listener = entity.getCollisionListener();
+        if (listener != null) {
+            listener.collisionEnded(other);
+        }
+    }
+
+    /**
+     * Informs a CollisionListener that its parent is colliding with another
+     * Entity.
+     *
+     * @param listener
+     * @param other
+     * @param wasColliding Whether the 2 Entities were colliding last frame.
+     */
+    private static void notifyCollision(
+            CollisionListener listener, Entity other, boolean wasColliding) {
+        listener.collidedWith(other);
+        if (wasColliding) {
+            listener.collisionOngoing(other);
+        } else {
+            listener.collisionStarted(other);
+        }
+    }
+
+    /**
+     * Packs the IDs of a pair of Entities into a single key, identifying the
+     * contact seen by the first Entity.
+     *
+     * @param entity
+     * @param other
+     * @return
+     */
+    private static long getContactKey(Entity entity, Entity other) {
+        return ((long) entity.getId() << 32) | (other.getId() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Handles any collisions between the given pair of Entities.
+     *
+     * <p>The Entities' collision layers are checked first, since this is much
+     * cheaper than looking up their {@link CollisionListener}s.
+     *
+     * <p>Colliding pairs are remembered from one frame to the next, so that
+     * the listeners can be told when a collision starts and ends.
+     *
+     * @param e1
+     * @param e2
+     */
+    protected void checkForCollision(Entity e1, Entity e2) {
+
+        boolean e1Interested = e1.isInterestedIn(e2);
+        boolean e2Interested = e2.isInterestedIn(e1);
+
+        if (!e1Interested && !e2Interested) {
+            return;
+        }
+
+        CollisionListener e1CollisionListener = e1Interested
+                ? e1.getCollisionListener()
+                : null;
+        CollisionListener e2CollisionListener = e2Interested
+                ? e2.getCollisionListener()
+                : null;
+
+        long e1Key = getContactKey(e1, e2);
+        long e2Key = getContactKey(e2, e1);
+        boolean e1WasColliding = contacts.contains(e1Key);
+        boolean e2WasColliding = contacts.contains(e2Key);
+
+        // These flags ensure that we only check for a collision once
+        boolean e1Notified = false;
+        boolean e2Notified = false;
+
+        if (e1CollisionListener != null &&
+                e1CollisionListener.canCollideWith(e2)) {
+            if (e1.hitbox.intersects(e2.hitbox)) {
+                e1Notified = true;
+                notifyCollision(e1CollisionListener, e2, e1WasColliding);
+            } else {
+                return;
+            }
+        }
+
+        if (e2CollisionListener != null &&
+                e2CollisionListener.canCollideWith(e1) &&
+                (e1Notified || e2.hitbox.intersects(e1.hitbox))) {
+            e2Notified = true;
+            notifyCollision(e2CollisionListener, e1, e2WasColliding);
+        }
+
+        if (e1.isDeleted() || e2.isDeleted()) {
+            // The collision has caused one of the Entities to be deleted, so
+            // any new contacts must be ended now; there will be no record of
+            // them to end later on
+            if (e1Notified && !e1WasColliding) {
+                e1CollisionListener.collisionEnded(e2);
+            }
+            if (e2Notified && !e2WasColliding) {
+                e2CollisionListener.collisionEnded(e1);
+            }
+            return;
+        }
+
+        if (e1Notified) {
+            newContacts.add(e1Key);
+        }
+        if (e2Notified) {
+            newContacts.add(e2Key);
+        }
+    }
+
+    /**
+     * Updates the Level using the given delta value.
+     *
+     * @param delta Number of milliseconds since the last update.
+     */
+    protected void updateLevel(int delta) {
+        level.update(delta);
+    }
+
+    /**
+     * Updates all Tile types using the given delta value.
+     *
+     * @param delta Number of milliseconds since the last update.
+     */
+    protected void updateTiles(int delta) {
+        for (TileLayer layer : level.getLayers()) {
+            Collection<Tile> tilesForLayer =
+                    tileProvider.getTiles(layer.getLayerId()).values();
+            for (Tile tile : tilesForLayer) {
+                tile.update(delta);
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Spatial queries
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Finds all Entities whose Hitboxes overlap the given region.
+     *
+     * <p>Only Entities that have been fully added to the world are considered;
+     * Entities spawned this frame will not be found until the next frame.
+     *
+     * <p>Entity positions are indexed when physics is applied, so any Entity
+     * that has been moved since then is found according to its previous
+     * position.
+     *
+     * @param region Region to search, in world units.
+     * @param callback
+     */
+    public void query(Rectangle region, EntityQueryCallback callback) {
+        EntityQuery query = beginQuery(EntityQuery.REGION, callback);
+        query.x1 = region.x;
+        query.y1 = region.y;
+        query.x2 = region.getMaxX();
+        query.y2 = region.getMaxY();
+        runQuery(query, query.x1, query.y1, query.x2, query.y2);
+    }
+
+    /**
+     * Finds all Entities whose Hitboxes contain the given point.
+     *
+     * <p>See {@link #query} for caveats.
+     *
+     * @param x World units.
+     * @param y World units.
+     * @param callback
+     */
+    public void queryPoint(float x, float y, EntityQueryCallback callback) {
+        EntityQuery query = beginQuery(EntityQuery.POINT, callback);
+        query.x1 = x;
+        query.y1 = y;
+        runQuery(query, x, y, x, y);
+    }
+
+    /**
+     * Finds all other Entities whose Hitboxes intersect that of the given
+     * Entity.
+     *
+     * <p>See {@link #query} for caveats.
+     *
+     * @param entity
+     * @param callback
+     */
+    public void queryOverlapping(Entity entity, EntityQueryCallback callback) {
+        EntityQuery query = beginQuery(EntityQuery.OVERLAP, callback);
+        query.target = entity;
+        Hitbox hitbox = entity.hitbox;
+        runQuery(query, hitbox.x, hitbox.y, hitbox.right(), hitbox.bottom());
+    }
+
+    /**
+     * Prepares a query from our pool.
+     *
+     * @param type
+     * @param callback
+     * @return
+     */
+    private EntityQuery beginQuery(int type, EntityQueryCallback callback) {
+        if (queryDepth == queryPool.size()) {
+            queryPool.add(new EntityQuery());
+        }
+        EntityQuery query = queryPool.get(queryDepth);
+        query.type = type;
+        query.target = null;
+        query.callback = callback;
+        return query;
+    }
+
+    /**
+     * Runs a query against our spatial index.
+     *
+     * @param query
+     * @param x1
+     * @param y1
+     * @param x2
+     * @param y2
+     */
+    private void runQuery(
+            EntityQuery query, float x1, float y1, float x2, float y2) {
+        queryDepth++;
+        try {
+            entityTree.query(x1, y1, x2, y2, query);
+        } finally {
+            queryDepth--;
+            query.target = null;
+            query.callback = null;
+        }
+    }
+
+    /**
+     * Adds an Entity to our spatial index.
+     *
+     * @param entity
+     */
+    private void addProxy(Entity entity) {
+        if (entity.getProxyId() >= 0) {
+            return;
+        }
+        Hitbox hitbox = entity.hitbox;
+        int proxyId = entityTree.createProxy(
+                hitbox.x, hitbox.y, hitbox.right(), hitbox.bottom(), entity);
+        entity.setProxyId(proxyId);
+    }
+
+    /**
+     * Updates the position of an Entity within our spatial index.
+     *
+     * @param entity
+     */
+    private void updateProxy(Entity entity) {
+        if (entity.getProxyId() < 0) {
+            return;
+        }
+        Hitbox hitbox = entity.hitbox;
+        entityTree.moveProxy(entity.getProxyId(),
+                hitbox.x, hitbox.y, hitbox.right(), hitbox.bottom());
+    }
+
+    /**
+     * Removes an Entity from our spatial index.
+     *
+     * @param entity
+     */
+    private void removeProxy(Entity entity) {
+        if (entity.getProxyId() < 0) {
+            return;
+        }
+        entityTree.destroyProxy(entity.getProxyId());
+        entity.setProxyId(-1);
+    }
+
+    /**
+     * Moves an Entity's kinematic state into our HitboxStore, if we have one.
+     *
+     * @param entity
+     */
+    private void addToStore(Entity entity) {
+        if (hitboxStore != null && entity.hitbox.getStore() != hitboxStore) {
+            hitboxStore.add(entity.hitbox);
+        }
+    }
+
+    /**
+     * Moves an Entity's kinematic state out of our HitboxStore, if it is in
+     * there.
+     *
+     * @param entity
+     */
+    private void removeFromStore(Entity entity) {
+        if (hitboxStore != null && entity.hitbox.getStore() == hitboxStore) {
+            hitboxStore.remove(entity.hitbox);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Snapshots
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Saves the current state of the simulation into a snapshot, replacing
+     * any state it already held.
+     *
+     * <p>This covers every Entity (including pending Entities), the list of
+     * Entities waiting to be removed, the Entity ID allocator and the set of
+     * ongoing contacts. Each Entity writes its own state, so Entities and
+     * Components can include any additional state of their own (see
+     * {@link Entity#writeState}).
+     *
+     * <p>The Level is not included, and nor are any commands waiting in our
+     * {@link EntityCommandBuffer}.
+     *
+     * <p>This should only be called between updates.
+     *
+     * @param snapshot
+     */
+    public void saveSnapshot(WorldSnapshot snapshot) {
+
+        // Estimate the size up-front so that we rarely need to start again
+        int estimate = 64
+                + entityHandles.getNumSlots() * 4
+                + (entities.size() + pendingEntities.size()) * 64
+                + contacts.size() * 8;
+
+        while (true) {
+            ByteBuffer buffer = snapshot.beginWrite(estimate);
+            try {
+                writeSnapshot(snapshot, buffer);
+                break;
+            } catch (BufferOverflowException ex) {
+                snapshot.grow();
+            }
+        }
+
+        snapshot.endWrite();
+    }
+
+    /**
+     * Writes the current state of the simulation to a snapshot's buffer.
+     *
+     * @param snapshot
+     * @param buffer
+     */
+    private void writeSnapshot(WorldSnapshot snapshot, ByteBuffer buffer) {
+
+        buffer.putLong(stateHash);
+        entityHandles.writeState(buffer);
+
+        buffer.putInt(entities.size());
+        buffer.putInt(pendingEntities.size());
+
+        for (int i = 0; i < entities.end(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity != null) {
+                snapshot.addEntityRef(entity, true);
+                writeEntityState(entity, buffer);
+            }
+        }
+        for (int i = 0; i < pendingEntities.end(); i++) {
+            Entity entity = pendingEntities.getAt(i);
+            if (entity != null) {
+                snapshot.addEntityRef(entity, false);
+                writeEntityState(entity, buffer);
+            }
+        }
+
+        buffer.putInt(entitiesToDelete.size());
+        for (Entity entity : entitiesToDelete) {
+            snapshot.addEntityRef(entity, false);
+        }
+
+        buffer.putInt(contacts.size());
+        for (int i = 0; i < contacts.capacity(); i++) {
+            if (contacts.isOccupied(i)) {
+                buffer.putLong(contacts.getAt(i));
+            }
+        }
+    }
+
+    /**
+     * Restores the state of the simulation from a snapshot.
+     *
+     * <p>Entities that have been added since the snapshot was taken are
+     * removed from the world without being destroyed or returned to their
+     * pools, and their IDs become available again.
+     *
+     * <p>Entities that have been removed from the world since the snapshot
+     * was taken are put back (and taken out of their pools, if they were
+     * returned to one), but since removal destroys their Components,
+     * this is only exact for Entities whose Components are unaffected by
+     * {@link Entity#destroy}. If in doubt, take snapshots often enough that
+     * no Entities are removed in between.
+     *
+     * <p>Any commands waiting in our {@link EntityCommandBuffer} are
+     * discarded, and no callbacks are made.
+     *
+     * <p>This should only be called between updates.
+     *
+     * @param snapshot
+     * @throws IllegalStateException if an Entity does not read back the same
+     * amount of state that it wrote.
+     */
+    public void restoreSnapshot(WorldSnapshot snapshot) {
+
+        ByteBuffer buffer = snapshot.beginRead();
+
+        // Forget any Entities that were not present when the snapshot was
+        // taken; the rest can keep their places in our spatial index
+        for (int i = 0; i < entities.end(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity != null && !snapshot.wasInWorld(entity)) {
+                removeProxy(entity);
+                removeFromStore(entity);
+            }
+        }
+        entities.clear();
+        pendingEntities.clear();
+
+        stateHash = buffer.getLong();
+        entityHandles.readState(buffer);
+
+        int numEntities = buffer.getInt();
+        int numPending = buffer.getInt();
+        int ref = 0;
+
+        for (int i = 0; i < numEntities; i++) {
+            Entity entity = snapshot.getEntityRef(ref++);
+            reclaimFromPool(entity);
+            readEntityState(entity, buffer);
+            configureHitbox(entity.hitbox);
+            entities.put(entity.getId(), entity);
+            addProxy(entity);
+            updateProxy(entity);
+            addToStore(entity);
+        }
+        for (int i = 0; i < numPending; i++) {
+            Entity entity = snapshot.getEntityRef(ref++);
+            reclaimFromPool(entity);
+            readEntityState(entity, buffer);
+            configureHitbox(entity.hitbox);
+            pendingEntities.put(entity.getId(), entity);
+        }
+
+        entitiesToDelete.clear();
+        int numToDelete = buffer.getInt();
+        for (int i = 0; i < numToDelete; i++) {
+            entitiesToDelete.add(snapshot.getEntityRef(ref++));
+        }
+
+        contacts.clear();
+        newContacts.clear();
+        int numContacts = buffer.getInt();
+        for (int i = 0; i < numContacts; i++) {
+            contacts.add(buffer.getLong());
+        }
+
+        commands.clear();
+    }
+
+    /**
+     * Ensures that an Entity being restored from a snapshot cannot also be
+     * handed out by its pool.
+     *
+     * @param entity
+     */
+    private void reclaimFromPool(Entity entity) {
+        if (entity.getPool() != null) {
+            entity.getPool().claim(entity);
+        }
+    }
+
+    /**
+     * Writes an Entity's state, preceded by its length.
+     *
+     * @param entity
+     * @param buffer
+     */
+    private void writeEntityState(Entity entity, ByteBuffer buffer) {
+        int lengthPos = buffer.position();
+        buffer.putInt(0);
+        entity.writeState(buffer);
+        buffer.putInt(lengthPos, buffer.position() - lengthPos - 4);
+    }
+
+    /**
+     * Reads an Entity's state, checking that it reads the expected length.
+     *
+     * @param entity
+     * @param buffer
+     */
+    private void readEntityState(Entity entity, ByteBuffer buffer) {
+        int length = buffer.getInt();
+        int start = buffer.position();
+        entity.readState(buffer, this);
+        int read = buffer.position() - start;
+        if (read != length) {
+            throw new IllegalStateException("Entity " + entity.getId()
+                    + " read " + read + " bytes of state, but wrote "
+                    + length);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Entity management
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds an Entity to the game world.
+     *
+     * <p>Results in a callback to {@link Entity#addedToWorld}.
+     *
+     * @param x
+     * @param y
+     * @param entity
+     */
+    public void addEntity(Entity entity, float x, float y) {
+        int entityId = requestEntityId();
+        addEntity(entityId, entity, x, y);
+    }
+
+    /**
+     * Adds an Entity taken from the given pool to the game world.
+     *
+     * <p>The Entity will be returned to the pool once it has been deleted and
+     * removed from the world.
+     *
+     * <p>Results in a callback to {@link Entity#addedToWorld}.
+     *
+     * @param <T>
+     * @param pool
+     * @param x
+     * @param y
+     * @return The added Entity.
+     */
+    public <T extends Entity> T addEntity(EntityPool<T> pool, float x, float y) {
+        T entity = pool.obtain();
+        addEntity(entity, x, y);
+        return entity;
+    }
+
+    /**
+     * Adds an Entity to the game world with a predefined ID.
+     *
+     * <p>Results in a callback to {@link Entity#addedToWorld}.
+     *
+     * <p>The ID should either be one that was previously allocated by this
+     * Logic, or one that has never been used.
+     *
+     * @param entityId
+     * @param x
+     * @param y
+     * @param entity
+     * @throws IllegalArgumentException if the ID clashes with that of another
+     * Entity (see {@link EntityHandles#claim}).
+     */
+    public void addEntity(int entityId, Entity entity, float x, float y) {
+
+        entityHandles.claim(entityId);
+
+        // Delete any Entity that is being overwritten
+        Entity previousEntity = entities.get(entityId);
+        if (previousEntity != null) {
+            previousEntity.delete();
         }
 
         pendingEntities.put(entityId, entity);
         entity.addedToWorld(entityId, x, y, this);
+        configureHitbox(entity.hitbox);
+    }
+
+    /**
+     * Applies our physics settings to a Hitbox.
+     *
+     * @param hitbox
+     */
+    private void configureHitbox(Hitbox hitbox) {
+        hitbox.setDeterministic(deterministic);
+        hitbox.setSubStepping(subStepping);
+    }
+
+    /**
+     * Applies our physics settings to the Hitboxes of all Entities, including
+     * those waiting to be added.
+     */
+    private void configureAllHitboxes() {
+        for (int i = 0; i < entities.end(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity != null) {
+                configureHitbox(entity.hitbox);
+            }
+        }
+        for (int i = 0; i < pendingEntities.end(); i++) {
+            Entity entity = pendingEntities.getAt(i);
+            if (entity != null) {
+                configureHitbox(entity.hitbox);
+            }
+        }
     }
 
     /**
@@ -343,9 +1461,7 @@ public class Logic {
      * @return
      */
     protected int requestEntityId() {
-        int returnValue = nextEntityId;
-        nextEntityId++;
-        return returnValue;
+        return entityHandles.allocate();
     }
 
     /**
@@ -361,9 +1477,13 @@ public class Logic {
      * Gets the Entity with the given Entity ID.
      *
      * @param entityId
-     * @return
+     * @return Entity, or null if the Entity has been removed from the world.
      */
     public Entity getEntity(int entityId) {
+        if (!entityHandles.isValid(entityId)) {
+            // Stale ID
+            return null;
+        }
         Entity e = entities.get(entityId);
         if (e == null) {
             // Newly-added Entities will still be in the pending list
@@ -377,14 +1497,67 @@ public class Logic {
      *
      * <p>Changes to this collection will have no effect.
      *
+     * <p>This copies every Entity into a new map, so code that runs every
+     * frame should iterate using {@link #getEntitiesEnd} and
+     * {@link #getEntityAt} instead.
+     *
      * @return
      */
     public Map<Integer, Entity> getEntities() {
-        Map<Integer, Entity> allEntities = new LinkedHashMap<>(entities);
-        allEntities.putAll(pendingEntities);
+        Map<Integer, Entity> allEntities = new LinkedHashMap<>();
+        for (int i = 0; i < entities.end(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity != null) {
+                allEntities.put(entity.getId(), entity);
+            }
+        }
+        for (int i = 0; i < pendingEntities.end(); i++) {
+            Entity entity = pendingEntities.getAt(i);
+            if (entity != null) {
+                allEntities.put(entity.getId(), entity);
+            }
+        }
         return allEntities;
     }
 
+    /**
+     * Gets the end of the range of positions accepted by
+     * {@link #getEntityAt}.
+     *
+     * <p>Together, these allow the Entities in the world to be iterated
+     * without allocating:
+     *
+     * <pre>
+     * for (int i = 0; i &lt; logic.getEntitiesEnd(); i++) {
+     *     Entity entity = logic.getEntityAt(i);
+     *     if (entity != null) {
+     *         ...
+     *     }
+     * }
+     * </pre>
+     *
+     * <p>This only covers Entities that have already been added to the
+     * world; Entities added since the start of the current frame are not
+     * included until the next frame. The world must not be changed during
+     * such a loop.
+     *
+     * @return
+     */
+    public int getEntitiesEnd() {
+        return entities.end();
+    }
+
+    /**
+     * Gets the Entity at the given position.
+     *
+     * @see #getEntitiesEnd
+     * @param pos
+     * @return Entity, or null if the position is empty.
+     */
+    public Entity getEntityAt(int pos) {
+        return entities.getAt(pos);
+    }
+
     /**
      * Gets the TileProvider that holds the available tile types.
      *
@@ -394,6 +1567,202 @@ public class Logic {
         return tileProvider;
     }
 
+    /**
+     * Enables or disables parallel physics.
+     *
+     * <p>When enabled, physics is applied to Entities concurrently using the
+     * given pool. Hitbox callbacks are still delivered on the thread that
+     * calls {@link #update}, in the same order as the Entities.
+     *
+     * @param pool Pool to use, or null to apply physics serially (the
+     * default).
+     */
+    public void setParallelPhysics(ForkJoinPool pool) {
+        this.physicsPool = pool;
+    }
+
+    /**
+     * Enables or disables packed physics.
+     *
+     * <p>When enabled, the speed and grounded state of every Hitbox are kept
+     * in a {@link HitboxStore}, so that gravity and friction can be applied to
+     * all Hitboxes in a single pass over densely-packed arrays. This is only
+     * worthwhile when there are a great many Entities.
+     *
+     * @param packed
+     */
+    public void setPackedPhysics(boolean packed) {
+
+        if (packed == (hitboxStore != null)) {
+            return;
+        }
+
+        if (packed) {
+            hitboxStore = new HitboxStore(Math.max(entities.size(), 1));
+            for (int i = 0; i < entities.end(); i++) {
+                Entity entity = entities.getAt(i);
+                if (entity == null) {
+                    continue;
+                }
+                addToStore(entity);
+            }
+        } else {
+            for (int i = 0; i < entities.end(); i++) {
+                Entity entity = entities.getAt(i);
+                if (entity == null) {
+                    continue;
+                }
+                removeFromStore(entity);
+            }
+            hitboxStore = null;
+        }
+    }
+
+    /**
+     * Enables or disables deterministic mode.
+     *
+     * <p>In deterministic mode, the simulation avoids any calculations whose
+     * results could vary between platforms (see {@link Physics#pow}), and a
+     * hash of the world state is calculated at the end of every frame (see
+     * {@link #getStateHash}).
+     *
+     * <p>This only affects the Entities of this Logic.
+     *
+     * @param deterministic
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+        configureAllHitboxes();
+        stateHash = 0;
+    }
+
+    /**
+     * Determines whether deterministic mode is enabled.
+     *
+     * @return
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * Enables or disables sub-stepping.
+     *
+     * <p>With sub-stepping, movements too long for the collision algorithm to
+     * handle in one go are split into a number of smaller steps. Without it,
+     * such movements are cut short, which is cheaper, but means fast-moving
+     * Hitboxes travel less distance than they should.
+     *
+     * <p>This is enabled by default, and only affects the Entities of this
+     * Logic.
+     *
+     * @param subStepping
+     * @see Hitbox#moveWithCollision
+     */
+    public void setSubStepping(boolean subStepping) {
+        this.subStepping = subStepping;
+        configureAllHitboxes();
+    }
+
+    /**
+     * Determines whether sub-stepping is enabled.
+     *
+     * @return
+     */
+    public boolean isSubStepping() {
+        return subStepping;
+    }
+
+    /**
+     * Gets the hash of the state of all Entities as of the end of the last
+     * frame.
+     *
+     * @see #computeStateHash
+     * @return Hash, or 0 if deterministic mode is not enabled.
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * Sets how long a Hitbox must rest on the ground before it is put to
+     * sleep.
+     *
+     * <p>Sleeping Hitboxes are skipped entirely when applying physics. A
+     * Hitbox wakes when it is given some speed, when its Entity is teleported,
+     * or when a tile in or next to it changes.
+     *
+     * @param sleepDelay Delay in milliseconds, or 0 to disable sleeping (the
+     * default).
+     */
+    public void setSleepDelay(int sleepDelay) {
+        if (sleepDelay < 0) {
+            throw new IllegalArgumentException(
+                    "Sleep delay cannot be negative: " + sleepDelay);
+        }
+        this.sleepDelay = sleepDelay;
+
+        if (sleepDelay == 0) {
+            for (int i = 0; i < entities.end(); i++) {
+                Entity entity = entities.getAt(i);
+                if (entity != null) {
+                    entity.hitbox.wake();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the buffer in which deferred changes to Entities can be recorded.
+     *
+     * @return
+     */
+    public EntityCommandBuffer getCommands() {
+        return commands;
+    }
+
+    /**
+     * Sets the world whose systems should be run every frame.
+     *
+     * <p>The world's data is not included in world snapshots or the state
+     * hash.
+     *
+     * @param archetypeWorld World, or null to run no systems.
+     */
+    public void setArchetypeWorld(ArchetypeWorld archetypeWorld) {
+        this.archetypeWorld = archetypeWorld;
+    }
+
+    /**
+     * Gets the world whose systems are run every frame.
+     *
+     * @return World, or null if none has been set.
+     */
+    public ArchetypeWorld getArchetypeWorld() {
+        return archetypeWorld;
+    }
+
+    /**
+     * Gets the strategy used to find potentially-colliding Entities.
+     *
+     * @return
+     */
+    public Broadphase getBroadphase() {
+        return broadphase;
+    }
+
+    /**
+     * Sets the strategy used to find potentially-colliding Entities.
+     *
+     * <p>The best choice depends on the number of Entities and the shape of
+     * the Level. By default, every pair of Entities is considered.
+     *
+     * @param broadphase
+     */
+    public void setBroadphase(Broadphase broadphase) {
+        this.broadphase = broadphase;
+    }
+
     public int getDelta() {
         return delta;
     }
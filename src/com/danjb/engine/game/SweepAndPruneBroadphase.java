@@ -0,0 +1,366 @@
+package com.danjb.engine.game;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.physics.Hitbox;
+import com.danjb.engine.util.IntList;
+
+/**
+ * Broadphase that sorts the x-extents of all Hitboxes and sweeps along the
+ * x-axis to find overlapping pairs.
+ *
+ * <p>This is well-suited to long, horizontal levels, where Entities are spread
+ * out along the x-axis.
+ *
+ * <p>The sorted list of endpoints is kept from one frame to the next. Since
+ * Entities only move a short distance each frame, the list is almost sorted
+ * already, so an insertion sort restores the order in close to linear time.
+ *
+ * <p>Endpoints refer to Entities by their index within the list passed to
+ * {@link #prepare}. The Logic only ever appends new Entities to this list or
+ * removes deleted ones, so the endpoints from the previous frame can be
+ * re-indexed cheaply without losing their order. Any other changes to the list
+ * are handled correctly, but will make the sort more expensive.
+ *
+ * @author Dan Bryce
+ */
+public class SweepAndPruneBroadphase implements Broadphase {
+
+    /**
+     * Entities processed during the previous frame, by index.
+     */
+    private Entity[] previousEntities = new Entity[0];
+
+    /**
+     * Number of Entities processed during the previous frame.
+     */
+    private int numPreviousEntities;
+
+    /**
+     * New index of each Entity from the previous frame, or -1 if removed.
+     */
+    private int[] remap = new int[0];
+
+    /**
+     * Sorted endpoints.
+     *
+     * <p>Each endpoint is encoded as {@code (index << 1) | isMax}, where index
+     * is the index of the owning Entity.
+     */
+    private int[] endpoints = new int[0];
+
+    /**
+     * Position of each endpoint, in world units.
+     *
+     * <p>This is kept in step with {@link #endpoints}.
+     */
+    private float[] endpointPositions = new float[0];
+
+    /**
+     * Number of endpoints (2 per Entity).
+     */
+    private int numEndpoints;
+
+    /**
+     * Indices of the Entities whose x-extents contain the sweep position.
+     */
+    private IntList active = new IntList();
+
+    /**
+     * Overlapping pairs found during the sweep.
+     *
+     * <p>The first Entity in each pair always has the lower index.
+     */
+    private IntList pairFirst = new IntList();
+    private IntList pairSecond = new IntList();
+
+    /**
+     * Offset of each Entity's candidates within {@link #candidates}.
+     */
+    private int[] candidateOffsets = new int[1];
+
+    /**
+     * Candidates for all Entities, grouped by Entity.
+     */
+    private int[] candidates = new int[0];
+
+    /**
+     * Filter used to discard pairs that cannot interact.
+     */
+    private CollisionFilter filter = new CollisionFilter();
+
+    @Override
+    public void prepare(List<Entity> entities) {
+        filter.prepare(entities);
+        reindexEndpoints(entities);
+        updateEndpointPositions(entities);
+        sortEndpoints();
+        sweep(entities);
+        groupCandidates(entities.size());
+        rememberEntities(entities);
+    }
+
+    @Override
+    public void getCandidates(int index, IntList out) {
+        out.clear();
+        for (int i = candidateOffsets[index];
+                i < candidateOffsets[index + 1]; i++) {
+            out.add(candidates[i]);
+        }
+    }
+
+    /**
+     * Updates the endpoints from the previous frame to use the indices of the
+     * given list, and adds endpoints for any new Entities.
+     *
+     * @param entities
+     */
+    private void reindexEndpoints(List<Entity> entities) {
+
+        // Match the previous Entities against the new list, in order
+        int next = 0;
+        for (int i = 0; i < numPreviousEntities; i++) {
+            if (next < entities.size()
+                    && previousEntities[i] == entities.get(next)) {
+                remap[i] = next;
+                next++;
+            } else {
+                // Entity has been removed
+                remap[i] = -1;
+            }
+        }
+
+        // Rewrite the surviving endpoints, preserving their order
+        int kept = 0;
+        for (int i = 0; i < numEndpoints; i++) {
+            int newIndex = remap[endpoints[i] >> 1];
+            if (newIndex >= 0) {
+                endpoints[kept] = (newIndex << 1) | (endpoints[i] & 1);
+                endpointPositions[kept] = endpointPositions[i];
+                kept++;
+            }
+        }
+        numEndpoints = kept;
+
+        // Any remaining Entities are new
+        ensureEndpointCapacity(entities.size() * 2);
+        for (int i = next; i < entities.size(); i++) {
+            endpoints[numEndpoints] = i << 1;
+            numEndpoints++;
+            endpoints[numEndpoints] = (i << 1) | 1;
+            numEndpoints++;
+        }
+    }
+
+    /**
+     * Reads the current x-extents of all Hitboxes.
+     *
+     * @param entities
+     */
+    private void updateEndpointPositions(List<Entity> entities) {
+        for (int i = 0; i < numEndpoints; i++) {
+            Hitbox hitbox = entities.get(endpoints[i] >> 1).hitbox;
+            endpointPositions[i] = isMax(endpoints[i])
+                    ? hitbox.right()
+                    : hitbox.x;
+        }
+    }
+
+    /**
+     * Sorts the endpoints by position using an insertion sort.
+     *
+     * <p>Where 2 endpoints share a position, min endpoints come first, so that
+     * touching Hitboxes are still considered (the exact intersection test is
+     * left to the Logic).
+     */
+    private void sortEndpoints() {
+        for (int i = 1; i < numEndpoints; i++) {
+            int endpoint = endpoints[i];
+            float pos = endpointPositions[i];
+            int j = i - 1;
+            while (j >= 0 && comesAfter(
+                    endpoints[j], endpointPositions[j], endpoint, pos)) {
+                endpoints[j + 1] = endpoints[j];
+                endpointPositions[j + 1] = endpointPositions[j];
+                j--;
+            }
+            endpoints[j + 1] = endpoint;
+            endpointPositions[j + 1] = pos;
+        }
+    }
+
+    /**
+     * Determines if endpoint a should be sorted after endpoint b.
+     *
+     * @param a
+     * @param posA
+     * @param b
+     * @param posB
+     * @return
+     */
+    private static boolean comesAfter(int a, float posA, int b, float posB) {
+        if (posA != posB) {
+            return posA > posB;
+        }
+        return isMax(a) && !isMax(b);
+    }
+
+    /**
+     * Sweeps along the sorted endpoints, recording every pair of Entities
+     * whose Hitboxes overlap in both axes.
+     *
+     * @param entities
+     */
+    private void sweep(List<Entity> entities) {
+
+        active.clear();
+        pairFirst.clear();
+        pairSecond.clear();
+
+        for (int i = 0; i < numEndpoints; i++) {
+
+            int index = endpoints[i] >> 1;
+
+            if (isMax(endpoints[i])) {
+                removeActive(index);
+                continue;
+            }
+
+            // This Entity overlaps every active Entity in the x-axis
+            Hitbox hitbox = entities.get(index).hitbox;
+            for (int j = 0; j < active.size(); j++) {
+                int other = active.get(j);
+                if (filter.canInteract(index, other)
+                        && overlapsY(hitbox, entities.get(other).hitbox)) {
+                    pairFirst.add(Math.min(index, other));
+                    pairSecond.add(Math.max(index, other));
+                }
+            }
+
+            active.add(index);
+        }
+    }
+
+    /**
+     * Removes an Entity from the active list.
+     *
+     * @param index
+     */
+    private void removeActive(int index) {
+        int last = active.size() - 1;
+        for (int i = last; i >= 0; i--) {
+            if (active.get(i) == index) {
+                // Order doesn't matter, so just swap in the last element
+                active.set(i, active.get(last));
+                active.removeLast();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Groups the recorded pairs by their first Entity, so that each Entity's
+     * candidates are stored contiguously and in ascending order.
+     *
+     * @param numEntities
+     */
+    private void groupCandidates(int numEntities) {
+
+        if (candidateOffsets.length < numEntities + 1) {
+            candidateOffsets = new int[numEntities + 1];
+        }
+        Arrays.fill(candidateOffsets, 0, numEntities + 1, 0);
+
+        if (candidates.length < pairFirst.size()) {
+            candidates = new int[Math.max(
+                    pairFirst.size(), candidates.length * 2)];
+        }
+
+        // Count the candidates for each Entity
+        for (int i = 0; i < pairFirst.size(); i++) {
+            candidateOffsets[pairFirst.get(i) + 1]++;
+        }
+        for (int i = 0; i < numEntities; i++) {
+            candidateOffsets[i + 1] += candidateOffsets[i];
+        }
+
+        // Place each candidate, using the offsets as insertion cursors
+        for (int i = 0; i < pairFirst.size(); i++) {
+            int first = pairFirst.get(i);
+            candidates[candidateOffsets[first]] = pairSecond.get(i);
+            candidateOffsets[first]++;
+        }
+
+        // The cursors have now advanced to the start of the next Entity
+        for (int i = numEntities; i > 0; i--) {
+            candidateOffsets[i] = candidateOffsets[i - 1];
+        }
+        candidateOffsets[0] = 0;
+
+        for (int i = 0; i < numEntities; i++) {
+            Arrays.sort(candidates,
+                    candidateOffsets[i], candidateOffsets[i + 1]);
+        }
+    }
+
+    /**
+     * Remembers the given Entities, so that the endpoints can be re-indexed
+     * next frame.
+     *
+     * @param entities
+     */
+    private void rememberEntities(List<Entity> entities) {
+        if (previousEntities.length < entities.size()) {
+            int capacity = Math.max(
+                    entities.size(), previousEntities.length * 2);
+            previousEntities = new Entity[capacity];
+            remap = new int[capacity];
+        }
+        for (int i = 0; i < entities.size(); i++) {
+            previousEntities[i] = entities.get(i);
+        }
+        // Release any Entities that are no longer in the world
+        if (numPreviousEntities > entities.size()) {
+            Arrays.fill(previousEntities,
+                    entities.size(), numPreviousEntities, null);
+        }
+        numPreviousEntities = entities.size();
+    }
+
+    /**
+     * Ensures that we can store the given number of endpoints.
+     *
+     * @param capacity
+     */
+    private void ensureEndpointCapacity(int capacity) {
+        if (endpoints.length < capacity) {
+            capacity = Math.max(capacity, endpoints.length * 2);
+            endpoints = Arrays.copyOf(endpoints, capacity);
+            endpointPositions = Arrays.copyOf(endpointPositions, capacity);
+        }
+    }
+
+    /**
+     * Determines if an encoded endpoint is the max (right) endpoint.
+     *
+     * @param endpoint
+     * @return
+     */
+    private static boolean isMax(int endpoint) {
+        return (endpoint & 1) == 1;
+    }
+
+    /**
+     * Determines if 2 Hitboxes overlap in the y-axis.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    private static boolean overlapsY(Hitbox a, Hitbox b) {
+        return a.y <= b.bottom() && a.bottom() >= b.y;
+    }
+
+}
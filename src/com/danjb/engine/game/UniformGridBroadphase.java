@@ -0,0 +1,347 @@
+package com.danjb.engine.game;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.physics.Hitbox;
+import com.danjb.engine.game.tiles.Tile;
+import com.danjb.engine.util.IntList;
+
+/**
+ * Broadphase that buckets Hitboxes into a uniform grid of cells.
+ *
+ * <p>Two Entities are only considered to be a potential collision if their
+ * Hitboxes share at least one cell. Since Hitboxes can only intersect if they
+ * overlap the same region of space, this never discards a genuine collision.
+ *
+ * <p>The grid is stored as a spatial hash, so it is not limited to the bounds
+ * of the Level (Entities may be falling out of the world, for example), and
+ * its memory usage depends only on the number of occupied cells.
+ *
+ * <p>The grid is rebuilt from scratch every frame, but all of its storage is
+ * reused, so no garbage is generated once it has grown to accommodate the
+ * world.
+ *
+ * @author Dan Bryce
+ */
+public class UniformGridBroadphase implements Broadphase {
+
+    /**
+     * Initial capacity of the hash table; must be a power of 2.
+     */
+    private static final int INITIAL_TABLE_CAPACITY = 256;
+
+    /**
+     * Marker used for empty slots in the hash table.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Size of each grid cell, in world units.
+     */
+    private final float cellSize;
+
+    /**
+     * Cell keys stored in the hash table.
+     */
+    private long[] tableKeys;
+
+    /**
+     * Index of the bucket for each slot in the hash table, or {@link #EMPTY}.
+     */
+    private int[] tableBuckets;
+
+    /**
+     * Number of occupied slots in the hash table.
+     */
+    private int tableSize;
+
+    /**
+     * Buckets holding the indices of the Entities that occupy each cell.
+     *
+     * <p>These are pooled and reused from one frame to the next.
+     */
+    private IntList[] buckets = new IntList[0];
+
+    /**
+     * Number of buckets in use this frame.
+     */
+    private int numBucketsUsed;
+
+    /**
+     * Range of cells occupied by each Entity, by index.
+     */
+    private int[] minCellX = new int[0];
+    private int[] minCellY = new int[0];
+    private int[] maxCellX = new int[0];
+    private int[] maxCellY = new int[0];
+
+    /**
+     * Filter used to discard pairs that cannot interact.
+     */
+    private CollisionFilter filter = new CollisionFilter();
+
+    /**
+     * Creates a UniformGridBroadphase with tile-sized cells.
+     */
+    public UniformGridBroadphase() {
+        this(Tile.SIZE);
+    }
+
+    /**
+     * Creates a UniformGridBroadphase with the given cell size.
+     *
+     * <p>Ideally, the cell size should be similar to the size of a typical
+     * Entity.
+     *
+     * @param cellSize Cell size, in world units.
+     */
+    public UniformGridBroadphase(float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+
+        tableKeys = new long[INITIAL_TABLE_CAPACITY];
+        tableBuckets = new int[INITIAL_TABLE_CAPACITY];
+        Arrays.fill(tableBuckets, EMPTY);
+    }
+
+    @Override
+    public void prepare(List<Entity> entities) {
+
+        clearGrid();
+        ensureEntityCapacity(entities.size());
+        filter.prepare(entities);
+
+        for (int i = 0; i < entities.size(); i++) {
+
+            Hitbox hitbox = entities.get(i).hitbox;
+
+            if (hitbox == null) {
+                // Leave this Entity out of the grid entirely
+                minCellX[i] = 0;
+                maxCellX[i] = -1;
+                continue;
+            }
+
+            minCellX[i] = getCell(hitbox.x);
+            minCellY[i] = getCell(hitbox.y);
+            maxCellX[i] = getCell(hitbox.right());
+            maxCellY[i] = getCell(hitbox.bottom());
+
+            for (int cy = minCellY[i]; cy <= maxCellY[i]; cy++) {
+                for (int cx = minCellX[i]; cx <= maxCellX[i]; cx++) {
+                    getOrCreateBucket(cx, cy).add(i);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void getCandidates(int index, IntList candidates) {
+
+        candidates.clear();
+
+        boolean multipleCells = false;
+
+        for (int cy = minCellY[index]; cy <= maxCellY[index]; cy++) {
+            for (int cx = minCellX[index]; cx <= maxCellX[index]; cx++) {
+
+                IntList bucket = getBucket(cx, cy);
+
+                // Buckets are filled in index order, so we can skip straight
+                // past any Entities that have already been processed
+                for (int i = bucket.size() - 1; i >= 0; i--) {
+                    int other = bucket.get(i);
+                    if (other <= index) {
+                        break;
+                    }
+                    if (filter.canInteract(index, other)) {
+                        candidates.add(other);
+                    }
+                }
+
+                if (cx != minCellX[index] || cy != minCellY[index]) {
+                    multipleCells = true;
+                }
+            }
+        }
+
+        if (multipleCells) {
+            // Entities sharing multiple cells will have been added repeatedly
+            candidates.sortUnique();
+        } else {
+            reverse(candidates);
+        }
+    }
+
+    /**
+     * Gets the index of the cell containing the given position.
+     *
+     * @param pos World units.
+     * @return
+     */
+    private int getCell(float pos) {
+        return (int) Math.floor(pos / cellSize);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Spatial hash
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Empties the grid, retaining all storage for reuse.
+     */
+    private void clearGrid() {
+        if (tableSize > 0) {
+            Arrays.fill(tableBuckets, EMPTY);
+            tableSize = 0;
+        }
+        for (int i = 0; i < numBucketsUsed; i++) {
+            buckets[i].clear();
+        }
+        numBucketsUsed = 0;
+    }
+
+    /**
+     * Gets the bucket for the given cell, which must exist.
+     *
+     * @param cellX
+     * @param cellY
+     * @return
+     */
+    private IntList getBucket(int cellX, int cellY) {
+        long key = toKey(cellX, cellY);
+        int mask = tableKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (tableKeys[slot] != key || tableBuckets[slot] == EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        return buckets[tableBuckets[slot]];
+    }
+
+    /**
+     * Gets the bucket for the given cell, creating it if necessary.
+     *
+     * @param cellX
+     * @param cellY
+     * @return
+     */
+    private IntList getOrCreateBucket(int cellX, int cellY) {
+
+        long key = toKey(cellX, cellY);
+        int mask = tableKeys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (tableBuckets[slot] != EMPTY) {
+            if (tableKeys[slot] == key) {
+                return buckets[tableBuckets[slot]];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // Claim a new bucket for this cell
+        if (numBucketsUsed == buckets.length) {
+            int oldLength = buckets.length;
+            buckets = Arrays.copyOf(buckets, Math.max(oldLength * 2, 16));
+            for (int i = oldLength; i < buckets.length; i++) {
+                buckets[i] = new IntList(4);
+            }
+        }
+        int bucketIndex = numBucketsUsed;
+        numBucketsUsed++;
+
+        tableKeys[slot] = key;
+        tableBuckets[slot] = bucketIndex;
+        tableSize++;
+
+        // Keep the load factor below 0.5 so that probe sequences stay short
+        if (tableSize * 2 > tableKeys.length) {
+            growTable();
+        }
+
+        return buckets[bucketIndex];
+    }
+
+    /**
+     * Doubles the capacity of the hash table.
+     */
+    private void growTable() {
+
+        long[] oldKeys = tableKeys;
+        int[] oldBuckets = tableBuckets;
+
+        tableKeys = new long[oldKeys.length * 2];
+        tableBuckets = new int[oldBuckets.length * 2];
+        Arrays.fill(tableBuckets, EMPTY);
+
+        int mask = tableKeys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldBuckets[i] == EMPTY) {
+                continue;
+            }
+            int slot = hash(oldKeys[i]) & mask;
+            while (tableBuckets[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            tableKeys[slot] = oldKeys[i];
+            tableBuckets[slot] = oldBuckets[i];
+        }
+    }
+
+    /**
+     * Ensures that we can store cell ranges for the given number of Entities.
+     *
+     * @param numEntities
+     */
+    private void ensureEntityCapacity(int numEntities) {
+        if (minCellX.length >= numEntities) {
+            return;
+        }
+        int capacity = Math.max(numEntities, minCellX.length * 2);
+        minCellX = new int[capacity];
+        minCellY = new int[capacity];
+        maxCellX = new int[capacity];
+        maxCellY = new int[capacity];
+    }
+
+    /**
+     * Packs a pair of cell co-ordinates into a single key.
+     *
+     * @param cellX
+     * @param cellY
+     * @return
+     */
+    private static long toKey(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Scrambles a key so that neighbouring cells are spread across the table.
+     *
+     * @param key
+     * @return
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Reverses the order of the given list.
+     *
+     * @param list
+     */
+    private static void reverse(IntList list) {
+        for (int i = 0, j = list.size() - 1; i < j; i++, j--) {
+            int tmp = list.get(i);
+            list.set(i, list.get(j));
+            list.set(j, tmp);
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.danjb.engine.game;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.danjb.engine.game.entities.Entity;
+
+/**
+ * Saved state of a {@link Logic}, which can be restored later.
+ *
+ * <p>This is intended for rollback networking, where the simulation must be
+ * rewound and replayed several times per frame. Snapshots are therefore
+ * designed to be reused: state is written into a single ByteBuffer that only
+ * grows when necessary, so saving and restoring do not allocate once the
+ * buffer is large enough.
+ *
+ * <p>A snapshot holds references to the Entities it describes, so it can only
+ * be restored into the Logic that created it, and cannot be sent to another
+ * process.
+ *
+ * @see Logic#saveSnapshot
+ * @see Logic#restoreSnapshot
+ * @author Dan Bryce
+ */
+public class WorldSnapshot {
+
+    /**
+     * Default initial capacity of the buffer, in bytes.
+     */
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Buffer holding the saved state.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Entities referenced by the saved state, in the order they were written.
+     */
+    private Entity[] entityRefs = new Entity[64];
+
+    /**
+     * Number of Entities referenced by the saved state.
+     */
+    private int numEntityRefs;
+
+    /**
+     * Entities that were present in the world, keyed by their IDs at the time
+     * the snapshot was taken.
+     */
+    private EntityStore savedEntities = new EntityStore();
+
+    /**
+     * Whether this snapshot holds any saved state.
+     */
+    private boolean saved;
+
+    /**
+     * Creates an empty WorldSnapshot.
+     */
+    public WorldSnapshot() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty WorldSnapshot with the given initial capacity.
+     *
+     * @param capacity Initial size of the buffer, in bytes.
+     */
+    public WorldSnapshot(int capacity) {
+        buffer = ByteBuffer.allocate(Math.max(capacity, 64))
+                .order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Determines if this snapshot holds any saved state.
+     *
+     * @return
+     */
+    public boolean isSaved() {
+        return saved;
+    }
+
+    /**
+     * Gets the number of bytes of saved state.
+     *
+     * @return
+     */
+    public int getSize() {
+        return saved ? buffer.limit() : 0;
+    }
+
+    /**
+     * Gets the current capacity of the buffer, in bytes.
+     *
+     * @return
+     */
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods used by the Logic
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Discards any saved state and prepares the buffer for writing.
+     *
+     * @param minCapacity Number of bytes we expect to write.
+     * @return
+     */
+    ByteBuffer beginWrite(int minCapacity) {
+        if (buffer.capacity() < minCapacity) {
+            allocate(minCapacity);
+        }
+        Arrays.fill(entityRefs, 0, numEntityRefs, null);
+        numEntityRefs = 0;
+        savedEntities.clear();
+        saved = false;
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Marks the saved state as complete.
+     */
+    void endWrite() {
+        buffer.flip();
+        saved = true;
+    }
+
+    /**
+     * Doubles the size of the buffer, discarding its contents.
+     *
+     * <p>This is called if the buffer overflows while writing.
+     */
+    void grow() {
+        allocate(buffer.capacity() * 2);
+    }
+
+    /**
+     * Prepares the buffer for reading the saved state from the beginning.
+     *
+     * @return
+     */
+    ByteBuffer beginRead() {
+        if (!saved) {
+            throw new IllegalStateException("Snapshot holds no saved state");
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
+    /**
+     * Records a reference to an Entity.
+     *
+     * @param entity
+     * @param inWorld Whether the Entity is present in the world (as opposed
+     * to pending).
+     */
+    void addEntityRef(Entity entity, boolean inWorld) {
+        if (numEntityRefs == entityRefs.length) {
+            entityRefs = Arrays.copyOf(entityRefs, numEntityRefs * 2);
+        }
+        entityRefs[numEntityRefs] = entity;
+        numEntityRefs++;
+        if (inWorld) {
+            savedEntities.put(entity.getId(), entity);
+        }
+    }
+
+    /**
+     * Gets a reference recorded by {@link #addEntityRef}.
+     *
+     * @param index
+     * @return
+     */
+    Entity getEntityRef(int index) {
+        return entityRefs[index];
+    }
+
+    /**
+     * Determines if the given Entity was present in the world under its
+     * current ID when the snapshot was taken.
+     *
+     * @param entity
+     * @return
+     */
+    boolean wasInWorld(Entity entity) {
+        return savedEntities.get(entity.getId()) == entity;
+    }
+
+    /**
+     * Replaces the buffer with an empty one of the given size.
+     *
+     * @param capacity
+     */
+    private void allocate(int capacity) {
+        buffer = ByteBuffer.allocate(capacity).order(buffer.order());
+    }
+
+}
@@ -0,0 +1,413 @@
+package com.danjb.engine.game.archetypes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A unique set of {@link DataType}s, along with the packed storage for all
+ * Entities that have exactly that set.
+ *
+ * <p>Entities are stored in a list of {@link Chunk}s. Every chunk except the
+ * last is always full, and rows are filled from the front, so iterating over
+ * all Entities of an Archetype touches contiguous memory.
+ *
+ * <p>Archetypes are created by an {@link ArchetypeWorld} as needed.
+ *
+ * @author Dan Bryce
+ */
+public final class Archetype {
+
+    /**
+     * DataTypes in this Archetype, in order of ID.
+     */
+    private final DataType[] types;
+
+    /**
+     * Read-only view of {@link #types}.
+     */
+    private final List<DataType> typeList;
+
+    /**
+     * IDs of the DataTypes in this Archetype.
+     */
+    private final BitSet mask = new BitSet();
+
+    /**
+     * Index of the first float column of each DataType, by DataType ID, or -1
+     * if the DataType is not part of this Archetype.
+     */
+    private final int[] floatOffsets;
+
+    /**
+     * Index of the first int column of each DataType, by DataType ID, or -1
+     * if the DataType is not part of this Archetype.
+     */
+    private final int[] intOffsets;
+
+    /**
+     * Number of float columns in each Chunk.
+     */
+    private int numFloatColumns;
+
+    /**
+     * Number of int columns in each Chunk.
+     */
+    private int numIntColumns;
+
+    /**
+     * Number of rows in each Chunk.
+     */
+    private final int chunkCapacity;
+
+    /**
+     * Chunks holding our Entities.
+     */
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    /**
+     * Chunk that was emptied most recently, kept to avoid reallocating it if
+     * Entities are repeatedly added and removed.
+     */
+    private Chunk spareChunk;
+
+    /**
+     * Total number of Entities in this Archetype.
+     */
+    private int size;
+
+    /**
+     * Archetype reached by adding each DataType to this one, by DataType ID.
+     */
+    private Archetype[] addTransitions = new Archetype[0];
+
+    /**
+     * Archetype reached by removing each DataType from this one, by DataType
+     * ID.
+     */
+    private Archetype[] removeTransitions = new Archetype[0];
+
+    /**
+     * Creates an Archetype.
+     *
+     * @param types DataTypes, in order of ID.
+     * @param chunkCapacity
+     */
+    Archetype(DataType[] types, int chunkCapacity) {
+
+        this.types = types;
+        this.chunkCapacity = chunkCapacity;
+        typeList = Collections.unmodifiableList(Arrays.asList(types));
+
+        int maxId = types.length > 0 ? types[types.length - 1].getId() : -1;
+        floatOffsets = new int[maxId + 1];
+        intOffsets = new int[maxId + 1];
+        Arrays.fill(floatOffsets, -1);
+        Arrays.fill(intOffsets, -1);
+
+        for (DataType type : types) {
+            type.lock();
+            mask.set(type.getId());
+            floatOffsets[type.getId()] = numFloatColumns;
+            intOffsets[type.getId()] = numIntColumns;
+            numFloatColumns += type.getNumFloats();
+            numIntColumns += type.getNumInts();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Storage
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds an Entity to the end of this Archetype.
+     *
+     * @param entity
+     * @return Chunk to which the Entity was added; the Entity occupies its
+     * last row.
+     */
+    Chunk add(int entity) {
+
+        Chunk chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+
+        if (chunk == null || chunk.isFull()) {
+            if (spareChunk != null) {
+                chunk = spareChunk;
+                spareChunk = null;
+            } else {
+                chunk = new Chunk(this, chunkCapacity);
+            }
+            chunks.add(chunk);
+        }
+
+        chunk.add(entity);
+        size++;
+        return chunk;
+    }
+
+    /**
+     * Removes the Entity in the given row.
+     *
+     * <p>To keep our chunks dense, the last Entity in this Archetype is moved
+     * into the vacated row.
+     *
+     * @param chunk
+     * @param row
+     * @return Handle of the Entity that was moved into the row, or -1 if the
+     * removed Entity was the last one.
+     */
+    int remove(Chunk chunk, int row) {
+
+        int lastIndex = chunks.size() - 1;
+        Chunk last = chunks.get(lastIndex);
+        int moved = -1;
+
+        if (chunk == last && row == last.size() - 1) {
+            last.removeLast();
+        } else {
+            moved = chunk.replaceWithLast(row, last);
+        }
+
+        if (last.size() == 0) {
+            chunks.remove(lastIndex);
+            spareChunk = last;
+        }
+
+        size--;
+        return moved;
+    }
+
+    /**
+     * Copies the fields shared with another Archetype from one row to
+     * another.
+     *
+     * @param src Chunk of the other Archetype.
+     * @param srcRow
+     * @param dst Chunk of this Archetype.
+     * @param dstRow
+     */
+    void copyShared(Chunk src, int srcRow, Chunk dst, int dstRow) {
+
+        Archetype other = src.getArchetype();
+
+        for (DataType type : types) {
+
+            int id = type.getId();
+            if (!other.contains(type)) {
+                continue;
+            }
+
+            int srcOffset = other.floatOffsets[id];
+            int dstOffset = floatOffsets[id];
+            for (int i = 0; i < type.getNumFloats(); i++) {
+                dst.floats[dstOffset + i][dstRow] =
+                        src.floats[srcOffset + i][srcRow];
+            }
+
+            srcOffset = other.intOffsets[id];
+            dstOffset = intOffsets[id];
+            for (int i = 0; i < type.getNumInts(); i++) {
+                dst.ints[dstOffset + i][dstRow] =
+                        src.ints[srcOffset + i][srcRow];
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the column holding a float field.
+     *
+     * @param field
+     * @return
+     * @throws IllegalArgumentException if this Archetype does not include the
+     * field's DataType.
+     */
+    int getFloatColumn(FloatField field) {
+        int id = field.getType().getId();
+        int offset = id < floatOffsets.length ? floatOffsets[id] : -1;
+        if (offset < 0) {
+            throw new IllegalArgumentException(
+                    "Archetype does not include " + field.getType());
+        }
+        return offset + field.getIndex();
+    }
+
+    /**
+     * Gets the index of the column holding an int field.
+     *
+     * @param field
+     * @return
+     * @throws IllegalArgumentException if this Archetype does not include the
+     * field's DataType.
+     */
+    int getIntColumn(IntField field) {
+        int id = field.getType().getId();
+        int offset = id < intOffsets.length ? intOffsets[id] : -1;
+        if (offset < 0) {
+            throw new IllegalArgumentException(
+                    "Archetype does not include " + field.getType());
+        }
+        return offset + field.getIndex();
+    }
+
+    int getNumFloatColumns() {
+        return numFloatColumns;
+    }
+
+    int getNumIntColumns() {
+        return numIntColumns;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Transitions
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Gets the Archetype reached by adding a DataType, if known.
+     *
+     * @param type
+     * @return
+     */
+    Archetype getAddTransition(DataType type) {
+        int id = type.getId();
+        return id < addTransitions.length ? addTransitions[id] : null;
+    }
+
+    /**
+     * Remembers the Archetype reached by adding a DataType.
+     *
+     * @param type
+     * @param target
+     */
+    void setAddTransition(DataType type, Archetype target) {
+        int id = type.getId();
+        if (id >= addTransitions.length) {
+            addTransitions = Arrays.copyOf(addTransitions, id + 1);
+        }
+        addTransitions[id] = target;
+    }
+
+    /**
+     * Gets the Archetype reached by removing a DataType, if known.
+     *
+     * @param type
+     * @return
+     */
+    Archetype getRemoveTransition(DataType type) {
+        int id = type.getId();
+        return id < removeTransitions.length ? removeTransitions[id] : null;
+    }
+
+    /**
+     * Remembers the Archetype reached by removing a DataType.
+     *
+     * @param type
+     * @param target
+     */
+    void setRemoveTransition(DataType type, Archetype target) {
+        int id = type.getId();
+        if (id >= removeTransitions.length) {
+            removeTransitions = Arrays.copyOf(removeTransitions, id + 1);
+        }
+        removeTransitions[id] = target;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Queries
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Determines if this Archetype includes a DataType.
+     *
+     * @param type
+     * @return
+     */
+    public boolean contains(DataType type) {
+        return mask.get(type.getId());
+    }
+
+    /**
+     * Determines if this Archetype includes all of the given DataTypes.
+     *
+     * @param required
+     * @return
+     */
+    public boolean containsAll(DataType[] required) {
+        for (DataType type : required) {
+            if (!contains(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if this Archetype includes any of the given DataTypes.
+     *
+     * @param excluded
+     * @return
+     */
+    public boolean containsAny(DataType[] excluded) {
+        for (DataType type : excluded) {
+            if (contains(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the IDs of the DataTypes in this Archetype.
+     *
+     * <p>The returned set must not be modified.
+     *
+     * @return
+     */
+    BitSet getMask() {
+        return mask;
+    }
+
+    /**
+     * Gets the DataTypes in this Archetype, in order of ID.
+     *
+     * @return
+     */
+    public List<DataType> getTypes() {
+        return typeList;
+    }
+
+    /**
+     * Gets the number of non-empty chunks.
+     *
+     * @return
+     */
+    public int getNumChunks() {
+        return chunks.size();
+    }
+
+    /**
+     * Gets a chunk by index.
+     *
+     * @param index
+     * @return
+     */
+    public Chunk getChunk(int index) {
+        return chunks.get(index);
+    }
+
+    /**
+     * Gets the total number of Entities in this Archetype.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return typeList.toString();
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.danjb.engine.game.archetypes;
+
+import com.danjb.engine.game.ComponentType;
+import com.danjb.engine.game.entities.EntityComponent;
+
+/**
+ * Component that gives a regular Entity some data in an
+ * {@link ArchetypeWorld}.
+ *
+ * <p>This allows a hot behaviour to be moved into an {@link EntitySystem}
+ * without rewriting the rest of the Entity: the Entity's data for that
+ * behaviour lives in the world's packed storage, where the system can
+ * process it in bulk, while the Entity can still read and write it through
+ * this Component.
+ *
+ * <p>The linked data is destroyed along with this Component.
+ *
+ * @author Dan Bryce
+ */
+public class ArchetypeLink extends EntityComponent {
+
+    public static final String KEY = "archetype_link";
+
+    public static final ComponentType<ArchetypeLink> TYPE =
+            ComponentType.of(KEY, ArchetypeLink.class);
+
+    /**
+     * World holding the linked data.
+     */
+    private final ArchetypeWorld world;
+
+    /**
+     * Handle of the linked data within the world.
+     */
+    private final int handle;
+
+    /**
+     * Creates an ArchetypeLink with new data of the given DataTypes.
+     *
+     * @param world
+     * @param types
+     */
+    public ArchetypeLink(ArchetypeWorld world, DataType... types) {
+        super(TYPE);
+        this.world = world;
+        handle = world.create(types);
+    }
+
+    @Override
+    protected void destroy() {
+        if (world.isAlive(handle)) {
+            world.destroy(handle);
+        }
+    }
+
+    public float getFloat(FloatField field) {
+        return world.getFloat(handle, field);
+    }
+
+    public void setFloat(FloatField field, float value) {
+        world.setFloat(handle, field, value);
+    }
+
+    public int getInt(IntField field) {
+        return world.getInt(handle, field);
+    }
+
+    public void setInt(IntField field, int value) {
+        world.setInt(handle, field, value);
+    }
+
+    /**
+     * Gets the world holding the linked data.
+     *
+     * @return
+     */
+    public ArchetypeWorld getWorld() {
+        return world;
+    }
+
+    /**
+     * Gets the handle of the linked data within the world.
+     *
+     * @return
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+}
@@ -0,0 +1,546 @@
+package com.danjb.engine.game.archetypes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.danjb.engine.game.EntityHandles;
+import com.danjb.engine.util.IntList;
+
+/**
+ * Archetype-based storage for plain Entity data, along with the
+ * {@link EntitySystem}s that process it.
+ *
+ * <p>This exists alongside the regular Entity model, for behaviours that
+ * must be applied to very large numbers of Entities. Instead of each Entity
+ * holding its own Components, all Entities with the same set of
+ * {@link DataType}s share the packed {@link Chunk}s of an {@link Archetype},
+ * and systems process those chunks with simple loops. Regular Entities can
+ * own data here via an {@link ArchetypeLink}, so hot behaviours can be
+ * migrated one at a time.
+ *
+ * <p>Entities in this world are identified by generational handles (see
+ * {@link EntityHandles}), which are independent of the IDs of regular
+ * Entities. Adding or removing a DataType moves the Entity to a different
+ * Archetype, copying any fields the two Archetypes share.
+ *
+ * <p>Archetypes are never removed, so a world in which Entities regularly
+ * switch between a few sets of DataTypes reaches a steady state in which
+ * nothing is allocated.
+ *
+ * @author Dan Bryce
+ */
+public class ArchetypeWorld {
+
+    /**
+     * Default number of rows in each Chunk.
+     */
+    public static final int DEFAULT_CHUNK_CAPACITY = 512;
+
+    /**
+     * Number of rows in each Chunk.
+     */
+    private final int chunkCapacity;
+
+    /**
+     * Allocator of Entity handles.
+     */
+    private EntityHandles handles = new EntityHandles();
+
+    /**
+     * Chunk holding each Entity, by slot index.
+     */
+    private Chunk[] chunksBySlot = new Chunk[64];
+
+    /**
+     * Row occupied by each Entity, by slot index.
+     */
+    private int[] rowsBySlot = new int[64];
+
+    /**
+     * Number of live Entities.
+     */
+    private int numEntities;
+
+    /**
+     * Archetype with no DataTypes.
+     */
+    private final Archetype emptyArchetype;
+
+    /**
+     * All Archetypes, in order of creation.
+     */
+    private List<Archetype> archetypes = new ArrayList<>();
+
+    /**
+     * Archetypes, by the IDs of their DataTypes.
+     */
+    private Map<BitSet, Archetype> archetypesByMask = new HashMap<>();
+
+    /**
+     * Systems, in the order they are run.
+     */
+    private List<EntitySystem> systems = new ArrayList<>();
+
+    /**
+     * Whether our systems are currently running.
+     */
+    private boolean updating;
+
+    /**
+     * Entities destroyed while our systems were running.
+     */
+    private IntList pendingDestroys = new IntList();
+
+    /**
+     * Creates an empty ArchetypeWorld.
+     */
+    public ArchetypeWorld() {
+        this(DEFAULT_CHUNK_CAPACITY);
+    }
+
+    /**
+     * Creates an empty ArchetypeWorld with the given Chunk size.
+     *
+     * @param chunkCapacity Number of Entities in each Chunk.
+     */
+    public ArchetypeWorld(int chunkCapacity) {
+        if (chunkCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid chunk capacity: " + chunkCapacity);
+        }
+        this.chunkCapacity = chunkCapacity;
+        emptyArchetype = getOrCreateArchetype(new DataType[0]);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Systems
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds a system to be run by {@link #update}.
+     *
+     * <p>Systems are run in the order in which they are added.
+     *
+     * @param system
+     */
+    public void addSystem(EntitySystem system) {
+        checkNotUpdating();
+        systems.add(system);
+        for (Archetype archetype : archetypes) {
+            if (system.matches(archetype)) {
+                system.addArchetype(archetype);
+            }
+        }
+    }
+
+    /**
+     * Removes a system.
+     *
+     * @param system
+     */
+    public void removeSystem(EntitySystem system) {
+        checkNotUpdating();
+        if (systems.remove(system)) {
+            system.clearArchetypes();
+        }
+    }
+
+    /**
+     * Runs all systems.
+     *
+     * <p>Any Entities destroyed by the systems are removed once they have all
+     * finished.
+     *
+     * @param delta
+     */
+    public void update(int delta) {
+
+        updating = true;
+        try {
+            for (int i = 0; i < systems.size(); i++) {
+                systems.get(i).update(delta);
+            }
+        } finally {
+            updating = false;
+        }
+
+        for (int i = 0; i < pendingDestroys.size(); i++) {
+            int entity = pendingDestroys.get(i);
+            if (handles.isValid(entity)) {
+                destroy(entity);
+            }
+        }
+        pendingDestroys.clear();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Entities
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Creates an Entity with the given DataTypes.
+     *
+     * <p>All of the Entity's fields are initialised to zero.
+     *
+     * @param types
+     * @return Handle of the new Entity.
+     */
+    public int create(DataType... types) {
+
+        checkNotUpdating();
+
+        Archetype archetype = emptyArchetype;
+        for (DataType type : types) {
+            archetype = getArchetypeWith(archetype, type);
+        }
+
+        int entity = handles.allocate();
+        int slot = EntityHandles.getIndex(entity);
+        ensureCapacity(slot + 1);
+
+        Chunk chunk = archetype.add(entity);
+        chunksBySlot[slot] = chunk;
+        rowsBySlot[slot] = chunk.size() - 1;
+        numEntities++;
+
+        return entity;
+    }
+
+    /**
+     * Destroys an Entity.
+     *
+     * <p>If this is called while our systems are running, the Entity is not
+     * removed until they have all finished.
+     *
+     * @param entity
+     * @throws IllegalArgumentException if the handle is stale.
+     */
+    public void destroy(int entity) {
+
+        checkValid(entity);
+
+        if (updating) {
+            pendingDestroys.add(entity);
+            return;
+        }
+
+        int slot = EntityHandles.getIndex(entity);
+        removeFromChunk(chunksBySlot[slot], rowsBySlot[slot]);
+        chunksBySlot[slot] = null;
+        handles.release(entity);
+        numEntities--;
+    }
+
+    /**
+     * Adds a DataType to an Entity.
+     *
+     * <p>The new fields are initialised to zero. This does nothing if the
+     * Entity already has the DataType.
+     *
+     * @param entity
+     * @param type
+     */
+    public void add(int entity, DataType type) {
+        checkNotUpdating();
+        checkValid(entity);
+        Archetype current = getChunk(entity).getArchetype();
+        moveEntity(entity, getArchetypeWith(current, type));
+    }
+
+    /**
+     * Removes a DataType from an Entity.
+     *
+     * <p>This does nothing if the Entity does not have the DataType.
+     *
+     * @param entity
+     * @param type
+     */
+    public void remove(int entity, DataType type) {
+        checkNotUpdating();
+        checkValid(entity);
+        Archetype current = getChunk(entity).getArchetype();
+        moveEntity(entity, getArchetypeWithout(current, type));
+    }
+
+    /**
+     * Moves an Entity to a different Archetype.
+     *
+     * @param entity
+     * @param target
+     */
+    private void moveEntity(int entity, Archetype target) {
+
+        int slot = EntityHandles.getIndex(entity);
+        Chunk src = chunksBySlot[slot];
+        int srcRow = rowsBySlot[slot];
+
+        if (src.getArchetype() == target) {
+            return;
+        }
+
+        Chunk dst = target.add(entity);
+        int dstRow = dst.size() - 1;
+        target.copyShared(src, srcRow, dst, dstRow);
+        removeFromChunk(src, srcRow);
+
+        chunksBySlot[slot] = dst;
+        rowsBySlot[slot] = dstRow;
+    }
+
+    /**
+     * Removes whichever Entity occupies the given row, updating the location
+     * of any Entity that is moved to fill the gap.
+     *
+     * @param chunk
+     * @param row
+     */
+    private void removeFromChunk(Chunk chunk, int row) {
+        int moved = chunk.getArchetype().remove(chunk, row);
+        if (moved >= 0) {
+            int movedSlot = EntityHandles.getIndex(moved);
+            chunksBySlot[movedSlot] = chunk;
+            rowsBySlot[movedSlot] = row;
+        }
+    }
+
+    /**
+     * Determines if an Entity handle refers to a live Entity.
+     *
+     * @param entity
+     * @return
+     */
+    public boolean isAlive(int entity) {
+        return handles.isValid(entity);
+    }
+
+    /**
+     * Determines if an Entity has a DataType.
+     *
+     * @param entity
+     * @param type
+     * @return
+     */
+    public boolean has(int entity, DataType type) {
+        return getChunk(entity).getArchetype().contains(type);
+    }
+
+    /**
+     * Gets the value of one of an Entity's float fields.
+     *
+     * <p>This is convenient for occasional access; systems should use the
+     * columns of a {@link Chunk} instead.
+     *
+     * @param entity
+     * @param field
+     * @return
+     */
+    public float getFloat(int entity, FloatField field) {
+        return getChunk(entity).getFloats(field)[getRow(entity)];
+    }
+
+    /**
+     * Sets the value of one of an Entity's float fields.
+     *
+     * @param entity
+     * @param field
+     * @param value
+     */
+    public void setFloat(int entity, FloatField field, float value) {
+        getChunk(entity).getFloats(field)[getRow(entity)] = value;
+    }
+
+    /**
+     * Gets the value of one of an Entity's int fields.
+     *
+     * @param entity
+     * @param field
+     * @return
+     */
+    public int getInt(int entity, IntField field) {
+        return getChunk(entity).getInts(field)[getRow(entity)];
+    }
+
+    /**
+     * Sets the value of one of an Entity's int fields.
+     *
+     * @param entity
+     * @param field
+     * @param value
+     */
+    public void setInt(int entity, IntField field, int value) {
+        getChunk(entity).getInts(field)[getRow(entity)] = value;
+    }
+
+    /**
+     * Gets the Chunk currently holding an Entity.
+     *
+     * @param entity
+     * @return
+     * @throws IllegalArgumentException if the handle is stale.
+     */
+    public Chunk getChunk(int entity) {
+        checkValid(entity);
+        return chunksBySlot[EntityHandles.getIndex(entity)];
+    }
+
+    /**
+     * Gets the row currently occupied by an Entity within its Chunk.
+     *
+     * @param entity
+     * @return
+     * @throws IllegalArgumentException if the handle is stale.
+     */
+    public int getRow(int entity) {
+        checkValid(entity);
+        return rowsBySlot[EntityHandles.getIndex(entity)];
+    }
+
+    /**
+     * Gets the number of live Entities.
+     *
+     * @return
+     */
+    public int size() {
+        return numEntities;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Archetypes
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Gets the Archetype reached by adding a DataType to another.
+     *
+     * @param archetype
+     * @param type
+     * @return
+     */
+    private Archetype getArchetypeWith(Archetype archetype, DataType type) {
+
+        if (archetype.contains(type)) {
+            return archetype;
+        }
+
+        Archetype target = archetype.getAddTransition(type);
+        if (target == null) {
+            List<DataType> types = new ArrayList<>(archetype.getTypes());
+            types.add(type);
+            target = getOrCreateArchetype(types.toArray(new DataType[0]));
+            archetype.setAddTransition(type, target);
+            target.setRemoveTransition(type, archetype);
+        }
+        return target;
+    }
+
+    /**
+     * Gets the Archetype reached by removing a DataType from another.
+     *
+     * @param archetype
+     * @param type
+     * @return
+     */
+    private Archetype getArchetypeWithout(Archetype archetype, DataType type) {
+
+        if (!archetype.contains(type)) {
+            return archetype;
+        }
+
+        Archetype target = archetype.getRemoveTransition(type);
+        if (target == null) {
+            List<DataType> types = new ArrayList<>(archetype.getTypes());
+            types.remove(type);
+            target = getOrCreateArchetype(types.toArray(new DataType[0]));
+            archetype.setRemoveTransition(type, target);
+            target.setAddTransition(type, archetype);
+        }
+        return target;
+    }
+
+    /**
+     * Gets the Archetype with exactly the given DataTypes, creating it if
+     * necessary.
+     *
+     * @param types Distinct DataTypes, in any order.
+     * @return
+     */
+    private Archetype getOrCreateArchetype(DataType[] types) {
+
+        BitSet mask = new BitSet();
+        for (DataType type : types) {
+            mask.set(type.getId());
+        }
+
+        Archetype archetype = archetypesByMask.get(mask);
+        if (archetype != null) {
+            return archetype;
+        }
+
+        Arrays.sort(types, (a, b) -> Integer.compare(a.getId(), b.getId()));
+        archetype = new Archetype(types, chunkCapacity);
+        archetypes.add(archetype);
+        archetypesByMask.put(mask, archetype);
+
+        for (EntitySystem system : systems) {
+            if (system.matches(archetype)) {
+                system.addArchetype(archetype);
+            }
+        }
+
+        return archetype;
+    }
+
+    /**
+     * Gets all Archetypes that have been created, in order of creation.
+     *
+     * @return
+     */
+    public List<Archetype> getArchetypes() {
+        return Collections.unmodifiableList(archetypes);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helpers
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Throws an exception if an Entity handle is stale.
+     *
+     * @param entity
+     */
+    private void checkValid(int entity) {
+        if (!handles.isValid(entity)) {
+            throw new IllegalArgumentException(
+                    "Invalid Entity handle: " + entity);
+        }
+    }
+
+    /**
+     * Throws an exception if our systems are running.
+     */
+    private void checkNotUpdating() {
+        if (updating) {
+            throw new IllegalStateException(
+                    "Cannot change the world while systems are running");
+        }
+    }
+
+    /**
+     * Ensures our per-slot arrays can hold the given number of slots.
+     *
+     * @param capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= chunksBySlot.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, chunksBySlot.length * 2);
+        chunksBySlot = Arrays.copyOf(chunksBySlot, newCapacity);
+        rowsBySlot = Arrays.copyOf(rowsBySlot, newCapacity);
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.danjb.engine.game.archetypes;
+
+/**
+ * Fixed-size block of packed storage for Entities of a single
+ * {@link Archetype}.
+ *
+ * <p>Each field of each DataType in the Archetype has its own column: a plain
+ * array holding that field's value for every Entity in the chunk, by row.
+ * Rows are always dense, so a system can process a field for every Entity in
+ * the chunk with a simple loop from 0 to {@link #size()}:
+ *
+ * <pre>
+ * float[] x = chunk.getFloats(POSITION_X);
+ * float[] speedX = chunk.getFloats(VELOCITY_X);
+ * for (int i = 0; i &lt; chunk.size(); i++) {
+ *     x[i] += speedX[i] * delta;
+ * }
+ * </pre>
+ *
+ * <p>Entities move between rows (and chunks) when other Entities are
+ * destroyed or change Archetype, so rows should not be remembered.
+ *
+ * @author Dan Bryce
+ */
+public final class Chunk {
+
+    /**
+     * Archetype of all Entities in this chunk.
+     */
+    private final Archetype archetype;
+
+    /**
+     * Handle of the Entity in each row.
+     */
+    private final int[] entities;
+
+    /**
+     * Float columns, in the order defined by our Archetype.
+     */
+    final float[][] floats;
+
+    /**
+     * Int columns, in the order defined by our Archetype.
+     */
+    final int[][] ints;
+
+    /**
+     * Number of occupied rows.
+     */
+    private int size;
+
+    /**
+     * Creates an empty Chunk.
+     *
+     * @param archetype
+     * @param capacity
+     */
+    Chunk(Archetype archetype, int capacity) {
+        this.archetype = archetype;
+        entities = new int[capacity];
+        floats = new float[archetype.getNumFloatColumns()][capacity];
+        ints = new int[archetype.getNumIntColumns()][capacity];
+    }
+
+    /**
+     * Adds an Entity to the end of this chunk.
+     *
+     * <p>All of the Entity's fields are initialised to zero.
+     *
+     * @param entity
+     * @return Row assigned to the Entity.
+     */
+    int add(int entity) {
+        int row = size;
+        entities[row] = entity;
+        for (float[] column : floats) {
+            column[row] = 0;
+        }
+        for (int[] column : ints) {
+            column[row] = 0;
+        }
+        size++;
+        return row;
+    }
+
+    /**
+     * Moves the Entity in the last row of another chunk of the same Archetype
+     * into the given row of this chunk, overwriting the Entity there.
+     *
+     * @param row
+     * @param source
+     * @return Handle of the moved Entity.
+     */
+    int replaceWithLast(int row, Chunk source) {
+        int last = source.size - 1;
+        int moved = source.entities[last];
+        entities[row] = moved;
+        for (int col = 0; col < floats.length; col++) {
+            floats[col][row] = source.floats[col][last];
+        }
+        for (int col = 0; col < ints.length; col++) {
+            ints[col][row] = source.ints[col][last];
+        }
+        source.size--;
+        return moved;
+    }
+
+    /**
+     * Removes the Entity in the last row of this chunk.
+     */
+    void removeLast() {
+        size--;
+    }
+
+    /**
+     * Gets the column holding a float field.
+     *
+     * <p>The first {@link #size()} values are meaningful.
+     *
+     * @param field
+     * @return
+     * @throws IllegalArgumentException if our Archetype does not include the
+     * field's DataType.
+     */
+    public float[] getFloats(FloatField field) {
+        return floats[archetype.getFloatColumn(field)];
+    }
+
+    /**
+     * Gets the column holding an int field.
+     *
+     * <p>The first {@link #size()} values are meaningful.
+     *
+     * @param field
+     * @return
+     * @throws IllegalArgumentException if our Archetype does not include the
+     * field's DataType.
+     */
+    public int[] getInts(IntField field) {
+        return ints[archetype.getIntColumn(field)];
+    }
+
+    /**
+     * Gets the handle of the Entity in the given row.
+     *
+     * @param row
+     * @return
+     */
+    public int getEntity(int row) {
+        return entities[row];
+    }
+
+    /**
+     * Gets the Archetype of all Entities in this chunk.
+     *
+     * @return
+     */
+    public Archetype getArchetype() {
+        return archetype;
+    }
+
+    /**
+     * Gets the number of Entities in this chunk.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the maximum number of Entities this chunk can hold.
+     *
+     * @return
+     */
+    public int capacity() {
+        return entities.length;
+    }
+
+    /**
+     * Determines if this chunk is full.
+     *
+     * @return
+     */
+    boolean isFull() {
+        return size == entities.length;
+    }
+
+}
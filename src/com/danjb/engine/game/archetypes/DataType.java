@@ -0,0 +1,158 @@
+package com.danjb.engine.game.archetypes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A kind of plain data that can be stored in an {@link ArchetypeWorld}.
+ *
+ * <p>Unlike a {@link com.danjb.engine.game.Component}, a DataType has no
+ * behaviour of its own; it simply declares a number of primitive fields.
+ * These are stored column-by-column in {@link Chunk}s, and processed in bulk
+ * by {@link EntitySystem}s.
+ *
+ * <p>DataTypes and their fields are best declared as constants:
+ *
+ * <pre>
+ * public static final DataType VELOCITY = new DataType("velocity");
+ * public static final FloatField VELOCITY_X = VELOCITY.addFloat("x");
+ * public static final FloatField VELOCITY_Y = VELOCITY.addFloat("y");
+ * </pre>
+ *
+ * <p>A DataType with no fields can be used as a tag. Fields cannot be added
+ * once the DataType has been used by an {@link Archetype}.
+ *
+ * @author Dan Bryce
+ */
+public final class DataType {
+
+    /**
+     * ID to be assigned to the next DataType.
+     */
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Unique ID of this DataType.
+     */
+    private final int id;
+
+    /**
+     * Name of this DataType, for debugging.
+     */
+    private final String name;
+
+    /**
+     * Float fields declared by this DataType.
+     */
+    private final List<FloatField> floatFields = new ArrayList<>();
+
+    /**
+     * Int fields declared by this DataType.
+     */
+    private final List<IntField> intFields = new ArrayList<>();
+
+    /**
+     * Whether this DataType has been used by an Archetype.
+     */
+    private volatile boolean locked;
+
+    /**
+     * Creates a DataType with no fields.
+     *
+     * @param name
+     */
+    public DataType(String name) {
+        this.name = name;
+        id = nextId.getAndIncrement();
+    }
+
+    /**
+     * Declares a new float field.
+     *
+     * @param fieldName
+     * @return
+     * @throws IllegalStateException if this DataType is already in use.
+     */
+    public synchronized FloatField addFloat(String fieldName) {
+        checkNotLocked();
+        FloatField field = new FloatField(this, floatFields.size(), fieldName);
+        floatFields.add(field);
+        return field;
+    }
+
+    /**
+     * Declares a new int field.
+     *
+     * @param fieldName
+     * @return
+     * @throws IllegalStateException if this DataType is already in use.
+     */
+    public synchronized IntField addInt(String fieldName) {
+        checkNotLocked();
+        IntField field = new IntField(this, intFields.size(), fieldName);
+        intFields.add(field);
+        return field;
+    }
+
+    /**
+     * Throws an exception if this DataType is already in use.
+     */
+    private void checkNotLocked() {
+        if (locked) {
+            throw new IllegalStateException(
+                    "DataType is already in use: " + name);
+        }
+    }
+
+    /**
+     * Prevents any more fields from being added.
+     *
+     * <p>This is called when the DataType is first used by an Archetype.
+     */
+    synchronized void lock() {
+        locked = true;
+    }
+
+    /**
+     * Gets the unique ID of this DataType.
+     *
+     * @return
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the name of this DataType.
+     *
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of float fields declared by this DataType.
+     *
+     * @return
+     */
+    public int getNumFloats() {
+        return floatFields.size();
+    }
+
+    /**
+     * Gets the number of int fields declared by this DataType.
+     *
+     * @return
+     */
+    public int getNumInts() {
+        return intFields.size();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.danjb.engine.game.archetypes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Behaviour that is applied to every Entity in an {@link ArchetypeWorld}
+ * that has a certain set of {@link DataType}s.
+ *
+ * <p>Rather than being called once per Entity, a system is given one
+ * {@link Chunk} at a time, and should loop over the chunk's columns
+ * directly. This keeps the hot loop free of virtual calls and pointer
+ * chasing.
+ *
+ * <p>A system is interested in all Archetypes that include every "required"
+ * DataType and none of the "excluded" ones. The matching Archetypes are
+ * found once, when the system or Archetype is added to the world, so
+ * iteration does not need to test every Archetype each frame.
+ *
+ * <p>The world cannot be structurally changed while systems are running,
+ * except by destroying Entities (see {@link ArchetypeWorld#destroy}).
+ *
+ * @author Dan Bryce
+ */
+public abstract class EntitySystem {
+
+    /**
+     * DataTypes that an Archetype must include.
+     */
+    private final DataType[] required;
+
+    /**
+     * DataTypes that an Archetype must not include.
+     */
+    private final DataType[] excluded;
+
+    /**
+     * Archetypes matched by this system.
+     */
+    private final List<Archetype> archetypes = new ArrayList<>();
+
+    /**
+     * Creates a system that processes all Entities with the given DataTypes.
+     *
+     * @param required
+     */
+    public EntitySystem(DataType... required) {
+        this(required, new DataType[0]);
+    }
+
+    /**
+     * Creates a system that processes all Entities that have all of the
+     * required DataTypes, and none of the excluded ones.
+     *
+     * @param required
+     * @param excluded
+     */
+    public EntitySystem(DataType[] required, DataType[] excluded) {
+        this.required = required.clone();
+        this.excluded = excluded.clone();
+    }
+
+    /**
+     * Determines if this system should process Entities of an Archetype.
+     *
+     * @param archetype
+     * @return
+     */
+    public boolean matches(Archetype archetype) {
+        return archetype.containsAll(required)
+                && !archetype.containsAny(excluded);
+    }
+
+    /**
+     * Called by the world when an Archetype is found to match this system.
+     *
+     * @param archetype
+     */
+    void addArchetype(Archetype archetype) {
+        archetypes.add(archetype);
+    }
+
+    /**
+     * Called by the world when this system is removed.
+     */
+    void clearArchetypes() {
+        archetypes.clear();
+    }
+
+    /**
+     * Updates every chunk matched by this system.
+     *
+     * @param delta
+     */
+    public void update(int delta) {
+        for (int i = 0; i < archetypes.size(); i++) {
+            Archetype archetype = archetypes.get(i);
+            for (int j = 0; j < archetype.getNumChunks(); j++) {
+                updateChunk(archetype.getChunk(j), delta);
+            }
+        }
+    }
+
+    /**
+     * Updates all Entities within a chunk.
+     *
+     * @param chunk Non-empty chunk of a matching Archetype.
+     * @param delta
+     */
+    protected abstract void updateChunk(Chunk chunk, int delta);
+
+    /**
+     * Gets the number of Entities matched by this system.
+     *
+     * @return
+     */
+    public int getNumEntities() {
+        int total = 0;
+        for (int i = 0; i < archetypes.size(); i++) {
+            total += archetypes.get(i).size();
+        }
+        return total;
+    }
+
+}
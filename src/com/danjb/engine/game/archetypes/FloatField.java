@@ -0,0 +1,73 @@
+package com.danjb.engine.game.archetypes;
+
+/**
+ * A float field belonging to a {@link DataType}.
+ *
+ * <p>Each field is stored in its own column within every {@link Chunk} whose
+ * Archetype includes the DataType (see {@link Chunk#getFloats}).
+ *
+ * @author Dan Bryce
+ */
+public final class FloatField {
+
+    /**
+     * DataType to which this field belongs.
+     */
+    private final DataType type;
+
+    /**
+     * Index of this field among its DataType's float fields.
+     */
+    private final int index;
+
+    /**
+     * Name of this field.
+     */
+    private final String name;
+
+    /**
+     * Creates a FloatField.
+     *
+     * @param type
+     * @param index
+     * @param name
+     */
+    FloatField(DataType type, int index, String name) {
+        this.type = type;
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * Gets the DataType to which this field belongs.
+     *
+     * @return
+     */
+    public DataType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the index of this field among its DataType's float fields.
+     *
+     * @return
+     */
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the name of this field.
+     *
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return type.getName() + "." + name;
+    }
+
+}
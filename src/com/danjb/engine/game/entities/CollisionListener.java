@@ -1,5 +1,7 @@
 package com.danjb.engine.game.entities;
 
+import com.danjb.engine.game.ComponentType;
+
 /**
  * Component that gives Entities the ability to collide with each other.
  *
@@ -9,8 +11,11 @@ public abstract class CollisionListener extends EntityComponent {
 
     public static final String KEY = "collision_listener";
 
+    public static final ComponentType<CollisionListener> TYPE =
+            ComponentType.of(KEY, CollisionListener.class);
+
     public CollisionListener() {
-        super(KEY);
+        super(TYPE);
     }
 
     /**
@@ -29,8 +34,48 @@ public abstract class CollisionListener extends EntityComponent {
     /**
      * Handle a collision between this component's parent and another Entity.
      *
+     * <p>This is called every frame for as long as the 2 Entities overlap.
+     *
      * @param other The Entity with which this component's parent collided.
      */
     public abstract void collidedWith(Entity other);
 
+    /**
+     * Called when this component's parent first starts colliding with another
+     * Entity.
+     *
+     * <p>This is called after {@link #collidedWith}.
+     *
+     * @param other
+     */
+    public void collisionStarted(Entity other) {
+        // Do nothing by default
+    }
+
+    /**
+     * Called every frame after the first that this component's parent
+     * continues colliding with another Entity.
+     *
+     * <p>This is called after {@link #collidedWith}.
+     *
+     * @param other
+     */
+    public void collisionOngoing(Entity other) {
+        // Do nothing by default
+    }
+
+    /**
+     * Called when this component's parent stops colliding with another
+     * Entity.
+     *
+     * <p>This is also called if either Entity is deleted while they are
+     * colliding. In this case, the deleted Entity is still accessible, but
+     * will be removed from the world shortly.
+     *
+     * @param other
+     */
+    public void collisionEnded(Entity other) {
+        // Do nothing by default
+    }
+
 }
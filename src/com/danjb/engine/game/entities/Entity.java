@@ -1,7 +1,10 @@
 package com.danjb.engine.game.entities;
 
+import java.nio.ByteBuffer;
+
 import com.danjb.engine.game.Component;
 import com.danjb.engine.game.ComponentStore;
+import com.danjb.engine.game.EntityPool;
 import com.danjb.engine.game.Logic;
 import com.danjb.engine.game.physics.CollisionResult;
 import com.danjb.engine.game.physics.Hitbox;
@@ -27,6 +30,16 @@ import com.danjb.engine.game.physics.HitboxListener;
  */
 public abstract class Entity implements HitboxListener {
 
+    /**
+     * Collision layer to which Entities belong by default.
+     */
+    public static final int DEFAULT_COLLISION_LAYER = 1;
+
+    /**
+     * Collision mask that matches every layer.
+     */
+    public static final int ALL_COLLISION_LAYERS = ~0;
+
     /**
      * {@link EntityComponent}s attached to this Entity.
      */
@@ -56,6 +69,57 @@ public abstract class Entity implements HitboxListener {
      */
     protected Logic logic;
 
+    /**
+     * ID of the proxy representing this Entity within the Logic's spatial
+     * index.
+     *
+     * <p>This is managed by the Logic.
+     */
+    private int proxyId = -1;
+
+    /**
+     * Pool to which this Entity should be returned once it has been removed
+     * from the world, if any.
+     */
+    private EntityPool<?> pool;
+
+    /**
+     * Bit flags identifying the collision layers to which this Entity belongs.
+     *
+     * <p>An Entity with no layers cannot be collided with.
+     */
+    private int collisionLayer = DEFAULT_COLLISION_LAYER;
+
+    /**
+     * Bit flags identifying the collision layers with which this Entity wants
+     * to collide.
+     *
+     * <p>This Entity's {@link CollisionListener} is only consulted about
+     * Entities belonging to one of these layers. An Entity with an empty mask
+     * never receives collisions.
+     */
+    private int collisionMask = ALL_COLLISION_LAYERS;
+
+    /**
+     * Cached result of looking up this Entity's {@link CollisionListener}.
+     *
+     * <p>This is only valid while {@link #collisionListenerStore} is our
+     * ComponentStore and its version matches
+     * {@link #collisionListenerVersion}.
+     */
+    private CollisionListener collisionListener;
+
+    /**
+     * ComponentStore from which {@link #collisionListener} was retrieved.
+     */
+    private ComponentStore<EntityComponent> collisionListenerStore;
+
+    /**
+     * Version of {@link #collisionListenerStore} when
+     * {@link #collisionListener} was retrieved.
+     */
+    private int collisionListenerVersion;
+
     ////////////////////////////////////////////////////////////////////////////
     // Getters
     ////////////////////////////////////////////////////////////////////////////
@@ -80,6 +144,75 @@ public abstract class Entity implements HitboxListener {
         return id;
     }
 
+    /**
+     * Gets the ID of the proxy representing this Entity within the Logic's
+     * spatial index.
+     *
+     * @return Proxy ID, or -1 if this Entity is not in the index.
+     */
+    public int getProxyId() {
+        return proxyId;
+    }
+
+    /**
+     * Gets the pool that owns this Entity.
+     *
+     * @return Pool, or null if this Entity is not pooled.
+     */
+    public EntityPool<?> getPool() {
+        return pool;
+    }
+
+    /**
+     * Gets the collision layers to which this Entity belongs.
+     *
+     * @return
+     */
+    public int getCollisionLayer() {
+        return collisionLayer;
+    }
+
+    /**
+     * Gets the collision layers with which this Entity wants to collide.
+     *
+     * @return
+     */
+    public int getCollisionMask() {
+        return collisionMask;
+    }
+
+    /**
+     * Gets this Entity's {@link CollisionListener}.
+     *
+     * <p>This is called for every potentially-colliding pair of Entities each
+     * frame, so the result is cached until our Components next change
+     * (including when a Component is marked for deletion).
+     *
+     * @return
+     */
+    public CollisionListener getCollisionListener() {
+
+        if (collisionListenerStore != components
+                || collisionListenerVersion != components.getVersion()) {
+            collisionListener = components.get(CollisionListener.TYPE);
+            collisionListenerStore = components;
+            collisionListenerVersion = components.getVersion();
+        }
+
+        return collisionListener;
+    }
+
+    /**
+     * Determines whether this Entity wants to collide with the given Entity,
+     * based on their collision layers.
+     *
+     * @param other
+     * @return
+     */
+    public boolean isInterestedIn(Entity other) {
+        return (collisionMask & other.collisionLayer) != 0;
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Modifiers
     ////////////////////////////////////////////////////////////////////////////
@@ -92,10 +225,52 @@ public abstract class Entity implements HitboxListener {
      */
     public void teleport(float x, float y) {
         hitbox.setPos(x, y);
+        hitbox.wake();
 
         components.notifyAll(new EntityTeleported());
     }
 
+    /**
+     * Sets the ID of the proxy representing this Entity within the Logic's
+     * spatial index.
+     *
+     * <p>This should only be called by the Logic.
+     *
+     * @param proxyId
+     */
+    public void setProxyId(int proxyId) {
+        this.proxyId = proxyId;
+    }
+
+    /**
+     * Sets the pool that owns this Entity.
+     *
+     * <p>This should only be called by the EntityPool.
+     *
+     * @param pool
+     */
+    public void setPool(EntityPool<?> pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the collision layers to which this Entity belongs.
+     *
+     * @param collisionLayer
+     */
+    public void setCollisionLayer(int collisionLayer) {
+        this.collisionLayer = collisionLayer;
+    }
+
+    /**
+     * Sets the collision layers with which this Entity wants to collide.
+     *
+     * @param collisionMask
+     */
+    public void setCollisionMask(int collisionMask) {
+        this.collisionMask = collisionMask;
+    }
+
     /**
      * Marks this Entity for deletion.
      */
@@ -126,7 +301,12 @@ public abstract class Entity implements HitboxListener {
         this.id = id;
         this.logic = logic;
 
-        hitbox = createHitbox(x, y);
+        if (hitbox == null) {
+            hitbox = createHitbox(x, y);
+        } else {
+            // This Entity is being reused
+            hitbox.reset(x, y, this);
+        }
     }
 
     /**
@@ -172,10 +352,37 @@ public abstract class Entity implements HitboxListener {
      * Performs any final clean-up before deletion.
      */
     public void destroy() {
-        components.destroy();
+        if (pool != null) {
+            // Keep the store's internal lists so they can be reused
+            components.reset();
+        } else {
+            components.destroy();
+        }
         hitbox.destroy();
     }
 
+    /**
+     * Prepares this Entity to be added to the world again.
+     *
+     * <p>This is called when a pooled Entity is returned to its pool, after
+     * {@link #destroy} has removed all of its Components. The Hitbox is kept,
+     * and will be reset when the Entity is next added to the world.
+     *
+     * <p>The collision layer and mask are restored to their defaults.
+     * Subclasses that hold any per-life state should override this to reset
+     * it.
+     */
+    public void reset() {
+        id = -1;
+        deleted = false;
+        logic = null;
+        proxyId = -1;
+        collisionLayer = DEFAULT_COLLISION_LAYER;
+        collisionMask = ALL_COLLISION_LAYERS;
+        collisionListener = null;
+        collisionListenerStore = null;
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Behaviour
     ////////////////////////////////////////////////////////////////////////////
@@ -239,6 +446,52 @@ public abstract class Entity implements HitboxListener {
         return false;
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    // Snapshots
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Writes this Entity's state to a buffer, as part of a world snapshot.
+     *
+     * <p>This covers the ID, deletion flag and Hitbox, followed by the state
+     * of each Component (see {@link EntityComponent#writeState}). Subclasses
+     * with additional state that affects the simulation should override this
+     * and {@link #readState}.
+     *
+     * @param buffer
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(id);
+        buffer.put((byte) (deleted ? 1 : 0));
+        hitbox.writeState(buffer);
+        for (EntityComponent component : components.asList()) {
+            component.writeState(buffer);
+        }
+    }
+
+    /**
+     * Restores state written by {@link #writeState}.
+     *
+     * <p>Components are restored in the order in which they are currently
+     * attached, so this relies on the same Components still being attached.
+     *
+     * @param buffer
+     * @param logic
+     */
+    public void readState(ByteBuffer buffer, Logic logic) {
+        id = buffer.getInt();
+        deleted = buffer.get() != 0;
+        this.logic = logic;
+        if (hitbox.getListener() == null) {
+            // Hitbox was destroyed after the snapshot was taken
+            hitbox.setListener(this);
+        }
+        hitbox.readState(buffer);
+        for (EntityComponent component : components.asList()) {
+            component.readState(buffer);
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Components
     ////////////////////////////////////////////////////////////////////////////
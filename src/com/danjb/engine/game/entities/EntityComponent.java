@@ -1,6 +1,9 @@
 package com.danjb.engine.game.entities;
 
+import java.nio.ByteBuffer;
+
 import com.danjb.engine.game.Component;
+import com.danjb.engine.game.ComponentType;
 import com.danjb.engine.game.Logic;
 import com.danjb.engine.game.physics.Hitbox;
 
@@ -14,6 +17,10 @@ public abstract class EntityComponent extends Component {
         super(key);
     }
 
+    public EntityComponent(ComponentType<?> type) {
+        super(type);
+    }
+
     /**
      * Called when this Component is successfully attached to a Entity.
      *
@@ -41,4 +48,28 @@ public abstract class EntityComponent extends Component {
         // Do nothing by default
     }
 
+    /**
+     * Writes any state that affects the simulation to a buffer, as part of a
+     * world snapshot.
+     *
+     * <p>Components that hold such state should override this and
+     * {@link #readState}, which must read back exactly the bytes written
+     * here.
+     *
+     * @see Entity#writeState
+     * @param buffer
+     */
+    public void writeState(ByteBuffer buffer) {
+        // Do nothing by default
+    }
+
+    /**
+     * Restores state written by {@link #writeState}.
+     *
+     * @param buffer
+     */
+    public void readState(ByteBuffer buffer) {
+        // Do nothing by default
+    }
+
 }
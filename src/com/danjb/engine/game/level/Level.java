@@ -1,11 +1,13 @@
 package com.danjb.engine.game.level;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import com.danjb.engine.game.ComponentStore;
+import com.danjb.engine.game.physics.RaycastResult;
 import com.danjb.engine.game.tiles.Tile;
 
 /**
@@ -33,7 +35,7 @@ public class Level {
     /**
      * Map of TileLayers by ID.
      */
-    private Map<Integer, TileLayer> layers = new HashMap<>();
+    private Map<Integer, TileLayer> layers = new LinkedHashMap<>();
 
     /**
      * The default TileLayer.
@@ -172,6 +174,59 @@ public class Level {
         return defaultLayer;
     }
 
+    /**
+     * Casts a ray through the default TileLayer.
+     *
+     * @see TileLayer#raycast
+     * @param tileProvider
+     * @param x
+     * @param y
+     * @param dx
+     * @param dy
+     * @param maxDistance
+     * @param result
+     * @return True if the ray hit something within the maximum distance.
+     */
+    public boolean raycast(
+            TileProvider tileProvider,
+            float x,
+            float y,
+            float dx,
+            float dy,
+            float maxDistance,
+            RaycastResult result) {
+        return defaultLayer.raycast(
+                tileProvider, x, y, dx, dy, maxDistance, result);
+    }
+
+    /**
+     * Casts a batch of rays through the default TileLayer.
+     *
+     * @see TileLayer#raycastAll
+     * @param tileProvider
+     * @param originsX
+     * @param originsY
+     * @param directionsX
+     * @param directionsY
+     * @param count
+     * @param maxDistance
+     * @param distances
+     * @param pool
+     */
+    public void raycastAll(
+            TileProvider tileProvider,
+            float[] originsX,
+            float[] originsY,
+            float[] directionsX,
+            float[] directionsY,
+            int count,
+            float maxDistance,
+            float[] distances,
+            ForkJoinPool pool) {
+        defaultLayer.raycastAll(tileProvider, originsX, originsY,
+                directionsX, directionsY, count, maxDistance, distances, pool);
+    }
+
     /**
      * Gets the TileLayer with the given ID.
      *
@@ -1,6 +1,7 @@
 package com.danjb.engine.game.level;
 
 import com.danjb.engine.game.Component;
+import com.danjb.engine.game.ComponentType;
 
 public class LevelComponent extends Component {
 
@@ -10,6 +11,10 @@ public class LevelComponent extends Component {
         super(key);
     }
 
+    public LevelComponent(ComponentType<?> type) {
+        super(type);
+    }
+
     /**
      * Called when this Component is successfully attached to a Level.
      *
@@ -4,8 +4,11 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.danjb.engine.application.Logger;
+import com.danjb.engine.game.physics.RaycastResult;
 import com.danjb.engine.game.tiles.PhysicsTile;
 import com.danjb.engine.game.tiles.Tile;
 
@@ -26,10 +29,79 @@ public class TileLayer {
 
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    // RaycastTask class
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Task that casts a range of rays from a batch, splitting itself into
+     * smaller tasks if the range is large.
+     */
+    private class RaycastTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TileProvider tileProvider;
+        private final float[] originsX;
+        private final float[] originsY;
+        private final float[] directionsX;
+        private final float[] directionsY;
+        private final float maxDistance;
+        private final float[] distances;
+        private final int from;
+        private final int to;
+
+        public RaycastTask(
+                TileProvider tileProvider,
+                float[] originsX,
+                float[] originsY,
+                float[] directionsX,
+                float[] directionsY,
+                float maxDistance,
+                float[] distances,
+                int from,
+                int to) {
+            this.tileProvider = tileProvider;
+            this.originsX = originsX;
+            this.originsY = originsY;
+            this.directionsX = directionsX;
+            this.directionsY = directionsY;
+            this.maxDistance = maxDistance;
+            this.distances = distances;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= RAYCAST_BATCH_SIZE) {
+                raycastRange(tileProvider, originsX, originsY,
+                        directionsX, directionsY, maxDistance, distances,
+                        from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(
+                        new RaycastTask(tileProvider, originsX, originsY,
+                                directionsX, directionsY, maxDistance,
+                                distances, from, mid),
+                        new RaycastTask(tileProvider, originsX, originsY,
+                                directionsX, directionsY, maxDistance,
+                                distances, mid, to));
+            }
+        }
+
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // TileLayer class
     ////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Maximum number of rays to cast in a single task when casting a batch
+     * of rays in parallel.
+     */
+    private static final int RAYCAST_BATCH_SIZE = 64;
+
     /**
      * Identifier for this TileLayer.
      */
@@ -152,6 +224,215 @@ public class TileLayer {
         return getTile(tileX, tileY);
     }
 
+    /**
+     * Casts a ray through this TileLayer and finds the first solid surface it
+     * hits.
+     *
+     * <p>This visits every Tile along the ray in order, using the grid
+     * traversal algorithm described by Amanatides and Woo ("A Fast Voxel
+     * Traversal Algorithm for Ray Tracing"). Each Tile decides for itself
+     * whether the ray hits it (see {@link PhysicsTile#raycast}), so Slopes are
+     * hit at their exact surface.
+     *
+     * <p>As with collisions, Tiles beyond the sides and top of the layer are
+     * considered solid, and Tiles below it are considered air. A ray that
+     * leaves the bottom of the layer without travelling upwards can never
+     * come back, so it stops there, even if the maximum distance is
+     * infinite.
+     *
+     * <p>No objects are created during the cast, so this is suitable for
+     * calling many times per frame.
+     *
+     * @param tileProvider Provider of Tile types for this layer.
+     * @param x Ray origin, in world units.
+     * @param y Ray origin, in world units.
+     * @param dx Ray direction; need not be normalised.
+     * @param dy Ray direction; need not be normalised.
+     * @param maxDistance Maximum distance to travel, in world units.
+     * @param result Result to populate.
+     * @return True if the ray hit something within the maximum distance.
+     */
+    public boolean raycast(
+            TileProvider tileProvider,
+            float x,
+            float y,
+            float dx,
+            float dy,
+            float maxDistance,
+            RaycastResult result) {
+
+        result.reset();
+
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            return false;
+        }
+        float dirX = dx / length;
+        float dirY = dy / length;
+
+        int tileX = (int) Math.floor(x / Tile.WIDTH);
+        int tileY = (int) Math.floor(y / Tile.HEIGHT);
+        int stepX = dirX > 0 ? 1 : -1;
+        int stepY = dirY > 0 ? 1 : -1;
+
+        // Distance along the ray needed to cross one whole Tile
+        float tileDistanceX = dirX == 0
+                ? Float.POSITIVE_INFINITY
+                : Math.abs(Tile.WIDTH / dirX);
+        float tileDistanceY = dirY == 0
+                ? Float.POSITIVE_INFINITY
+                : Math.abs(Tile.HEIGHT / dirY);
+
+        // Distance along the ray to the next vertical / horizontal Tile edge
+        float nextEdgeX = dirX == 0
+                ? Float.POSITIVE_INFINITY
+                : ((dirX > 0 ? tileX + 1 : tileX) * Tile.WIDTH - x) / dirX;
+        float nextEdgeY = dirY == 0
+                ? Float.POSITIVE_INFINITY
+                : ((dirY > 0 ? tileY + 1 : tileY) * Tile.HEIGHT - y) / dirY;
+
+        float distanceIn = 0;
+        float normalX = 0;
+        float normalY = 0;
+
+        while (distanceIn <= maxDistance) {
+
+            if (tileY >= getNumTilesY() && dirY >= 0) {
+                // Nothing left to hit
+                break;
+            }
+
+            int tileId = getTile(tileX, tileY);
+            PhysicsTile tile =
+                    (PhysicsTile) tileProvider.getTile(layerId, tileId);
+
+            float tileLeft = tileX * Tile.WIDTH;
+            float tileTop = tileY * Tile.HEIGHT;
+            float distanceOut = Math.min(nextEdgeX, nextEdgeY);
+
+            result.normalX = normalX;
+            result.normalY = normalY;
+            float distance = tile.raycast(x - tileLeft, y - tileTop,
+                    dirX, dirY, distanceIn, distanceOut, result);
+
+            if (distance >= 0) {
+                if (distance > maxDistance) {
+                    break;
+                }
+                result.hit = true;
+                result.tileX = tileX;
+                result.tileY = tileY;
+                result.tileId = tileId;
+                result.distance = distance;
+                result.hitX = x + dirX * distance;
+                result.hitY = y + dirY * distance;
+                return true;
+            }
+
+            // Step into the next Tile
+            if (nextEdgeX < nextEdgeY) {
+                tileX += stepX;
+                distanceIn = nextEdgeX;
+                nextEdgeX += tileDistanceX;
+                normalX = -stepX;
+                normalY = 0;
+            } else {
+                tileY += stepY;
+                distanceIn = nextEdgeY;
+                nextEdgeY += tileDistanceY;
+                normalX = 0;
+                normalY = -stepY;
+            }
+        }
+
+        result.reset();
+        return false;
+    }
+
+    /**
+     * Casts a batch of rays through this TileLayer.
+     *
+     * <p>Ray i starts at (originsX[i], originsY[i]) and travels in the
+     * direction (directionsX[i], directionsY[i]). The distance to the first
+     * surface it hits is written to distances[i], or
+     * {@link Float#POSITIVE_INFINITY} if it hits nothing within the maximum
+     * distance.
+     *
+     * <p>If a pool is supplied, the rays are divided between its threads.
+     * This is only safe if the TileLayer and TileProvider are not modified
+     * until the batch is complete.
+     *
+     * @see #raycast
+     * @param tileProvider Provider of Tile types for this layer.
+     * @param originsX
+     * @param originsY
+     * @param directionsX
+     * @param directionsY
+     * @param count Number of rays to cast.
+     * @param maxDistance Maximum distance to travel, in world units.
+     * @param distances Array to receive the hit distances.
+     * @param pool Pool to use, or null to cast the rays on this thread.
+     */
+    public void raycastAll(
+            TileProvider tileProvider,
+            float[] originsX,
+            float[] originsY,
+            float[] directionsX,
+            float[] directionsY,
+            int count,
+            float maxDistance,
+            float[] distances,
+            ForkJoinPool pool) {
+        if (pool == null || count <= RAYCAST_BATCH_SIZE) {
+            raycastRange(tileProvider, originsX, originsY,
+                    directionsX, directionsY, maxDistance, distances,
+                    0, count);
+        } else {
+            // Make sure the tiles for this layer exist before any worker
+            // threads try to look them up
+            tileProvider.getTiles(layerId);
+
+            pool.invoke(new RaycastTask(tileProvider, originsX, originsY,
+                    directionsX, directionsY, maxDistance, distances,
+                    0, count));
+        }
+    }
+
+    /**
+     * Casts a range of rays from a batch.
+     *
+     * @see #raycastAll
+     * @param tileProvider
+     * @param originsX
+     * @param originsY
+     * @param directionsX
+     * @param directionsY
+     * @param maxDistance
+     * @param distances
+     * @param from Index of the first ray to cast.
+     * @param to Index after the last ray to cast.
+     */
+    private void raycastRange(
+            TileProvider tileProvider,
+            float[] originsX,
+            float[] originsY,
+            float[] directionsX,
+            float[] directionsY,
+            float maxDistance,
+            float[] distances,
+            int from,
+            int to) {
+
+        // Each range gets its own result, since ranges may run concurrently
+        RaycastResult result = new RaycastResult();
+
+        for (int i = from; i < to; i++) {
+            boolean hit = raycast(tileProvider, originsX[i], originsY[i],
+                    directionsX[i], directionsY[i], maxDistance, result);
+            distances[i] = hit ? result.distance : Float.POSITIVE_INFINITY;
+        }
+    }
+
     /**
      * Determines if the given level co-ordinate exists within this TileLayer.
      *
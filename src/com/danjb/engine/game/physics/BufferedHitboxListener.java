@@ -0,0 +1,106 @@
+package com.danjb.engine.game.physics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.danjb.engine.util.IntList;
+
+/**
+ * HitboxListener that records callbacks so that they can be replayed later.
+ *
+ * <p>This allows Hitboxes to be moved on a worker thread, while their
+ * listeners are still informed on the main thread, in a predictable order.
+ *
+ * @author Dan Bryce
+ */
+public class BufferedHitboxListener implements HitboxListener {
+
+    /*
+     * Event types.
+     */
+    private static final int MOVED                   = 0;
+    private static final int LANDED                  = 1;
+    private static final int LEFT_GROUND             = 2;
+    private static final int FALLING_OUT_OF_BOUNDS   = 3;
+    private static final int FALLEN_OUT_OF_BOUNDS    = 4;
+
+    /**
+     * Types of the recorded events, in the order they occurred.
+     */
+    private IntList events = new IntList(4);
+
+    /**
+     * CollisionResults passed to {@link #hitboxMoved}, in the order they
+     * occurred.
+     */
+    private List<CollisionResult> results = new ArrayList<>(1);
+
+    /**
+     * Informs the given listener of all recorded events, in the order they
+     * occurred, and then clears this buffer.
+     *
+     * @param listener
+     */
+    public void replay(HitboxListener listener) {
+
+        int nextResult = 0;
+
+        for (int i = 0; i < events.size(); i++) {
+            switch (events.get(i)) {
+            case MOVED:
+                listener.hitboxMoved(results.get(nextResult));
+                nextResult++;
+                break;
+            case LANDED:
+                listener.hitboxLanded();
+                break;
+            case LEFT_GROUND:
+                listener.hitboxLeftGround();
+                break;
+            case FALLING_OUT_OF_BOUNDS:
+                listener.hitboxFallingOutOfBounds();
+                break;
+            case FALLEN_OUT_OF_BOUNDS:
+                listener.hitboxFallenOutOfBounds();
+                break;
+            }
+        }
+
+        clear();
+    }
+
+    /**
+     * Discards all recorded events.
+     */
+    public void clear() {
+        events.clear();
+        results.clear();
+    }
+
+    @Override
+    public void hitboxMoved(CollisionResult result) {
+        events.add(MOVED);
+        results.add(result);
+    }
+
+    @Override
+    public void hitboxLanded() {
+        events.add(LANDED);
+    }
+
+    @Override
+    public void hitboxLeftGround() {
+        events.add(LEFT_GROUND);
+    }
+
+    @Override
+    public void hitboxFallingOutOfBounds() {
+        events.add(FALLING_OUT_OF_BOUNDS);
+    }
+
+    @Override
+    public void hitboxFallenOutOfBounds() {
+        events.add(FALLEN_OUT_OF_BOUNDS);
+    }
+
+}
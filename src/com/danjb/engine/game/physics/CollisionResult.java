@@ -1,7 +1,7 @@
 package com.danjb.engine.game.physics;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -33,9 +33,11 @@ public class CollisionResult {
     private List<Collision> collisionsY = new ArrayList<>();
 
     /**
-     * All PostProcessCollision that have occurred.
+     * All PostProcessCollision that have occurred, in the order they were
+     * detected.
      */
-    private Set<PostProcessCollision> postProcessCollisions = new HashSet<>();
+    private Set<PostProcessCollision> postProcessCollisions =
+            new LinkedHashSet<>();
 
     /**
      * Nearest x-Collision detected by this CollisionResult.
@@ -85,6 +87,23 @@ public class CollisionResult {
         attempted_dy = dy;
     }
 
+    /**
+     * Empties this CollisionResult, so that it can be reused as if it had just
+     * been created with no movement.
+     */
+    void clear() {
+        collisionsX.clear();
+        collisionsY.clear();
+        postProcessCollisions.clear();
+        nearestCollisionX = null;
+        nearestCollisionY = null;
+        attempted_dx = 0;
+        attempted_dy = 0;
+        newX = 0;
+        newY = 0;
+        needsResolve = true;
+    }
+
     /**
      * Must be called at the end of collision processing.
      *
@@ -0,0 +1,665 @@
+package com.danjb.engine.game.physics;
+
+import java.util.Arrays;
+
+import com.danjb.engine.util.IntList;
+
+/**
+ * Bounding volume hierarchy of axis-aligned bounding boxes, which can be
+ * updated incrementally as the boxes move.
+ *
+ * <p>Each box stored in the tree is called a proxy. Proxies are "fattened" by
+ * a margin when they are inserted, so a proxy that only moves a small distance
+ * will still be contained by its fat box, and the tree does not need to be
+ * changed at all. Only when a proxy leaves its fat box is it removed and
+ * re-inserted.
+ *
+ * <p>The tree is kept balanced using tree rotations, so queries remain
+ * logarithmic regardless of the order in which proxies are inserted.
+ *
+ * <p>Nodes are stored in parallel arrays and recycled via a free list, so no
+ * garbage is generated once the tree has grown to its working size.
+ *
+ * <p>This approach is based on the dynamic tree used by Box2D.
+ *
+ * @author Dan Bryce
+ */
+public class DynamicAabbTree {
+
+    ////////////////////////////////////////////////////////////////////////////
+    // QueryCallback interface
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Callback informed of each proxy found by a query.
+     */
+    public static interface QueryCallback {
+
+        /**
+         * Called for each proxy whose fat box overlaps the query region.
+         *
+         * @param proxyId
+         * @return True to continue the query, false to stop it.
+         */
+        boolean proxyFound(int proxyId);
+
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // DynamicAabbTree class
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Value used to represent the absence of a node.
+     */
+    public static final int NULL_NODE = -1;
+
+    /**
+     * Default margin by which proxies are fattened, in world units.
+     */
+    public static final float DEFAULT_MARGIN = 0.1f;
+
+    /**
+     * Initial number of nodes.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Margin by which proxies are fattened, in world units.
+     */
+    private final float margin;
+
+    /*
+     * Node data.
+     */
+    private float[] minX;
+    private float[] minY;
+    private float[] maxX;
+    private float[] maxY;
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    private Object[] userData;
+
+    /**
+     * Height of each node within the tree.
+     *
+     * <p>Leaves have a height of 0, and free nodes have a height of -1.
+     */
+    private int[] height;
+
+    /**
+     * Root node of the tree.
+     */
+    private int root = NULL_NODE;
+
+    /**
+     * Head of the free list.
+     *
+     * <p>Free nodes are chained together using their parent pointers.
+     */
+    private int freeList;
+
+    /**
+     * Number of nodes in use.
+     */
+    private int nodeCount;
+
+    /**
+     * Stack used to traverse the tree during queries.
+     *
+     * <p>Each query only ever pops nodes that it pushed itself, so queries can
+     * safely be nested (e.g. a callback may start another query).
+     */
+    private IntList stack = new IntList();
+
+    /**
+     * Creates a DynamicAabbTree using the default margin.
+     */
+    public DynamicAabbTree() {
+        this(DEFAULT_MARGIN);
+    }
+
+    /**
+     * Creates a DynamicAabbTree.
+     *
+     * @param margin Margin by which proxies are fattened, in world units.
+     */
+    public DynamicAabbTree(float margin) {
+        this.margin = margin;
+
+        minX = new float[0];
+        minY = new float[0];
+        maxX = new float[0];
+        maxY = new float[0];
+        parent = new int[0];
+        child1 = new int[0];
+        child2 = new int[0];
+        height = new int[0];
+        userData = new Object[0];
+
+        freeList = NULL_NODE;
+        growNodes(INITIAL_CAPACITY);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Proxies
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds a proxy to the tree.
+     *
+     * @param x1 Left edge.
+     * @param y1 Top edge.
+     * @param x2 Right edge.
+     * @param y2 Bottom edge.
+     * @param data Object associated with the proxy.
+     * @return Proxy ID.
+     */
+    public int createProxy(float x1, float y1, float x2, float y2, Object data) {
+        int proxyId = allocateNode();
+        setFatBox(proxyId, x1, y1, x2, y2);
+        userData[proxyId] = data;
+        height[proxyId] = 0;
+        insertLeaf(proxyId);
+        return proxyId;
+    }
+
+    /**
+     * Removes a proxy from the tree.
+     *
+     * @param proxyId
+     */
+    public void destroyProxy(int proxyId) {
+        removeLeaf(proxyId);
+        freeNode(proxyId);
+    }
+
+    /**
+     * Updates the bounds of a proxy.
+     *
+     * <p>The tree is only modified if the new bounds are not contained by the
+     * proxy's fat box.
+     *
+     * @param proxyId
+     * @param x1 Left edge.
+     * @param y1 Top edge.
+     * @param x2 Right edge.
+     * @param y2 Bottom edge.
+     * @return True if the proxy had to be re-inserted.
+     */
+    public boolean moveProxy(
+            int proxyId, float x1, float y1, float x2, float y2) {
+
+        if (minX[proxyId] <= x1 && minY[proxyId] <= y1
+                && maxX[proxyId] >= x2 && maxY[proxyId] >= y2) {
+            // Still contained within the fat box
+            return false;
+        }
+
+        removeLeaf(proxyId);
+        setFatBox(proxyId, x1, y1, x2, y2);
+        insertLeaf(proxyId);
+        return true;
+    }
+
+    /**
+     * Gets the object associated with a proxy.
+     *
+     * @param proxyId
+     * @return
+     */
+    public Object getUserData(int proxyId) {
+        return userData[proxyId];
+    }
+
+    /**
+     * Finds all proxies whose fat boxes overlap the given region.
+     *
+     * <p>Since fat boxes are larger than the actual bounds, callers will
+     * generally want to perform a more precise test on each result.
+     *
+     * @param x1 Left edge.
+     * @param y1 Top edge.
+     * @param x2 Right edge.
+     * @param y2 Bottom edge.
+     * @param callback
+     */
+    public void query(
+            float x1, float y1, float x2, float y2, QueryCallback callback) {
+
+        if (root == NULL_NODE) {
+            return;
+        }
+
+        int base = stack.size();
+        stack.add(root);
+
+        while (stack.size() > base) {
+
+            int node = stack.removeLast();
+
+            if (minX[node] > x2 || maxX[node] < x1
+                    || minY[node] > y2 || maxY[node] < y1) {
+                continue;
+            }
+
+            if (isLeaf(node)) {
+                if (!callback.proxyFound(node)) {
+                    // Discard the rest of our traversal
+                    while (stack.size() > base) {
+                        stack.removeLast();
+                    }
+                    return;
+                }
+            } else {
+                stack.add(child1[node]);
+                stack.add(child2[node]);
+            }
+        }
+    }
+
+    /**
+     * Gets the height of the tree.
+     *
+     * @return
+     */
+    public int getHeight() {
+        return root == NULL_NODE ? 0 : height[root];
+    }
+
+    /**
+     * Gets the number of nodes (internal and leaf) in use.
+     *
+     * @return
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Node management
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Takes a node from the free list, growing our storage if necessary.
+     *
+     * @return
+     */
+    private int allocateNode() {
+        if (freeList == NULL_NODE) {
+            growNodes(parent.length * 2);
+        }
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL_NODE;
+        child1[node] = NULL_NODE;
+        child2[node] = NULL_NODE;
+        height[node] = 0;
+        nodeCount++;
+        return node;
+    }
+
+    /**
+     * Returns a node to the free list.
+     *
+     * @param node
+     */
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        userData[node] = null;
+        freeList = node;
+        nodeCount--;
+    }
+
+    /**
+     * Increases our node storage and adds the new nodes to the free list.
+     *
+     * @param capacity
+     */
+    private void growNodes(int capacity) {
+
+        int oldCapacity = parent.length;
+
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        child1 = Arrays.copyOf(child1, capacity);
+        child2 = Arrays.copyOf(child2, capacity);
+        height = Arrays.copyOf(height, capacity);
+        userData = Arrays.copyOf(userData, capacity);
+
+        // Chain the new nodes onto the free list
+        for (int i = oldCapacity; i < capacity - 1; i++) {
+            parent[i] = i + 1;
+            height[i] = -1;
+        }
+        parent[capacity - 1] = freeList;
+        height[capacity - 1] = -1;
+        freeList = oldCapacity;
+    }
+
+    /**
+     * Sets the fat box of a leaf from its actual bounds.
+     *
+     * @param node
+     * @param x1
+     * @param y1
+     * @param x2
+     * @param y2
+     */
+    private void setFatBox(int node, float x1, float y1, float x2, float y2) {
+        minX[node] = x1 - margin;
+        minY[node] = y1 - margin;
+        maxX[node] = x2 + margin;
+        maxY[node] = y2 + margin;
+    }
+
+    /**
+     * Determines if a node is a leaf.
+     *
+     * @param node
+     * @return
+     */
+    private boolean isLeaf(int node) {
+        return child1[node] == NULL_NODE;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Tree structure
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Inserts a leaf into the tree, next to the sibling that results in the
+     * smallest increase in perimeter.
+     *
+     * @param leaf
+     */
+    private void insertLeaf(int leaf) {
+
+        if (root == NULL_NODE) {
+            root = leaf;
+            parent[root] = NULL_NODE;
+            return;
+        }
+
+        // Find the best sibling for this leaf
+        int index = root;
+        while (!isLeaf(index)) {
+
+            int c1 = child1[index];
+            int c2 = child2[index];
+
+            float perimeter = perimeter(index);
+            float combinedPerimeter = combinedPerimeter(index, leaf);
+
+            // Cost of creating a new parent for this node and the new leaf
+            float cost = 2 * combinedPerimeter;
+
+            // Minimum cost of pushing the leaf further down the tree
+            float inheritanceCost = 2 * (combinedPerimeter - perimeter);
+
+            float cost1 = descentCost(c1, leaf) + inheritanceCost;
+            float cost2 = descentCost(c2, leaf) + inheritanceCost;
+
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+
+            index = cost1 < cost2 ? c1 : c2;
+        }
+
+        int sibling = index;
+
+        // Create a new parent for the sibling and the leaf
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        height[newParent] = height[sibling] + 1;
+        setUnion(newParent, sibling, leaf);
+
+        if (oldParent != NULL_NODE) {
+            // The sibling was not the root
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            // The sibling was the root
+            root = newParent;
+        }
+
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refitAncestors(parent[leaf]);
+    }
+
+    /**
+     * Removes a leaf from the tree.
+     *
+     * <p>The leaf's parent is removed, and replaced by the leaf's sibling.
+     *
+     * @param leaf
+     */
+    private void removeLeaf(int leaf) {
+
+        if (leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+
+        int oldParent = parent[leaf];
+        int grandParent = parent[oldParent];
+        int sibling = child1[oldParent] == leaf
+                ? child2[oldParent]
+                : child1[oldParent];
+
+        if (grandParent != NULL_NODE) {
+            // Connect the sibling to the grandparent
+            if (child1[grandParent] == oldParent) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(oldParent);
+
+            refitAncestors(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL_NODE;
+            freeNode(oldParent);
+        }
+    }
+
+    /**
+     * Walks up the tree from the given node, re-balancing and recalculating
+     * the bounds of each node along the way.
+     *
+     * @param node
+     */
+    private void refitAncestors(int node) {
+        while (node != NULL_NODE) {
+            node = balance(node);
+
+            int c1 = child1[node];
+            int c2 = child2[node];
+            height[node] = 1 + Math.max(height[c1], height[c2]);
+            setUnion(node, c1, c2);
+
+            node = parent[node];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if node A is imbalanced.
+     *
+     * <pre>
+     *         A
+     *       /   \
+     *      B     C
+     *     / \   / \
+     *    D   E F   G
+     * </pre>
+     *
+     * @param iA
+     * @return The index of the node now occupying A's position.
+     */
+    private int balance(int iA) {
+
+        if (isLeaf(iA) || height[iA] < 2) {
+            return iA;
+        }
+
+        int iB = child1[iA];
+        int iC = child2[iA];
+        int balance = height[iC] - height[iB];
+
+        if (balance > 1) {
+            // Rotate C up
+            int iF = child1[iC];
+            int iG = child2[iC];
+
+            child1[iC] = iA;
+            parent[iC] = parent[iA];
+            parent[iA] = iC;
+            replaceChild(parent[iC], iA, iC);
+
+            if (height[iF] > height[iG]) {
+                child2[iC] = iF;
+                child2[iA] = iG;
+                parent[iG] = iA;
+                setUnion(iA, iB, iG);
+                setUnion(iC, iA, iF);
+                height[iA] = 1 + Math.max(height[iB], height[iG]);
+                height[iC] = 1 + Math.max(height[iA], height[iF]);
+            } else {
+                child2[iC] = iG;
+                child2[iA] = iF;
+                parent[iF] = iA;
+                setUnion(iA, iB, iF);
+                setUnion(iC, iA, iG);
+                height[iA] = 1 + Math.max(height[iB], height[iF]);
+                height[iC] = 1 + Math.max(height[iA], height[iG]);
+            }
+
+            return iC;
+        }
+
+        if (balance < -1) {
+            // Rotate B up
+            int iD = child1[iB];
+            int iE = child2[iB];
+
+            child1[iB] = iA;
+            parent[iB] = parent[iA];
+            parent[iA] = iB;
+            replaceChild(parent[iB], iA, iB);
+
+            if (height[iD] > height[iE]) {
+                child2[iB] = iD;
+                child1[iA] = iE;
+                parent[iE] = iA;
+                setUnion(iA, iC, iE);
+                setUnion(iB, iA, iD);
+                height[iA] = 1 + Math.max(height[iC], height[iE]);
+                height[iB] = 1 + Math.max(height[iA], height[iD]);
+            } else {
+                child2[iB] = iE;
+                child1[iA] = iD;
+                parent[iD] = iA;
+                setUnion(iA, iC, iD);
+                setUnion(iB, iA, iE);
+                height[iA] = 1 + Math.max(height[iC], height[iD]);
+                height[iB] = 1 + Math.max(height[iA], height[iE]);
+            }
+
+            return iB;
+        }
+
+        return iA;
+    }
+
+    /**
+     * Replaces one child of the given parent with another node.
+     *
+     * <p>If the parent is null, the new node becomes the root.
+     *
+     * @param parentNode
+     * @param oldChild
+     * @param newChild
+     */
+    private void replaceChild(int parentNode, int oldChild, int newChild) {
+        if (parentNode == NULL_NODE) {
+            root = newChild;
+        } else if (child1[parentNode] == oldChild) {
+            child1[parentNode] = newChild;
+        } else {
+            child2[parentNode] = newChild;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Box calculations
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Estimates the cost of descending into the given child when inserting a
+     * leaf.
+     *
+     * @param child
+     * @param leaf
+     * @return
+     */
+    private float descentCost(int child, int leaf) {
+        if (isLeaf(child)) {
+            return combinedPerimeter(child, leaf);
+        }
+        return combinedPerimeter(child, leaf) - perimeter(child);
+    }
+
+    /**
+     * Sets the box of a node to the union of the boxes of 2 other nodes.
+     *
+     * @param node
+     * @param a
+     * @param b
+     */
+    private void setUnion(int node, int a, int b) {
+        minX[node] = Math.min(minX[a], minX[b]);
+        minY[node] = Math.min(minY[a], minY[b]);
+        maxX[node] = Math.max(maxX[a], maxX[b]);
+        maxY[node] = Math.max(maxY[a], maxY[b]);
+    }
+
+    /**
+     * Calculates the perimeter of a node's box.
+     *
+     * @param node
+     * @return
+     */
+    private float perimeter(int node) {
+        return 2 * ((maxX[node] - minX[node]) + (maxY[node] - minY[node]));
+    }
+
+    /**
+     * Calculates the perimeter of the union of 2 nodes' boxes.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    private float combinedPerimeter(int a, int b) {
+        float width = Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]);
+        float height = Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]);
+        return 2 * (width + height);
+    }
+
+}
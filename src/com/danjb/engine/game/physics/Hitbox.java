@@ -1,7 +1,8 @@
 package com.danjb.engine.game.physics;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -161,9 +162,9 @@ public class Hitbox {
      * has a means of accelerating; in most cases a Hitbox will never exceed its
      * initial speed.
      *
-     * <p>Technically, this should never exceed
-     * {@link Physics#MAX_MOVE_DISTANCE} units per frame, since our collision
-     * algorithm can't cope with any more than this!
+     * <p>If {@link #setSubStepping sub-stepping} is disabled, this should
+     * never exceed {@link Physics#MAX_MOVE_DISTANCE} units per frame, since
+     * our collision algorithm can't cope with any more than this in one go!
      *
      * <p>This can be calculated using:
      *
@@ -198,8 +199,11 @@ public class Hitbox {
 
     /**
      * Collision Nodes along all edges of the Hitbox.
+     *
+     * <p>This is ordered so that collisions are always detected in the same
+     * order.
      */
-    private Set<CollisionNode> allNodes = new HashSet<>();
+    private Set<CollisionNode> allNodes = new LinkedHashSet<>();
 
     /**
      * Flags that can be used to control the outcome of collisions.
@@ -216,6 +220,18 @@ public class Hitbox {
      */
     private int msSinceGrounded;
 
+    /**
+     * Milliseconds for which this Hitbox has been resting on the ground
+     * without moving.
+     */
+    private int msResting;
+
+    /**
+     * Flag set when this Hitbox has been resting for long enough that it no
+     * longer needs to be simulated.
+     */
+    private boolean sleeping;
+
     /**
      * Multiplier that determines how strongly this Hitbox is affected by
      * gravity.
@@ -245,11 +261,36 @@ public class Hitbox {
      */
     private boolean solid = true;
 
+    /**
+     * Whether movements too long for the collision algorithm to handle in one
+     * go should be split into multiple steps.
+     */
+    private boolean subStepping = true;
+
+    /**
+     * Whether this Hitbox's physics must produce identical results on every
+     * platform (see {@link Physics#pow}).
+     */
+    private boolean deterministic;
+
     /**
      * The last CollisionResult computed by this Hitbox.
      */
     private CollisionResult lastCollisionResult;
 
+    /**
+     * HitboxStore holding this Hitbox's kinematic state, if any.
+     *
+     * <p>While a Hitbox is in a store, its speed and grounded state live in
+     * the store's packed arrays instead of the fields above.
+     */
+    private HitboxStore store;
+
+    /**
+     * This Hitbox's slot within its {@link #store}.
+     */
+    private int slot = -1;
+
     /**
      * Creates a new Hitbox with a listener.
      *
@@ -284,6 +325,62 @@ public class Hitbox {
         listener = null;
     }
 
+    /**
+     * Prepares this Hitbox for reuse, as if it had just been constructed at
+     * the given position.
+     *
+     * <p>Only transient state (position, speed and grounded state) is reset.
+     * The size and collision nodes are kept, along with any properties such as
+     * coefficients and collision flags that were configured when this Hitbox
+     * was created. Subclasses with additional transient state should override
+     * this.
+     *
+     * <p>This is used when pooling Entities, and must not be called while
+     * this Hitbox belongs to a {@link HitboxStore}.
+     *
+     * @param newX
+     * @param newY
+     * @param newListener
+     */
+    public void reset(float newX, float newY, HitboxListener newListener) {
+
+        if (store != null) {
+            throw new IllegalStateException(
+                    "Cannot reset a Hitbox that belongs to a HitboxStore");
+        }
+
+        x = newX;
+        y = newY;
+        speedX = 0;
+        speedY = 0;
+        grounded = false;
+        msSinceGrounded = 0;
+        msResting = 0;
+        sleeping = false;
+        listener = newListener;
+
+        lastCollisionResult.hitbox = this;
+        lastCollisionResult.clear();
+    }
+
+    /**
+     * Gets the listener informed whenever significant events occur.
+     *
+     * @return
+     */
+    public HitboxListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener informed whenever significant events occur.
+     *
+     * @param listener
+     */
+    public void setListener(HitboxListener listener) {
+        this.listener = listener;
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Collision Nodes
     ////////////////////////////////////////////////////////////////////////////
@@ -416,6 +513,14 @@ public class Hitbox {
      * Moves this Hitbox according to its current speed, and handles any
      * collisions with the Level along the way.
      *
+     * <p>If {@link #setSubStepping sub-stepping} is enabled, movements too
+     * long for the collision algorithm to handle in one go are split into a
+     * number of smaller steps, so that the full distance is always travelled.
+     * Otherwise, such movements are cut short.
+     *
+     * <p>The listener is informed of each step separately (see
+     * {@link HitboxListener#hitboxMoved}).
+     *
      * @param level
      * @param tileProvider
      * @param delta
@@ -425,19 +530,18 @@ public class Hitbox {
             TileProvider tileProvider,
             int delta) {
 
-        if (!grounded) {
+        if (!isGrounded()) {
             msSinceGrounded += delta;
         }
 
         // Determine movement distance, given the current delta value
-        float dx = (speedX * delta) / 1000;
-        float dy = (speedY * delta) / 1000;
+        float dx = (getSpeedX() * delta) / 1000;
+        float dy = (getSpeedY() * delta) / 1000;
 
         // Move to the nearest collision
-        CollisionResult result =
-                Physics.getCollisionResult(level, tileProvider, this, dx, dy);
-
-        apply(result);
+        CollisionResult result = subStepping
+                ? moveInSteps(level, tileProvider, dx, dy, delta)
+                : moveOnce(level, tileProvider, dx, dy, true);
 
         // Check if this Hitbox is now out-of-bounds
         if (y > level.getWorldHeight()) {
@@ -453,12 +557,118 @@ public class Hitbox {
         listener.hitboxMoved(result);
     }
 
+    /**
+     * Moves this Hitbox the given distance in a single step.
+     *
+     * @param level
+     * @param tileProvider
+     * @param dx
+     * @param dy
+     * @param canLeaveGround See {@link #apply}.
+     * @return
+     */
+    private CollisionResult moveOnce(
+            Level level,
+            TileProvider tileProvider,
+            float dx,
+            float dy,
+            boolean canLeaveGround) {
+        CollisionResult result =
+                Physics.getCollisionResult(level, tileProvider, this, dx, dy);
+        apply(result, canLeaveGround);
+        return result;
+    }
+
+    /**
+     * Moves this Hitbox the given distance, using as many steps as necessary
+     * to keep each step within {@link Physics#MAX_MOVE_DISTANCE}.
+     *
+     * <p>Each step covers an equal share of the remaining time. If a step
+     * changes our speed (for example, by landing or bouncing), the remaining
+     * steps use the new speed. Once a step collides in the x-axis, no further
+     * x-movement is attempted, and we stop early once there is no movement
+     * left to attempt.
+     *
+     * <p>Since a step with no y-movement cannot find the ground, it does not
+     * cause this Hitbox to leave the ground; this is left to the next frame.
+     *
+     * <p>The listener is informed of every step except the last, whose
+     * CollisionResult is returned.
+     *
+     * @param level
+     * @param tileProvider
+     * @param dx Attempted distance travelled in x-direction.
+     * @param dy Attempted distance travelled in y-direction.
+     * @param delta Time taken to travel the full distance.
+     * @return CollisionResult of the final step.
+     */
+    private CollisionResult moveInSteps(
+            Level level,
+            TileProvider tileProvider,
+            float dx,
+            float dy,
+            int delta) {
+
+        float distance = Math.max(Math.abs(dx), Math.abs(dy));
+        int numSteps = (int) Math.ceil(distance / Physics.MAX_MOVE_DISTANCE);
+
+        if (numSteps <= 1) {
+            return moveOnce(level, tileProvider, dx, dy, true);
+        }
+
+        float stepDelta = (float) delta / numSteps;
+        float remainingDx = dx;
+        float remainingDy = dy;
+        boolean collidedX = false;
+        CollisionResult result = null;
+
+        for (int i = 0; i < numSteps; i++) {
+
+            if (result != null) {
+                // Report every step, so that no collisions are missed
+                listener.hitboxMoved(result);
+            }
+
+            // Dividing up whatever is left means that the last step covers
+            // the exact remainder, so rounding errors do not accumulate
+            int stepsLeft = numSteps - i;
+            float moveX = collidedX ? 0 : remainingDx / stepsLeft;
+            float moveY = remainingDy / stepsLeft;
+            float prevSpeedX = getSpeedX();
+            float prevSpeedY = getSpeedY();
+
+            result = moveOnce(level, tileProvider, moveX, moveY, moveY != 0);
+
+            remainingDx -= moveX;
+            remainingDy -= moveY;
+            collidedX |= result.hasCollisionOccurredX();
+
+            // A collision may have changed our speed, in which case the rest
+            // of the movement should be based on the new speed
+            float msLeft = stepDelta * (stepsLeft - 1);
+            if (getSpeedX() != prevSpeedX) {
+                remainingDx = (getSpeedX() * msLeft) / 1000;
+            }
+            if (getSpeedY() != prevSpeedY) {
+                remainingDy = (getSpeedY() * msLeft) / 1000;
+            }
+
+            if ((collidedX || remainingDx == 0) && remainingDy == 0) {
+                break;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Applies the given CollisionResult.
      *
      * @param result
+     * @param canLeaveGround Whether this Hitbox should leave the ground if no
+     * y-collision occurred.
      */
-    private void apply(CollisionResult result) {
+    private void apply(CollisionResult result, boolean canLeaveGround) {
 
         // Move to the new position
         setPos(result.left(), result.top());
@@ -478,7 +688,7 @@ public class Hitbox {
                 setGrounded(true);
             }
 
-        } else if (grounded) {
+        } else if (isGrounded() && canLeaveGround) {
             // Hitbox has left the ground
             setGrounded(false);
         }
@@ -504,7 +714,7 @@ public class Hitbox {
 
         // Hitbox has landed if it has bounced, but without enough speed to
         // overcome gravity (as it would hit the ground again immediately)
-        if (speedY < 0 && getSpeedYAfter(BOUNCE_SIMULATION_DELTA) > 0) {
+        if (getSpeedY() < 0 && getSpeedYAfter(BOUNCE_SIMULATION_DELTA) > 0) {
             return true;
         }
 
@@ -518,7 +728,7 @@ public class Hitbox {
      * @return
      */
     private float getSpeedYAfter(int delta) {
-        return Physics.applyGravity(speedY, delta, gravityCoefficient);
+        return Physics.applyGravity(getSpeedY(), delta, gravityCoefficient);
 
     }
 
@@ -577,7 +787,7 @@ public class Hitbox {
      * @return
      */
     public boolean isGrounded() {
-        return grounded;
+        return store == null ? grounded : store.grounded[slot];
     }
 
     /**
@@ -596,13 +806,69 @@ public class Hitbox {
      * @param nowGrounded
      */
     public void setGrounded(boolean nowGrounded) {
-        if (!grounded && nowGrounded) {
+        boolean wasGrounded = isGrounded();
+        if (!wasGrounded && nowGrounded) {
             msSinceGrounded = 0;
             listener.hitboxLanded();
-        } else if (grounded && !nowGrounded) {
+        } else if (wasGrounded && !nowGrounded) {
             listener.hitboxLeftGround();
+            wake();
+        }
+        if (store == null) {
+            grounded = nowGrounded;
+        } else {
+            store.grounded[slot] = nowGrounded;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Sleeping
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Determines if this Hitbox is asleep.
+     *
+     * <p>Sleeping Hitboxes are resting on the ground, and so do not need to
+     * have any physics applied to them.
+     *
+     * @return
+     */
+    public boolean isSleeping() {
+        return sleeping;
+    }
+
+    /**
+     * Wakes this Hitbox, if it is asleep.
+     *
+     * <p>This happens automatically when this Hitbox is given some speed, but
+     * should also be called whenever it is moved by some other means, or its
+     * surroundings change.
+     */
+    public void wake() {
+        if (sleeping) {
+            sleeping = false;
+            msResting = 0;
+        }
+    }
+
+    /**
+     * Puts this Hitbox to sleep if it has been resting for long enough.
+     *
+     * <p>This should be called after physics has been applied.
+     *
+     * @param delta
+     * @param sleepDelay Milliseconds for which this Hitbox must be resting
+     * before it can sleep.
+     */
+    public void updateSleepState(int delta, int sleepDelay) {
+        if (isGrounded() && getSpeedX() == 0 && getSpeedY() == 0) {
+            msResting += delta;
+            if (msResting >= sleepDelay) {
+                sleeping = true;
+            }
+        } else {
+            msResting = 0;
         }
-        grounded = nowGrounded;
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -616,7 +882,7 @@ public class Hitbox {
      */
     public void applyGroundFriction(int delta) {
         setSpeedX(Physics.applyGroundFriction(
-                speedX, delta, groundFrictionCoefficient));
+                getSpeedX(), delta, groundFrictionCoefficient, deterministic));
     }
 
     /**
@@ -626,7 +892,7 @@ public class Hitbox {
      */
     public void applyAirFrictionX(int delta) {
         setSpeedX(Physics.applyAirFriction(
-                speedX, delta, airFrictionCoefficient));
+                getSpeedX(), delta, airFrictionCoefficient, deterministic));
     }
 
     /**
@@ -636,7 +902,7 @@ public class Hitbox {
      */
     public void applyAirFrictionY(int delta) {
         setSpeedY(Physics.applyAirFriction(
-                speedY, delta, airFrictionCoefficient));
+                getSpeedY(), delta, airFrictionCoefficient, deterministic));
     }
 
     /**
@@ -645,7 +911,7 @@ public class Hitbox {
      * @param delta
      */
     public void applyGravity(int delta) {
-        setSpeedY(Physics.applyGravity(speedY, delta, gravityCoefficient));
+        setSpeedY(Physics.applyGravity(getSpeedY(), delta, gravityCoefficient));
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -688,7 +954,7 @@ public class Hitbox {
      * @return
      */
     public boolean isFalling() {
-        return !grounded && speedY > 0;
+        return !isGrounded() && getSpeedY() > 0;
     }
 
     /**
@@ -697,7 +963,7 @@ public class Hitbox {
      * @return
      */
     public boolean isMovingX() {
-        return Math.abs(speedX) >= Physics.MOVING_SPEED;
+        return Math.abs(getSpeedX()) >= Physics.MOVING_SPEED;
     }
 
     /**
@@ -706,7 +972,7 @@ public class Hitbox {
      * @return
      */
     public boolean isMovingY() {
-        return Math.abs(speedY) >= Physics.MOVING_SPEED;
+        return Math.abs(getSpeedY()) >= Physics.MOVING_SPEED;
     }
 
     /**
@@ -725,9 +991,10 @@ public class Hitbox {
      * @return
      */
     public float getDistance(Hitbox other) {
-        return (float) Math.hypot(
+        return Physics.hypot(
                 centreX() - other.centreX(),
-                centreY() - other.centreY());
+                centreY() - other.centreY(),
+                deterministic);
     }
 
     /**
@@ -743,6 +1010,55 @@ public class Hitbox {
         return Math.abs(x - other.x) + Math.abs(y - other.y);
     }
 
+    /**
+     * Sets whether movements too long for the collision algorithm to handle
+     * in one go should be split into multiple steps.
+     *
+     * <p>If this is disabled, any movement longer than
+     * {@link Physics#MAX_MOVE_DISTANCE} is cut short, meaning fast-moving
+     * Hitboxes travel less distance than they should.
+     *
+     * <p>This is normally controlled by the Logic that owns this Hitbox (see
+     * {@link com.danjb.engine.game.Logic#setSubStepping}).
+     *
+     * @param subStepping
+     */
+    public void setSubStepping(boolean subStepping) {
+        this.subStepping = subStepping;
+    }
+
+    /**
+     * Determines whether long movements are split into multiple steps.
+     *
+     * @return
+     */
+    public boolean isSubStepping() {
+        return subStepping;
+    }
+
+    /**
+     * Sets whether this Hitbox's physics must produce identical results on
+     * every platform.
+     *
+     * <p>This is normally controlled by the Logic that owns this Hitbox (see
+     * {@link com.danjb.engine.game.Logic#setDeterministic}).
+     *
+     * @param deterministic
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Determines whether this Hitbox's physics must produce identical results
+     * on every platform.
+     *
+     * @return
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Position
     ////////////////////////////////////////////////////////////////////////////
@@ -830,13 +1146,11 @@ public class Hitbox {
      * @param speedX
      */
     public void setSpeedX(float speedX) {
-        if (Math.abs(speedX) < Physics.MOVING_SPEED) {
-            speedX = 0;
+        speedX = Physics.limitSpeed(speedX, maxSpeedX);
+        if (speedX != 0) {
+            wake();
         }
-        if (Math.abs(speedX) > maxSpeedX) {
-            speedX = Math.copySign(maxSpeedX, speedX);
-        }
-        this.speedX = speedX;
+        putSpeedX(speedX);
     }
 
     /**
@@ -850,13 +1164,11 @@ public class Hitbox {
      * @param speedY
      */
     public void setSpeedY(float speedY) {
-        if (Math.abs(speedY) < Physics.MOVING_SPEED) {
-            speedY = 0;
+        speedY = Physics.limitSpeed(speedY, maxSpeedY);
+        if (speedY != 0) {
+            wake();
         }
-        if (Math.abs(speedY) > maxSpeedY) {
-            speedY = Math.copySign(maxSpeedY, speedY);
-        }
-        this.speedY = speedY;
+        putSpeedY(speedY);
     }
 
     /**
@@ -870,7 +1182,10 @@ public class Hitbox {
         if (Math.abs(speedY) > maxSpeedY) {
             speedY = Math.copySign(maxSpeedY, speedY);
         }
-        this.speedY = speedY;
+        if (speedY != 0) {
+            wake();
+        }
+        putSpeedY(speedY);
     }
 
     /**
@@ -886,18 +1201,22 @@ public class Hitbox {
      */
     public void setSpeed(float newSpeedX, float newSpeedY, float maxSpeed) {
 
+        if (newSpeedX != 0 || newSpeedY != 0) {
+            wake();
+        }
+
         // Calculate axis-independent speed
-        float speed = (float) Math.hypot(newSpeedX, newSpeedY);
+        float speed = Physics.hypot(newSpeedX, newSpeedY, deterministic);
 
         if (speed > maxSpeed) {
             // Moving too fast; throttle the given x- and y-speeds
             float ratio = maxSpeed / speed;
-            speedX = newSpeedX * ratio;
-            speedY = newSpeedY * ratio;
+            putSpeedX(newSpeedX * ratio);
+            putSpeedY(newSpeedY * ratio);
         } else {
             // The given x- and y-speeds are acceptable without modification
-            speedX = newSpeedX;
-            speedY = newSpeedY;
+            putSpeedX(newSpeedX);
+            putSpeedY(newSpeedY);
         }
     }
 
@@ -907,7 +1226,7 @@ public class Hitbox {
      * @return
      */
     public float getSpeedX() {
-        return speedX;
+        return store == null ? speedX : store.speedX[slot];
     }
 
     /**
@@ -916,7 +1235,33 @@ public class Hitbox {
      * @return
      */
     public float getSpeedY() {
-        return speedY;
+        return store == null ? speedY : store.speedY[slot];
+    }
+
+    /**
+     * Stores a new x-speed without applying any limits.
+     *
+     * @param speedX
+     */
+    private void putSpeedX(float speedX) {
+        if (store == null) {
+            this.speedX = speedX;
+        } else {
+            store.speedX[slot] = speedX;
+        }
+    }
+
+    /**
+     * Stores a new y-speed without applying any limits.
+     *
+     * @param speedY
+     */
+    private void putSpeedY(float speedY) {
+        if (store == null) {
+            this.speedY = speedY;
+        } else {
+            store.speedY[slot] = speedY;
+        }
     }
 
     /**
@@ -937,4 +1282,131 @@ public class Hitbox {
         this.maxSpeedY = maxSpeedY;
     }
 
+    /**
+     * Gets the maximum speed of this Hitbox in the x-axis.
+     *
+     * @return
+     */
+    public float getMaxSpeedX() {
+        return maxSpeedX;
+    }
+
+    /**
+     * Gets the maximum speed of this Hitbox in the y-axis.
+     *
+     * @return
+     */
+    public float getMaxSpeedY() {
+        return maxSpeedY;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Snapshots
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Writes this Hitbox's transient state to a buffer.
+     *
+     * <p>This covers the same state as {@link #reset}: position, speed,
+     * grounded state and sleep state. Subclasses with additional transient
+     * state should override this and {@link #readState}.
+     *
+     * @param buffer
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putFloat(x);
+        buffer.putFloat(y);
+        buffer.putFloat(getSpeedX());
+        buffer.putFloat(getSpeedY());
+        buffer.putInt(msSinceGrounded);
+        buffer.putInt(msResting);
+        buffer.put((byte) ((isGrounded() ? 1 : 0) | (sleeping ? 2 : 0)));
+    }
+
+    /**
+     * Restores state written by {@link #writeState}.
+     *
+     * <p>No listener callbacks are made.
+     *
+     * @param buffer
+     */
+    public void readState(ByteBuffer buffer) {
+        x = buffer.getFloat();
+        y = buffer.getFloat();
+        putSpeedX(buffer.getFloat());
+        putSpeedY(buffer.getFloat());
+        msSinceGrounded = buffer.getInt();
+        msResting = buffer.getInt();
+        byte bits = buffer.get();
+        if (store == null) {
+            grounded = (bits & 1) != 0;
+        } else {
+            store.grounded[slot] = (bits & 1) != 0;
+        }
+        sleeping = (bits & 2) != 0;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // HitboxStore
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Gets the HitboxStore holding this Hitbox's kinematic state.
+     *
+     * @return Store, or null if this Hitbox holds its own state.
+     */
+    public HitboxStore getStore() {
+        return store;
+    }
+
+    /**
+     * Gets this Hitbox's slot within its HitboxStore.
+     *
+     * @return
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Moves this Hitbox's kinematic state into the given slot of a
+     * HitboxStore.
+     *
+     * <p>This is called by the HitboxStore.
+     *
+     * @param newStore
+     * @param newSlot
+     */
+    void bindToStore(HitboxStore newStore, int newSlot) {
+        newStore.speedX[newSlot] = getSpeedX();
+        newStore.speedY[newSlot] = getSpeedY();
+        newStore.grounded[newSlot] = isGrounded();
+        store = newStore;
+        slot = newSlot;
+    }
+
+    /**
+     * Changes the slot used by this Hitbox within its current store.
+     *
+     * <p>This is called by the HitboxStore when it compacts its storage.
+     *
+     * @param newSlot
+     */
+    void moveToSlot(int newSlot) {
+        slot = newSlot;
+    }
+
+    /**
+     * Moves this Hitbox's kinematic state out of its HitboxStore.
+     *
+     * <p>This is called by the HitboxStore.
+     */
+    void unbindFromStore() {
+        speedX = store.speedX[slot];
+        speedY = store.speedY[slot];
+        grounded = store.grounded[slot];
+        store = null;
+        slot = -1;
+    }
+
 }
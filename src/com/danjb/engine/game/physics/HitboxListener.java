@@ -10,6 +10,9 @@ public interface HitboxListener {
     /**
      * Called after a Hitbox has been moved by the game's physics.
      *
+     * <p>If a movement is split into multiple steps (see
+     * {@link Hitbox#setSubStepping}), this is called once per step.
+     *
      * @param result CollisionResult that was applied to the Hitbox.
      */
     void hitboxMoved(CollisionResult result);
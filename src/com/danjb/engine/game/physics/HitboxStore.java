@@ -0,0 +1,264 @@
+package com.danjb.engine.game.physics;
+
+import java.util.Arrays;
+
+/**
+ * Packed storage for the kinematic state of many Hitboxes.
+ *
+ * <p>Each Hitbox added to the store is assigned a dense slot, and its speed and
+ * grounded state are moved into parallel arrays. The Hitbox then reads and
+ * writes these values through its slot, so it behaves exactly as before.
+ *
+ * <p>This allows gravity and friction to be applied to every Hitbox in a
+ * single tight loop over the arrays (see {@link Physics#applyGravity(
+ * HitboxStore, int)}), instead of chasing a pointer to each Hitbox.
+ *
+ * <p>Removing a Hitbox moves the Hitbox in the last slot into the vacated
+ * slot, so slots remain dense but are not stable.
+ *
+ * @author Dan Bryce
+ */
+public class HitboxStore {
+
+    /**
+     * Flag indicating that a Hitbox is affected by gravity.
+     */
+    public static final int GRAVITY = 1;
+
+    /**
+     * Flag indicating that a Hitbox is affected by ground friction.
+     */
+    public static final int GROUND_FRICTION = 1 << 1;
+
+    /**
+     * Flag indicating that a Hitbox is affected by air friction in the x-axis.
+     */
+    public static final int AIR_FRICTION_X = 1 << 2;
+
+    /**
+     * Flag indicating that a Hitbox is affected by air friction in the y-axis.
+     */
+    public static final int AIR_FRICTION_Y = 1 << 3;
+
+    /**
+     * Default initial capacity.
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Hitbox occupying each slot.
+     */
+    private Hitbox[] hitboxes;
+
+    /**
+     * Packed kinematic state, by slot.
+     */
+    float[] speedX;
+    float[] speedY;
+    boolean[] grounded;
+
+    /**
+     * Packed physics properties, by slot.
+     *
+     * <p>These are copied from the Hitboxes by {@link #syncProperties}.
+     */
+    float[] maxSpeedX;
+    float[] maxSpeedY;
+    float[] gravityCoefficient;
+    float[] groundFrictionCoefficient;
+    float[] airFrictionCoefficient;
+
+    /**
+     * Physics flags, by slot.
+     */
+    int[] flags;
+
+    /**
+     * Number of occupied slots.
+     */
+    private int size;
+
+    /**
+     * Creates an empty HitboxStore.
+     */
+    public HitboxStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty HitboxStore with the given initial capacity.
+     *
+     * @param capacity
+     */
+    public HitboxStore(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * Adds a Hitbox to this store.
+     *
+     * <p>The Hitbox's current speed and grounded state are moved into the
+     * store.
+     *
+     * @param hitbox
+     * @return Slot assigned to the Hitbox.
+     */
+    public int add(Hitbox hitbox) {
+
+        if (hitbox.getStore() != null) {
+            throw new IllegalArgumentException(
+                    "Hitbox already belongs to a HitboxStore");
+        }
+
+        if (size == hitboxes.length) {
+            allocate(size * 2);
+        }
+
+        int slot = size;
+        size++;
+
+        hitboxes[slot] = hitbox;
+        flags[slot] = 0;
+        hitbox.bindToStore(this, slot);
+        syncProperties(slot);
+
+        return slot;
+    }
+
+    /**
+     * Removes a Hitbox from this store.
+     *
+     * <p>The Hitbox's current speed and grounded state are moved back into the
+     * Hitbox.
+     *
+     * @param hitbox
+     */
+    public void remove(Hitbox hitbox) {
+
+        if (hitbox.getStore() != this) {
+            throw new IllegalArgumentException(
+                    "Hitbox does not belong to this HitboxStore");
+        }
+
+        int slot = hitbox.getSlot();
+        hitbox.unbindFromStore();
+
+        // Fill the gap using the Hitbox in the last slot
+        int last = size - 1;
+        if (slot != last) {
+            hitboxes[slot] = hitboxes[last];
+            speedX[slot] = speedX[last];
+            speedY[slot] = speedY[last];
+            grounded[slot] = grounded[last];
+            maxSpeedX[slot] = maxSpeedX[last];
+            maxSpeedY[slot] = maxSpeedY[last];
+            gravityCoefficient[slot] = gravityCoefficient[last];
+            groundFrictionCoefficient[slot] = groundFrictionCoefficient[last];
+            airFrictionCoefficient[slot] = airFrictionCoefficient[last];
+            flags[slot] = flags[last];
+            hitboxes[slot].moveToSlot(slot);
+        }
+
+        hitboxes[last] = null;
+        size = last;
+    }
+
+    /**
+     * Gets the Hitbox occupying the given slot.
+     *
+     * @param slot
+     * @return
+     */
+    public Hitbox get(int slot) {
+        if (slot >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Slot: " + slot + ", Size: " + size);
+        }
+        return hitboxes[slot];
+    }
+
+    /**
+     * Gets the number of Hitboxes in this store.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sets the physics flags for the given slot.
+     *
+     * <p>Flags are not retained when a Hitbox is removed, and should be set
+     * every frame before any physics is applied.
+     *
+     * @param slot
+     * @param newFlags Combination of {@link #GRAVITY},
+     * {@link #GROUND_FRICTION}, {@link #AIR_FRICTION_X} and
+     * {@link #AIR_FRICTION_Y}.
+     */
+    public void setFlags(int slot, int newFlags) {
+        flags[slot] = newFlags;
+    }
+
+    /**
+     * Copies the physics properties of every Hitbox into the store.
+     *
+     * <p>Coefficients are public fields and maximum speeds may be changed by
+     * subclasses, so this should be called every frame before any physics is
+     * applied.
+     */
+    public void syncProperties() {
+        for (int i = 0; i < size; i++) {
+            syncProperties(i);
+        }
+    }
+
+    /**
+     * Copies the physics properties of a single Hitbox into the store.
+     *
+     * @param slot
+     */
+    private void syncProperties(int slot) {
+        Hitbox hitbox = hitboxes[slot];
+        maxSpeedX[slot] = hitbox.getMaxSpeedX();
+        maxSpeedY[slot] = hitbox.getMaxSpeedY();
+        gravityCoefficient[slot] = hitbox.gravityCoefficient;
+        groundFrictionCoefficient[slot] = hitbox.groundFrictionCoefficient;
+        airFrictionCoefficient[slot] = hitbox.airFrictionCoefficient;
+    }
+
+    /**
+     * Resizes all arrays to the given capacity.
+     *
+     * @param capacity
+     */
+    private void allocate(int capacity) {
+        if (hitboxes == null) {
+            hitboxes = new Hitbox[capacity];
+            speedX = new float[capacity];
+            speedY = new float[capacity];
+            grounded = new boolean[capacity];
+            maxSpeedX = new float[capacity];
+            maxSpeedY = new float[capacity];
+            gravityCoefficient = new float[capacity];
+            groundFrictionCoefficient = new float[capacity];
+            airFrictionCoefficient = new float[capacity];
+            flags = new int[capacity];
+            return;
+        }
+        hitboxes = Arrays.copyOf(hitboxes, capacity);
+        speedX = Arrays.copyOf(speedX, capacity);
+        speedY = Arrays.copyOf(speedY, capacity);
+        grounded = Arrays.copyOf(grounded, capacity);
+        maxSpeedX = Arrays.copyOf(maxSpeedX, capacity);
+        maxSpeedY = Arrays.copyOf(maxSpeedY, capacity);
+        gravityCoefficient = Arrays.copyOf(gravityCoefficient, capacity);
+        groundFrictionCoefficient =
+                Arrays.copyOf(groundFrictionCoefficient, capacity);
+        airFrictionCoefficient =
+                Arrays.copyOf(airFrictionCoefficient, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+}
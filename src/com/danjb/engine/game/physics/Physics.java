@@ -83,11 +83,32 @@ public abstract class Physics {
     public static float airFriction = 0.0005f;
 
     /**
-     * Maximum movement distance the Physics can handle in one frame.
+     * Maximum movement distance the Physics can handle in one step.
      */
     public static final float MAX_MOVE_DISTANCE =
             GameUtils.worldUnits(1) - SMALLEST_DISTANCE;
 
+    /**
+     * Applies the standard speed limits to the given speed and returns the
+     * result.
+     *
+     * <p>Speeds below {@link #MOVING_SPEED} are considered negligible and are
+     * treated as zero.
+     *
+     * @param speed
+     * @param maxSpeed
+     * @return
+     */
+    public static float limitSpeed(float speed, float maxSpeed) {
+        if (Math.abs(speed) < MOVING_SPEED) {
+            return 0;
+        }
+        if (Math.abs(speed) > maxSpeed) {
+            return Math.copySign(maxSpeed, speed);
+        }
+        return speed;
+    }
+
     /**
      * Applies deceleration to the given speed and returns the result.
      *
@@ -97,14 +118,52 @@ public abstract class Physics {
      * @param speed
      * @param delta
      * @param deceleration
+     * @param deterministic See {@link #pow}.
      * @return
      */
     public static float applyDeceleration(
-            float speed, int delta, double deceleration) {
+            float speed,
+            int delta,
+            double deceleration,
+            boolean deterministic) {
         if (deceleration == 1) {
             return speed;
         }
-        return (float) (speed * Math.pow(deceleration, delta));
+        return (float) (speed * pow(deceleration, delta, deterministic));
+    }
+
+    /**
+     * Raises a value to a power.
+     *
+     * <p>Basic floating-point arithmetic is already reproducible, but the
+     * faster implementations of some library functions (such as
+     * {@link Math#pow}) may give slightly different results on different
+     * hardware. In deterministic mode, the {@link StrictMath} equivalents are
+     * used instead.
+     *
+     * @param a
+     * @param b
+     * @param deterministic Whether the result must be identical on every
+     * platform.
+     * @return
+     * @see com.danjb.engine.game.Logic#setDeterministic
+     */
+    public static double pow(double a, double b, boolean deterministic) {
+        return deterministic ? StrictMath.pow(a, b) : Math.pow(a, b);
+    }
+
+    /**
+     * Calculates the length of a vector.
+     *
+     * @param x
+     * @param y
+     * @param deterministic See {@link #pow}.
+     * @return
+     */
+    public static float hypot(float x, float y, boolean deterministic) {
+        return (float) (deterministic
+                ? StrictMath.hypot(x, y)
+                : Math.hypot(x, y));
     }
 
     /**
@@ -139,12 +198,16 @@ public abstract class Physics {
      * @param speedX
      * @param delta
      * @param coefficient
+     * @param deterministic See {@link #pow}.
      * @return
      */
     public static float applyGroundFriction(
-            float speedX, int delta, float coefficient) {
+            float speedX,
+            int delta,
+            float coefficient,
+            boolean deterministic) {
         float multiplier = 1 - (groundFriction * coefficient);
-        return applyDeceleration(speedX, delta, multiplier);
+        return applyDeceleration(speedX, delta, multiplier, deterministic);
     }
 
     /**
@@ -153,12 +216,91 @@ public abstract class Physics {
      * @param speed
      * @param delta
      * @param coefficient
+     * @param deterministic See {@link #pow}.
      * @return
      */
     public static float applyAirFriction(
-            float speed, int delta, float coefficient) {
+            float speed,
+            int delta,
+            float coefficient,
+            boolean deterministic) {
         float multiplier = 1 - (airFriction * coefficient);
-        return applyDeceleration(speed, delta, multiplier);
+        return applyDeceleration(speed, delta, multiplier, deterministic);
+    }
+
+    /**
+     * Applies gravity to every Hitbox in the given store that has the
+     * {@link HitboxStore#GRAVITY} flag.
+     *
+     * <p>This gives the same result as calling {@link Hitbox#applyGravity} on
+     * each Hitbox in turn.
+     *
+     * @param store
+     * @param delta
+     */
+    public static void applyGravity(HitboxStore store, int delta) {
+
+        float[] speedY = store.speedY;
+        float[] maxSpeedY = store.maxSpeedY;
+        float[] coefficients = store.gravityCoefficient;
+        int[] flags = store.flags;
+
+        for (int i = 0, n = store.size(); i < n; i++) {
+            if ((flags[i] & HitboxStore.GRAVITY) != 0) {
+                speedY[i] = limitSpeed(
+                        applyGravity(speedY[i], delta, coefficients[i]),
+                        maxSpeedY[i]);
+            }
+        }
+    }
+
+    /**
+     * Applies ground friction to every grounded Hitbox in the given store, and
+     * air friction to every other Hitbox, according to their flags.
+     *
+     * <p>This gives the same result as calling {@link
+     * Hitbox#applyGroundFriction}, {@link Hitbox#applyAirFrictionX} and
+     * {@link Hitbox#applyAirFrictionY} on each Hitbox in turn.
+     *
+     * @param store
+     * @param delta
+     * @param deterministic See {@link #pow}.
+     */
+    public static void applyFriction(
+            HitboxStore store, int delta, boolean deterministic) {
+
+        float[] speedX = store.speedX;
+        float[] speedY = store.speedY;
+        float[] maxSpeedX = store.maxSpeedX;
+        float[] maxSpeedY = store.maxSpeedY;
+        float[] groundCoefficients = store.groundFrictionCoefficient;
+        float[] airCoefficients = store.airFrictionCoefficient;
+        boolean[] grounded = store.grounded;
+        int[] flags = store.flags;
+
+        for (int i = 0, n = store.size(); i < n; i++) {
+            if (grounded[i]) {
+                if ((flags[i] & HitboxStore.GROUND_FRICTION) != 0) {
+                    speedX[i] = limitSpeed(applyGroundFriction(
+                            speedX[i], delta, groundCoefficients[i],
+                            deterministic),
+                            maxSpeedX[i]);
+                }
+            } else {
+                if ((flags[i] & HitboxStore.AIR_FRICTION_X) != 0) {
+                    speedX[i] = limitSpeed(applyAirFriction(
+                            speedX[i], delta, airCoefficients[i],
+                            deterministic),
+                            maxSpeedX[i]);
+                }
+                if ((flags[i] & HitboxStore.AIR_FRICTION_Y) != 0) {
+                    speedY[i] = limitSpeed(applyAirFriction(
+                            speedY[i], delta, airCoefficients[i],
+                            deterministic),
+                            maxSpeedY[i]);
+                }
+            }
+        }
     }
 
     /**
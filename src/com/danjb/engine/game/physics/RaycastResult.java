@@ -0,0 +1,81 @@
+package com.danjb.engine.game.physics;
+
+import com.danjb.engine.game.level.TileLayer;
+
+/**
+ * Class that holds the result of a raycast against a {@link TileLayer}.
+ *
+ * <p>Raycasts write into a RaycastResult supplied by the caller, so that the
+ * same instance can be reused for any number of casts without allocating.
+ *
+ * @author Dan Bryce
+ */
+public class RaycastResult {
+
+    /**
+     * Whether the ray hit anything.
+     *
+     * <p>If this is false, the other fields are meaningless.
+     */
+    public boolean hit;
+
+    /**
+     * Index of the Tile that was hit within the tile grid.
+     */
+    public int tileX;
+
+    /**
+     * Index of the Tile that was hit within the tile grid.
+     */
+    public int tileY;
+
+    /**
+     * ID of the Tile that was hit.
+     */
+    public int tileId;
+
+    /**
+     * Absolute position of the point of impact, in world units.
+     */
+    public float hitX;
+
+    /**
+     * Absolute position of the point of impact, in world units.
+     */
+    public float hitY;
+
+    /**
+     * Surface normal at the point of impact.
+     *
+     * <p>This is a unit vector pointing back out of the solid surface, or zero
+     * if the ray started inside a solid Tile.
+     */
+    public float normalX;
+
+    /**
+     * See {@link #normalX}.
+     */
+    public float normalY;
+
+    /**
+     * Distance travelled by the ray before the point of impact, in world
+     * units.
+     */
+    public float distance;
+
+    /**
+     * Clears this RaycastResult, ready for reuse.
+     */
+    public void reset() {
+        hit = false;
+        tileX = 0;
+        tileY = 0;
+        tileId = 0;
+        hitX = 0;
+        hitY = 0;
+        normalX = 0;
+        normalY = 0;
+        distance = 0;
+    }
+
+}
@@ -3,6 +3,7 @@ package com.danjb.engine.game.tiles;
 import com.danjb.engine.game.physics.CollisionResult;
 import com.danjb.engine.game.physics.Hitbox;
 import com.danjb.engine.game.physics.Hitbox.CollisionNode;
+import com.danjb.engine.game.physics.RaycastResult;
 
 /**
  * Class representing a Tile with some collisions.
@@ -76,6 +77,38 @@ public abstract class PhysicsTile extends Tile {
         // No collision by default
     }
 
+    /**
+     * Tests a ray against the solid part of this Tile.
+     *
+     * <p>This is called by {@link com.danjb.engine.game.level.TileLayer#raycast}
+     * for each Tile that the ray passes through. Before calling this, the
+     * normal of the result is set to that of the Tile edge through which the
+     * ray entered. Implementations only need to change it if the ray hits some
+     * other surface.
+     *
+     * <p>By default, solid Tiles are hit as soon as the ray enters them.
+     *
+     * @param originX Ray origin, relative to the left of this Tile.
+     * @param originY Ray origin, relative to the top of this Tile.
+     * @param dirX Ray direction (unit vector).
+     * @param dirY Ray direction (unit vector).
+     * @param distanceIn Distance along the ray at which it enters this Tile.
+     * @param distanceOut Distance along the ray at which it leaves this Tile.
+     * @param result Result whose normal should be updated if necessary.
+     * @return Distance along the ray to the point of impact, or -1 if the ray
+     * passes through this Tile unobstructed.
+     */
+    public float raycast(
+            float originX,
+            float originY,
+            float dirX,
+            float dirY,
+            float distanceIn,
+            float distanceOut,
+            RaycastResult result) {
+        return isSolid() ? distanceIn : -1;
+    }
+
     /**
      * Determines whether or not this Tile is completely solid.
      *
@@ -8,6 +8,7 @@ import com.danjb.engine.game.physics.CollisionResult;
 import com.danjb.engine.game.physics.Hitbox;
 import com.danjb.engine.game.physics.Hitbox.CollisionNode;
 import com.danjb.engine.game.physics.PostProcessCollision;
+import com.danjb.engine.game.physics.RaycastResult;
 import com.danjb.engine.util.MathUtils;
 
 /**
@@ -161,6 +162,59 @@ public abstract class Slope extends PhysicsTile
         return true;
     }
 
+    /**
+     * Tests a ray against the solid part of this Slope.
+     *
+     * <p>If the ray enters the Tile through a solid edge, it is hit
+     * immediately. Otherwise, we find where it crosses the surface of the
+     * Slope, if at all before leaving the Tile.
+     */
+    @Override
+    public float raycast(
+            float originX,
+            float originY,
+            float dirX,
+            float dirY,
+            float distanceIn,
+            float distanceOut,
+            RaycastResult result) {
+
+        float entryX = originX + dirX * distanceIn;
+        float entryY = originY + dirY * distanceIn;
+        if (isPointInSlopeRegion(entryX, entryY)) {
+            return distanceIn;
+        }
+
+        // The surface of the Slope is the line: y = surfaceY0 + gradient * x
+        float surfaceY0 = calculateY(0);
+        float gradient = (calculateY(Tile.WIDTH) - surfaceY0) / Tile.WIDTH;
+
+        float denominator = dirY - gradient * dirX;
+        if (denominator == 0) {
+            // Ray is parallel to the surface
+            return -1;
+        }
+
+        float distance =
+                (surfaceY0 + gradient * originX - originY) / denominator;
+        if (distance < distanceIn || distance > distanceOut) {
+            return -1;
+        }
+
+        // The normal is perpendicular to the surface, facing the ray
+        float length = (float) Math.sqrt(1 + gradient * gradient);
+        float normalX = -gradient / length;
+        float normalY = 1 / length;
+        if (normalX * dirX + normalY * dirY > 0) {
+            normalX = -normalX;
+            normalY = -normalY;
+        }
+        result.normalX = normalX;
+        result.normalY = normalY;
+
+        return distance;
+    }
+
     /**
      * Resolves a PostProcessCollision with this Slope.
      */
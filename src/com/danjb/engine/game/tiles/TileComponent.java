@@ -1,6 +1,7 @@
 package com.danjb.engine.game.tiles;
 
 import com.danjb.engine.game.Component;
+import com.danjb.engine.game.ComponentType;
 
 public class TileComponent extends Component {
 
@@ -8,6 +9,10 @@ public class TileComponent extends Component {
         super(key);
     }
 
+    public TileComponent(ComponentType<?> type) {
+        super(type);
+    }
+
     public void onAttach(Tile tile) {
         // Do nothing by default
     }
@@ -0,0 +1,117 @@
+package com.danjb.engine.net;
+
+/**
+ * Reads values written by a {@link BitWriter}.
+ *
+ * @author Dan Bryce
+ */
+public class BitReader {
+
+    /**
+     * Data being read.
+     */
+    private byte[] data;
+
+    /**
+     * Number of meaningful bytes in {@link #data}.
+     */
+    private int length;
+
+    /**
+     * Index of the next byte to read.
+     */
+    private int position;
+
+    /**
+     * Bits read but not yet consumed, least-significant first.
+     */
+    private long scratch;
+
+    /**
+     * Number of bits held in {@link #scratch}.
+     */
+    private int scratchBits;
+
+    /**
+     * Starts reading from the beginning of some data.
+     *
+     * @param newData
+     * @param newLength Number of meaningful bytes in the data.
+     */
+    public void reset(byte[] newData, int newLength) {
+        data = newData;
+        length = newLength;
+        position = 0;
+        scratch = 0;
+        scratchBits = 0;
+    }
+
+    /**
+     * Reads a value written by {@link BitWriter#writeBits}.
+     *
+     * @param numBits Number of bits to read, from 0 to 32.
+     * @return
+     * @throws IllegalStateException if there is not enough data left.
+     */
+    public int readBits(int numBits) {
+
+        if (numBits < 0 || numBits > 32) {
+            throw new IllegalArgumentException(
+                    "Invalid number of bits: " + numBits);
+        }
+
+        while (scratchBits < numBits) {
+            if (position == length) {
+                throw new IllegalStateException("Read past end of data");
+            }
+            scratch |= (data[position] & 0xFFL) << scratchBits;
+            position++;
+            scratchBits += 8;
+        }
+
+        int value = (int) (scratch & ((1L << numBits) - 1));
+        scratch >>>= numBits;
+        scratchBits -= numBits;
+        return value;
+    }
+
+    /**
+     * Reads a value written by {@link BitWriter#writeBoolean}.
+     *
+     * @return
+     */
+    public boolean readBoolean() {
+        return readBits(1) != 0;
+    }
+
+    /**
+     * Reads a value written by {@link BitWriter#writeFloat}.
+     *
+     * @return
+     */
+    public float readFloat() {
+        return Float.intBitsToFloat(readBits(32));
+    }
+
+    /**
+     * Reads a value written by {@link BitWriter#writeVarInt}.
+     *
+     * @return
+     */
+    public int readVarInt() {
+        int value = 0;
+        int shift = 0;
+        int chunk;
+        do {
+            if (shift > 28) {
+                throw new IllegalStateException(
+                        "Malformed variable-length int");
+            }
+            chunk = readBits(8);
+            value |= (chunk & 0x7F) << shift;
+            shift += 7;
+        } while ((chunk & 0x80) != 0);
+        return value;
+    }
+
+}
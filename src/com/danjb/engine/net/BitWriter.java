@@ -0,0 +1,155 @@
+package com.danjb.engine.net;
+
+import java.util.Arrays;
+
+/**
+ * Writes values into a byte array using as few bits as possible.
+ *
+ * <p>Bits are packed least-significant first. The array is reused between
+ * packets, so writing does not allocate once it is large enough.
+ *
+ * @see BitReader
+ * @author Dan Bryce
+ */
+public class BitWriter {
+
+    /**
+     * Default initial capacity, in bytes.
+     */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Bytes written so far.
+     */
+    private byte[] data;
+
+    /**
+     * Number of complete bytes written.
+     */
+    private int length;
+
+    /**
+     * Bits waiting to be written, least-significant first.
+     */
+    private long scratch;
+
+    /**
+     * Number of bits held in {@link #scratch}.
+     */
+    private int scratchBits;
+
+    /**
+     * Creates an empty BitWriter.
+     */
+    public BitWriter() {
+        data = new byte[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Writes the lowest bits of a value.
+     *
+     * @param value
+     * @param numBits Number of bits to write, from 0 to 32.
+     */
+    public void writeBits(int value, int numBits) {
+
+        if (numBits < 0 || numBits > 32) {
+            throw new IllegalArgumentException(
+                    "Invalid number of bits: " + numBits);
+        }
+
+        scratch |= (value & ((1L << numBits) - 1)) << scratchBits;
+        scratchBits += numBits;
+
+        while (scratchBits >= 8) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, length * 2);
+            }
+            data[length] = (byte) scratch;
+            length++;
+            scratch >>>= 8;
+            scratchBits -= 8;
+        }
+    }
+
+    /**
+     * Writes a single bit.
+     *
+     * @param value
+     */
+    public void writeBoolean(boolean value) {
+        writeBits(value ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes a float without any loss of precision.
+     *
+     * @param value
+     */
+    public void writeFloat(float value) {
+        writeBits(Float.floatToRawIntBits(value), 32);
+    }
+
+    /**
+     * Writes a non-negative int using a variable number of bytes.
+     *
+     * <p>Small values take fewer bits: values below 128 take 8 bits.
+     *
+     * @param value
+     */
+    public void writeVarInt(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(
+                    "Value must not be negative: " + value);
+        }
+        while ((value & ~0x7F) != 0) {
+            writeBits((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        writeBits(value, 8);
+    }
+
+    /**
+     * Pads the data to a whole number of bytes.
+     *
+     * <p>This should be called once all values have been written.
+     *
+     * @return Length of the data, in bytes.
+     */
+    public int finish() {
+        if (scratchBits > 0) {
+            writeBits(0, 8 - scratchBits);
+        }
+        return length;
+    }
+
+    /**
+     * Discards all written data, ready for reuse.
+     */
+    public void reset() {
+        length = 0;
+        scratch = 0;
+        scratchBits = 0;
+    }
+
+    /**
+     * Gets the array holding the written data.
+     *
+     * <p>Only the first {@link #getLength()} bytes are meaningful.
+     *
+     * @return
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Gets the number of complete bytes written.
+     *
+     * @return
+     */
+    public int getLength() {
+        return length;
+    }
+
+}
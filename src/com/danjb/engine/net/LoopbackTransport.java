@@ -0,0 +1,66 @@
+package com.danjb.engine.net;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * Transport that delivers packets to another LoopbackTransport in the same
+ * process.
+ *
+ * <p>This is useful for testing, and for hosting a game locally. Packets are
+ * delivered in order, immediately, and are never lost.
+ *
+ * @author Dan Bryce
+ */
+public class LoopbackTransport implements Transport {
+
+    /**
+     * Packets waiting to be received.
+     */
+    private final Queue<byte[]> inbox = new ArrayDeque<>();
+
+    /**
+     * Transport that receives our packets.
+     */
+    private LoopbackTransport peer;
+
+    /**
+     * Total number of bytes sent.
+     */
+    private long bytesSent;
+
+    /**
+     * Creates a pair of Transports connected to each other.
+     *
+     * @return
+     */
+    public static LoopbackTransport[] createPair() {
+        LoopbackTransport a = new LoopbackTransport();
+        LoopbackTransport b = new LoopbackTransport();
+        a.peer = b;
+        b.peer = a;
+        return new LoopbackTransport[] { a, b };
+    }
+
+    @Override
+    public void send(byte[] data, int length) {
+        peer.inbox.add(Arrays.copyOf(data, length));
+        bytesSent += length;
+    }
+
+    @Override
+    public byte[] receive() {
+        return inbox.poll();
+    }
+
+    /**
+     * Gets the total number of bytes sent.
+     *
+     * @return
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+}
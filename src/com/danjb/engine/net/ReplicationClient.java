@@ -0,0 +1,414 @@
+package com.danjb.engine.net;
+
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_BITS;
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_SPEED_X;
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_SPEED_Y;
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_X;
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_Y;
+import static com.danjb.engine.net.ReplicationProtocol.HISTORY_BITS;
+import static com.danjb.engine.net.ReplicationProtocol.HISTORY_SIZE;
+import static com.danjb.engine.net.ReplicationProtocol.OP_BITS;
+import static com.danjb.engine.net.ReplicationProtocol.OP_CHANGED;
+import static com.danjb.engine.net.ReplicationProtocol.OP_END;
+import static com.danjb.engine.net.ReplicationProtocol.OP_NEW;
+import static com.danjb.engine.net.ReplicationProtocol.OP_REMOVED;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.danjb.engine.game.EntityQueryCallback;
+import com.danjb.engine.game.Logic;
+import com.danjb.engine.game.camera.Camera;
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.util.Rectangle;
+
+/**
+ * Server-side record of a client receiving replicated state.
+ *
+ * <p>Each tick, this sends the client the state of every Entity within its
+ * area of interest (its view region, expanded by a margin). Only the changes
+ * since the last frame acknowledged by the client are sent; if no recent
+ * frame has been acknowledged, the full state is sent instead.
+ *
+ * <p>ReplicationClients should be created using
+ * {@link ReplicationServer#addClient}.
+ *
+ * @author Dan Bryce
+ */
+public class ReplicationClient {
+
+    /**
+     * Transport used to communicate with the client.
+     */
+    private final Transport transport;
+
+    /**
+     * Frames sent recently, indexed by sequence number modulo
+     * {@link ReplicationProtocol#HISTORY_SIZE}.
+     */
+    private final ReplicationFrame[] history =
+            new ReplicationFrame[HISTORY_SIZE];
+
+    /**
+     * Frame used as the baseline when the client has not acknowledged any
+     * recent frames.
+     */
+    private final ReplicationFrame emptyFrame = new ReplicationFrame();
+
+    /**
+     * Sequence number of the next frame to be sent.
+     */
+    private int nextSequence;
+
+    /**
+     * Sequence number of the latest frame acknowledged by the client, or -1.
+     */
+    private int ackedSequence = -1;
+
+    /**
+     * Region of the world visible to the client, in world units.
+     */
+    private final Rectangle viewRegion = new Rectangle();
+
+    /**
+     * Distance by which the view region is expanded when deciding which
+     * Entities to send, in world units.
+     *
+     * <p>This gives the client time to receive Entities before they come
+     * into view.
+     */
+    private float interestMargin;
+
+    /**
+     * Region used to find Entities of interest.
+     */
+    private final Rectangle interestRegion = new Rectangle();
+
+    /**
+     * Entities found within the area of interest.
+     */
+    private final List<Entity> interestingEntities = new ArrayList<>();
+
+    /**
+     * Callback used to collect Entities within the area of interest.
+     */
+    private final EntityQueryCallback interestCallback = entity -> {
+        interestingEntities.add(entity);
+        return true;
+    };
+
+    /**
+     * Keys used to sort Entities by ID.
+     */
+    private long[] sortKeys = new long[64];
+
+    /**
+     * Writer used to build packets.
+     */
+    private final BitWriter writer = new BitWriter();
+
+    /**
+     * Reader used to read acknowledgements.
+     */
+    private final BitReader reader = new BitReader();
+
+    /**
+     * Size of the most recent packet, in bytes.
+     */
+    private int bytesLastTick;
+
+    /**
+     * Total number of bytes sent.
+     */
+    private long totalBytes;
+
+    /**
+     * Creates a ReplicationClient.
+     *
+     * @param transport
+     */
+    ReplicationClient(Transport transport) {
+        this.transport = transport;
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            history[i] = new ReplicationFrame();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Area of interest
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Sets the region of the world visible to the client.
+     *
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public void setViewRegion(float x, float y, float width, float height) {
+        viewRegion.setRect(x, y, width, height);
+    }
+
+    /**
+     * Sets the region of the world visible to the client to match a Camera.
+     *
+     * @param camera
+     */
+    public void setViewRegion(Camera camera) {
+        Rectangle region = camera.getVisibleRegion();
+        setViewRegion(region.x, region.y, region.width, region.height);
+    }
+
+    /**
+     * Sets the distance by which the view region is expanded when deciding
+     * which Entities to send.
+     *
+     * @param interestMargin World units.
+     */
+    public void setInterestMargin(float interestMargin) {
+        this.interestMargin = interestMargin;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Sending
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Processes any acknowledgements received from the client.
+     */
+    void receiveAcks() {
+        byte[] packet;
+        while ((packet = transport.receive()) != null) {
+            reader.reset(packet, packet.length);
+            acknowledge(reader.readBits(32));
+        }
+    }
+
+    /**
+     * Records that the client has received a frame.
+     *
+     * @param sequence
+     */
+    public void acknowledge(int sequence) {
+        if (sequence > ackedSequence && sequence < nextSequence) {
+            ackedSequence = sequence;
+        }
+    }
+
+    /**
+     * Sends the client the current state of every Entity within its area of
+     * interest.
+     *
+     * @param logic
+     * @return Number of bytes sent.
+     */
+    int send(Logic logic) {
+
+        int sequence = nextSequence;
+        nextSequence++;
+
+        ReplicationFrame baseline = getBaseline(sequence);
+        ReplicationFrame frame = history[sequence % HISTORY_SIZE];
+        captureFrame(logic, frame, sequence);
+
+        writer.reset();
+        writer.writeBits(sequence, 32);
+        writer.writeBoolean(baseline != emptyFrame);
+        if (baseline != emptyFrame) {
+            writer.writeBits(sequence - baseline.getSequence() - 1,
+                    HISTORY_BITS);
+        }
+        writeRecords(frame, baseline);
+        writer.writeBits(OP_END, OP_BITS);
+
+        int length = writer.finish();
+        transport.send(writer.getData(), length);
+
+        bytesLastTick = length;
+        totalBytes += length;
+        return length;
+    }
+
+    /**
+     * Gets the frame to use as a baseline for the given frame.
+     *
+     * @param sequence
+     * @return Latest acknowledged frame, or an empty frame if no recent
+     * frame has been acknowledged.
+     */
+    private ReplicationFrame getBaseline(int sequence) {
+        if (ackedSequence < 0 || sequence - ackedSequence >= HISTORY_SIZE) {
+            return emptyFrame;
+        }
+        ReplicationFrame baseline = history[ackedSequence % HISTORY_SIZE];
+        return baseline.getSequence() == ackedSequence ? baseline : emptyFrame;
+    }
+
+    /**
+     * Fills a frame with the state of every Entity within the area of
+     * interest, in order of ID.
+     *
+     * @param logic
+     * @param frame
+     * @param sequence
+     */
+    private void captureFrame(
+            Logic logic, ReplicationFrame frame, int sequence) {
+
+        interestRegion.setRect(
+                viewRegion.x - interestMargin,
+                viewRegion.y - interestMargin,
+                viewRegion.width + 2 * interestMargin,
+                viewRegion.height + 2 * interestMargin);
+        logic.query(interestRegion, interestCallback);
+
+        int numEntities = interestingEntities.size();
+        if (sortKeys.length < numEntities) {
+            sortKeys = new long[Math.max(numEntities, sortKeys.length * 2)];
+        }
+        for (int i = 0; i < numEntities; i++) {
+            // IDs are never negative, so sorting the keys sorts by ID
+            long id = interestingEntities.get(i).getId();
+            sortKeys[i] = (id << 32) | i;
+        }
+        Arrays.sort(sortKeys, 0, numEntities);
+
+        frame.clear(sequence);
+        for (int i = 0; i < numEntities; i++) {
+            Entity entity = interestingEntities.get((int) sortKeys[i]);
+            frame.add(entity.getId(), entity.hitbox);
+        }
+
+        interestingEntities.clear();
+    }
+
+    /**
+     * Writes the differences between a frame and its baseline.
+     *
+     * @param frame
+     * @param baseline
+     */
+    private void writeRecords(
+            ReplicationFrame frame, ReplicationFrame baseline) {
+
+        int i = 0;
+        int j = 0;
+        int prevId = -1;
+
+        while (i < frame.size() || j < baseline.size()) {
+
+            long id = i < frame.size() ? frame.getId(i) : Long.MAX_VALUE;
+            long baseId = j < baseline.size()
+                    ? baseline.getId(j)
+                    : Long.MAX_VALUE;
+
+            if (id < baseId) {
+                // Entity has entered the area of interest
+                prevId = writeRecordHeader(OP_NEW, (int) id, prevId);
+                writer.writeFloat(frame.getX(i));
+                writer.writeFloat(frame.getY(i));
+                writer.writeFloat(frame.getSpeedX(i));
+                writer.writeFloat(frame.getSpeedY(i));
+                writer.writeBoolean(frame.isGrounded(i));
+                i++;
+
+            } else if (id > baseId) {
+                // Entity has left the area of interest, or the world
+                prevId = writeRecordHeader(OP_REMOVED, (int) baseId, prevId);
+                j++;
+
+            } else {
+                int changed = ReplicationProtocol.getChangedFields(
+                        frame, i, baseline, j);
+                if (changed != 0) {
+                    prevId = writeRecordHeader(OP_CHANGED, (int) id, prevId);
+                    writer.writeBits(changed, FIELD_BITS);
+                    writeChangedFields(frame, i, baseline, j, changed);
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Writes the start of a record.
+     *
+     * @param op
+     * @param id
+     * @param prevId ID of the previous record, or -1.
+     * @return ID of this record.
+     */
+    private int writeRecordHeader(int op, int id, int prevId) {
+        writer.writeBits(op, OP_BITS);
+        writer.writeVarInt(id - prevId - 1);
+        return id;
+    }
+
+    /**
+     * Writes the fields of an Entity that have changed.
+     *
+     * <p>The grounded flag is not written, since a change to a boolean can
+     * only mean one thing.
+     *
+     * @param frame
+     * @param i
+     * @param baseline
+     * @param j
+     * @param changed
+     */
+    private void writeChangedFields(ReplicationFrame frame, int i,
+            ReplicationFrame baseline, int j, int changed) {
+        if ((changed & FIELD_X) != 0) {
+            ReplicationProtocol.writeFloatDelta(
+                    writer, frame.getX(i), baseline.getX(j));
+        }
+        if ((changed & FIELD_Y) != 0) {
+            ReplicationProtocol.writeFloatDelta(
+                    writer, frame.getY(i), baseline.getY(j));
+        }
+        if ((changed & FIELD_SPEED_X) != 0) {
+            ReplicationProtocol.writeFloatDelta(
+                    writer, frame.getSpeedX(i), baseline.getSpeedX(j));
+        }
+        if ((changed & FIELD_SPEED_Y) != 0) {
+            ReplicationProtocol.writeFloatDelta(
+                    writer, frame.getSpeedY(i), baseline.getSpeedY(j));
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Statistics
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Gets the sequence number of the latest frame acknowledged by the
+     * client.
+     *
+     * @return Sequence number, or -1 if no frames have been acknowledged.
+     */
+    public int getAckedSequence() {
+        return ackedSequence;
+    }
+
+    /**
+     * Gets the size of the most recent packet sent to the client.
+     *
+     * @return Bytes.
+     */
+    public int getBytesLastTick() {
+        return bytesLastTick;
+    }
+
+    /**
+     * Gets the total number of bytes sent to the client.
+     *
+     * @return
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+}
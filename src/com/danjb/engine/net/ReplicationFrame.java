@@ -0,0 +1,155 @@
+package com.danjb.engine.net;
+
+import java.util.Arrays;
+
+import com.danjb.engine.game.physics.Hitbox;
+
+/**
+ * Replicated state of a set of Entities at a single point in time.
+ *
+ * <p>Entries are always held in order of Entity ID, so two frames can be
+ * compared with a single pass over both.
+ *
+ * <p>Frames are reused once they fall out of the history, so callers should
+ * not hold on to them.
+ *
+ * @author Dan Bryce
+ */
+public class ReplicationFrame {
+
+    /**
+     * Default initial capacity.
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Sequence number of this frame, or -1 if it holds no state.
+     */
+    private int sequence = -1;
+
+    /**
+     * Number of Entities in this frame.
+     */
+    private int size;
+
+    /**
+     * Replicated state, by entry.
+     */
+    private int[] ids = new int[DEFAULT_CAPACITY];
+    private float[] x = new float[DEFAULT_CAPACITY];
+    private float[] y = new float[DEFAULT_CAPACITY];
+    private float[] speedX = new float[DEFAULT_CAPACITY];
+    private float[] speedY = new float[DEFAULT_CAPACITY];
+    private boolean[] grounded = new boolean[DEFAULT_CAPACITY];
+
+    /**
+     * Empties this frame, ready to be filled with new state.
+     *
+     * @param newSequence
+     */
+    void clear(int newSequence) {
+        sequence = newSequence;
+        size = 0;
+    }
+
+    /**
+     * Adds an Entity's state to this frame.
+     *
+     * <p>Entities must be added in order of ID.
+     *
+     * @param id
+     * @param hitbox
+     */
+    void add(int id, Hitbox hitbox) {
+        add(id, hitbox.x, hitbox.y, hitbox.getSpeedX(), hitbox.getSpeedY(),
+                hitbox.isGrounded());
+    }
+
+    /**
+     * Adds an Entity's state to this frame.
+     *
+     * <p>Entities must be added in order of ID.
+     *
+     * @param id
+     * @param newX
+     * @param newY
+     * @param newSpeedX
+     * @param newSpeedY
+     * @param newGrounded
+     */
+    void add(int id, float newX, float newY, float newSpeedX, float newSpeedY,
+            boolean newGrounded) {
+
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            speedX = Arrays.copyOf(speedX, capacity);
+            speedY = Arrays.copyOf(speedY, capacity);
+            grounded = Arrays.copyOf(grounded, capacity);
+        }
+
+        ids[size] = id;
+        x[size] = newX;
+        y[size] = newY;
+        speedX[size] = newSpeedX;
+        speedY[size] = newSpeedY;
+        grounded[size] = newGrounded;
+        size++;
+    }
+
+    /**
+     * Gets the sequence number of this frame.
+     *
+     * @return Sequence number, or -1 if this frame holds no state.
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the number of Entities in this frame.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the entry for the Entity with the given ID.
+     *
+     * @param id
+     * @return Index of the entry, or -1 if the Entity is not present.
+     */
+    public int indexOf(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        return index >= 0 ? index : -1;
+    }
+
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    public float getX(int index) {
+        return x[index];
+    }
+
+    public float getY(int index) {
+        return y[index];
+    }
+
+    public float getSpeedX(int index) {
+        return speedX[index];
+    }
+
+    public float getSpeedY(int index) {
+        return speedY[index];
+    }
+
+    public boolean isGrounded(int index) {
+        return grounded[index];
+    }
+
+}
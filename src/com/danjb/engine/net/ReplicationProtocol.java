@@ -0,0 +1,140 @@
+package com.danjb.engine.net;
+
+/**
+ * Constants and helpers shared by {@link ReplicationClient} and
+ * {@link ReplicationReceiver}.
+ *
+ * <p>Each packet has the following layout:
+ *
+ * <pre>
+ * sequence          32 bits
+ * has baseline       1 bit
+ * baseline offset    {@value #HISTORY_BITS} bits (if present)
+ * records...
+ * END                {@value #OP_BITS} bits
+ * </pre>
+ *
+ * <p>Each record begins with an operation, followed by the gap between this
+ * Entity's ID and that of the previous record (records are sorted by ID, so
+ * gaps are small). A new Entity is sent in full; a changed Entity sends a
+ * mask of the fields that changed, followed by those fields; a removed
+ * Entity sends nothing else. Entities that are unchanged since the baseline
+ * are not sent at all.
+ *
+ * @author Dan Bryce
+ */
+final class ReplicationProtocol {
+
+    /**
+     * Number of bits used to store the distance back to the baseline frame.
+     */
+    static final int HISTORY_BITS = 5;
+
+    /**
+     * Number of frames remembered by each side of a connection.
+     *
+     * <p>A frame can only be used as a baseline if it is less than this many
+     * frames old.
+     */
+    static final int HISTORY_SIZE = 1 << HISTORY_BITS;
+
+    /*
+     * Record operations.
+     */
+    static final int OP_BITS = 2;
+    static final int OP_END = 0;
+    static final int OP_NEW = 1;
+    static final int OP_CHANGED = 2;
+    static final int OP_REMOVED = 3;
+
+    /*
+     * Fields that can change.
+     */
+    static final int FIELD_BITS = 5;
+    static final int FIELD_X = 1;
+    static final int FIELD_Y = 1 << 1;
+    static final int FIELD_SPEED_X = 1 << 2;
+    static final int FIELD_SPEED_Y = 1 << 3;
+    static final int FIELD_GROUNDED = 1 << 4;
+
+    /**
+     * Number of bits used to store the width of a changed float.
+     */
+    private static final int WIDTH_BITS = 5;
+
+    private ReplicationProtocol() {}
+
+    /**
+     * Writes a float that has changed since the baseline.
+     *
+     * <p>The new value is XORed with the old one, so that any high bits that
+     * have not changed (typically the sign, exponent and leading mantissa
+     * bits) become zeroes that need not be sent. The result is lossless.
+     *
+     * @param writer
+     * @param value
+     * @param baseline
+     */
+    static void writeFloatDelta(BitWriter writer, float value, float baseline) {
+        int diff = Float.floatToRawIntBits(value)
+                ^ Float.floatToRawIntBits(baseline);
+        int width = Math.max(32 - Integer.numberOfLeadingZeros(diff), 1);
+        writer.writeBits(width - 1, WIDTH_BITS);
+        writer.writeBits(diff, width);
+    }
+
+    /**
+     * Reads a float written by {@link #writeFloatDelta}.
+     *
+     * @param reader
+     * @param baseline
+     * @return
+     */
+    static float readFloatDelta(BitReader reader, float baseline) {
+        int width = reader.readBits(WIDTH_BITS) + 1;
+        int diff = reader.readBits(width);
+        return Float.intBitsToFloat(Float.floatToRawIntBits(baseline) ^ diff);
+    }
+
+    /**
+     * Determines which fields differ between two entries.
+     *
+     * @param a
+     * @param i Index within a.
+     * @param b
+     * @param j Index within b.
+     * @return Mask of FIELD_ flags.
+     */
+    static int getChangedFields(
+            ReplicationFrame a, int i, ReplicationFrame b, int j) {
+        int mask = 0;
+        if (differs(a.getX(i), b.getX(j))) {
+            mask |= FIELD_X;
+        }
+        if (differs(a.getY(i), b.getY(j))) {
+            mask |= FIELD_Y;
+        }
+        if (differs(a.getSpeedX(i), b.getSpeedX(j))) {
+            mask |= FIELD_SPEED_X;
+        }
+        if (differs(a.getSpeedY(i), b.getSpeedY(j))) {
+            mask |= FIELD_SPEED_Y;
+        }
+        if (a.isGrounded(i) != b.isGrounded(j)) {
+            mask |= FIELD_GROUNDED;
+        }
+        return mask;
+    }
+
+    /**
+     * Determines if two floats have different representations.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    private static boolean differs(float a, float b) {
+        return Float.floatToRawIntBits(a) != Float.floatToRawIntBits(b);
+    }
+
+}
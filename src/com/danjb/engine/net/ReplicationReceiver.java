@@ -0,0 +1,270 @@
+package com.danjb.engine.net;
+
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_BITS;
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_GROUNDED;
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_SPEED_X;
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_SPEED_Y;
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_X;
+import static com.danjb.engine.net.ReplicationProtocol.FIELD_Y;
+import static com.danjb.engine.net.ReplicationProtocol.HISTORY_BITS;
+import static com.danjb.engine.net.ReplicationProtocol.HISTORY_SIZE;
+import static com.danjb.engine.net.ReplicationProtocol.OP_BITS;
+import static com.danjb.engine.net.ReplicationProtocol.OP_CHANGED;
+import static com.danjb.engine.net.ReplicationProtocol.OP_END;
+import static com.danjb.engine.net.ReplicationProtocol.OP_NEW;
+import static com.danjb.engine.net.ReplicationProtocol.OP_REMOVED;
+
+/**
+ * Client-side decoder of the state sent by a {@link ReplicationClient}.
+ *
+ * <p>Each packet received is applied to the frame it was encoded against,
+ * and is then acknowledged, so that the server can use it as the baseline
+ * for future packets. Packets that arrive late are ignored.
+ *
+ * @author Dan Bryce
+ */
+public class ReplicationReceiver {
+
+    /**
+     * Transport used to communicate with the server.
+     */
+    private final Transport transport;
+
+    /**
+     * Frames received recently, indexed by sequence number modulo
+     * {@link ReplicationProtocol#HISTORY_SIZE}.
+     */
+    private final ReplicationFrame[] history =
+            new ReplicationFrame[HISTORY_SIZE];
+
+    /**
+     * Frame used as the baseline for packets that contain the full state.
+     */
+    private final ReplicationFrame emptyFrame = new ReplicationFrame();
+
+    /**
+     * Sequence number of the latest frame received, or -1.
+     */
+    private int latestSequence = -1;
+
+    /**
+     * Reader used to decode packets.
+     */
+    private final BitReader reader = new BitReader();
+
+    /**
+     * Writer used to build acknowledgements.
+     */
+    private final BitWriter ackWriter = new BitWriter();
+
+    /**
+     * Creates a ReplicationReceiver.
+     *
+     * @param transport
+     */
+    public ReplicationReceiver(Transport transport) {
+        this.transport = transport;
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            history[i] = new ReplicationFrame();
+        }
+    }
+
+    /**
+     * Processes all packets waiting to be received.
+     *
+     * @return Number of new frames received.
+     */
+    public int receive() {
+        int numFrames = 0;
+        byte[] packet;
+        while ((packet = transport.receive()) != null) {
+            if (decode(packet)) {
+                numFrames++;
+            }
+        }
+        return numFrames;
+    }
+
+    /**
+     * Decodes a single packet, and acknowledges it.
+     *
+     * @param packet
+     * @return True if the packet contained a new frame.
+     * @throws IllegalStateException if the packet is malformed.
+     */
+    private boolean decode(byte[] packet) {
+
+        reader.reset(packet, packet.length);
+
+        int sequence = reader.readBits(32);
+        if (sequence <= latestSequence) {
+            // We already have something newer
+            return false;
+        }
+
+        ReplicationFrame baseline = emptyFrame;
+        if (reader.readBoolean()) {
+            int baseSequence = sequence - reader.readBits(HISTORY_BITS) - 1;
+            baseline = history[baseSequence % HISTORY_SIZE];
+            if (baseline.getSequence() != baseSequence) {
+                // We never received the baseline, so we can't use this
+                return false;
+            }
+        }
+
+        ReplicationFrame frame = history[sequence % HISTORY_SIZE];
+        frame.clear(sequence);
+        try {
+            readRecords(frame, baseline);
+        } catch (IllegalStateException ex) {
+            frame.clear(-1);
+            throw ex;
+        }
+        latestSequence = sequence;
+
+        ackWriter.reset();
+        ackWriter.writeBits(sequence, 32);
+        transport.send(ackWriter.getData(), ackWriter.finish());
+
+        return true;
+    }
+
+    /**
+     * Builds a frame by applying the records in a packet to its baseline.
+     *
+     * @param frame
+     * @param baseline
+     */
+    private void readRecords(
+            ReplicationFrame frame, ReplicationFrame baseline) {
+
+        int j = 0;
+        int id = -1;
+
+        while (true) {
+
+            int op = reader.readBits(OP_BITS);
+            if (op == OP_END) {
+                break;
+            }
+            id += reader.readVarInt() + 1;
+
+            // Carry over any unchanged Entities
+            while (j < baseline.size() && baseline.getId(j) < id) {
+                copyEntry(baseline, j, frame);
+                j++;
+            }
+            boolean inBaseline = j < baseline.size()
+                    && baseline.getId(j) == id;
+
+            switch (op) {
+            case OP_NEW:
+                frame.add(id,
+                        reader.readFloat(),
+                        reader.readFloat(),
+                        reader.readFloat(),
+                        reader.readFloat(),
+                        reader.readBoolean());
+                break;
+            case OP_CHANGED:
+                if (!inBaseline) {
+                    throw new IllegalStateException(
+                            "Entity " + id + " is missing from baseline");
+                }
+                readChangedFields(baseline, j, frame, id);
+                break;
+            case OP_REMOVED:
+                // Nothing to add
+                break;
+            default:
+                throw new IllegalStateException("Unknown record type: " + op);
+            }
+
+            if (inBaseline) {
+                j++;
+            }
+        }
+
+        while (j < baseline.size()) {
+            copyEntry(baseline, j, frame);
+            j++;
+        }
+    }
+
+    /**
+     * Adds an Entity to a frame, based on its state in the baseline and the
+     * fields that have changed.
+     *
+     * @param baseline
+     * @param j
+     * @param frame
+     * @param id
+     */
+    private void readChangedFields(ReplicationFrame baseline, int j,
+            ReplicationFrame frame, int id) {
+
+        int changed = reader.readBits(FIELD_BITS);
+
+        float x = baseline.getX(j);
+        float y = baseline.getY(j);
+        float speedX = baseline.getSpeedX(j);
+        float speedY = baseline.getSpeedY(j);
+        boolean grounded = baseline.isGrounded(j);
+
+        if ((changed & FIELD_X) != 0) {
+            x = ReplicationProtocol.readFloatDelta(reader, x);
+        }
+        if ((changed & FIELD_Y) != 0) {
+            y = ReplicationProtocol.readFloatDelta(reader, y);
+        }
+        if ((changed & FIELD_SPEED_X) != 0) {
+            speedX = ReplicationProtocol.readFloatDelta(reader, speedX);
+        }
+        if ((changed & FIELD_SPEED_Y) != 0) {
+            speedY = ReplicationProtocol.readFloatDelta(reader, speedY);
+        }
+        if ((changed & FIELD_GROUNDED) != 0) {
+            grounded = !grounded;
+        }
+
+        frame.add(id, x, y, speedX, speedY, grounded);
+    }
+
+    /**
+     * Copies an unchanged Entity from one frame to another.
+     *
+     * @param from
+     * @param index
+     * @param to
+     */
+    private static void copyEntry(
+            ReplicationFrame from, int index, ReplicationFrame to) {
+        to.add(from.getId(index),
+                from.getX(index),
+                from.getY(index),
+                from.getSpeedX(index),
+                from.getSpeedY(index),
+                from.isGrounded(index));
+    }
+
+    /**
+     * Gets the latest frame received.
+     *
+     * @return Frame, or null if nothing has been received yet.
+     */
+    public ReplicationFrame getLatestFrame() {
+        return latestSequence < 0
+                ? null
+                : history[latestSequence % HISTORY_SIZE];
+    }
+
+    /**
+     * Gets the sequence number of the latest frame received.
+     *
+     * @return Sequence number, or -1 if nothing has been received yet.
+     */
+    public int getLatestSequence() {
+        return latestSequence;
+    }
+
+}
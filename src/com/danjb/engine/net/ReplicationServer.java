@@ -0,0 +1,132 @@
+package com.danjb.engine.net;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.danjb.engine.game.Logic;
+
+/**
+ * Streams the state of a {@link Logic} to any number of clients.
+ *
+ * <p>{@link #tick} should be called at the desired send rate, between
+ * updates of the Logic. Each client receives only the Entities within its
+ * area of interest, and only the changes since the last frame it
+ * acknowledged (see {@link ReplicationClient}).
+ *
+ * <p>Currently, the replicated state of each Entity consists of its position,
+ * speed and grounded state.
+ *
+ * @author Dan Bryce
+ */
+public class ReplicationServer {
+
+    /**
+     * Logic whose state is being replicated.
+     */
+    private final Logic logic;
+
+    /**
+     * Clients receiving the replicated state.
+     */
+    private final List<ReplicationClient> clients = new ArrayList<>();
+
+    /**
+     * Number of bytes sent during the most recent tick.
+     */
+    private int bytesLastTick;
+
+    /**
+     * Total number of bytes sent.
+     */
+    private long totalBytes;
+
+    /**
+     * Number of ticks performed.
+     */
+    private long numTicks;
+
+    /**
+     * Creates a ReplicationServer.
+     *
+     * @param logic
+     */
+    public ReplicationServer(Logic logic) {
+        this.logic = logic;
+    }
+
+    /**
+     * Adds a client.
+     *
+     * <p>The client will receive the full state on the next tick.
+     *
+     * @param transport Transport used to communicate with the client.
+     * @return
+     */
+    public ReplicationClient addClient(Transport transport) {
+        ReplicationClient client = new ReplicationClient(transport);
+        clients.add(client);
+        return client;
+    }
+
+    /**
+     * Removes a client.
+     *
+     * @param client
+     */
+    public void removeClient(ReplicationClient client) {
+        clients.remove(client);
+    }
+
+    /**
+     * Processes any acknowledgements and sends the current state to every
+     * client.
+     */
+    public void tick() {
+        int bytes = 0;
+        for (ReplicationClient client : clients) {
+            client.receiveAcks();
+            bytes += client.send(logic);
+        }
+        bytesLastTick = bytes;
+        totalBytes += bytes;
+        numTicks++;
+    }
+
+    /**
+     * Gets all clients.
+     *
+     * @return
+     */
+    public List<ReplicationClient> getClients() {
+        return clients;
+    }
+
+    /**
+     * Gets the number of bytes sent to all clients during the most recent
+     * tick.
+     *
+     * @return
+     */
+    public int getBytesLastTick() {
+        return bytesLastTick;
+    }
+
+    /**
+     * Gets the total number of bytes sent to all clients.
+     *
+     * @return
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Gets the average number of bytes sent to all clients per tick.
+     *
+     * @return
+     */
+    public float getAverageBytesPerTick() {
+        return numTicks == 0 ? 0 : (float) totalBytes / numTicks;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.danjb.engine.net;
+
+/**
+ * Means of exchanging packets with a remote peer.
+ *
+ * <p>Packets may be lost, but must not be corrupted or split.
+ *
+ * @author Dan Bryce
+ */
+public interface Transport {
+
+    /**
+     * Sends a packet.
+     *
+     * <p>The data may be modified as soon as this returns.
+     *
+     * @param data
+     * @param length Number of bytes to send.
+     */
+    void send(byte[] data, int length);
+
+    /**
+     * Gets the next packet that has been received.
+     *
+     * @return Packet, or null if none is waiting.
+     */
+    byte[] receive();
+
+}
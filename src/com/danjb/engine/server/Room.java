@@ -0,0 +1,326 @@
+package com.danjb.engine.server;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.danjb.engine.application.Logger;
+import com.danjb.engine.game.Logic;
+
+/**
+ * A single, independent game world hosted by a {@link RoomScheduler}.
+ *
+ * <p>Each Room advances its Logic using its own fixed timestep. Whenever the
+ * scheduler runs a Room, it performs as many updates as are needed to catch
+ * up with the clock, up to the scheduler's limit; if it falls further behind
+ * than this, the backlog is dropped (and recorded) rather than allowing the
+ * Room to spiral.
+ *
+ * <p>A Room is never run by more than one thread at a time, so its Logic does
+ * not need to be thread-safe. However, the Logic must not be accessed from
+ * other threads while the Room is scheduled.
+ *
+ * @author Dan Bryce
+ */
+public class Room implements Runnable {
+
+    /**
+     * Scheduler that owns this Room.
+     */
+    private final RoomScheduler scheduler;
+
+    /**
+     * Logic that holds this Room's game world.
+     */
+    private final Logic logic;
+
+    /**
+     * Length of each update, in milliseconds.
+     */
+    private final int timestep;
+
+    /**
+     * Length of each update, in nanoseconds.
+     */
+    private final long timestepNanos;
+
+    /**
+     * Flag set while this Room is queued or running, so that it is never
+     * scheduled twice.
+     */
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    /**
+     * Clock time at which this Room last ran, in nanoseconds.
+     */
+    private long lastRunTime;
+
+    /**
+     * Time that has passed but not yet been simulated, in nanoseconds.
+     */
+    private long accumulator;
+
+    /**
+     * Whether this Room has been removed, or has stopped due to an error.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Error that caused this Room to stop, if any.
+     */
+    private volatile RuntimeException error;
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Statistics
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Number of updates performed.
+     */
+    private volatile long numUpdates;
+
+    /**
+     * Number of updates that took longer than the timestep to run.
+     */
+    private volatile long numOverruns;
+
+    /**
+     * Number of updates skipped because this Room fell too far behind.
+     */
+    private volatile long numDroppedUpdates;
+
+    /**
+     * Number of times the Executor refused to run this Room.
+     */
+    private volatile long numRejections;
+
+    /**
+     * How far behind the clock this Room was when it last ran, in
+     * nanoseconds.
+     */
+    private volatile long lag;
+
+    /**
+     * Duration of the most recent update, in nanoseconds.
+     */
+    private volatile long lastUpdateDuration;
+
+    /**
+     * Creates a Room.
+     *
+     * <p>Rooms should be created using {@link RoomScheduler#addRoom}.
+     *
+     * @param scheduler
+     * @param logic
+     * @param timestep
+     * @param now
+     */
+    Room(RoomScheduler scheduler, Logic logic, int timestep, long now) {
+        if (timestep <= 0) {
+            throw new IllegalArgumentException(
+                    "Timestep must be positive: " + timestep);
+        }
+        this.scheduler = scheduler;
+        this.logic = logic;
+        this.timestep = timestep;
+        timestepNanos = timestep * 1_000_000L;
+        lastRunTime = now;
+    }
+
+    /**
+     * Determines if this Room is ready to run.
+     *
+     * <p>This should only be called while the Room is claimed.
+     *
+     * @param now Current clock time, in nanoseconds.
+     * @return
+     */
+    boolean isDue(long now) {
+        return !stopped && accumulator + (now - lastRunTime) >= timestepNanos;
+    }
+
+    /**
+     * Attempts to mark this Room as busy.
+     *
+     * @return True if the Room was idle and is now busy.
+     */
+    boolean tryClaim() {
+        return busy.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks this Room as idle without running it.
+     */
+    void release() {
+        busy.set(false);
+    }
+
+    /**
+     * Records that the Executor refused to run this Room.
+     *
+     * <p>This is only called by the scheduler's dispatch thread.
+     */
+    void recordRejection() {
+        numRejections++;
+    }
+
+    /**
+     * Stops this Room from being run again.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Performs any updates that are due.
+     *
+     * <p>This is called on one of the scheduler's worker threads, after the
+     * Room has been claimed.
+     */
+    @Override
+    public void run() {
+        try {
+            if (!stopped) {
+                catchUp(scheduler.getTime());
+            }
+        } catch (RuntimeException ex) {
+            error = ex;
+            stopped = true;
+            Logger.get().log(ex);
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * Updates the Logic as many times as necessary to catch up with the
+     * clock.
+     *
+     * @param now Current clock time, in nanoseconds.
+     */
+    private void catchUp(long now) {
+
+        accumulator += now - lastRunTime;
+        lastRunTime = now;
+        lag = Math.max(0, accumulator - timestepNanos);
+
+        int maxSteps = scheduler.getMaxStepsPerRun();
+        int steps = 0;
+
+        while (accumulator >= timestepNanos && steps < maxSteps) {
+            long before = scheduler.getTime();
+            logic.update(timestep);
+            long duration = scheduler.getTime() - before;
+
+            lastUpdateDuration = duration;
+            if (duration > timestepNanos) {
+                numOverruns++;
+            }
+            numUpdates++;
+            accumulator -= timestepNanos;
+            steps++;
+        }
+
+        if (accumulator >= timestepNanos) {
+            // We can't keep up; drop the backlog so that we don't fall
+            // further and further behind
+            numDroppedUpdates += accumulator / timestepNanos;
+            accumulator %= timestepNanos;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Getters
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Gets the Logic that holds this Room's game world.
+     *
+     * @return
+     */
+    public Logic getLogic() {
+        return logic;
+    }
+
+    /**
+     * Gets the length of each update, in milliseconds.
+     *
+     * @return
+     */
+    public int getTimestep() {
+        return timestep;
+    }
+
+    /**
+     * Determines whether this Room has stopped running.
+     *
+     * @return
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Gets the error that caused this Room to stop, if any.
+     *
+     * @return
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * Gets the number of updates performed.
+     *
+     * @return
+     */
+    public long getNumUpdates() {
+        return numUpdates;
+    }
+
+    /**
+     * Gets the number of updates that took longer than the timestep to run.
+     *
+     * @return
+     */
+    public long getNumOverruns() {
+        return numOverruns;
+    }
+
+    /**
+     * Gets the number of updates skipped because this Room fell too far
+     * behind.
+     *
+     * @return
+     */
+    public long getNumDroppedUpdates() {
+        return numDroppedUpdates;
+    }
+
+    /**
+     * Gets the number of times the Executor refused to run this Room.
+     *
+     * @return
+     */
+    public long getNumRejections() {
+        return numRejections;
+    }
+
+    /**
+     * Gets how far behind the clock this Room was when it last ran, beyond
+     * the single update that was due.
+     *
+     * @return Lag, in milliseconds.
+     */
+    public float getLag() {
+        return lag / 1_000_000f;
+    }
+
+    /**
+     * Gets the duration of the most recent update.
+     *
+     * @return Duration, in milliseconds.
+     */
+    public float getLastUpdateDuration() {
+        return lastUpdateDuration / 1_000_000f;
+    }
+
+}
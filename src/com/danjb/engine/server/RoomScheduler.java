@@ -0,0 +1,255 @@
+package com.danjb.engine.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import com.danjb.engine.application.Logger;
+import com.danjb.engine.game.Logic;
+
+/**
+ * Runs any number of independent {@link Room}s on a shared Executor.
+ *
+ * <p>This allows a single process to host many small games without needing a
+ * thread per game. The scheduler periodically checks which Rooms are due an
+ * update, and hands each of them to the Executor. The Executor decides how
+ * many Rooms can run at once; any kind can be used, for example a fixed
+ * thread pool, or one that creates a virtual thread per task.
+ *
+ * <p>Scheduling is fair: each check starts from a different Room, and no Room
+ * can perform more than {@link #getMaxStepsPerRun} updates before yielding
+ * its thread to the others. A Room that is still running when it next falls
+ * due is simply skipped until it has finished.
+ *
+ * <p>If the Executor rejects a Room (for example, because its queue is full),
+ * the Room is released and tried again at the next check. Rejections are
+ * counted by each Room (see {@link Room#getNumRejections}).
+ *
+ * <p>Rooms can be checked manually using {@link #dispatch}, or automatically
+ * by calling {@link #start}.
+ *
+ * @author Dan Bryce
+ */
+public class RoomScheduler {
+
+    /**
+     * Default limit on the number of updates a Room can perform each time it
+     * runs.
+     */
+    public static final int DEFAULT_MAX_STEPS_PER_RUN = 5;
+
+    /**
+     * Executor used to run the Rooms.
+     */
+    private final Executor executor;
+
+    /**
+     * Clock used to measure time, in nanoseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * All Rooms currently being scheduled.
+     */
+    private final List<Room> rooms = new CopyOnWriteArrayList<>();
+
+    /**
+     * Index of the Room to check first during the next dispatch.
+     */
+    private int nextRoomIndex;
+
+    /**
+     * Maximum number of updates a Room can perform each time it runs.
+     */
+    private volatile int maxStepsPerRun = DEFAULT_MAX_STEPS_PER_RUN;
+
+    /**
+     * Service that calls {@link #dispatch} periodically, once started.
+     */
+    private ScheduledExecutorService dispatcher;
+
+    /**
+     * Creates a RoomScheduler that uses the system clock.
+     *
+     * @param executor Executor used to run the Rooms.
+     */
+    public RoomScheduler(Executor executor) {
+        this(executor, System::nanoTime);
+    }
+
+    /**
+     * Creates a RoomScheduler that uses the given clock.
+     *
+     * @param executor Executor used to run the Rooms.
+     * @param clock Clock that supplies the current time, in nanoseconds.
+     */
+    public RoomScheduler(Executor executor, LongSupplier clock) {
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a Room to be scheduled.
+     *
+     * <p>The Logic should already have a Level loaded.
+     *
+     * @param logic
+     * @param timestep Length of each update, in milliseconds.
+     * @return
+     */
+    public Room addRoom(Logic logic, int timestep) {
+        Room room = new Room(this, logic, timestep, getTime());
+        rooms.add(room);
+        return room;
+    }
+
+    /**
+     * Removes a Room from the scheduler.
+     *
+     * <p>If the Room is currently running, it will finish its current update.
+     *
+     * @param room
+     */
+    public void removeRoom(Room room) {
+        room.stop();
+        rooms.remove(room);
+    }
+
+    /**
+     * Hands every Room that is due an update to the Executor.
+     *
+     * <p>Rooms may be added or removed by other threads at any time; any
+     * such changes take effect from the next dispatch.
+     */
+    public synchronized void dispatch() {
+
+        long now = getTime();
+
+        // Work from a copy, in case Rooms are removed while we iterate
+        Room[] roomsToCheck = rooms.toArray(new Room[0]);
+        int numRooms = roomsToCheck.length;
+        if (numRooms == 0) {
+            return;
+        }
+
+        // Start from a different Room each time so that no Room is always
+        // at the back of the queue
+        int start = nextRoomIndex % numRooms;
+        nextRoomIndex = start + 1;
+
+        for (int i = 0; i < numRooms; i++) {
+            Room room = roomsToCheck[(start + i) % numRooms];
+            if (!room.tryClaim()) {
+                // Room is still running
+                continue;
+            }
+            if (room.isDue(now)) {
+                try {
+                    executor.execute(room);
+                } catch (RejectedExecutionException ex) {
+                    // Executor is saturated or shutting down
+                    room.release();
+                    room.recordRejection();
+                }
+            } else {
+                room.release();
+            }
+        }
+    }
+
+    /**
+     * Starts checking for Rooms that are due an update at regular intervals.
+     *
+     * @param interval Time between checks, in milliseconds. This should be
+     * no more than the shortest timestep of any Room.
+     */
+    public synchronized void start(int interval) {
+        if (dispatcher != null) {
+            throw new IllegalStateException("Scheduler is already running");
+        }
+        dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "RoomScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleAtFixedRate(
+                this::dispatchSafely, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Calls {@link #dispatch}, logging any error.
+     *
+     * <p>An exception escaping a periodic task would cancel all of its future
+     * runs, leaving every Room stuck.
+     */
+    private void dispatchSafely() {
+        try {
+            dispatch();
+        } catch (RuntimeException ex) {
+            Logger.get().log(ex);
+        }
+    }
+
+    /**
+     * Stops checking for Rooms that are due an update.
+     *
+     * <p>Rooms that are already running will finish their current updates.
+     */
+    public synchronized void stop() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+            dispatcher = null;
+        }
+    }
+
+    /**
+     * Gets the current clock time.
+     *
+     * @return Time, in nanoseconds.
+     */
+    long getTime() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Gets all Rooms currently being scheduled.
+     *
+     * @return
+     */
+    public List<Room> getRooms() {
+        return rooms;
+    }
+
+    /**
+     * Gets the maximum number of updates a Room can perform each time it
+     * runs.
+     *
+     * @return
+     */
+    public int getMaxStepsPerRun() {
+        return maxStepsPerRun;
+    }
+
+    /**
+     * Sets the maximum number of updates a Room can perform each time it
+     * runs.
+     *
+     * <p>A Room that needs more updates than this to catch up with the clock
+     * drops the excess, and records them as dropped updates.
+     *
+     * @param maxStepsPerRun
+     */
+    public void setMaxStepsPerRun(int maxStepsPerRun) {
+        if (maxStepsPerRun < 1) {
+            throw new IllegalArgumentException(
+                    "Max steps must be at least 1: " + maxStepsPerRun);
+        }
+        this.maxStepsPerRun = maxStepsPerRun;
+    }
+
+}
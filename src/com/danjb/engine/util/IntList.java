@@ -0,0 +1,147 @@
+package com.danjb.engine.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints.
+ *
+ * <p>This avoids the boxing overhead of a {@code List<Integer>}, and can be
+ * cleared and reused every frame without generating any garbage.
+ *
+ * @author Dan Bryce
+ */
+public class IntList {
+
+    /**
+     * Default initial capacity.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Backing array.
+     */
+    private int[] values;
+
+    /**
+     * Number of values in the list.
+     */
+    private int size;
+
+    /**
+     * Creates an empty IntList.
+     */
+    public IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty IntList with the given initial capacity.
+     *
+     * @param capacity
+     */
+    public IntList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Adds a value to the end of the list.
+     *
+     * @param value
+     */
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Gets the value at the given index.
+     *
+     * @param index
+     * @return
+     */
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * Replaces the value at the given index.
+     *
+     * @param index
+     * @param value
+     */
+    public void set(int index, int value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Index: " + index + ", Size: " + size);
+        }
+        values[index] = value;
+    }
+
+    /**
+     * Removes and returns the last value in the list.
+     *
+     * @return
+     */
+    public int removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("List is empty");
+        }
+        size--;
+        return values[size];
+    }
+
+    /**
+     * Gets the number of values in the list.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determines if the list is empty.
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values from the list.
+     *
+     * <p>The backing array is retained so that the list can be reused.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sorts the list into ascending order and removes any duplicate values.
+     */
+    public void sortUnique() {
+        if (size < 2) {
+            return;
+        }
+
+        Arrays.sort(values, 0, size);
+
+        int newSize = 1;
+        for (int i = 1; i < size; i++) {
+            if (values[i] != values[newSize - 1]) {
+                values[newSize] = values[i];
+                newSize++;
+            }
+        }
+        size = newSize;
+    }
+
+}
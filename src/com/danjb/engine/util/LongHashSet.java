@@ -0,0 +1,243 @@
+package com.danjb.engine.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash set of primitive longs.
+ *
+ * <p>This avoids the boxing overhead of a {@code Set<Long>}, and can be
+ * cleared and reused every frame without generating any garbage.
+ *
+ * <p>Values are held in an open-addressing hash table. To iterate without
+ * allocating, loop over the slots up to {@link #capacity()} and skip any that
+ * are unoccupied:
+ *
+ * <pre>
+ * for (int i = 0; i &lt; set.capacity(); i++) {
+ *     if (set.isOccupied(i)) {
+ *         long value = set.getAt(i);
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>Values must not be added or removed during such a loop.
+ *
+ * @author Dan Bryce
+ */
+public class LongHashSet {
+
+    /**
+     * Default initial capacity; must be a power of 2.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Values stored in the hash table.
+     */
+    private long[] values;
+
+    /**
+     * Whether each slot in the hash table is occupied.
+     */
+    private boolean[] occupied;
+
+    /**
+     * Number of values in the set.
+     */
+    private int size;
+
+    /**
+     * Creates an empty LongHashSet.
+     */
+    public LongHashSet() {
+        values = new long[DEFAULT_CAPACITY];
+        occupied = new boolean[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value
+     * @return True if the value was added; false if it was already present.
+     */
+    public boolean add(long value) {
+
+        int slot = findSlot(value);
+        if (occupied[slot]) {
+            return false;
+        }
+
+        values[slot] = value;
+        occupied[slot] = true;
+        size++;
+
+        // Keep the load factor below 0.5 so that probe sequences stay short
+        if (size * 2 > values.length) {
+            grow();
+        }
+
+        return true;
+    }
+
+    /**
+     * Determines if the set contains the given value.
+     *
+     * @param value
+     * @return
+     */
+    public boolean contains(long value) {
+        return occupied[findSlot(value)];
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value
+     * @return True if the value was removed; false if it was not present.
+     */
+    public boolean remove(long value) {
+
+        int slot = findSlot(value);
+        if (!occupied[slot]) {
+            return false;
+        }
+
+        deleteSlot(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all values from the set, retaining its storage for reuse.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(occupied, false);
+            size = 0;
+        }
+    }
+
+    /**
+     * Gets the number of values in the set.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determines if the set is empty.
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of slots in the hash table, for iteration.
+     *
+     * @return
+     */
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Determines if the given slot holds a value.
+     *
+     * @param slot
+     * @return
+     */
+    public boolean isOccupied(int slot) {
+        return occupied[slot];
+    }
+
+    /**
+     * Gets the value in the given slot.
+     *
+     * @param slot
+     * @return
+     */
+    public long getAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Finds the slot holding the given value, or the empty slot where it
+     * would be inserted.
+     *
+     * @param value
+     * @return
+     */
+    private int findSlot(long value) {
+        int mask = values.length - 1;
+        int slot = hash(value) & mask;
+        while (occupied[slot] && values[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties a slot in the hash table.
+     *
+     * <p>Any values further along the probe sequence are shifted back so
+     * that lookups never have to step over a deleted slot.
+     *
+     * @param slot
+     */
+    private void deleteSlot(int slot) {
+
+        int mask = values.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+
+        while (occupied[next]) {
+            int home = hash(values[next]) & mask;
+            // Move this value into the gap, unless the gap lies outside of
+            // its probe sequence
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        occupied[gap] = false;
+    }
+
+    /**
+     * Doubles the capacity of the hash table.
+     */
+    private void grow() {
+
+        long[] oldValues = values;
+        boolean[] oldOccupied = occupied;
+
+        values = new long[oldValues.length * 2];
+        occupied = new boolean[oldOccupied.length * 2];
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldOccupied[i]) {
+                int slot = findSlot(oldValues[i]);
+                values[slot] = oldValues[i];
+                occupied[slot] = true;
+            }
+        }
+    }
+
+    /**
+     * Scrambles a value so that similar values are spread across the table.
+     *
+     * @param value
+     * @return
+     */
+    private static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.danjb.engine.application;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the Application's game loop.
+ *
+ * @author Dan Bryce
+ */
+public class ApplicationTest {
+
+    /**
+     * Application that runs using a predetermined sequence of delta values.
+     */
+    private static class TestApplication extends Application {
+
+        private int[] deltas;
+        private int nextDelta;
+
+        private List<Integer> updates = new ArrayList<>();
+        private List<Float> alphas = new ArrayList<>();
+
+        public TestApplication(int... deltas) {
+            this.deltas = deltas;
+            input = new Input();
+        }
+
+        @Override
+        protected int calculateDelta() {
+            int delta = deltas[nextDelta];
+            nextDelta++;
+            if (nextDelta == deltas.length) {
+                requestExit(0);
+            }
+            return delta;
+        }
+
+        @Override
+        protected void yieldThread() {
+            // Nothing to wait for
+        }
+
+        @Override
+        protected void pollInput() {
+            // No input
+        }
+
+        @Override
+        protected void update(int delta) {
+            updates.add(delta);
+        }
+
+        @Override
+        protected void render() {
+            // Nothing to render
+        }
+
+        @Override
+        protected void render(float alpha) {
+            alphas.add(alpha);
+        }
+
+    }
+
+    @Test
+    public void testVariableTimestep() {
+
+        // GIVEN an Application without a fixed timestep
+        TestApplication app = new TestApplication(10, 25, 7);
+
+        // WHEN the game loop runs
+        app.run();
+
+        // THEN each tick is updated using the elapsed time
+        assertEquals(List.of(10, 25, 7), app.updates);
+    }
+
+    @Test
+    public void testFixedTimestepAccumulatesTime() {
+
+        // GIVEN an Application with a fixed timestep of 10ms
+        TestApplication app = new TestApplication(4, 4, 4, 25);
+        app.setFixedTimestep(10);
+
+        // WHEN the game loop runs
+        app.run();
+
+        // THEN the game is updated once for every 10ms of elapsed time
+        assertEquals(List.of(10, 10, 10), app.updates);
+
+        // AND the leftover time is passed to the renderer
+        assertEquals(List.of(0.4f, 0.8f, 0.2f, 0.7f), app.alphas);
+    }
+
+    @Test
+    public void testFixedTimestepLimitsCatchUp() {
+
+        // GIVEN an Application with a fixed timestep, and a limit of 3 steps
+        TestApplication app = new TestApplication(55, 10);
+        app.setFixedTimestep(10);
+        app.setMaxStepsPerTick(3);
+
+        // WHEN a long frame is followed by a normal one
+        app.run();
+
+        // THEN the backlog is dropped rather than carried forward
+        assertEquals(3 + 1, app.updates.size());
+        assertEquals(0.5f, app.alphas.get(0), 0.0001f);
+    }
+
+}
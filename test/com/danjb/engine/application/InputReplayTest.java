@@ -0,0 +1,309 @@
+package com.danjb.engine.application;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.danjb.engine.application.Input.EventType;
+import com.danjb.engine.application.Input.InputEvent;
+import com.danjb.engine.application.Input.KeyEvent;
+import com.danjb.engine.application.Input.MouseEvent;
+import com.danjb.engine.game.Logic;
+import com.danjb.engine.game.TestEntity;
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of recording and replaying input.
+ *
+ * @author Dan Bryce
+ */
+public class InputReplayTest {
+
+    private static final int KEY_RIGHT = 1;
+    private static final int KEY_JUMP = 2;
+    private static final int NUM_FRAMES = 120;
+
+    /**
+     * State that moves an Entity around in response to input.
+     */
+    private static class TestState extends State {
+
+        private Logic logic;
+        private Entity player;
+        private int lastMouseX;
+
+        public TestState(Application app) {
+            super(app);
+        }
+
+        @Override
+        public void init() {
+
+            int[][] tiles = new int[40][10];
+            for (int x = 0; x < 40; x++) {
+                tiles[x][9] = 1;
+            }
+
+            logic = new Logic(new TestTileProvider());
+            logic.changeLevel(new Level(new TileLayer(0, tiles)));
+            logic.setDeterministic(true);
+
+            player = new TestEntity();
+            logic.addEntity(player,
+                    GameUtils.worldUnits(2), GameUtils.worldUnits(7));
+        }
+
+        @Override
+        public void update(int delta) {
+            Input input = app.getInput();
+            if (input.isKeyDown(KEY_RIGHT)) {
+                player.hitbox.setSpeedX(GameUtils.worldUnits(4));
+            }
+            if (input.wasKeyPressed(KEY_JUMP) && player.hitbox.isGrounded()) {
+                player.hitbox.setSpeedY(GameUtils.worldUnits(-8));
+            }
+            lastMouseX = input.getMouseX();
+            logic.update(delta);
+        }
+
+        @Override
+        public void render() {
+            // Nothing to render
+        }
+
+    }
+
+    /**
+     * Application that generates scripted input with irregular deltas.
+     */
+    private static class ScriptedApplication extends Application {
+
+        private int frame;
+
+        @Override
+        protected int calculateDelta() {
+            frame++;
+            if (frame == NUM_FRAMES) {
+                requestExit(0);
+            }
+            return 14 + frame % 5;
+        }
+
+        @Override
+        protected void yieldThread() {
+            // Run as fast as possible
+        }
+
+        @Override
+        protected void pollInput() {
+            if (frame % 30 == 1) {
+                input.addKeyEvent(new KeyEvent(
+                        KEY_RIGHT, 'd', EventType.PRESSED));
+            } else if (frame % 30 == 20) {
+                input.addKeyEvent(new KeyEvent(
+                        KEY_RIGHT, 'd', EventType.RELEASED));
+            }
+            if (frame % 25 == 5) {
+                input.addKeyEvent(new KeyEvent(
+                        KEY_JUMP, ' ', EventType.PRESSED));
+                input.addKeyEvent(new KeyEvent(
+                        KEY_JUMP, ' ', EventType.RELEASED));
+            }
+            if (frame % 10 == 0) {
+                input.setMousePos(frame * 3, -frame);
+                input.addMouseEvent(new MouseEvent(
+                        0, frame * 3, -frame, EventType.PRESSED));
+            }
+        }
+
+        @Override
+        protected void render() {
+            // Nothing to render
+        }
+
+    }
+
+    /**
+     * State that remembers every input event it handles.
+     */
+    private static class EventLogState extends State {
+
+        private List<Integer> keyIds = new ArrayList<>();
+
+        public EventLogState(Application app) {
+            super(app);
+        }
+
+        @Override
+        public void init() {
+            // Nothing to initialise
+        }
+
+        @Override
+        public void update(int delta) {
+            for (InputEvent event : app.getInput().getEvents()) {
+                keyIds.add(event.getKeyId());
+            }
+        }
+
+        @Override
+        public void render() {
+            // Nothing to render
+        }
+
+    }
+
+    /**
+     * Application whose first tick is too short to run an update.
+     */
+    private static class ShortFrameApplication extends Application {
+
+        private int frame;
+
+        @Override
+        protected int calculateDelta() {
+            frame++;
+            if (frame == 3) {
+                requestExit(0);
+            }
+            return frame == 1 ? 5 : 16;
+        }
+
+        @Override
+        protected void yieldThread() {
+            // Run as fast as possible
+        }
+
+        @Override
+        protected void pollInput() {
+            if (frame <= 2) {
+                input.addKeyEvent(new KeyEvent(
+                        KEY_RIGHT + frame, 'k', EventType.PRESSED));
+            }
+        }
+
+        @Override
+        protected void render() {
+            // Nothing to render
+        }
+
+    }
+
+    /**
+     * Application that has no input of its own.
+     */
+    private static class HeadlessApplication extends Application {
+
+        @Override
+        protected int calculateDelta() {
+            throw new IllegalStateException("Replays should supply the delta");
+        }
+
+        @Override
+        protected void yieldThread() {
+            throw new IllegalStateException("Replays should not wait");
+        }
+
+        @Override
+        protected void pollInput() {
+            throw new IllegalStateException("Replays should not poll input");
+        }
+
+        @Override
+        protected void render() {
+            throw new IllegalStateException("Replays should not render");
+        }
+
+    }
+
+    @Test
+    public void testReplayReproducesSession() throws IOException {
+
+        // GIVEN a recording of a session
+        ScriptedApplication original = new ScriptedApplication();
+        original.setFixedTimestep(16);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(log);
+        original.setInputRecorder(recorder);
+        original.init();
+        TestState originalState = new TestState(original);
+        original.changeState(originalState);
+        original.run();
+        recorder.close();
+
+        // WHEN it is replayed by an Application without any input
+        HeadlessApplication replayed = new HeadlessApplication();
+        replayed.setFixedTimestep(16);
+        TestState replayedState = new TestState(replayed);
+        int numFrames;
+        try (InputPlayback playback = new InputPlayback(
+                new ByteArrayInputStream(log.toByteArray()))) {
+            numFrames = replayed.replay(replayedState, playback);
+        }
+
+        // THEN every frame is replayed, producing the same final state
+        assertEquals(NUM_FRAMES, recorder.getNumFrames());
+        assertEquals(NUM_FRAMES, numFrames);
+        assertEquals(originalState.logic.getStateHash(),
+                replayedState.logic.getStateHash());
+        assertEquals(originalState.player.hitbox.x,
+                replayedState.player.hitbox.x, 0);
+        assertEquals(originalState.lastMouseX, replayedState.lastMouseX);
+    }
+
+    @Test
+    public void testReplayDoesNotRepeatUnconsumedEvents() throws IOException {
+
+        // GIVEN a recording where the first tick is shorter than the fixed
+        // timestep, so its event is only handled on the next tick
+        ShortFrameApplication original = new ShortFrameApplication();
+        original.setFixedTimestep(16);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(log);
+        original.setInputRecorder(recorder);
+        original.init();
+        EventLogState originalState = new EventLogState(original);
+        original.changeState(originalState);
+        original.run();
+        recorder.close();
+
+        // WHEN it is replayed
+        HeadlessApplication replayed = new HeadlessApplication();
+        replayed.setFixedTimestep(16);
+        EventLogState replayedState = new EventLogState(replayed);
+        try (InputPlayback playback = new InputPlayback(
+                new ByteArrayInputStream(log.toByteArray()))) {
+            replayed.replay(replayedState, playback);
+        }
+
+        // THEN each event is handled exactly once, as in the original session
+        List<Integer> expected = new ArrayList<>();
+        expected.add(KEY_RIGHT + 1);
+        expected.add(KEY_RIGHT + 2);
+        assertEquals(expected, originalState.keyIds);
+        assertEquals(expected, replayedState.keyIds);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsInvalidLog() throws IOException {
+
+        // GIVEN some data that is not an input log
+        byte[] data = new byte[] { 1, 2, 3, 4, 5 };
+
+        // WHEN we try to play it back
+        new InputPlayback(new ByteArrayInputStream(data)).close();
+
+        // THEN an exception is thrown
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of the various Broadphase implementations.
+ *
+ * @author Dan Bryce
+ */
+public class BroadphaseTest {
+
+    /**
+     * Collision layer used for pickups.
+     */
+    private static final int PICKUP_LAYER = 2;
+
+    /**
+     * Logic that records every intersecting pair it is asked to check.
+     */
+    private static class RecordingLogic extends Logic {
+
+        private List<String> pairs = new ArrayList<>();
+
+        public RecordingLogic() {
+            super(new TestTileProvider());
+        }
+
+        @Override
+        protected void checkForCollision(Entity e1, Entity e2) {
+            if (e1.hitbox.intersects(e2.hitbox)) {
+                pairs.add(e1.getId() + "-" + e2.getId());
+            }
+        }
+
+    }
+
+    /**
+     * Processes collisions between a set of randomly-placed Entities.
+     *
+     * @param broadphase
+     * @return Intersecting pairs, in the order they were processed.
+     */
+    private List<String> findPairs(Broadphase broadphase) {
+        return findPairs(broadphase, false);
+    }
+
+    /**
+     * Processes collisions between a set of randomly-placed Entities.
+     *
+     * @param broadphase
+     * @param pickups Whether every other Entity should be a pickup, which
+     * only collides with non-pickups.
+     * @return Intersecting pairs, in the order they were processed.
+     */
+    private List<String> findPairs(Broadphase broadphase, boolean pickups) {
+
+        RecordingLogic logic = new RecordingLogic();
+        logic.setBroadphase(broadphase);
+
+        Random random = new Random(1234);
+        for (int i = 0; i < 200; i++) {
+            Entity e = new TestEntity();
+            if (pickups && i % 2 == 1) {
+                e.setCollisionLayer(PICKUP_LAYER);
+                e.setCollisionMask(Entity.DEFAULT_COLLISION_LAYER);
+            }
+            logic.addEntity(e,
+                    GameUtils.worldUnits(random.nextFloat() * 20 - 2),
+                    GameUtils.worldUnits(random.nextFloat() * 20 - 2));
+        }
+
+        logic.refreshEntities();
+        logic.processCollisions();
+
+        return logic.pairs;
+    }
+
+    /**
+     * Processes collisions over a number of frames, during which Entities are
+     * moved, added and deleted.
+     *
+     * @param broadphase
+     * @return Intersecting pairs, in the order they were processed.
+     */
+    private List<String> findPairsOverTime(Broadphase broadphase) {
+
+        RecordingLogic logic = new RecordingLogic();
+        logic.setBroadphase(broadphase);
+
+        Random random = new Random(5678);
+        List<Entity> entities = new ArrayList<>();
+
+        for (int frame = 0; frame < 20; frame++) {
+
+            // Spawn some new Entities
+            for (int i = 0; i < 10; i++) {
+                Entity e = new TestEntity();
+                logic.addEntity(e,
+                        GameUtils.worldUnits(random.nextFloat() * 30),
+                        GameUtils.worldUnits(random.nextFloat() * 5));
+                entities.add(e);
+            }
+
+            // Move and delete some existing Entities
+            for (Entity e : entities) {
+                e.hitbox.translate(
+                        GameUtils.worldUnits(random.nextFloat() - 0.5f),
+                        GameUtils.worldUnits(random.nextFloat() - 0.5f));
+                if (random.nextFloat() < 0.05f) {
+                    e.delete();
+                }
+            }
+
+            logic.refreshEntities();
+            logic.processCollisions();
+            logic.pairs.add("end of frame");
+        }
+
+        return logic.pairs;
+    }
+
+    @Test
+    public void testUniformGridMatchesBruteForce() {
+
+        // GIVEN the pairs found by the brute-force approach
+        List<String> expected = findPairs(new BruteForceBroadphase());
+
+        // WHEN finding pairs using a uniform grid
+        List<String> actual = findPairs(new UniformGridBroadphase());
+
+        // THEN the same pairs are found, in the same order
+        assertEquals(true, expected.size() > 0);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSmallGridCellsMatchBruteForce() {
+
+        // GIVEN the pairs found by the brute-force approach
+        List<String> expected = findPairs(new BruteForceBroadphase());
+
+        // WHEN finding pairs using cells smaller than the Entities
+        List<String> actual = findPairs(new UniformGridBroadphase(
+                GameUtils.worldUnits(0.3f)));
+
+        // THEN the same pairs are found, in the same order
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSweepAndPruneMatchesBruteForce() {
+
+        // GIVEN the pairs found by the brute-force approach
+        List<String> expected = findPairs(new BruteForceBroadphase());
+
+        // WHEN finding pairs using sweep-and-prune
+        List<String> actual = findPairs(new SweepAndPruneBroadphase());
+
+        // THEN the same pairs are found, in the same order
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testBroadphasesMatchBruteForceOverTime() {
+
+        // GIVEN the pairs found by the brute-force approach over many frames
+        List<String> expected = findPairsOverTime(new BruteForceBroadphase());
+
+        // WHEN Entities move, spawn and despawn between frames
+        List<String> grid = findPairsOverTime(new UniformGridBroadphase());
+        List<String> sap = findPairsOverTime(new SweepAndPruneBroadphase());
+
+        // THEN each Broadphase finds the same pairs, in the same order
+        assertEquals(expected, grid);
+        assertEquals(expected, sap);
+    }
+
+    @Test
+    public void testBroadphasesRespectCollisionLayers() {
+
+        // GIVEN a world where half of the Entities are pickups, which do not
+        // collide with each other
+        List<String> all = findPairs(new BruteForceBroadphase(), false);
+
+        // WHEN finding pairs using each Broadphase
+        List<String> expected = findPairs(new BruteForceBroadphase(), true);
+        List<String> grid = findPairs(new UniformGridBroadphase(), true);
+        List<String> sap = findPairs(new SweepAndPruneBroadphase(), true);
+
+        // THEN pickup-vs-pickup pairs are discarded
+        assertEquals(true, expected.size() < all.size());
+        for (String pair : expected) {
+            String[] ids = pair.split("-");
+            boolean firstIsPickup = EntityHandles.getIndex(
+                    Integer.parseInt(ids[0])) % 2 == 1;
+            boolean secondIsPickup = EntityHandles.getIndex(
+                    Integer.parseInt(ids[1])) % 2 == 1;
+            assertEquals(false, firstIsPickup && secondIsPickup);
+        }
+
+        // AND every Broadphase agrees
+        assertEquals(expected, grid);
+        assertEquals(expected, sap);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.CollisionListener;
+import com.danjb.engine.game.entities.Entity;
+
+/**
+ * Tests of the cached lookup of an Entity's CollisionListener.
+ *
+ * @author Dan Bryce
+ */
+public class CollisionListenerTest {
+
+    /**
+     * CollisionListener that ignores all collisions.
+     */
+    private static class TestCollisionListener extends CollisionListener {
+
+        @Override
+        public void collidedWith(Entity other) {
+            // Nothing to do
+        }
+
+    }
+
+    private Entity entity;
+
+    @Before
+    public void setUp() {
+        entity = new TestEntity();
+    }
+
+    @Test
+    public void testListenerIsFound() {
+
+        // GIVEN an Entity with no CollisionListener, which has been looked up
+        assertNull(entity.getCollisionListener());
+
+        // WHEN a CollisionListener is attached
+        CollisionListener listener = new TestCollisionListener();
+        entity.attach(listener);
+
+        // THEN the new listener is returned
+        assertSame(listener, entity.getCollisionListener());
+    }
+
+    @Test
+    public void testDeletedListenerIsIgnored() {
+
+        // GIVEN an Entity with 2 CollisionListeners
+        CollisionListener first = new TestCollisionListener();
+        CollisionListener second = new TestCollisionListener();
+        entity.attach(first);
+        entity.attach(second);
+        assertSame(first, entity.getCollisionListener());
+
+        // WHEN the first listener is deleted
+        first.delete();
+
+        // THEN the second listener is returned, both before and after the
+        // deleted listener is removed
+        assertSame(second, entity.getCollisionListener());
+        entity.components.update(16);
+        assertSame(second, entity.getCollisionListener());
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the ComponentStore.
+ *
+ * @author Dan Bryce
+ */
+public class ComponentStoreTest {
+
+    private static final String KEY = "test";
+
+    private static final ComponentType<TestComponent> TYPE =
+            ComponentType.of(KEY, TestComponent.class);
+
+    /**
+     * Component that records whether it has been destroyed, and deletes
+     * itself when notified.
+     */
+    private static class TestComponent extends Component {
+
+        private boolean destroyed;
+        private int numEvents;
+
+        public TestComponent() {
+            super(KEY);
+        }
+
+        @Override
+        public void notify(ComponentEvent event) {
+            numEvents++;
+            delete();
+        }
+
+        @Override
+        protected void destroy() {
+            destroyed = true;
+        }
+
+    }
+
+    @Test
+    public void testDeletedComponentsAreSkippedImmediately() {
+
+        // GIVEN a store with 2 Components sharing a key
+        ComponentStore<TestComponent> store = new ComponentStore<>();
+        TestComponent first = new TestComponent();
+        TestComponent second = new TestComponent();
+        store.add(first);
+        store.add(second);
+
+        // WHEN the first is deleted
+        first.delete();
+
+        // THEN lookups skip it straight away, but it is not destroyed until
+        // the next update
+        assertSame(second, store.get(KEY));
+        List<TestComponent> result = new ArrayList<>();
+        store.getAll(KEY, result);
+        assertEquals(List.of(second), result);
+        assertFalse(first.destroyed);
+
+        store.update(16);
+        assertTrue(first.destroyed);
+        assertEquals(List.of(second), store.asList());
+    }
+
+    @Test
+    public void testTypedLookup() {
+
+        // GIVEN a store with a Component attached using its String key
+        ComponentStore<Component> store = new ComponentStore<>();
+        TestComponent component = new TestComponent();
+        store.add(component);
+
+        // WHEN the Component is looked up using its type
+        TestComponent result = store.get(TYPE);
+        List<TestComponent> results = new ArrayList<>();
+        store.getAll(TYPE, results);
+
+        // THEN it is found, as it is using its key
+        assertSame(component, result);
+        assertEquals(List.of(component), results);
+        assertSame(component, store.get(KEY));
+        assertNull(store.get("unknown"));
+    }
+
+    @Test
+    public void testDeleteAll() {
+
+        // GIVEN a store with 3 Components sharing a key
+        ComponentStore<TestComponent> store = new ComponentStore<>();
+        for (int i = 0; i < 3; i++) {
+            store.add(new TestComponent());
+        }
+
+        // WHEN they are all deleted
+        store.deleteAll(KEY);
+        store.update(16);
+
+        // THEN none remain
+        assertNull(store.get(KEY));
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void testComponentsCanDeleteThemselvesWhenNotified() {
+
+        // GIVEN a store with 2 Components that delete themselves when
+        // notified
+        ComponentStore<TestComponent> store = new ComponentStore<>();
+        TestComponent first = new TestComponent();
+        TestComponent second = new TestComponent();
+        store.add(first);
+        store.add(second);
+
+        // WHEN they are notified
+        store.notifyAll(KEY, new ComponentEvent() {});
+
+        // THEN both receive the event
+        assertEquals(1, first.numEvents);
+        assertEquals(1, second.numEvents);
+        assertNull(store.get(KEY));
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.CollisionListener;
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of the collision start / ongoing / end events.
+ *
+ * @author Dan Bryce
+ */
+public class ContactEventsTest {
+
+    /**
+     * CollisionListener that records the events it receives.
+     */
+    private static class RecordingCollisionListener extends CollisionListener {
+
+        private List<String> events = new ArrayList<>();
+
+        @Override
+        public boolean canCollideWith(Entity e) {
+            return true;
+        }
+
+        @Override
+        public void collidedWith(Entity other) {
+            // Covered by the other events
+        }
+
+        @Override
+        public void collisionStarted(Entity other) {
+            events.add("started");
+        }
+
+        @Override
+        public void collisionOngoing(Entity other) {
+            events.add("ongoing");
+        }
+
+        @Override
+        public void collisionEnded(Entity other) {
+            events.add("ended");
+        }
+
+    }
+
+    private Logic logic;
+    private Entity entity;
+    private Entity other;
+    private RecordingCollisionListener listener;
+
+    @Before
+    public void setUp() {
+
+        logic = new Logic(new TestTileProvider());
+
+        entity = new TestEntity();
+        logic.addEntity(entity, 0, 0);
+        listener = new RecordingCollisionListener();
+        entity.attach(listener);
+
+        other = new TestEntity();
+        logic.addEntity(other, GameUtils.worldUnits(0.5f), 0);
+    }
+
+    /**
+     * Processes collisions without running any physics.
+     */
+    private void processFrame() {
+        logic.refreshEntities();
+        logic.processCollisions();
+    }
+
+    @Test
+    public void testContactLifecycle() {
+
+        // GIVEN 2 overlapping Entities
+        processFrame();
+        processFrame();
+
+        // WHEN they move apart
+        other.hitbox.setPos(GameUtils.worldUnits(5), 0);
+        processFrame();
+        processFrame();
+
+        // THEN the collision starts, continues and ends exactly once
+        assertEquals(List.of("started", "ongoing", "ended"), listener.events);
+    }
+
+    @Test
+    public void testDeletionEndsContact() {
+
+        // GIVEN 2 overlapping Entities
+        processFrame();
+
+        // WHEN one of them is deleted
+        other.delete();
+        processFrame();
+        processFrame();
+        processFrame();
+
+        // THEN the collision ends, and no further events are sent
+        assertEquals(List.of("started", "ended"), listener.events);
+    }
+
+    @Test
+    public void testChangingMaskStillEndsContact() {
+
+        // GIVEN 2 overlapping Entities
+        processFrame();
+
+        // WHEN one of them stops being interested in the other
+        entity.setCollisionMask(0);
+        processFrame();
+        processFrame();
+
+        // THEN the collision still ends exactly once
+        assertEquals(List.of("started", "ended"), listener.events);
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.physics.Physics;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of the Logic's deterministic mode.
+ *
+ * @author Dan Bryce
+ */
+public class DeterminismTest {
+
+    /**
+     * Runs a simulation and records the state hash after each frame.
+     *
+     * @param nudgeFrame Frame on which to nudge an Entity, or -1.
+     * @return
+     */
+    private List<Long> simulate(int nudgeFrame) {
+
+        int[][] tiles = new int[20][10];
+        for (int x = 0; x < 20; x++) {
+            tiles[x][9] = 1;
+        }
+
+        Logic logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, tiles)));
+        logic.setDeterministic(true);
+
+        Random random = new Random(99);
+        List<Entity> entities = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Entity e = new TestEntity();
+            logic.addEntity(e,
+                    GameUtils.worldUnits(1 + random.nextFloat() * 17),
+                    GameUtils.worldUnits(random.nextFloat() * 7));
+            e.hitbox.setSpeedX(GameUtils.worldUnits(
+                    random.nextFloat() * 6 - 3));
+            entities.add(e);
+        }
+
+        List<Long> hashes = new ArrayList<>();
+        for (int frame = 0; frame < 60; frame++) {
+            if (frame == nudgeFrame) {
+                Entity e = entities.get(5);
+                e.hitbox.setPos(e.hitbox.x + Physics.SMALLEST_DISTANCE,
+                        e.hitbox.y);
+            }
+            logic.update(16);
+            hashes.add(logic.getStateHash());
+        }
+        return hashes;
+    }
+
+    @Test
+    public void testIdenticalRunsProduceIdenticalHashes() {
+
+        // GIVEN a simulation in deterministic mode
+        List<Long> first = simulate(-1);
+
+        // WHEN the same simulation is run again
+        List<Long> second = simulate(-1);
+
+        // THEN the state hash matches on every frame
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testDivergenceIsDetected() {
+
+        // GIVEN a simulation in deterministic mode
+        List<Long> expected = simulate(-1);
+
+        // WHEN an Entity is moved by a tiny amount partway through
+        List<Long> actual = simulate(30);
+
+        // THEN the hashes match up until that frame, and then differ
+        assertEquals(expected.subList(0, 30), actual.subList(0, 30));
+        assertNotEquals(expected.get(30), actual.get(30));
+    }
+
+    @Test
+    public void testSettingsOnlyAffectOneLogic() {
+
+        // GIVEN two Logics, each with an Entity
+        Logic first = new Logic(new TestTileProvider());
+        Logic second = new Logic(new TestTileProvider());
+        Entity firstEntity = new TestEntity();
+        Entity secondEntity = new TestEntity();
+        first.addEntity(firstEntity, 0, 0);
+        second.addEntity(secondEntity, 0, 0);
+
+        // WHEN the physics settings of one Logic are changed
+        first.setDeterministic(true);
+        first.setSubStepping(false);
+
+        // THEN only that Logic's Entities are affected
+        assertTrue(firstEntity.hitbox.isDeterministic());
+        assertFalse(firstEntity.hitbox.isSubStepping());
+        assertFalse(secondEntity.hitbox.isDeterministic());
+        assertTrue(secondEntity.hitbox.isSubStepping());
+
+        // AND Entities added later are given the same settings
+        Entity lateEntity = new TestEntity();
+        first.addEntity(lateEntity, 0, 0);
+        assertTrue(lateEntity.hitbox.isDeterministic());
+        assertFalse(lateEntity.hitbox.isSubStepping());
+    }
+
+}
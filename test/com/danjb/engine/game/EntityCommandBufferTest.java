@@ -0,0 +1,120 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.entities.EntityComponent;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of the Logic's deferred Entity commands.
+ *
+ * @author Dan Bryce
+ */
+public class EntityCommandBufferTest {
+
+    /**
+     * Component that teleports another Entity during its update.
+     */
+    private static class TeleportingComponent extends EntityComponent {
+
+        private Entity target;
+        private float targetXDuringUpdate;
+
+        public TeleportingComponent(Entity target) {
+            super("teleporter");
+            this.target = target;
+        }
+
+        @Override
+        public void update(int delta) {
+            logic.getCommands().teleport(target, GameUtils.worldUnits(5), 0);
+            targetXDuringUpdate = target.hitbox.x;
+        }
+
+    }
+
+    private Logic logic;
+
+    @Before
+    public void setUp() {
+        logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, new int[10][10])));
+    }
+
+    @Test
+    public void testCommandsAreDeferred() {
+
+        // GIVEN a Component that teleports another Entity
+        Entity target = new TestEntity();
+        logic.addEntity(target, 0, 0);
+        Entity teleporter = new TestEntity();
+        logic.addEntity(teleporter, 0, 0);
+        TeleportingComponent component = new TeleportingComponent(target);
+        teleporter.attach(component);
+
+        // WHEN the Logic is updated
+        logic.update(16);
+
+        // THEN the teleport does not happen immediately
+        assertEquals(0, component.targetXDuringUpdate, 0);
+
+        // AND it has been applied by the end of the frame
+        assertEquals(GameUtils.worldUnits(5), target.hitbox.x, 0);
+        assertTrue(logic.getCommands().isEmpty());
+    }
+
+    @Test
+    public void testCommandsForRemovedEntitiesAreDiscarded() {
+
+        // GIVEN an Entity that has been removed from the world, with a
+        // command still outstanding
+        Entity entity = new TestEntity();
+        logic.addEntity(entity, 0, 0);
+        logic.update(16);
+        logic.getCommands().teleport(entity, GameUtils.worldUnits(5), 0);
+        entity.delete();
+        logic.refreshEntities();
+        logic.updateEntities(16);
+        logic.refreshEntities();
+
+        // WHEN the commands are applied
+        logic.getCommands().playback();
+
+        // THEN the stale command has no effect
+        assertNull(logic.getEntity(entity.getId()));
+        assertEquals(0, entity.hitbox.x, 0);
+    }
+
+    @Test
+    public void testCommandsForReusedEntitiesAreDiscarded() {
+
+        // GIVEN a pooled Entity that has been removed from the world, with a
+        // command still outstanding
+        EntityPool<TestEntity> pool = new EntityPool<>(TestEntity::new);
+        Entity entity = logic.addEntity(pool, 0, 0);
+        logic.update(16);
+        logic.getCommands().teleport(entity, GameUtils.worldUnits(5), 0);
+        entity.delete();
+        logic.refreshEntities();
+        logic.updateEntities(16);
+        logic.refreshEntities();
+
+        // WHEN the Entity is reused, and the commands are applied
+        Entity reused = logic.addEntity(pool, GameUtils.worldUnits(2), 0);
+        logic.getCommands().playback();
+
+        // THEN the stale command has no effect
+        assertEquals(entity, reused);
+        assertEquals(GameUtils.worldUnits(2), reused.hitbox.x, 0);
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.tiles.TestTileProvider;
+
+/**
+ * Tests of generational Entity IDs.
+ *
+ * @author Dan Bryce
+ */
+public class EntityHandlesTest {
+
+    @Test
+    public void testReleasedSlotIsReused() {
+
+        // GIVEN a handle that has been released, and no minimum number of
+        // free slots
+        EntityHandles handles = new EntityHandles(0);
+        int first = handles.allocate();
+        handles.allocate();
+        handles.release(first);
+
+        // WHEN a new handle is allocated
+        int second = handles.allocate();
+
+        // THEN it reuses the same slot, with a new generation
+        assertEquals(EntityHandles.getIndex(first),
+                EntityHandles.getIndex(second));
+        assertNotEquals(first, second);
+        assertFalse(handles.isValid(first));
+        assertTrue(handles.isValid(second));
+    }
+
+    @Test
+    public void testStaleIdReturnsNull() {
+
+        // GIVEN an Entity that has been removed from the world
+        Logic logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, new int[5][5])));
+        Entity removed = new TestEntity();
+        logic.addEntity(removed, 0, 0);
+        logic.update(16);
+        int staleId = removed.getId();
+        removed.delete();
+        logic.update(16);
+        logic.update(16);
+
+        // WHEN a new Entity is added
+        Entity added = new TestEntity();
+        logic.addEntity(added, 0, 0);
+
+        // THEN the old ID is stale
+        assertNotEquals(staleId, added.getId());
+        assertNull(logic.getEntity(staleId));
+        assertSame(added, logic.getEntity(added.getId()));
+    }
+
+    @Test
+    public void testSlotsAreReusedInOrderOnceEnoughAreFree() {
+
+        // GIVEN 4 handles that have been released, with a minimum of 2 free
+        // slots
+        EntityHandles handles = new EntityHandles(2);
+        int[] released = new int[4];
+        for (int i = 0; i < released.length; i++) {
+            released[i] = handles.allocate();
+        }
+        for (int handle : released) {
+            handles.release(handle);
+        }
+
+        // WHEN new handles are allocated
+        int first = handles.allocate();
+        int second = handles.allocate();
+        int third = handles.allocate();
+
+        // THEN the oldest free slots are reused first, until only the minimum
+        // remain free
+        assertEquals(EntityHandles.getIndex(released[0]),
+                EntityHandles.getIndex(first));
+        assertEquals(EntityHandles.getIndex(released[1]),
+                EntityHandles.getIndex(second));
+        assertEquals(4, EntityHandles.getIndex(third));
+    }
+
+    @Test
+    public void testStaleHandleSurvivesChurn() {
+
+        // GIVEN a stale handle
+        EntityHandles handles = new EntityHandles();
+        int stale = handles.allocate();
+        handles.release(stale);
+
+        // WHEN a single Entity is repeatedly spawned and removed, far more
+        // times than a generation can count
+        for (int i = 0; i < 100_000; i++) {
+            int handle = handles.allocate();
+
+            // THEN the stale handle never becomes valid again
+            assertFalse(handles.isValid(stale));
+
+            handles.release(handle);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClaimingLiveSlotWithDifferentGeneration() {
+
+        // GIVEN a slot that is in use
+        EntityHandles handles = new EntityHandles();
+        int handle = handles.allocate();
+
+        // WHEN a different generation of the same slot is claimed
+        handles.claim(handle + EntityHandles.MAX_SLOTS);
+
+        // THEN an exception is thrown
+    }
+
+}
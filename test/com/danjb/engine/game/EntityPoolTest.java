@@ -0,0 +1,96 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.physics.CollisionResult;
+import com.danjb.engine.game.physics.Hitbox;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of Entity pooling.
+ *
+ * @author Dan Bryce
+ */
+public class EntityPoolTest {
+
+    private Logic logic;
+    private EntityPool<TestEntity> pool;
+
+    @Before
+    public void setUp() {
+        logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, new int[10][10])));
+        pool = new EntityPool<>(TestEntity::new);
+    }
+
+    @Test
+    public void testDeletedEntityReturnsToPool() {
+
+        // GIVEN a pooled Entity in the world
+        Entity entity = logic.addEntity(pool, 0, 0);
+        logic.update(16);
+
+        // WHEN the Entity is deleted and removed from the world
+        entity.delete();
+        logic.update(16);
+        logic.update(16);
+
+        // THEN it is returned to the pool, ready for reuse
+        assertEquals(1, pool.getNumFree());
+        assertFalse(entity.isDeleted());
+        assertEquals(-1, entity.getId());
+        assertTrue(entity.components.isEmpty());
+    }
+
+    @Test
+    public void testPooledEntityIsReused() {
+
+        // GIVEN a pooled Entity that has been moving, and was then removed
+        Entity entity = logic.addEntity(pool, 0, 0);
+        entity.hitbox.setSpeedX(GameUtils.worldUnits(5));
+        entity.setCollisionLayer(1 << 3);
+        entity.setCollisionMask(0);
+        logic.update(16);
+        int oldId = entity.getId();
+        Hitbox hitbox = entity.hitbox;
+        CollisionResult collisionResult = hitbox.getLastCollisionResult();
+        entity.delete();
+        logic.update(16);
+        logic.update(16);
+
+        // WHEN another Entity is taken from the pool
+        Entity reused = logic.addEntity(pool,
+                GameUtils.worldUnits(4), GameUtils.worldUnits(2));
+
+        // THEN the same Entity and Hitbox are reused, with fresh state
+        assertSame(entity, reused);
+        assertSame(hitbox, reused.hitbox);
+        assertEquals(GameUtils.worldUnits(4), reused.hitbox.x, 0);
+        assertEquals(GameUtils.worldUnits(2), reused.hitbox.y, 0);
+        assertEquals(0, reused.hitbox.getSpeedX(), 0);
+        assertFalse(reused.hitbox.isGrounded());
+        assertSame(reused, reused.hitbox.getListener());
+        assertSame(collisionResult, reused.hitbox.getLastCollisionResult());
+        assertEquals(0, collisionResult.getAttemptedDx(), 0);
+        assertEquals(Entity.DEFAULT_COLLISION_LAYER,
+                reused.getCollisionLayer());
+        assertEquals(Entity.ALL_COLLISION_LAYERS, reused.getCollisionMask());
+        assertEquals(0, pool.getNumFree());
+
+        // AND any references using the old ID are stale
+        assertNull(logic.getEntity(oldId));
+        assertSame(reused, logic.getEntity(reused.getId()));
+    }
+
+}
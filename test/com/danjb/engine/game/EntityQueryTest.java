@@ -0,0 +1,141 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+import com.danjb.engine.util.Rectangle;
+
+/**
+ * Tests of the spatial queries provided by the Logic.
+ *
+ * @author Dan Bryce
+ */
+public class EntityQueryTest {
+
+    /**
+     * Creates a Logic containing a number of randomly-placed Entities, which
+     * are then allowed to fall for a few frames.
+     *
+     * @return
+     */
+    private Logic createLogic() {
+
+        Logic logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, new int[40][40])));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            Entity e = new TestEntity();
+            logic.addEntity(e,
+                    GameUtils.worldUnits(1 + random.nextFloat() * 37),
+                    GameUtils.worldUnits(1 + random.nextFloat() * 20));
+            e.hitbox.setSpeedX(GameUtils.worldUnits(
+                    random.nextFloat() * 10 - 5));
+        }
+
+        for (int frame = 0; frame < 30; frame++) {
+            logic.update(16);
+        }
+
+        return logic;
+    }
+
+    @Test
+    public void testQueryRegion() {
+
+        // GIVEN a world full of Entities that have been moving around
+        Logic logic = createLogic();
+        Rectangle region = new Rectangle(10, 10, 8, 6);
+
+        // WHEN querying a region
+        Set<Entity> found = new HashSet<>();
+        logic.query(region, e -> found.add(e));
+
+        // THEN exactly those Entities overlapping the region are found
+        Set<Entity> expected = new HashSet<>();
+        for (Entity e : logic.getEntities().values()) {
+            if (e.hitbox.x < region.getMaxX() && e.hitbox.right() >= region.x
+                    && e.hitbox.y < region.getMaxY()
+                    && e.hitbox.bottom() >= region.y) {
+                expected.add(e);
+            }
+        }
+        assertEquals(true, expected.size() > 0);
+        assertEquals(expected, found);
+    }
+
+    @Test
+    public void testQueryPoint() {
+
+        // GIVEN a world full of Entities that have been moving around
+        Logic logic = createLogic();
+        Entity target = logic.getEntity(17);
+        float x = target.hitbox.centreX();
+        float y = target.hitbox.centreY();
+
+        // WHEN querying a point inside one of the Entities
+        Set<Entity> found = new HashSet<>();
+        logic.queryPoint(x, y, e -> found.add(e));
+
+        // THEN exactly those Entities containing the point are found
+        Set<Entity> expected = new HashSet<>();
+        for (Entity e : logic.getEntities().values()) {
+            if (e.hitbox.contains(x, y)) {
+                expected.add(e);
+            }
+        }
+        assertEquals(true, expected.contains(target));
+        assertEquals(expected, found);
+    }
+
+    @Test
+    public void testQueryOverlapping() {
+
+        // GIVEN a world full of Entities that have been moving around
+        Logic logic = createLogic();
+
+        for (Entity target : logic.getEntities().values()) {
+
+            // WHEN querying the Entities overlapping each Entity
+            Set<Entity> found = new HashSet<>();
+            logic.queryOverlapping(target, e -> found.add(e));
+
+            // THEN exactly those Entities intersecting it are found
+            Set<Entity> expected = new HashSet<>();
+            for (Entity e : logic.getEntities().values()) {
+                if (e != target && e.hitbox.intersects(target.hitbox)) {
+                    expected.add(e);
+                }
+            }
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void testQueryStopsEarly() {
+
+        // GIVEN a world full of Entities
+        Logic logic = createLogic();
+
+        // WHEN a query callback asks to stop after the first result
+        int[] numFound = new int[1];
+        logic.query(new Rectangle(0, 0, 40, 40), e -> {
+            numFound[0]++;
+            return false;
+        });
+
+        // THEN no more Entities are reported
+        assertEquals(1, numFound[0]);
+    }
+
+}
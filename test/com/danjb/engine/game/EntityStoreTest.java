@@ -0,0 +1,101 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+
+/**
+ * Tests of the EntityStore.
+ *
+ * @author Dan Bryce
+ */
+public class EntityStoreTest {
+
+    @Test
+    public void testReplacingEntityKeepsPosition() {
+
+        // GIVEN a store containing 3 Entities
+        EntityStore store = new EntityStore();
+        Entity a = new TestEntity();
+        Entity b = new TestEntity();
+        Entity c = new TestEntity();
+        store.put(1, a);
+        store.put(2, b);
+        store.put(3, c);
+
+        // WHEN the second Entity is replaced
+        Entity replacement = new TestEntity();
+        Entity replaced = store.put(2, replacement);
+
+        // THEN the replacement takes its place in the iteration order
+        assertSame(b, replaced);
+        assertEquals(List.of(a, replacement, c),
+                new ArrayList<>(store.values()));
+    }
+
+    @Test
+    public void testRemovingEntity() {
+
+        // GIVEN a store containing 2 Entities
+        EntityStore store = new EntityStore();
+        Entity a = new TestEntity();
+        Entity b = new TestEntity();
+        store.put(1, a);
+        store.put(2, b);
+
+        // WHEN the first Entity is removed
+        Entity removed = store.remove(1);
+
+        // THEN only the second Entity can be found
+        assertSame(a, removed);
+        assertNull(store.get(1));
+        assertSame(b, store.get(2));
+        assertEquals(1, store.size());
+        assertEquals(List.of(b), new ArrayList<>(store.values()));
+    }
+
+    @Test
+    public void testMatchesLinkedHashMap() {
+
+        // GIVEN a store and a LinkedHashMap
+        EntityStore store = new EntityStore();
+        Map<Integer, Entity> map = new LinkedHashMap<>();
+        Random random = new Random(3);
+
+        // WHEN both are subjected to the same sequence of operations
+        // (enough to force the store to grow and compact several times)
+        for (int i = 0; i < 20000; i++) {
+            int id = random.nextInt(500);
+            if (random.nextInt(10) < 6) {
+                Entity e = new TestEntity();
+                assertSame(map.put(id, e), store.put(id, e));
+            } else {
+                assertSame(map.remove(id), store.remove(id));
+            }
+        }
+
+        // THEN they contain the same Entities in the same order
+        assertEquals(new ArrayList<>(map.values()),
+                new ArrayList<>(store.values()));
+
+        List<Entity> iterated = new ArrayList<>();
+        for (int i = 0; i < store.end(); i++) {
+            Entity e = store.getAt(i);
+            if (e != null) {
+                iterated.add(e);
+            }
+        }
+        assertEquals(new ArrayList<>(map.values()), iterated);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of the Logic's packed physics mode.
+ *
+ * @author Dan Bryce
+ */
+public class PackedPhysicsTest {
+
+    /**
+     * Runs a simulation and records the state of every Hitbox each frame.
+     *
+     * @param packed
+     * @return
+     */
+    private List<String> simulate(boolean packed) {
+
+        int[][] tiles = new int[30][20];
+        for (int x = 0; x < 30; x++) {
+            tiles[x][19] = 1;
+        }
+        for (int i = 3; i < 30; i += 4) {
+            tiles[i][15] = 1;
+        }
+
+        Logic logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, tiles)));
+        logic.setPackedPhysics(packed);
+
+        List<Entity> spawned = new ArrayList<>();
+        List<String> states = new ArrayList<>();
+        Random random = new Random(7);
+
+        for (int frame = 0; frame < 60; frame++) {
+
+            // Keep spawning and deleting Entities so that slots get reused
+            for (int i = 0; i < 10; i++) {
+                Entity e = new TestEntity();
+                logic.addEntity(e,
+                        GameUtils.worldUnits(1 + random.nextFloat() * 27),
+                        GameUtils.worldUnits(random.nextFloat() * 12));
+                e.hitbox.setSpeedX(GameUtils.worldUnits(
+                        random.nextFloat() * 8 - 4));
+                spawned.add(e);
+            }
+            if (frame % 3 == 0) {
+                spawned.remove(random.nextInt(spawned.size())).delete();
+            }
+
+            logic.update(16);
+
+            for (Entity e : spawned) {
+                states.add(e.hitbox.x + "," + e.hitbox.y + ","
+                        + e.hitbox.getSpeedX() + "," + e.hitbox.getSpeedY()
+                        + "," + e.hitbox.isGrounded());
+            }
+        }
+
+        return states;
+    }
+
+    @Test
+    public void testPackedPhysicsMatchesNormal() {
+
+        // GIVEN the results of running physics normally
+        List<String> expected = simulate(false);
+
+        // WHEN running the same simulation using packed physics
+        List<String> actual = simulate(true);
+
+        // THEN every Hitbox ends up in the same state each frame
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testDisablingPackedPhysicsRestoresState() {
+
+        // GIVEN a falling Entity using packed physics
+        Logic logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, new int[5][5])));
+        logic.setPackedPhysics(true);
+        Entity e = new TestEntity();
+        logic.addEntity(e, 0, 0);
+        e.hitbox.setSpeedX(GameUtils.worldUnits(1));
+        logic.update(16);
+        float speedX = e.hitbox.getSpeedX();
+        float speedY = e.hitbox.getSpeedY();
+
+        // WHEN packed physics is disabled
+        logic.setPackedPhysics(false);
+
+        // THEN the Hitbox keeps its speed
+        assertNull(e.hitbox.getStore());
+        assertEquals(speedX, e.hitbox.getSpeedX(), 0);
+        assertEquals(speedY, e.hitbox.getSpeedY(), 0);
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.physics.CollisionResult;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of the Logic's parallel physics mode.
+ *
+ * @author Dan Bryce
+ */
+public class ParallelPhysicsTest {
+
+    /**
+     * Entity that records its Hitbox callbacks.
+     */
+    private static class RecordingEntity extends TestEntity {
+
+        private List<String> events;
+
+        public RecordingEntity(List<String> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void hitboxMoved(CollisionResult result) {
+            events.add(id + " moved to " + result.left() + "," + result.top());
+        }
+
+        @Override
+        public void hitboxLanded() {
+            events.add(id + " landed");
+        }
+
+        @Override
+        public void hitboxLeftGround() {
+            events.add(id + " left ground");
+        }
+
+    }
+
+    /**
+     * Runs a simulation and records all Hitbox callbacks.
+     *
+     * @param pool Pool to use for physics, or null.
+     * @return
+     */
+    private List<String> simulate(ForkJoinPool pool) {
+
+        int[][] tiles = new int[30][20];
+        for (int x = 0; x < 30; x++) {
+            tiles[x][19] = 1;
+        }
+        for (int i = 3; i < 30; i += 4) {
+            tiles[i][15] = 1;
+        }
+
+        Logic logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, tiles)));
+        logic.setParallelPhysics(pool);
+
+        List<String> events = new ArrayList<>();
+        Random random = new Random(99);
+        for (int i = 0; i < 500; i++) {
+            Entity e = new RecordingEntity(events);
+            logic.addEntity(e,
+                    GameUtils.worldUnits(1 + random.nextFloat() * 27),
+                    GameUtils.worldUnits(random.nextFloat() * 12));
+            e.hitbox.setSpeedX(GameUtils.worldUnits(
+                    random.nextFloat() * 8 - 4));
+        }
+
+        for (int frame = 0; frame < 60; frame++) {
+            logic.update(16);
+        }
+
+        return events;
+    }
+
+    @Test
+    public void testParallelPhysicsMatchesSerial() {
+
+        // GIVEN the results of running physics serially
+        List<String> expected = simulate(null);
+
+        // WHEN running the same simulation in parallel
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<String> actual;
+        try {
+            actual = simulate(pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        // THEN all callbacks are delivered identically, in the same order
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+    }
+
+}
@@ -1,6 +1,10 @@
 package com.danjb.engine.game;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -19,6 +23,21 @@ import com.danjb.engine.util.GameUtils;
  */
 public class PhysicsTest {
 
+    /**
+     * Entity that records the CollisionResults passed to its Hitbox
+     * listener.
+     */
+    private static class RecordingEntity extends TestEntity {
+
+        private List<CollisionResult> results = new ArrayList<>();
+
+        @Override
+        public void hitboxMoved(CollisionResult result) {
+            results.add(result);
+        }
+
+    }
+
     /**
      * Tests an Entity moving without collisions.
      */
@@ -168,4 +187,134 @@ public class PhysicsTest {
                 Physics.SMALLEST_DISTANCE);
     }
 
+    /**
+     * Tests a fast-moving Entity travelling through open space.
+     */
+    @Test
+    public void testSubStepping_FullDistance() {
+
+        // GIVEN an Entity that is moving several tiles per frame
+        Level level = TestUtils.createLevel(10, 3,
+                "0 0 0 0 0 0 0 0 0 0",
+                "0 0 0 0 0 0 0 0 0 0",
+                "0 0 0 0 0 0 0 0 0 0"
+        );
+        TileProvider tileProvider = new TestTileProvider();
+        Logic logic = new Logic(tileProvider);
+        logic.changeLevel(level);
+        Entity entity = new TestEntity();
+        logic.addEntity(entity, 0, GameUtils.worldUnits(1));
+        entity.hitbox.setSpeedX(GameUtils.worldUnits(5.5f));
+
+        // WHEN moving for a second
+        entity.hitbox.moveWithCollision(level, tileProvider, 1000);
+
+        // THEN the full distance is travelled
+        assertEquals(GameUtils.worldUnits(5.5f), entity.hitbox.x,
+                Physics.SMALLEST_DISTANCE);
+    }
+
+    /**
+     * Tests a fast-moving Entity hitting a wall.
+     */
+    @Test
+    public void testSubStepping_Wall() {
+
+        // GIVEN an Entity that is moving quickly towards a thin wall
+        Level level = TestUtils.createLevel(10, 3,
+                "0 0 0 0 0 0 1 0 0 0",
+                "0 0 0 0 0 0 1 0 0 0",
+                "0 0 0 0 0 0 1 0 0 0"
+        );
+        TileProvider tileProvider = new TestTileProvider();
+        Logic logic = new Logic(tileProvider);
+        logic.changeLevel(level);
+        Entity entity = new TestEntity();
+        logic.addEntity(entity, 0, GameUtils.worldUnits(1));
+        entity.hitbox.setSpeedX(GameUtils.worldUnits(8));
+
+        // WHEN moving far enough to pass through the wall
+        entity.hitbox.moveWithCollision(level, tileProvider, 1000);
+
+        // THEN the Entity is stopped at the wall
+        assertEquals(GameUtils.worldUnits(5), entity.hitbox.x,
+                Physics.SMALLEST_DISTANCE);
+        assertEquals(0, entity.hitbox.getSpeedX(), 0);
+    }
+
+    /**
+     * Tests a fast-moving Entity hitting a wall before its final sub-step.
+     */
+    @Test
+    public void testSubStepping_WallIsReported() {
+
+        // GIVEN an Entity that is moving quickly towards a wall, while also
+        // falling through open space
+        Level level = TestUtils.createLevel(10, 5,
+                "0 0 0 0 0 0 1 0 0 0",
+                "0 0 0 0 0 0 1 0 0 0",
+                "0 0 0 0 0 0 1 0 0 0",
+                "0 0 0 0 0 0 1 0 0 0",
+                "0 0 0 0 0 0 1 0 0 0"
+        );
+        TileProvider tileProvider = new TestTileProvider();
+        Logic logic = new Logic(tileProvider);
+        logic.changeLevel(level);
+        RecordingEntity entity = new RecordingEntity();
+        logic.addEntity(entity, 0, 0);
+        entity.hitbox.setSpeedX(GameUtils.worldUnits(8));
+        entity.hitbox.setSpeedY(GameUtils.worldUnits(3));
+
+        // WHEN moving far enough to hit the wall partway through the move
+        entity.hitbox.moveWithCollision(level, tileProvider, 1000);
+
+        // THEN the movement continues after the wall is hit
+        assertEquals(GameUtils.worldUnits(5), entity.hitbox.x,
+                Physics.SMALLEST_DISTANCE);
+        assertEquals(GameUtils.worldUnits(3), entity.hitbox.y,
+                Physics.SMALLEST_DISTANCE);
+        CollisionResult last =
+                entity.results.get(entity.results.size() - 1);
+        assertEquals(false, last.hasCollisionOccurredX());
+
+        // AND the listener is still told about the collision
+        boolean reported = false;
+        for (CollisionResult result : entity.results) {
+            reported |= result.hasCollisionOccurredX();
+        }
+        assertTrue(reported);
+    }
+
+    /**
+     * Tests a fast-moving Entity bouncing off the floor.
+     */
+    @Test
+    public void testSubStepping_Bounce() {
+
+        // GIVEN an Entity that is falling quickly towards the floor
+        Level level = TestUtils.createLevel(3, 6,
+                "0 0 0",
+                "0 0 0",
+                "0 0 0",
+                "0 0 0",
+                "0 0 0",
+                "1 1 1"
+        );
+        TileProvider tileProvider = new TestTileProvider();
+        Logic logic = new Logic(tileProvider);
+        logic.changeLevel(level);
+        Entity entity = new TestEntity();
+        logic.addEntity(entity, GameUtils.worldUnits(1), 0);
+        entity.hitbox.bounceCoefficient = 0.5f;
+        entity.hitbox.setSpeedY(GameUtils.worldUnits(8));
+
+        // WHEN moving far enough to hit the floor partway through the move
+        entity.hitbox.moveWithCollision(level, tileProvider, 1000);
+
+        // THEN the Entity bounces, and spends the rest of the move rising
+        assertTrue(entity.hitbox.getSpeedY() < 0);
+        assertTrue(entity.hitbox.y < GameUtils.worldUnits(3));
+        assertEquals(false, entity.hitbox.isGrounded());
+    }
+
 }
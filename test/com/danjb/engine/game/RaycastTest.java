@@ -0,0 +1,178 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileProvider;
+import com.danjb.engine.game.physics.RaycastResult;
+import com.danjb.engine.game.tiles.RightSlope;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of raycasts against the Level.
+ *
+ * @author Dan Bryce
+ */
+public class RaycastTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private static final int ID_RIGHT_SLOPE = 2;
+
+    private TileProvider tileProvider = new TestTileProvider();
+
+    private RaycastResult result = new RaycastResult();
+
+    @Test
+    public void testRaycast_Wall() {
+
+        // GIVEN a Level with a wall
+        Level level = TestUtils.createLevel(5, 3,
+                "0 0 0 1 0",
+                "0 0 0 1 0",
+                "0 0 0 1 0"
+        );
+
+        // WHEN casting a ray towards the wall
+        boolean hit = level.raycast(tileProvider,
+                GameUtils.worldUnits(0.5f), GameUtils.worldUnits(1.5f),
+                1, 0, GameUtils.worldUnits(10), result);
+
+        // THEN the ray hits the near side of the wall
+        assertTrue(hit);
+        assertEquals(3, result.tileX);
+        assertEquals(1, result.tileY);
+        assertEquals(GameUtils.worldUnits(3), result.hitX, DELTA);
+        assertEquals(GameUtils.worldUnits(1.5f), result.hitY, DELTA);
+        assertEquals(GameUtils.worldUnits(2.5f), result.distance, DELTA);
+        assertEquals(-1, result.normalX, DELTA);
+        assertEquals(0, result.normalY, DELTA);
+    }
+
+    @Test
+    public void testRaycast_MaxDistance() {
+
+        // GIVEN a Level with a distant wall
+        Level level = TestUtils.createLevel(5, 3,
+                "0 0 0 0 1",
+                "0 0 0 0 1",
+                "0 0 0 0 1"
+        );
+
+        // WHEN casting a ray that is too short to reach the wall
+        boolean hit = level.raycast(tileProvider,
+                GameUtils.worldUnits(0.5f), GameUtils.worldUnits(1.5f),
+                1, 0, GameUtils.worldUnits(2), result);
+
+        // THEN nothing is hit
+        assertFalse(hit);
+        assertFalse(result.hit);
+    }
+
+    @Test
+    public void testRaycast_LeavesBottomOfLevel() {
+
+        // GIVEN a Level with no floor
+        Level level = TestUtils.createLevel(5, 3,
+                "0 0 0 0 0",
+                "0 0 0 0 0",
+                "0 0 0 0 0"
+        );
+
+        // WHEN casting unbounded rays that leave the bottom of the Level
+        boolean hitDown = level.raycast(tileProvider,
+                GameUtils.worldUnits(2.5f), GameUtils.worldUnits(1.5f),
+                0, 1, Float.POSITIVE_INFINITY, result);
+        boolean hitDiagonal = level.raycast(tileProvider,
+                GameUtils.worldUnits(2.5f), GameUtils.worldUnits(1.5f),
+                0.01f, 1, Float.POSITIVE_INFINITY, result);
+
+        // THEN the casts finish without hitting anything
+        assertFalse(hitDown);
+        assertFalse(hitDiagonal);
+    }
+
+    @Test
+    public void testRaycast_Slope() {
+
+        // GIVEN a Level with a slope
+        tileProvider.addTileType(0, new RightSlope(ID_RIGHT_SLOPE));
+        Level level = TestUtils.createLevel(5, 3,
+                "0 0 0 0 0",
+                "0 0 0 0 0",
+                "1 1 2 1 1"
+        );
+
+        // WHEN casting a ray down onto the slope
+        boolean hit = level.raycast(tileProvider,
+                GameUtils.worldUnits(2.25f), GameUtils.worldUnits(0.5f),
+                0, 1, GameUtils.worldUnits(10), result);
+
+        // THEN the ray hits the surface of the slope
+        assertTrue(hit);
+        assertEquals(ID_RIGHT_SLOPE, result.tileId);
+        assertEquals(GameUtils.worldUnits(2.25f), result.hitX, DELTA);
+        assertEquals(GameUtils.worldUnits(2.75f), result.hitY, DELTA);
+
+        // AND the normal faces up and away from the slope
+        float diagonal = (float) Math.sqrt(0.5);
+        assertEquals(-diagonal, result.normalX, DELTA);
+        assertEquals(-diagonal, result.normalY, DELTA);
+    }
+
+    @Test
+    public void testRaycastAll_MatchesSingleRaycasts() {
+
+        // GIVEN a Level with some scattered walls, and a large batch of rays
+        Level level = TestUtils.createLevel(6, 4,
+                "0 0 0 1 0 0",
+                "0 1 0 0 0 1",
+                "0 0 0 0 1 0",
+                "1 0 1 0 0 0"
+        );
+        int count = 1000;
+        float[] originsX = new float[count];
+        float[] originsY = new float[count];
+        float[] directionsX = new float[count];
+        float[] directionsY = new float[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            originsX[i] = GameUtils.worldUnits(random.nextFloat() * 6);
+            originsY[i] = GameUtils.worldUnits(random.nextFloat() * 4);
+            double angle = random.nextDouble() * 2 * Math.PI;
+            directionsX[i] = (float) Math.cos(angle);
+            directionsY[i] = (float) Math.sin(angle);
+        }
+        float maxDistance = GameUtils.worldUnits(3);
+
+        // WHEN casting the rays in parallel
+        float[] distances = new float[count];
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            level.raycastAll(tileProvider, originsX, originsY,
+                    directionsX, directionsY, count, maxDistance,
+                    distances, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        // THEN the results match those of individual raycasts
+        float[] expected = new float[count];
+        for (int i = 0; i < count; i++) {
+            boolean hit = level.raycast(tileProvider, originsX[i], originsY[i],
+                    directionsX[i], directionsY[i], maxDistance, result);
+            expected[i] = hit ? result.distance : Float.POSITIVE_INFINITY;
+        }
+        assertArrayEquals(expected, distances, 0);
+    }
+
+}
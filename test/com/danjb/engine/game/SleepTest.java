@@ -0,0 +1,94 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of sleeping Hitboxes.
+ *
+ * @author Dan Bryce
+ */
+public class SleepTest {
+
+    private Logic logic;
+    private TileLayer layer;
+    private Entity entity;
+
+    @Before
+    public void setUp() {
+
+        int[][] tiles = new int[10][10];
+        for (int x = 0; x < 10; x++) {
+            tiles[x][5] = 1;
+        }
+        layer = new TileLayer(0, tiles);
+
+        logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(layer));
+        logic.setSleepDelay(100);
+
+        // Entity resting on the ground at (4, 4)
+        entity = new TestEntity();
+        logic.addEntity(entity, GameUtils.worldUnits(4), GameUtils.worldUnits(4));
+    }
+
+    private void runFrames(int frames) {
+        for (int i = 0; i < frames; i++) {
+            logic.update(16);
+        }
+    }
+
+    @Test
+    public void testRestingHitboxFallsAsleep() {
+
+        // GIVEN an Entity resting on the ground
+
+        // WHEN enough time passes
+        runFrames(20);
+
+        // THEN its Hitbox falls asleep, without moving
+        assertTrue(entity.hitbox.isSleeping());
+        assertEquals(GameUtils.worldUnits(4), entity.hitbox.y, 0.001f);
+    }
+
+    @Test
+    public void testSettingSpeedWakesHitbox() {
+
+        // GIVEN a sleeping Hitbox
+        runFrames(20);
+
+        // WHEN it is given some speed
+        entity.hitbox.setSpeedX(GameUtils.worldUnits(5));
+        runFrames(1);
+
+        // THEN it wakes up and moves
+        assertFalse(entity.hitbox.isSleeping());
+        assertTrue(entity.hitbox.x > GameUtils.worldUnits(4));
+    }
+
+    @Test
+    public void testRemovingGroundWakesHitbox() {
+
+        // GIVEN a sleeping Hitbox
+        runFrames(20);
+
+        // WHEN the tile beneath it is removed
+        layer.setTile(4, 5, 0);
+        runFrames(5);
+
+        // THEN it wakes up and falls
+        assertFalse(entity.hitbox.isSleeping());
+        assertTrue(entity.hitbox.y > GameUtils.worldUnits(4));
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.danjb.engine.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.entities.EntityComponent;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of saving and restoring {@link WorldSnapshot}s.
+ *
+ * @author Dan Bryce
+ */
+public class SnapshotTest {
+
+    /**
+     * Component that counts how many times it has been updated.
+     */
+    private static class CounterComponent extends EntityComponent {
+
+        private int count;
+
+        public CounterComponent() {
+            super("counter");
+        }
+
+        @Override
+        public void update(int delta) {
+            count++;
+        }
+
+        @Override
+        public void writeState(ByteBuffer buffer) {
+            buffer.putInt(count);
+        }
+
+        @Override
+        public void readState(ByteBuffer buffer) {
+            count = buffer.getInt();
+        }
+
+    }
+
+    private Logic logic;
+
+    @Before
+    public void setUp() {
+
+        int[][] tiles = new int[20][10];
+        for (int x = 0; x < 20; x++) {
+            tiles[x][9] = 1;
+        }
+
+        logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, tiles)));
+        logic.setDeterministic(true);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            Entity e = new TestEntity();
+            logic.addEntity(e,
+                    GameUtils.worldUnits(1 + random.nextFloat() * 17),
+                    GameUtils.worldUnits(random.nextFloat() * 7));
+            e.hitbox.setSpeedX(GameUtils.worldUnits(
+                    random.nextFloat() * 6 - 3));
+        }
+    }
+
+    /**
+     * Runs the Logic for a number of frames, recording the state hash after
+     * each one.
+     *
+     * @param frames
+     * @return
+     */
+    private List<Long> run(int frames) {
+        List<Long> hashes = new ArrayList<>();
+        for (int i = 0; i < frames; i++) {
+            logic.update(16);
+            hashes.add(logic.getStateHash());
+        }
+        return hashes;
+    }
+
+    @Test
+    public void testRestoredSimulationReplaysIdentically() {
+
+        // GIVEN a snapshot taken partway through a simulation
+        run(10);
+        WorldSnapshot snapshot = new WorldSnapshot();
+        logic.saveSnapshot(snapshot);
+        long savedHash = logic.computeStateHash();
+        List<Long> expected = run(30);
+
+        // WHEN the snapshot is restored and the simulation is run again
+        logic.restoreSnapshot(snapshot);
+        long restoredHash = logic.computeStateHash();
+        List<Long> actual = run(30);
+
+        // THEN the state matches exactly
+        assertEquals(savedHash, restoredHash);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testRestoreForgetsNewEntities() {
+
+        // GIVEN a snapshot, after which a new Entity is added
+        run(1);
+        WorldSnapshot snapshot = new WorldSnapshot();
+        logic.saveSnapshot(snapshot);
+        Entity added = new TestEntity();
+        logic.addEntity(added, 0, 0);
+        run(1);
+
+        // WHEN the snapshot is restored
+        logic.restoreSnapshot(snapshot);
+
+        // THEN the new Entity is gone, and its ID is handed out again
+        assertEquals(20, logic.getEntities().size());
+        Entity replacement = new TestEntity();
+        logic.addEntity(replacement, 0, 0);
+        assertEquals(added.getId(), replacement.getId());
+    }
+
+    @Test
+    public void testRestoredEntityIsTakenBackFromPool() {
+
+        // GIVEN a snapshot containing a pooled Entity
+        EntityPool<TestEntity> pool = new EntityPool<>(TestEntity::new);
+        TestEntity pooled = logic.addEntity(pool, 0, 0);
+        run(1);
+        WorldSnapshot snapshot = new WorldSnapshot();
+        logic.saveSnapshot(snapshot);
+
+        // AND the Entity is later deleted and returned to the pool
+        pooled.delete();
+        run(2);
+        assertEquals(1, pool.getNumFree());
+
+        // WHEN the snapshot is restored
+        logic.restoreSnapshot(snapshot);
+
+        // THEN the Entity is back in the world, and the pool no longer
+        // offers it
+        assertSame(pooled, logic.getEntity(pooled.getId()));
+        assertEquals(0, pool.getNumFree());
+        TestEntity obtained = logic.addEntity(pool, 0, 0);
+        assertNotSame(pooled, obtained);
+    }
+
+    @Test
+    public void testComponentStateIsRestored() {
+
+        // GIVEN an Entity with a Component that holds some state
+        Entity e = logic.getEntities().values().iterator().next();
+        CounterComponent counter = new CounterComponent();
+        run(1);
+        e.attach(counter);
+        run(5);
+
+        // WHEN a snapshot is restored after the state has changed
+        WorldSnapshot snapshot = new WorldSnapshot();
+        logic.saveSnapshot(snapshot);
+        run(5);
+        logic.restoreSnapshot(snapshot);
+
+        // THEN the Component has its old state
+        assertEquals(5, counter.count);
+    }
+
+    @Test
+    public void testSnapshotGrowsAsNeeded() {
+
+        // GIVEN a snapshot whose buffer is far too small
+        WorldSnapshot snapshot = new WorldSnapshot(64);
+        run(1);
+
+        // WHEN the state is saved and restored
+        logic.saveSnapshot(snapshot);
+        long savedHash = logic.computeStateHash();
+        run(5);
+        logic.restoreSnapshot(snapshot);
+
+        // THEN the buffer grows to fit
+        assertEquals(savedHash, logic.computeStateHash());
+    }
+
+}
@@ -0,0 +1,224 @@
+package com.danjb.engine.game.archetypes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.danjb.engine.game.Logic;
+import com.danjb.engine.game.TestEntity;
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.tiles.TestTileProvider;
+
+/**
+ * Tests of the ArchetypeWorld and EntitySystems.
+ *
+ * @author Dan Bryce
+ */
+public class ArchetypeWorldTest {
+
+    private static final DataType POSITION = new DataType("position");
+    private static final FloatField POSITION_X = POSITION.addFloat("x");
+
+    private static final DataType VELOCITY = new DataType("velocity");
+    private static final FloatField VELOCITY_X = VELOCITY.addFloat("x");
+
+    private static final DataType FROZEN = new DataType("frozen");
+
+    private static final DataType TIMER = new DataType("timer");
+    private static final IntField TIMER_MS = TIMER.addInt("ms");
+
+    /**
+     * System that moves all unfrozen Entities according to their velocity.
+     */
+    private static class MovementSystem extends EntitySystem {
+
+        public MovementSystem() {
+            super(new DataType[] { POSITION, VELOCITY },
+                    new DataType[] { FROZEN });
+        }
+
+        @Override
+        protected void updateChunk(Chunk chunk, int delta) {
+            float[] x = chunk.getFloats(POSITION_X);
+            float[] speedX = chunk.getFloats(VELOCITY_X);
+            for (int i = 0; i < chunk.size(); i++) {
+                x[i] += speedX[i] * delta;
+            }
+        }
+
+    }
+
+    /**
+     * System that counts up all timers, destroying any that reach 100ms.
+     */
+    private static class TimerSystem extends EntitySystem {
+
+        private ArchetypeWorld world;
+
+        public TimerSystem(ArchetypeWorld world) {
+            super(TIMER);
+            this.world = world;
+        }
+
+        @Override
+        protected void updateChunk(Chunk chunk, int delta) {
+            int[] ms = chunk.getInts(TIMER_MS);
+            for (int i = 0; i < chunk.size(); i++) {
+                ms[i] += delta;
+                if (ms[i] >= 100) {
+                    world.destroy(chunk.getEntity(i));
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testSystemProcessesOnlyMatchingEntities() {
+
+        // GIVEN a system, and Entities with different sets of DataTypes
+        ArchetypeWorld world = new ArchetypeWorld();
+        world.addSystem(new MovementSystem());
+        int moving = world.create(POSITION, VELOCITY);
+        int frozen = world.create(POSITION, VELOCITY, FROZEN);
+        int still = world.create(POSITION);
+        for (int entity : new int[] { moving, frozen, still }) {
+            world.setFloat(entity, POSITION_X, 1);
+        }
+        world.setFloat(moving, VELOCITY_X, 2);
+        world.setFloat(frozen, VELOCITY_X, 2);
+
+        // WHEN the world is updated
+        world.update(10);
+
+        // THEN only the matching Entity is moved
+        assertEquals(21, world.getFloat(moving, POSITION_X), 0);
+        assertEquals(1, world.getFloat(frozen, POSITION_X), 0);
+        assertEquals(1, world.getFloat(still, POSITION_X), 0);
+    }
+
+    @Test
+    public void testChangingArchetypeKeepsSharedFields() {
+
+        // GIVEN an Entity with some data, and a system added beforehand
+        ArchetypeWorld world = new ArchetypeWorld();
+        MovementSystem system = new MovementSystem();
+        world.addSystem(system);
+        int entity = world.create(POSITION);
+        world.setFloat(entity, POSITION_X, 5);
+
+        // WHEN a DataType is added that makes it match the system
+        world.add(entity, VELOCITY);
+        world.setFloat(entity, VELOCITY_X, 1);
+        world.update(3);
+
+        // THEN its existing data is kept, and the system processes it
+        assertTrue(world.has(entity, VELOCITY));
+        assertEquals(1, system.getNumEntities());
+        assertEquals(8, world.getFloat(entity, POSITION_X), 0);
+
+        // AND removing the DataType again keeps the remaining data
+        world.remove(entity, VELOCITY);
+        assertFalse(world.has(entity, VELOCITY));
+        assertEquals(0, system.getNumEntities());
+        assertEquals(8, world.getFloat(entity, POSITION_X), 0);
+    }
+
+    @Test
+    public void testDestroyKeepsChunksDense() {
+
+        // GIVEN 10 Entities spread across chunks of 4
+        ArchetypeWorld world = new ArchetypeWorld(4);
+        List<Integer> entities = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int entity = world.create(POSITION);
+            world.setFloat(entity, POSITION_X, i);
+            entities.add(entity);
+        }
+
+        // WHEN some Entities are destroyed
+        world.destroy(entities.get(0));
+        world.destroy(entities.get(5));
+        world.destroy(entities.get(9));
+
+        // THEN the remaining Entities fill the fewest possible chunks
+        Archetype archetype = world.getChunk(entities.get(1)).getArchetype();
+        assertEquals(7, archetype.size());
+        assertEquals(2, archetype.getNumChunks());
+        assertEquals(4, archetype.getChunk(0).size());
+        assertEquals(3, archetype.getChunk(1).size());
+
+        // AND each Entity still has its own data
+        for (int i = 0; i < 10; i++) {
+            int entity = entities.get(i);
+            if (world.isAlive(entity)) {
+                assertEquals(i, world.getFloat(entity, POSITION_X), 0);
+            }
+        }
+        assertFalse(world.isAlive(entities.get(5)));
+    }
+
+    @Test
+    public void testDestroyDuringUpdateIsDeferred() {
+
+        // GIVEN a system that destroys Entities, and some Entities for it
+        ArchetypeWorld world = new ArchetypeWorld(2);
+        world.addSystem(new TimerSystem(world));
+        int[] entities = new int[5];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = world.create(TIMER);
+            world.setInt(entities[i], TIMER_MS, i * 30);
+        }
+
+        // WHEN the world is updated
+        world.update(50);
+
+        // THEN every Entity is processed exactly once, and the expired ones
+        // are destroyed afterwards
+        assertEquals(2, world.size());
+        assertEquals(50, world.getInt(entities[0], TIMER_MS));
+        assertEquals(80, world.getInt(entities[1], TIMER_MS));
+        assertFalse(world.isAlive(entities[2]));
+        assertFalse(world.isAlive(entities[3]));
+        assertFalse(world.isAlive(entities[4]));
+    }
+
+    @Test
+    public void testLinkedDataIsUpdatedByLogic() {
+
+        // GIVEN a Logic with an ArchetypeWorld, and an Entity linked to it
+        Logic logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, new int[5][5])));
+        ArchetypeWorld world = new ArchetypeWorld();
+        world.addSystem(new MovementSystem());
+        logic.setArchetypeWorld(world);
+
+        Entity entity = new TestEntity();
+        logic.addEntity(entity, 0, 0);
+        logic.update(1);
+        ArchetypeLink link = new ArchetypeLink(world, POSITION, VELOCITY);
+        entity.attach(link);
+        link.setFloat(VELOCITY_X, 0.5f);
+
+        // WHEN the Logic is updated
+        logic.update(4);
+
+        // THEN the Entity's data is updated by the system
+        assertEquals(2, link.getFloat(POSITION_X), 0);
+
+        // AND the data is destroyed along with the Entity
+        entity.delete();
+        logic.update(1);
+        logic.update(1);
+        assertFalse(world.isAlive(link.getHandle()));
+        assertEquals(0, world.size());
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.danjb.engine.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.danjb.engine.game.Logic;
+import com.danjb.engine.game.TestEntity;
+import com.danjb.engine.game.entities.Entity;
+import com.danjb.engine.game.level.Level;
+import com.danjb.engine.game.level.TileLayer;
+import com.danjb.engine.game.tiles.TestTileProvider;
+import com.danjb.engine.util.GameUtils;
+
+/**
+ * Tests of replication over a {@link LoopbackTransport}.
+ *
+ * @author Dan Bryce
+ */
+public class ReplicationTest {
+
+    private Logic logic;
+    private List<Entity> entities;
+    private ReplicationServer server;
+    private ReplicationClient client;
+    private ReplicationReceiver receiver;
+
+    @Before
+    public void setUp() {
+
+        int[][] tiles = new int[40][10];
+        for (int x = 0; x < 40; x++) {
+            tiles[x][9] = 1;
+        }
+
+        logic = new Logic(new TestTileProvider());
+        logic.changeLevel(new Level(new TileLayer(0, tiles)));
+
+        entities = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Entity e = new TestEntity();
+            logic.addEntity(e,
+                    GameUtils.worldUnits(1 + i * 2),
+                    GameUtils.worldUnits(i % 5));
+            e.hitbox.setSpeedX(GameUtils.worldUnits(i % 2 == 0 ? 1 : -1));
+            entities.add(e);
+        }
+        logic.update(16);
+
+        LoopbackTransport[] transports = LoopbackTransport.createPair();
+        server = new ReplicationServer(logic);
+        client = server.addClient(transports[0]);
+        client.setViewRegion(0, 0,
+                GameUtils.worldUnits(40), GameUtils.worldUnits(10));
+        receiver = new ReplicationReceiver(transports[1]);
+    }
+
+    /**
+     * Checks that the receiver's latest frame matches the state of an
+     * Entity.
+     *
+     * @param e
+     */
+    private void assertReplicated(Entity e) {
+        ReplicationFrame frame = receiver.getLatestFrame();
+        int index = frame.indexOf(e.getId());
+        assertTrue("Entity " + e.getId() + " missing", index >= 0);
+        assertEquals(e.hitbox.x, frame.getX(index), 0);
+        assertEquals(e.hitbox.y, frame.getY(index), 0);
+        assertEquals(e.hitbox.getSpeedX(), frame.getSpeedX(index), 0);
+        assertEquals(e.hitbox.getSpeedY(), frame.getSpeedY(index), 0);
+        assertEquals(e.hitbox.isGrounded(), frame.isGrounded(index));
+    }
+
+    @Test
+    public void testClientReceivesExactState() {
+
+        // GIVEN a client that only processes packets every few ticks
+        for (int frame = 0; frame < 30; frame++) {
+            logic.update(16);
+            server.tick();
+            if (frame % 3 == 2) {
+                receiver.receive();
+            }
+        }
+
+        // WHEN the client catches up
+        receiver.receive();
+
+        // THEN it holds the exact state of every Entity
+        assertEquals(entities.size(), receiver.getLatestFrame().size());
+        for (Entity e : entities) {
+            assertReplicated(e);
+        }
+    }
+
+    @Test
+    public void testOnlyChangesAreSent() {
+
+        // GIVEN a client that has acknowledged the full state
+        server.tick();
+        int fullBytes = server.getBytesLastTick();
+        receiver.receive();
+
+        // WHEN the state is sent again, without anything changing
+        server.tick();
+        receiver.receive();
+
+        // THEN only the header is sent
+        assertTrue(server.getBytesLastTick() * 10 < fullBytes);
+        for (Entity e : entities) {
+            assertReplicated(e);
+        }
+    }
+
+    @Test
+    public void testInterestManagement() {
+
+        // GIVEN a client that can only see the left of the level
+        client.setViewRegion(0, 0,
+                GameUtils.worldUnits(5), GameUtils.worldUnits(10));
+        Entity near = entities.get(0);
+        Entity far = entities.get(9);
+
+        // WHEN the state is sent
+        server.tick();
+        receiver.receive();
+
+        // THEN distant Entities are excluded
+        assertReplicated(near);
+        assertEquals(-1, receiver.getLatestFrame().indexOf(far.getId()));
+
+        // WHEN the margin is increased to cover the distant Entity
+        client.setInterestMargin(GameUtils.worldUnits(20));
+        server.tick();
+        receiver.receive();
+
+        // THEN it is sent
+        assertReplicated(far);
+
+        // WHEN the margin is removed again
+        client.setInterestMargin(0);
+        server.tick();
+        receiver.receive();
+
+        // THEN it is removed
+        assertEquals(-1, receiver.getLatestFrame().indexOf(far.getId()));
+        assertReplicated(near);
+    }
+
+    @Test
+    public void testBitsRoundTrip() {
+
+        // GIVEN some values packed with a BitWriter
+        BitWriter writer = new BitWriter();
+        writer.writeBits(5, 3);
+        writer.writeBoolean(true);
+        writer.writeVarInt(300);
+        writer.writeFloat(-1.5f);
+        writer.writeBits(-1, 32);
+        int length = writer.finish();
+
+        // WHEN they are read back
+        BitReader reader = new BitReader();
+        reader.reset(writer.getData(), length);
+
+        // THEN the values are unchanged
+        assertEquals(5, reader.readBits(3));
+        assertEquals(true, reader.readBoolean());
+        assertEquals(300, reader.readVarInt());
+        assertEquals(-1.5f, reader.readFloat(), 0);
+        assertEquals(-1, reader.readBits(32));
+    }
+
+}
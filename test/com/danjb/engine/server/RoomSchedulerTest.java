@@ -0,0 +1,185 @@
+package com.danjb.engine.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.danjb.engine.game.Logic;
+import com.danjb.engine.game.tiles.TestTileProvider;
+
+/**
+ * Tests of the RoomScheduler.
+ *
+ * @author Dan Bryce
+ */
+public class RoomSchedulerTest {
+
+    /**
+     * Logic that counts its updates, optionally taking some time over each.
+     */
+    private class CountingLogic extends Logic {
+
+        private int numUpdates;
+        private int msPerUpdate;
+
+        public CountingLogic() {
+            super(new TestTileProvider());
+        }
+
+        @Override
+        public void update(int delta) {
+            numUpdates++;
+            advance(msPerUpdate);
+        }
+
+    }
+
+    /**
+     * Current time of our fake clock, in nanoseconds.
+     */
+    private long time;
+
+    private RoomScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        // Run Rooms immediately, on the calling thread
+        scheduler = new RoomScheduler(Runnable::run, () -> time);
+    }
+
+    private void advance(int ms) {
+        time += ms * 1_000_000L;
+    }
+
+    @Test
+    public void testRoomsUseTheirOwnTimesteps() {
+
+        // GIVEN 2 Rooms with different timesteps
+        CountingLogic fast = new CountingLogic();
+        CountingLogic slow = new CountingLogic();
+        scheduler.addRoom(fast, 10);
+        scheduler.addRoom(slow, 20);
+
+        // WHEN 45ms pass
+        advance(45);
+        scheduler.dispatch();
+
+        // THEN each Room is updated according to its own timestep
+        assertEquals(4, fast.numUpdates);
+        assertEquals(2, slow.numUpdates);
+
+        // AND the leftover time is carried forward
+        advance(5);
+        scheduler.dispatch();
+        assertEquals(5, fast.numUpdates);
+        assertEquals(2, slow.numUpdates);
+    }
+
+    @Test
+    public void testBacklogIsDropped() {
+
+        // GIVEN a Room that can perform at most 3 updates per run
+        CountingLogic logic = new CountingLogic();
+        Room room = scheduler.addRoom(logic, 10);
+        scheduler.setMaxStepsPerRun(3);
+
+        // WHEN the Room falls far behind
+        advance(100);
+        scheduler.dispatch();
+
+        // THEN it only performs 3 updates, and the rest are dropped
+        assertEquals(3, logic.numUpdates);
+        assertEquals(7, room.getNumDroppedUpdates());
+        assertEquals(90, room.getLag(), 0.001f);
+    }
+
+    @Test
+    public void testOverrunsAreCounted() {
+
+        // GIVEN a Room whose updates take longer than its timestep
+        CountingLogic logic = new CountingLogic();
+        logic.msPerUpdate = 15;
+        Room room = scheduler.addRoom(logic, 10);
+
+        // WHEN it is run
+        advance(10);
+        scheduler.dispatch();
+
+        // THEN the overrun is recorded
+        assertEquals(1, room.getNumOverruns());
+        assertEquals(15, room.getLastUpdateDuration(), 0.001f);
+    }
+
+    @Test
+    public void testFailingRoomIsStopped() {
+
+        // GIVEN a Room whose Logic has no Level
+        Room room = scheduler.addRoom(
+                new Logic(new TestTileProvider()), 10);
+
+        // WHEN it is run
+        advance(10);
+        scheduler.dispatch();
+
+        // THEN it is stopped, and the error is kept
+        assertTrue(room.isStopped());
+        assertTrue(room.getError() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testRejectedRoomIsRetried() {
+
+        // GIVEN an Executor that rejects its first task
+        boolean[] rejected = new boolean[1];
+        scheduler = new RoomScheduler(task -> {
+            if (!rejected[0]) {
+                rejected[0] = true;
+                throw new RejectedExecutionException();
+            }
+            task.run();
+        }, () -> time);
+        CountingLogic logic = new CountingLogic();
+        Room room = scheduler.addRoom(logic, 10);
+
+        // WHEN the Room is due, and is dispatched twice
+        advance(10);
+        scheduler.dispatch();
+        scheduler.dispatch();
+
+        // THEN the rejection is counted, and the Room runs the second time
+        assertEquals(1, room.getNumRejections());
+        assertEquals(1, logic.numUpdates);
+        assertFalse(room.isStopped());
+    }
+
+    @Test
+    public void testRoomCanBeRemovedDuringDispatch() {
+
+        // GIVEN an Executor that removes the last Room before running the
+        // first
+        CountingLogic first = new CountingLogic();
+        CountingLogic last = new CountingLogic();
+        Room[] lastRoom = new Room[1];
+        scheduler = new RoomScheduler(task -> {
+            scheduler.removeRoom(lastRoom[0]);
+            task.run();
+        }, () -> time);
+        scheduler.addRoom(first, 10);
+        lastRoom[0] = scheduler.addRoom(last, 10);
+
+        // WHEN the Rooms are dispatched
+        advance(10);
+        scheduler.dispatch();
+
+        // THEN the dispatch completes, and the removed Room does not run
+        assertEquals(1, first.numUpdates);
+        assertEquals(0, last.numUpdates);
+        assertEquals(1, scheduler.getRooms().size());
+    }
+
+}